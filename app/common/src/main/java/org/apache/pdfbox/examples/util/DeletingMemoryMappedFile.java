@@ -0,0 +1,40 @@
+package org.apache.pdfbox.examples.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+
+import lombok.extern.slf4j.Slf4j;
+
+/** A memory-mapped RandomAccessRead implementation that deletes the file when closed */
+@Slf4j
+public class DeletingMemoryMappedFile extends RandomAccessReadMemoryMappedFile {
+    private final Path tempFilePath;
+
+    public DeletingMemoryMappedFile(File file) throws IOException {
+        super(file);
+        this.tempFilePath = file.toPath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // Unmaps the file first, a mapped file can't be deleted on every platform
+            super.close();
+        } finally {
+            try {
+                boolean deleted = Files.deleteIfExists(tempFilePath);
+                if (deleted) {
+                    log.info("Successfully deleted temp file: {}", tempFilePath);
+                } else {
+                    log.warn("Failed to delete temp file (may not exist): {}", tempFilePath);
+                }
+            } catch (IOException e) {
+                log.error("Error deleting temp file: {}", tempFilePath, e);
+            }
+        }
+    }
+}
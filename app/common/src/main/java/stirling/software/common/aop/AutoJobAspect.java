@@ -9,6 +9,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.*;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -22,6 +23,7 @@ import stirling.software.common.model.api.PDFFile;
 import stirling.software.common.service.FileOrUploadService;
 import stirling.software.common.service.FileStorage;
 import stirling.software.common.service.JobExecutorService;
+import stirling.software.common.service.PdfStructureReader;
 
 @Aspect
 @Component
@@ -32,10 +34,15 @@ public class AutoJobAspect {
 
     private static final Duration RETRY_BASE_DELAY = Duration.ofMillis(100);
 
+    // Each doubling of the page count from this many pages makes a job heavier by WEIGHT_STEP
+    private static final int PAGES_PER_WEIGHT_STEP = 100;
+    private static final int WEIGHT_STEP = 10;
+
     private final JobExecutorService jobExecutorService;
     private final HttpServletRequest request;
     private final FileOrUploadService fileOrUploadService;
     private final FileStorage fileStorage;
+    private final PdfStructureReader pdfStructureReader;
 
     @Around("@annotation(autoJobPostMapping)")
     public Object wrapWithJobExecution(
@@ -65,6 +72,11 @@ public class AutoJobAspect {
         // Extract queueable and resourceWeight parameters and validate
         boolean queueable = autoJobPostMapping.queueable();
         int resourceWeight = Math.max(1, Math.min(100, autoJobPostMapping.resourceWeight()));
+        // The weight only decides whether async jobs are queued, so only they pay for reading the
+        // page count
+        if (async && queueable) {
+            resourceWeight = weightByPageCount(resourceWeight, args);
+        }
 
         // Integrate with the JobExecutorService
         if (retryCount <= 1) {
@@ -245,7 +257,11 @@ public class AutoJobAspect {
                 if (pdfFile.getFileInput() == null && pdfFile.getFileId() != null) {
                     try {
                         log.debug("Using fileId {} to get file content", pdfFile.getFileId());
-                        MultipartFile file = fileStorage.retrieveFile(pdfFile.getFileId());
+                        MultipartFile file =
+                                fileStorage.retrieveFileInPlace(
+                                        pdfFile.getFileId(),
+                                        pdfFile.getFileId(),
+                                        MediaType.APPLICATION_PDF_VALUE);
                         pdfFile.setFileInput(file);
                     } catch (Exception e) {
                         throw new RuntimeException(
@@ -262,8 +278,13 @@ public class AutoJobAspect {
                         // Store the fileId for later reference
                         pdfFile.setFileId(fileId);
 
-                        // Replace the original MultipartFile with our persistent copy
-                        MultipartFile persistentFile = fileStorage.retrieveFile(fileId);
+                        // Replace the original MultipartFile with our persistent copy, which
+                        // reads from the stored file instead of holding it in memory
+                        MultipartFile persistentFile =
+                                fileStorage.retrieveFileInPlace(
+                                        fileId,
+                                        originalFile.getOriginalFilename(),
+                                        originalFile.getContentType());
                         pdfFile.setFileInput(persistentFile);
 
                         log.debug("Created persistent file copy with fileId: {}", fileId);
@@ -278,6 +299,35 @@ public class AutoJobAspect {
         return originalArgs;
     }
 
+    /**
+     * Long documents hold memory and CPU for longer, so they count as heavier when deciding
+     * whether a job has to be queued. The page count comes from the page tree root and is only
+     * used when the input is a well formed PDF.
+     */
+    private int weightByPageCount(int resourceWeight, Object[] args) {
+        if (args == null) {
+            return resourceWeight;
+        }
+        for (Object arg : args) {
+            if (arg instanceof PDFFile pdfFile && pdfFile.getFileInput() != null) {
+                int pageCount = pdfStructureReader.peekPageCount(pdfFile.getFileInput());
+                if (pageCount < PAGES_PER_WEIGHT_STEP) {
+                    return resourceWeight;
+                }
+                int doublings =
+                        32 - Integer.numberOfLeadingZeros(pageCount / PAGES_PER_WEIGHT_STEP);
+                int weighted = Math.min(100, resourceWeight + doublings * WEIGHT_STEP);
+                log.debug(
+                        "Weighted job for {} pages as {} instead of {}",
+                        pageCount,
+                        weighted,
+                        resourceWeight);
+                return weighted;
+            }
+        }
+        return resourceWeight;
+    }
+
     private String getJobIdFromContext() {
         try {
             return (String) request.getAttribute("jobId");
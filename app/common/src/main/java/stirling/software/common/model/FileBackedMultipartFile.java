@@ -0,0 +1,111 @@
+package stirling.software.common.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A {@link MultipartFile} whose content stays in a file that already exists on disk, such as a
+ * file kept by {@link stirling.software.common.service.FileStorage}. Nothing is read until the
+ * content is asked for, and code that can open files directly may use {@link #getPath()} instead.
+ *
+ * <p>The file belongs to whoever stored it and is never changed or deleted through this object.
+ */
+@Slf4j
+public class FileBackedMultipartFile implements MultipartFile {
+
+    private final Path path;
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+
+    public FileBackedMultipartFile(
+            Path path, String name, String originalFilename, String contentType)
+            throws IOException {
+        this.path = path;
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = Files.size(path);
+    }
+
+    /** The file holding the content, which must only be read */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public Resource getResource() {
+        return new FileSystemResource(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    /**
+     * Make the content available at {@code dest}, replacing any file there. A hard link is used
+     * where the file system allows it, so no data is copied. The link shares the read-only mode of
+     * a stored file, so a tool that tries to change it in place fails rather than changing the
+     * stored content; tools that replace their input by writing a new file are unaffected. Other
+     * file systems get a copy.
+     */
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        Files.deleteIfExists(dest);
+        try {
+            Files.createLink(dest, path);
+            return;
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            log.debug("Could not link {} to {}, copying it: {}", path, dest, e.getMessage());
+        }
+        Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
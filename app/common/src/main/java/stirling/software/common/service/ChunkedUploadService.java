@@ -0,0 +1,462 @@
+package stirling.software.common.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.common.util.ExceptionUtils;
+
+/**
+ * Resumable uploads of large inputs in numbered chunks. A session reserves a file of the declared
+ * size and every chunk is written straight to its place in it, so chunks may arrive in any order,
+ * in parallel, and be sent again after a broken connection. Committing moves the assembled file
+ * into {@link FileStorage} without copying it, and its file ID can then be passed as {@code
+ * fileId} wherever a {@code fileInput} is accepted.
+ *
+ * <p>The number of open uploads, overall and per client, and the disk space taken by uploads are
+ * limited. Committed files are deleted {@code stirling.upload.committedExpiryMinutes} after the
+ * commit, so clients that never use them don't fill the disk.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    static final int MIN_CHUNK_SIZE = 256 * 1024;
+    static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final String UPLOADS_DIR = ".uploads";
+
+    @Value("${stirling.tempDir:/tmp/stirling-files}")
+    private String tempDirPath;
+
+    @Value("${stirling.upload.sessionExpiryMinutes:60}")
+    private int sessionExpiryMinutes = 60;
+
+    @Value("${stirling.upload.committedExpiryMinutes:240}")
+    private int committedExpiryMinutes = 240;
+
+    @Value("${stirling.upload.maxSessions:100}")
+    private int maxSessions = 100;
+
+    @Value("${stirling.upload.maxSessionsPerClient:10}")
+    private int maxSessionsPerClient = 10;
+
+    // Declared size of open uploads plus size of committed files that haven't expired yet
+    @Value("${stirling.upload.maxTotalSizeMB:20480}")
+    private long maxTotalSizeMB = 20480;
+
+    private final FileStorage fileStorage;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CommittedFile> committedFiles = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleanupExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    public ChunkedUploadService(FileStorage fileStorage) {
+        this.fileStorage = fileStorage;
+        cleanupExecutor.scheduleAtFixedRate(
+                () -> {
+                    cleanupExpiredSessions();
+                    cleanupExpiredCommittedFiles();
+                },
+                5,
+                5,
+                TimeUnit.MINUTES);
+    }
+
+    /**
+     * Start an upload. The caller checks the declared size against the upload limit first.
+     *
+     * @param owner The client starting the upload, whose open uploads are limited
+     * @param fileName The name of the file being uploaded
+     * @param fileSize The size of the whole file in bytes
+     * @param chunkSize The chunk size the client would like, or null for the default
+     * @return The new session
+     * @throws UploadLimitException If the upload would exceed one of the upload limits
+     * @throws IOException If the file for the upload can't be created
+     */
+    public UploadSession createSession(
+            String owner, String fileName, long fileSize, Integer chunkSize) throws IOException {
+        if (fileSize <= 0) {
+            throw ExceptionUtils.createInvalidArgumentException("fileSize", "" + fileSize);
+        }
+        int size =
+                chunkSize != null
+                        ? Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize))
+                        : DEFAULT_CHUNK_SIZE;
+
+        String uploadId = UUID.randomUUID().toString();
+        Path uploadsDir = Path.of(tempDirPath).normalize().toAbsolutePath().resolve(UPLOADS_DIR);
+        Files.createDirectories(uploadsDir);
+        Path partPath = uploadsDir.resolve(uploadId + ".part");
+        UploadSession session =
+                new UploadSession(uploadId, owner, fileName, fileSize, size, partPath);
+        reserve(session, Files.getFileStore(uploadsDir).getUsableSpace());
+
+        // Chunks are written at their offsets, which needs the file at its full length. Most file
+        // systems keep the part that hasn't arrived yet sparse
+        try (RandomAccessFile file = new RandomAccessFile(partPath.toFile(), "rw")) {
+            file.setLength(fileSize);
+        } catch (IOException e) {
+            sessions.remove(uploadId);
+            deletePartFile(session);
+            throw e;
+        }
+        log.debug(
+                "Started upload {} of {} ({} bytes in {} chunks)",
+                uploadId,
+                fileName,
+                fileSize,
+                session.getChunkCount());
+        return session;
+    }
+
+    /** Checks the limits and adds the session in one step, so concurrent uploads can't overshoot */
+    private synchronized void reserve(UploadSession session, long usableSpace) {
+        if (sessions.size() >= maxSessions) {
+            throw new UploadLimitException(
+                    false, "Too many uploads in progress, please retry later");
+        }
+        long ownedSessions =
+                sessions.values().stream().filter(open -> open.owner.equals(session.owner)).count();
+        if (ownedSessions >= maxSessionsPerClient) {
+            throw new UploadLimitException(
+                    false, "Too many uploads in progress, finish or abort one first");
+        }
+        long reservedBytes =
+                sessions.values().stream().mapToLong(UploadSession::getFileSize).sum()
+                        + committedFiles.values().stream().mapToLong(CommittedFile::size).sum();
+        if (reservedBytes + session.fileSize > maxTotalSizeMB * 1024 * 1024
+                || session.fileSize > usableSpace) {
+            throw new UploadLimitException(
+                    true, "Not enough space for the upload, please retry later");
+        }
+        sessions.put(session.uploadId, session);
+    }
+
+    /**
+     * Get an upload that hasn't been committed or aborted yet
+     *
+     * @param uploadId The upload ID
+     * @return The session, or null if there is none
+     */
+    public UploadSession getSession(String uploadId) {
+        return sessions.get(uploadId);
+    }
+
+    /**
+     * Write one chunk to its place in the upload. A chunk is only counted as received once all of
+     * its bytes arrived and match the checksum; a failed chunk can simply be sent again.
+     *
+     * @param session The upload
+     * @param index The chunk number, starting at 0
+     * @param sha256 The hex SHA-256 of the chunk
+     * @param body The chunk content, read to its end but not closed
+     * @throws IOException If the chunk can't be written
+     */
+    public void writeChunk(UploadSession session, int index, String sha256, InputStream body)
+            throws IOException {
+        if (sha256 == null || sha256.isBlank()) {
+            throw ExceptionUtils.createNullArgumentException("Chunk checksum");
+        }
+        long offset = session.getChunkOffset(index);
+        long length = session.getChunkLength(index);
+        session.beginChunk(index);
+        boolean received = false;
+        try {
+            MessageDigest digest = newSha256();
+            DigestInputStream in = new DigestInputStream(body, digest);
+            ReadableByteChannel source = Channels.newChannel(in);
+            long written = 0;
+            try (FileChannel channel =
+                    FileChannel.open(session.partPath, StandardOpenOption.WRITE)) {
+                while (written < length) {
+                    long transferred =
+                            channel.transferFrom(source, offset + written, length - written);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    written += transferred;
+                }
+            }
+            if (written != length || in.read() != -1) {
+                throw ExceptionUtils.createIllegalArgumentException(
+                        "error.invalidChunk",
+                        "Chunk {0} must be exactly {1} bytes",
+                        String.valueOf(index),
+                        String.valueOf(length));
+            }
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if (!actual.equalsIgnoreCase(sha256.trim())) {
+                throw ExceptionUtils.createIllegalArgumentException(
+                        "error.invalidChunk",
+                        "Checksum of chunk {0} does not match",
+                        String.valueOf(index));
+            }
+            received = true;
+        } finally {
+            session.endChunk(index, received);
+        }
+    }
+
+    /**
+     * Finish an upload whose chunks have all been received and move the file into storage. The
+     * file is deleted once the committed file expiry has passed.
+     *
+     * @param session The upload
+     * @return The file ID of the stored file
+     * @throws IOException If the file can't be moved into storage
+     */
+    public String commit(UploadSession session) throws IOException {
+        session.beginCommit();
+        try {
+            String fileId = fileStorage.storeMovedFile(session.partPath, session.fileName);
+            // Counted against the size limit until it expires, before the session stops counting
+            committedFiles.put(
+                    fileId, new CommittedFile(session.fileSize, System.currentTimeMillis()));
+            sessions.remove(session.uploadId);
+            log.debug("Committed upload {} as file {}", session.uploadId, fileId);
+            return fileId;
+        } catch (IOException | RuntimeException e) {
+            session.endCommit();
+            throw e;
+        }
+    }
+
+    /**
+     * Abandon an upload and delete what was received of it
+     *
+     * @param uploadId The upload ID
+     * @return true if there was such an upload
+     */
+    public boolean abort(String uploadId) {
+        UploadSession session = sessions.remove(uploadId);
+        if (session == null) {
+            return false;
+        }
+        deletePartFile(session);
+        log.debug("Aborted upload {}", uploadId);
+        return true;
+    }
+
+    /** Remove uploads that have seen no chunk for longer than the session expiry */
+    public void cleanupExpiredSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(sessionExpiryMinutes);
+        for (UploadSession session : sessions.values()) {
+            if (session.isIdleSince(cutoff) && sessions.remove(session.uploadId, session)) {
+                deletePartFile(session);
+                log.info("Removed expired upload {} of {}", session.uploadId, session.fileName);
+            }
+        }
+    }
+
+    /** Delete committed files whose expiry has passed, whether they were used or not */
+    public void cleanupExpiredCommittedFiles() {
+        long cutoff =
+                System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(committedExpiryMinutes);
+        committedFiles.forEach(
+                (fileId, committed) -> {
+                    if (committed.committedAt() < cutoff
+                            && committedFiles.remove(fileId, committed)) {
+                        fileStorage.deleteFile(fileId);
+                        log.info("Removed expired uploaded file {}", fileId);
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdownNow();
+        for (String uploadId : List.copyOf(sessions.keySet())) {
+            abort(uploadId);
+        }
+        // Nothing would expire them after a restart
+        for (String fileId : List.copyOf(committedFiles.keySet())) {
+            if (committedFiles.remove(fileId) != null) {
+                fileStorage.deleteFile(fileId);
+            }
+        }
+    }
+
+    private static void deletePartFile(UploadSession session) {
+        try {
+            Files.deleteIfExists(session.partPath);
+        } catch (IOException e) {
+            log.warn("Failed to delete upload file {}: {}", session.partPath, e.getMessage());
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** A committed upload, counted against the size limit until it expires */
+    private record CommittedFile(long size, long committedAt) {}
+
+    /** Thrown when a new upload would exceed the number of open uploads or the space for them */
+    public static final class UploadLimitException extends RuntimeException {
+
+        private final boolean sizeLimit;
+
+        private UploadLimitException(boolean sizeLimit, String message) {
+            super(message);
+            this.sizeLimit = sizeLimit;
+        }
+
+        /** Whether the space for uploads rather than their number was exceeded */
+        public boolean isSizeLimit() {
+            return sizeLimit;
+        }
+    }
+
+    /** State of one upload. The received chunks and activity are guarded by the session. */
+    public static final class UploadSession {
+
+        private final String uploadId;
+        private final String owner;
+        private final String fileName;
+        private final long fileSize;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final Path partPath;
+        private final BitSet receivedChunks = new BitSet();
+        private final Set<Integer> chunksInFlight = new HashSet<>();
+        private boolean committing;
+        private long lastActivity = System.currentTimeMillis();
+
+        private UploadSession(
+                String uploadId,
+                String owner,
+                String fileName,
+                long fileSize,
+                int chunkSize,
+                Path partPath) {
+            this.uploadId = uploadId;
+            this.owner = owner;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (int) ((fileSize + chunkSize - 1) / chunkSize);
+            this.partPath = partPath;
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        /** Whether the upload was started by the given client */
+        public boolean isOwnedBy(String client) {
+            return owner.equals(client);
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        /** The numbers of the chunks received so far, for clients resuming an upload */
+        public synchronized List<Integer> getReceivedChunks() {
+            return receivedChunks.stream().boxed().toList();
+        }
+
+        /** The size of a chunk; only the last one may be shorter than the chunk size */
+        public long getChunkLength(int index) {
+            return Math.min(chunkSize, fileSize - getChunkOffset(index));
+        }
+
+        private long getChunkOffset(int index) {
+            if (index < 0 || index >= chunkCount) {
+                throw ExceptionUtils.createInvalidArgumentException("chunk index", "" + index);
+            }
+            return (long) index * chunkSize;
+        }
+
+        private synchronized void beginChunk(int index) {
+            if (committing) {
+                throw new IllegalStateException("Upload " + uploadId + " is being committed");
+            }
+            if (!chunksInFlight.add(index)) {
+                throw new IllegalStateException("Chunk " + index + " is already being uploaded");
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+
+        private synchronized void endChunk(int index, boolean received) {
+            chunksInFlight.remove(index);
+            if (received) {
+                receivedChunks.set(index);
+            } else {
+                // A partly written chunk leaves stale bytes behind until it is sent again
+                receivedChunks.clear(index);
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+
+        private synchronized void beginCommit() {
+            if (committing) {
+                throw new IllegalStateException("Upload " + uploadId + " is being committed");
+            }
+            if (!chunksInFlight.isEmpty() || receivedChunks.cardinality() < chunkCount) {
+                throw new IllegalStateException(
+                        "Upload "
+                                + uploadId
+                                + " has "
+                                + receivedChunks.cardinality()
+                                + " of "
+                                + chunkCount
+                                + " chunks");
+            }
+            committing = true;
+        }
+
+        private synchronized void endCommit() {
+            committing = false;
+        }
+
+        private synchronized boolean isIdleSince(long cutoff) {
+            return !committing && chunksInFlight.isEmpty() && lastActivity < cutoff;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package stirling.software.common.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Tells whether the client of a request is still connected. The servlet API has no way to ask,
+ * so the check is provided for the servlet container in use.
+ */
+public interface ClientConnectionMonitor {
+
+    /**
+     * Check the connection of a request that is still being handled
+     *
+     * @param request The request
+     * @return false only if the container knows the connection is closed
+     */
+    boolean isConnected(HttpServletRequest request);
+}
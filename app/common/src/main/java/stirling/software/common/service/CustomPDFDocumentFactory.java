@@ -4,27 +4,36 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.examples.util.DeletingMemoryMappedFile;
 import org.apache.pdfbox.examples.util.DeletingRandomAccessFile;
-import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
 import org.apache.pdfbox.io.RandomAccessStreamCache.StreamCacheCreateFunction;
 import org.apache.pdfbox.io.ScratchFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.multipart.MultipartFile;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import stirling.software.common.model.FileBackedMultipartFile;
 import stirling.software.common.model.api.PDFFile;
 import stirling.software.common.util.ApplicationContextProvider;
 import stirling.software.common.util.ExceptionUtils;
+import stirling.software.common.util.PdfUtils;
+import stirling.software.common.util.ScratchMemoryBudget;
 import stirling.software.common.util.TempFileManager;
 import stirling.software.common.util.TempFileRegistry;
 
@@ -43,9 +52,8 @@ public class CustomPDFDocumentFactory {
 
     private static final long SMALL_FILE_THRESHOLD = 10 * 1024 * 1024; // 10 MB
     // Files smaller than this threshold are loaded entirely in memory for better performance.
-    // These files use IOUtils.createMemoryOnlyStreamCache() which keeps all document data in RAM.
-    // No temp files are created for document data, reducing I/O operations but consuming more
-    // memory.
+    // Their scratch data stays in RAM as long as the shared ScratchMemoryBudget has room, which
+    // avoids temp file I/O without letting many concurrent documents exhaust the heap.
 
     private static final long LARGE_FILE_THRESHOLD = 50 * 1024 * 1024; // 50 MB
     // Files between SMALL and LARGE thresholds use file-based caching with ScratchFile,
@@ -64,7 +72,9 @@ public class CustomPDFDocumentFactory {
     // bound.
 
     private static final double MIN_FREE_MEMORY_PERCENTAGE = 30.0; // 30%
-    private static final long MIN_FREE_MEMORY_BYTES = 4L * 1024 * 1024 * 1024; // 4 GB
+
+    // Smallest scratch memory lease requested for a document
+    private static final long MIN_SCRATCH_LEASE = 1024 * 1024; // 1 MB
 
     // Counter for tracking temporary resources
     private static final AtomicLong tempCounter = new AtomicLong(0);
@@ -89,7 +99,7 @@ public class CustomPDFDocumentFactory {
         long fileSize = file.length();
         log.debug("Loading PDF from file, size: {}MB", fileSize / (1024 * 1024));
 
-        PDDocument doc = loadAdaptively(file, fileSize);
+        PDDocument doc = loadAdaptively(file, fileSize, true);
         if (!readOnly) {
             postProcessDocument(doc);
         }
@@ -116,13 +126,32 @@ public class CustomPDFDocumentFactory {
         long fileSize = Files.size(path);
         log.debug("Loading PDF from file, size: {}MB", fileSize / (1024 * 1024));
 
-        PDDocument doc = loadAdaptively(path.toFile(), fileSize);
+        PDDocument doc = loadAdaptively(path.toFile(), fileSize, true);
         if (!readOnly) {
             postProcessDocument(doc);
         }
         return doc;
     }
 
+    /**
+     * Load a PDF document from a file that stays with the caller. Unlike {@link #load(File)} the
+     * file is neither deleted once read nor when the document is closed, so it can also be handed
+     * to workers that open their own copies of the document. The file must not change while the
+     * document is open.
+     */
+    public PDDocument loadShared(File file) throws IOException {
+        if (file == null) {
+            throw ExceptionUtils.createNullArgumentException("File");
+        }
+
+        long fileSize = file.length();
+        log.debug("Loading shared PDF from file, size: {}MB", fileSize / (1024 * 1024));
+
+        PDDocument doc = loadAdaptively(file, fileSize, false);
+        postProcessDocument(doc);
+        return doc;
+    }
+
     /** Load a PDF from byte array with automatic optimization. */
     public PDDocument load(byte[] input) throws IOException {
         return load(input, false);
@@ -137,7 +166,7 @@ public class CustomPDFDocumentFactory {
         long dataSize = input.length;
         log.debug("Loading PDF from byte array, size: {}MB", dataSize / (1024 * 1024));
 
-        PDDocument doc = loadAdaptively(input, dataSize);
+        PDDocument doc = loadAdaptively(input, dataSize, true);
         if (!readOnly) {
             postProcessDocument(doc);
         }
@@ -155,11 +184,8 @@ public class CustomPDFDocumentFactory {
             throw ExceptionUtils.createNullArgumentException("InputStream");
         }
 
-        // Since we don't know the size upfront, buffer to a temp file
-        Path tempFile = createTempFile("pdf-stream-");
-
-        Files.copy(input, tempFile, StandardCopyOption.REPLACE_EXISTING);
-        PDDocument doc = loadAdaptively(tempFile.toFile(), Files.size(tempFile));
+        Object source = readStream(input);
+        PDDocument doc = loadAdaptively(source, sizeOf(source), true);
         if (!readOnly) {
             postProcessDocument(doc);
         }
@@ -178,12 +204,8 @@ public class CustomPDFDocumentFactory {
             throw ExceptionUtils.createNullArgumentException("InputStream");
         }
 
-        // Since we don't know the size upfront, buffer to a temp file
-        Path tempFile = createTempFile("pdf-stream-");
-
-        Files.copy(input, tempFile, StandardCopyOption.REPLACE_EXISTING);
-        PDDocument doc =
-                loadAdaptivelyWithPassword(tempFile.toFile(), Files.size(tempFile), password);
+        Object source = readStream(input);
+        PDDocument doc = loadAdaptivelyWithPassword(source, sizeOf(source), password, true);
         if (!readOnly) {
             postProcessDocument(doc);
         }
@@ -217,7 +239,7 @@ public class CustomPDFDocumentFactory {
 
     /** Load from a MultipartFile with read-only option */
     public PDDocument load(MultipartFile pdfFile, boolean readOnly) throws IOException {
-        return load(pdfFile.getInputStream(), readOnly);
+        return loadUpload(pdfFile, null, readOnly);
     }
 
     /** Load with password from MultipartFile */
@@ -228,66 +250,115 @@ public class CustomPDFDocumentFactory {
     /** Load with password from MultipartFile with read-only option */
     public PDDocument load(MultipartFile fileInput, String password, boolean readOnly)
             throws IOException {
-        return load(fileInput.getInputStream(), password, readOnly);
+        return loadUpload(fileInput, password, readOnly);
     }
 
     /**
-     * Determine the appropriate caching strategy based on file size and available memory. This
-     * common method is used by both password and non-password loading paths.
+     * Load an upload without the stream copy of {@link #load(InputStream)}. Uploads that are
+     * already backed by a stored file are parsed from it in place. Otherwise small uploads are
+     * parsed from memory, and larger ones are transferred to a temp file, which the servlet
+     * container does by moving the file it already spooled the upload to, and are then parsed in
+     * place.
      */
-    public StreamCacheCreateFunction getStreamCacheFunction(long contentSize) {
-        long maxMemory = Runtime.getRuntime().maxMemory();
-        long freeMemory = Runtime.getRuntime().freeMemory();
-        long totalMemory = Runtime.getRuntime().totalMemory();
-        long usedMemory = totalMemory - freeMemory;
+    private PDDocument loadUpload(MultipartFile upload, String password, boolean readOnly)
+            throws IOException {
+        if (upload == null) {
+            throw ExceptionUtils.createNullArgumentException("MultipartFile");
+        }
 
-        // Calculate percentage of free memory
-        double freeMemoryPercent = (double) (maxMemory - usedMemory) / maxMemory * 100;
-        long actualFreeMemory = maxMemory - usedMemory;
-
-        // Log memory status
-        log.debug(
-                "Memory status - Free: {}MB ({}%), Used: {}MB, Max: {}MB",
-                actualFreeMemory / (1024 * 1024),
-                String.format("%.2f", freeMemoryPercent),
-                usedMemory / (1024 * 1024),
-                maxMemory / (1024 * 1024));
-
-        // If free memory is critically low, always use file-based caching
-        if (freeMemoryPercent < MIN_FREE_MEMORY_PERCENTAGE
-                || actualFreeMemory < MIN_FREE_MEMORY_BYTES) {
-            log.debug(
-                    "Low memory detected ({}%), forcing file-based cache",
-                    String.format("%.2f", freeMemoryPercent));
-            return createScratchFileCacheFunction(MemoryUsageSetting.setupTempFileOnly());
-        } else if (contentSize < SMALL_FILE_THRESHOLD) {
-            log.debug("Using memory-only cache for small document ({}KB)", contentSize / 1024);
-            return IOUtils.createMemoryOnlyStreamCache();
+        long size = upload.getSize();
+        log.debug("Loading PDF from upload, size: {}MB", size / (1024 * 1024));
+
+        Object source;
+        boolean ownsFile;
+        if (upload instanceof FileBackedMultipartFile stored) {
+            // The stored file outlives the document and is deleted by its owner
+            source = stored.getPath().toFile();
+            ownsFile = false;
+        } else if (size <= SMALL_FILE_THRESHOLD) {
+            source = upload.getBytes();
+            ownsFile = true;
+        } else {
+            // After the move the upload is backed by this file and may still be read, so it is
+            // deleted when the request completes rather than with the document. Jetty does not
+            // delete moved parts itself. Outside a request nothing else reads it.
+            File file = createTempFile("pdf-upload-").toFile();
+            upload.transferTo(file);
+            source = file;
+            ownsFile = !deleteWithRequest(file);
+        }
+
+        PDDocument doc =
+                password != null
+                        ? loadAdaptivelyWithPassword(source, size, password, ownsFile)
+                        : loadAdaptively(source, size, ownsFile);
+        if (!readOnly) {
+            postProcessDocument(doc);
+        }
+        return doc;
+    }
+
+    private static boolean deleteWithRequest(File file) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return false;
+        }
+        attributes.registerDestructionCallback(
+                "pdf-upload:" + file.getName(),
+                () -> {
+                    try {
+                        Files.deleteIfExists(file.toPath());
+                    } catch (IOException e) {
+                        log.warn("Failed to delete upload temp file {}: {}", file, e.getMessage());
+                    }
+                },
+                RequestAttributes.SCOPE_REQUEST);
+        return true;
+    }
+
+    /**
+     * Determine the appropriate caching strategy based on file size. Scratch memory is leased from
+     * the process-wide {@link ScratchMemoryBudget}, so concurrent documents share one fixed amount
+     * of heap and spill to disk once it is used up. This common method is used by both password
+     * and non-password loading paths.
+     */
+    public StreamCacheCreateFunction getStreamCacheFunction(long contentSize) {
+        if (contentSize < SMALL_FILE_THRESHOLD) {
+            // Small documents normally fit in memory entirely
+            long requested = Math.max(MIN_SCRATCH_LEASE, 2 * contentSize);
+            log.debug("Using leased memory cache for small document ({}KB)", contentSize / 1024);
+            return createLeasedScratchFileCacheFunction(requested);
         } else if (contentSize < LARGE_FILE_THRESHOLD) {
             // For medium files (10-50MB), use a mixed approach
             log.debug(
                     "Using mixed memory/file cache for medium document ({}MB)",
                     contentSize / (1024 * 1024));
-            return createScratchFileCacheFunction(MemoryUsageSetting.setupMixed(LARGE_FILE_USAGE));
+            return createLeasedScratchFileCacheFunction(LARGE_FILE_USAGE);
         } else {
             log.debug("Using file-based cache for large document");
             return createScratchFileCacheFunction(MemoryUsageSetting.setupTempFileOnly());
         }
     }
 
-    /** Update the existing loadAdaptively method to use the common function */
-    private PDDocument loadAdaptively(Object source, long contentSize) throws IOException {
+    /**
+     * Update the existing loadAdaptively method to use the common function. A file source is
+     * deleted once loaded or when the document is closed if {@code ownsFile} is set.
+     */
+    private PDDocument loadAdaptively(Object source, long contentSize, boolean ownsFile)
+            throws IOException {
         // Get the appropriate caching strategy
         StreamCacheCreateFunction cacheFunction = getStreamCacheFunction(contentSize);
 
         // If small handle as bytes and remove original file
         if (contentSize <= SMALL_FILE_THRESHOLD && source instanceof File file) {
             source = Files.readAllBytes(file.toPath());
-            file.delete();
+            if (ownsFile) {
+                file.delete();
+            }
         }
         PDDocument document;
         if (source instanceof File file) {
-            document = loadFromFile(file, contentSize, cacheFunction);
+            document = loadFromFile(file, contentSize, cacheFunction, ownsFile);
         } else if (source instanceof byte[] bytes) {
             document = loadFromBytes(bytes, contentSize, cacheFunction);
         } else {
@@ -306,32 +377,40 @@ public class CustomPDFDocumentFactory {
     private void configureResourceCacheIfNeeded(PDDocument document, long contentSize) {
         if (contentSize > LARGE_FILE_THRESHOLD) {
             document.setResourceCache(null);
-        } else {
+        } else if (isFreeMemoryLow()) {
             // Check current memory status for smaller files
-            long maxMemory = Runtime.getRuntime().maxMemory();
-            long usedMemory =
-                    Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-            double freeMemoryPercent = (double) (maxMemory - usedMemory) / maxMemory * 100;
-
-            if (freeMemoryPercent < MIN_FREE_MEMORY_PERCENTAGE) {
-                document.setResourceCache(null);
-            }
+            document.setResourceCache(null);
         }
     }
 
+    /**
+     * Check whether the free heap is below the minimum percentage at which documents stop being
+     * cached in memory. Other in-memory caches use the same threshold to decide when to evict.
+     */
+    public boolean isFreeMemoryLow() {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        double freeMemoryPercent = (double) (maxMemory - usedMemory) / maxMemory * 100;
+        return freeMemoryPercent < MIN_FREE_MEMORY_PERCENTAGE;
+    }
+
     /** Load a PDF with password protection using adaptive loading strategies */
-    private PDDocument loadAdaptivelyWithPassword(Object source, long contentSize, String password)
+    private PDDocument loadAdaptivelyWithPassword(
+            Object source, long contentSize, String password, boolean ownsFile)
             throws IOException {
         // Get the appropriate caching strategy
         StreamCacheCreateFunction cacheFunction = getStreamCacheFunction(contentSize);
         // If small handle as bytes and remove original file
         if (contentSize <= SMALL_FILE_THRESHOLD && source instanceof File file) {
             source = Files.readAllBytes(file.toPath());
-            file.delete();
+            if (ownsFile) {
+                file.delete();
+            }
         }
         PDDocument document;
         if (source instanceof File file) {
-            document = loadFromFileWithPassword(file, contentSize, cacheFunction, password);
+            document =
+                    loadFromFileWithPassword(file, contentSize, cacheFunction, password, ownsFile);
         } else if (source instanceof byte[] bytes) {
             document = loadFromBytesWithPassword(bytes, contentSize, cacheFunction, password);
         } else {
@@ -345,9 +424,13 @@ public class CustomPDFDocumentFactory {
 
     /** Load a file with password */
     private PDDocument loadFromFileWithPassword(
-            File file, long size, StreamCacheCreateFunction cache, String password)
+            File file,
+            long size,
+            StreamCacheCreateFunction cache,
+            String password,
+            boolean ownsFile)
             throws IOException {
-        return Loader.loadPDF(new DeletingRandomAccessFile(file), password, null, null, cache);
+        return Loader.loadPDF(openFile(file, size, ownsFile), password, null, null, cache);
     }
 
     /** Load bytes with password */
@@ -359,11 +442,28 @@ public class CustomPDFDocumentFactory {
             Path tempFile = createTempFile("pdf-bytes-");
 
             Files.write(tempFile, bytes);
-            return Loader.loadPDF(tempFile.toFile(), password, null, null, cache);
+            return loadFromFileWithPassword(tempFile.toFile(), size, cache, password, true);
         }
         return Loader.loadPDF(bytes, password, null, null, cache);
     }
 
+    private StreamCacheCreateFunction createLeasedScratchFileCacheFunction(long requestedBytes) {
+        return () -> {
+            ScratchMemoryBudget.Lease lease =
+                    ScratchMemoryBudget.getInstance().lease(requestedBytes);
+            try {
+                MemoryUsageSetting settings =
+                        lease.getBytes() > 0
+                                ? MemoryUsageSetting.setupMixed(lease.getBytes())
+                                : MemoryUsageSetting.setupTempFileOnly();
+                return new LeasedScratchFile(settings, lease);
+            } catch (IOException e) {
+                lease.close();
+                throw new RuntimeException("ScratchFile initialization failed", e);
+            }
+        };
+    }
+
     private StreamCacheCreateFunction createScratchFileCacheFunction(MemoryUsageSetting settings) {
         return () -> {
             try {
@@ -376,19 +476,61 @@ public class CustomPDFDocumentFactory {
 
     private void postProcessDocument(PDDocument doc) throws IOException {
         pdfMetadataService.setDefaultMetadata(doc);
+        // The stamped metadata has to be part of an incremental save as well
+        PdfUtils.markForIncrementalUpdate(doc.getDocumentInformation());
         removePassword(doc);
     }
 
-    private PDDocument loadFromFile(File file, long size, StreamCacheCreateFunction cache)
+    private PDDocument loadFromFile(
+            File file, long size, StreamCacheCreateFunction cache, boolean ownsFile)
             throws IOException {
         try {
-            return Loader.loadPDF(new DeletingRandomAccessFile(file), "", null, null, cache);
+            return Loader.loadPDF(openFile(file, size, ownsFile), "", null, null, cache);
         } catch (IOException e) {
             ExceptionUtils.logException("PDF loading from file", e);
             throw ExceptionUtils.handlePdfException(e);
         }
     }
 
+    /**
+     * Open a file for parsing. Large files are memory-mapped so the parser reads straight from the
+     * page cache, the rest is read through a buffer. Files the mapping can't cover (over 2 GB) are
+     * buffered as well.
+     */
+    private RandomAccessRead openFile(File file, long size, boolean ownsFile) throws IOException {
+        if (size > LARGE_FILE_THRESHOLD && size <= Integer.MAX_VALUE) {
+            log.debug("Memory-mapping large document ({}MB)", size / (1024 * 1024));
+            return ownsFile
+                    ? new DeletingMemoryMappedFile(file)
+                    : new RandomAccessReadMemoryMappedFile(file);
+        }
+        return ownsFile
+                ? new DeletingRandomAccessFile(file)
+                : new RandomAccessReadBufferedFile(file);
+    }
+
+    /**
+     * Read a stream of unknown size. Streams that end within the small file threshold are kept in
+     * memory, longer ones are written to a temp file starting with what was already read.
+     */
+    private Object readStream(InputStream input) throws IOException {
+        byte[] head = input.readNBytes((int) SMALL_FILE_THRESHOLD + 1);
+        if (head.length <= SMALL_FILE_THRESHOLD) {
+            return head;
+        }
+
+        Path tempFile = createTempFile("pdf-stream-");
+        try (OutputStream output = Files.newOutputStream(tempFile)) {
+            output.write(head);
+            input.transferTo(output);
+        }
+        return tempFile.toFile();
+    }
+
+    private static long sizeOf(Object source) {
+        return source instanceof byte[] bytes ? bytes.length : ((File) source).length();
+    }
+
     private PDDocument loadFromBytes(byte[] bytes, long size, StreamCacheCreateFunction cache)
             throws IOException {
         if (size >= SMALL_FILE_THRESHOLD) {
@@ -396,7 +538,7 @@ public class CustomPDFDocumentFactory {
             Path tempFile = createTempFile("pdf-bytes-");
 
             Files.write(tempFile, bytes);
-            return loadFromFile(tempFile.toFile(), size, cache);
+            return loadFromFile(tempFile.toFile(), size, cache, true);
         }
 
         try {
@@ -539,4 +681,30 @@ public class CustomPDFDocumentFactory {
             return saveToBytes(document);
         }
     }
+
+    /**
+     * Scratch file that returns its memory lease when the document closes it. Documents that are
+     * never closed return it once the scratch file has been garbage collected.
+     */
+    private static final class LeasedScratchFile extends ScratchFile {
+
+        private static final Cleaner CLEANER = Cleaner.create();
+
+        private final Cleaner.Cleanable cleanable;
+
+        private LeasedScratchFile(MemoryUsageSetting settings, ScratchMemoryBudget.Lease lease)
+                throws IOException {
+            super(settings);
+            this.cleanable = CLEANER.register(this, lease::close);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                cleanable.clean();
+            }
+        }
+    }
 }
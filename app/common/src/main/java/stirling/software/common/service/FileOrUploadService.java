@@ -4,12 +4,17 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.*;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import lombok.RequiredArgsConstructor;
 
+import stirling.software.common.model.api.PDFFile;
+import stirling.software.common.util.ExceptionUtils;
+
 @Service
 @RequiredArgsConstructor
 public class FileOrUploadService {
@@ -17,10 +22,35 @@ public class FileOrUploadService {
     @Value("${stirling.tempDir:/tmp/stirling-files}")
     private String tempDirPath;
 
+    // Looked up when needed, as FileStorage itself depends on this service
+    private final ObjectProvider<FileStorage> fileStorage;
+
     public Path resolveFilePath(String fileId) {
         return Path.of(tempDirPath).resolve(fileId);
     }
 
+    /**
+     * Fill in the file of a request that names a stored file, such as a committed chunked upload,
+     * by its {@code fileId} instead of uploading it. The stored file is read in place rather than
+     * copied. Requests with an uploaded file are left as they are.
+     *
+     * @param request The bound request
+     * @throws IOException If there is no stored file with the ID
+     */
+    public void resolveFileId(PDFFile request) throws IOException {
+        String fileId = request.getFileId();
+        MultipartFile fileInput = request.getFileInput();
+        if ((fileInput != null && !fileInput.isEmpty()) || fileId == null || fileId.isBlank()) {
+            return;
+        }
+        FileStorage storage = fileStorage.getObject();
+        if (!storage.fileExists(fileId)) {
+            throw ExceptionUtils.createFileNotFoundException(fileId);
+        }
+        request.setFileInput(
+                storage.retrieveFileInPlace(fileId, fileId, MediaType.APPLICATION_PDF_VALUE));
+    }
+
     public MultipartFile toMockMultipartFile(String name, byte[] data) throws IOException {
         return new CustomMultipartFile(name, data);
     }
@@ -1,31 +1,123 @@
 package stirling.software.common.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.annotation.PostConstruct;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import stirling.software.common.model.FileBackedMultipartFile;
+
 /**
  * Service for storing and retrieving files with unique file IDs. Used by the AutoJobPostMapping
  * system to handle file references.
+ *
+ * <p>Files are spread over two levels of subdirectories chosen by a hash of their ID, so no single
+ * directory grows to tens of thousands of entries. Content is written to a staging directory and
+ * moved into place in one step, so a file is either complete or not visible at all. Stored files
+ * are read-only, as their content may be shared through hard links, so a tool that tries to change
+ * one in place fails instead of corrupting it.
+ *
+ * <p>With {@code stirling.fileStorage.deduplicate} enabled, identical content is stored once and
+ * every file ID that refers to it is a hard link to it. The link count of the content is its
+ * reference count, so sharing survives a restart, and the content is deleted when the last file ID
+ * is. Deduplication needs a file system with POSIX link counts.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileStorage {
 
+    private static final String STAGING_DIR = ".staging";
+    private static final String CONTENT_DIR = ".content";
+
     @Value("${stirling.tempDir:/tmp/stirling-files}")
     private String tempDirPath;
 
+    @Value("${stirling.fileStorage.deduplicate:false}")
+    private boolean deduplicate;
+
     private final FileOrUploadService fileOrUploadService;
 
+    // File IDs of deduplicated files and the hash of their content, restored at startup
+    private final Map<String, String> contentHashes = new ConcurrentHashMap<>();
+
+    // Held while content is linked or unlinked, so its link count can't change in between
+    private final Object contentLock = new Object();
+
+    /**
+     * Find the content of the deduplicated files stored before a restart by matching their links,
+     * and delete content that no file ID refers to anymore. Also done with deduplication turned
+     * off since, so the content is still deleted with its last file ID.
+     */
+    @PostConstruct
+    public void restoreDeduplicatedContent() {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+            if (deduplicate) {
+                log.warn("File deduplication needs POSIX link counts, storing files separately");
+                deduplicate = false;
+            }
+            return;
+        }
+        Path basePath = getBasePath();
+        Path contentDir = basePath.resolve(CONTENT_DIR);
+        if (!Files.isDirectory(contentDir)) {
+            return;
+        }
+        try {
+            Map<Object, String> hashesByFileKey = new HashMap<>();
+            try (Stream<Path> paths = Files.walk(contentDir)) {
+                for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                    if (linkCount(path) <= 1) {
+                        deleteIfExists(path);
+                    } else {
+                        hashesByFileKey.put(fileKey(path), path.getFileName().toString());
+                    }
+                }
+            }
+            if (hashesByFileKey.isEmpty()) {
+                return;
+            }
+            try (Stream<Path> paths = Files.walk(basePath)) {
+                for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                    if (path.startsWith(contentDir) || linkCount(path) <= 1) {
+                        continue;
+                    }
+                    String contentHash = hashesByFileKey.get(fileKey(path));
+                    if (contentHash != null) {
+                        contentHashes.put(path.getFileName().toString(), contentHash);
+                    }
+                }
+            }
+            log.info("Restored {} deduplicated files", contentHashes.size());
+        } catch (IOException e) {
+            log.warn("Could not restore deduplicated files: {}", e.getMessage());
+        }
+    }
+
     /**
      * Store a file and return its unique ID
      *
@@ -34,39 +126,92 @@ public class FileStorage {
      * @throws IOException If there is an error storing the file
      */
     public String storeFile(MultipartFile file) throws IOException {
-        String fileId = generateFileId();
-        Path filePath = getFilePath(fileId);
-
-        // Ensure the directory exists
-        Files.createDirectories(filePath.getParent());
-
-        // Transfer the file to the storage location
-        file.transferTo(filePath.toFile());
-
-        log.debug("Stored file with ID: {}", fileId);
-        return fileId;
+        // transferTo moves uploads that are already on disk instead of copying them
+        return store(
+                stagingPath -> file.transferTo(stagingPath.toFile()), file.getOriginalFilename());
     }
 
     /**
      * Store a byte array as a file and return its unique ID
      *
      * @param bytes The byte array to store
-     * @param originalName The original name of the file (for extension)
+     * @param originalName The original name of the file (for logging)
      * @return The unique ID assigned to the file
      * @throws IOException If there is an error storing the file
      */
     public String storeBytes(byte[] bytes, String originalName) throws IOException {
-        String fileId = generateFileId();
+        return store(stagingPath -> Files.write(stagingPath, bytes), originalName);
+    }
+
+    /**
+     * Store the content of a stream as a file and return its unique ID. The content is copied
+     * straight to disk, so it can be larger than the heap.
+     *
+     * @param in The stream to store, read to its end but not closed
+     * @param originalName The original name of the file (for logging)
+     * @return The unique ID assigned to the file
+     * @throws IOException If there is an error storing the file
+     */
+    public String storeStream(InputStream in, String originalName) throws IOException {
+        return store(stagingPath -> Files.copy(in, stagingPath), originalName);
+    }
+
+    /**
+     * Store a file that already exists on disk by moving it into storage, and return its unique
+     * ID. A file on the same file system as the storage directory is renamed, not copied.
+     *
+     * @param source The file to store, which no longer exists at its old location afterwards
+     * @param originalName The original name of the file (for logging)
+     * @return The unique ID assigned to the file
+     * @throws IOException If there is an error storing the file
+     */
+    public String storeMovedFile(Path source, String originalName) throws IOException {
+        return store(stagingPath -> Files.move(source, stagingPath), originalName);
+    }
+
+    /**
+     * Get the location of a stored file, for callers that need random access to it rather than
+     * its content in memory. The file must not be modified, as deduplicated content is shared.
+     *
+     * @param fileId The ID of the file
+     * @return The path to the stored file
+     * @throws IOException If the file doesn't exist
+     */
+    public Path getStoredFilePath(String fileId) throws IOException {
         Path filePath = getFilePath(fileId);
 
-        // Ensure the directory exists
-        Files.createDirectories(filePath.getParent());
+        if (!Files.exists(filePath)) {
+            throw new IOException("File not found with ID: " + fileId);
+        }
 
-        // Write the bytes to the file
-        Files.write(filePath, bytes);
+        return filePath;
+    }
 
-        log.debug("Stored byte array with ID: {}", fileId);
-        return fileId;
+    /**
+     * Open a stored file for reading without loading it into memory
+     *
+     * @param fileId The ID of the file
+     * @return A stream of the file content, which the caller has to close
+     * @throws IOException If the file doesn't exist or can't be read
+     */
+    public InputStream openStream(String fileId) throws IOException {
+        return Files.newInputStream(getStoredFilePath(fileId));
+    }
+
+    /**
+     * Get a stored file as a MultipartFile that reads from the stored file when its content is
+     * needed, rather than from a copy in memory
+     *
+     * @param fileId The ID of the file
+     * @param originalFilename The file name the MultipartFile reports
+     * @param contentType The content type the MultipartFile reports
+     * @return The file as a MultipartFile
+     * @throws IOException If the file doesn't exist
+     */
+    public FileBackedMultipartFile retrieveFileInPlace(
+            String fileId, String originalFilename, String contentType) throws IOException {
+        return new FileBackedMultipartFile(
+                getStoredFilePath(fileId), fileId, originalFilename, contentType);
     }
 
     /**
@@ -77,13 +222,7 @@ public class FileStorage {
      * @throws IOException If the file doesn't exist or can't be read
      */
     public MultipartFile retrieveFile(String fileId) throws IOException {
-        Path filePath = getFilePath(fileId);
-
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found with ID: " + fileId);
-        }
-
-        byte[] fileData = Files.readAllBytes(filePath);
+        byte[] fileData = Files.readAllBytes(getStoredFilePath(fileId));
         return fileOrUploadService.toMockMultipartFile(fileId, fileData);
     }
 
@@ -95,17 +234,11 @@ public class FileStorage {
      * @throws IOException If the file doesn't exist or can't be read
      */
     public byte[] retrieveBytes(String fileId) throws IOException {
-        Path filePath = getFilePath(fileId);
-
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found with ID: " + fileId);
-        }
-
-        return Files.readAllBytes(filePath);
+        return Files.readAllBytes(getStoredFilePath(fileId));
     }
 
     /**
-     * Delete a file by its ID
+     * Delete a file by its ID. Deduplicated content is only deleted with its last file ID.
      *
      * @param fileId The ID of the file to delete
      * @return true if the file was deleted, false otherwise
@@ -113,7 +246,19 @@ public class FileStorage {
     public boolean deleteFile(String fileId) {
         try {
             Path filePath = getFilePath(fileId);
-            return Files.deleteIfExists(filePath);
+            String contentHash = contentHashes.remove(fileId);
+            if (contentHash == null) {
+                return deleteIfExists(filePath);
+            }
+            synchronized (contentLock) {
+                boolean deleted = deleteIfExists(filePath);
+                // Once only the content's own link is left no file ID refers to it
+                Path contentPath = getContentPath(contentHash);
+                if (Files.exists(contentPath) && linkCount(contentPath) <= 1) {
+                    deleteIfExists(contentPath);
+                }
+                return deleted;
+            }
         } catch (IOException e) {
             log.error("Error deleting file with ID: {}", fileId, e);
             return false;
@@ -127,8 +272,7 @@ public class FileStorage {
      * @return true if the file exists, false otherwise
      */
     public boolean fileExists(String fileId) {
-        Path filePath = getFilePath(fileId);
-        return Files.exists(filePath);
+        return Files.exists(getFilePath(fileId));
     }
 
     /**
@@ -139,13 +283,97 @@ public class FileStorage {
      * @throws IOException If the file doesn't exist or can't be read
      */
     public long getFileSize(String fileId) throws IOException {
+        return Files.size(getStoredFilePath(fileId));
+    }
+
+    /** Writes the content of a new file to the staging path it is given */
+    @FunctionalInterface
+    private interface ContentWriter {
+        void writeTo(Path stagingPath) throws IOException;
+    }
+
+    private String store(ContentWriter writer, String originalName) throws IOException {
+        String fileId = generateFileId();
+        Path stagingDir = getBasePath().resolve(STAGING_DIR);
+        Files.createDirectories(stagingDir);
+        Path stagingPath = stagingDir.resolve(fileId);
+
+        try {
+            writer.writeTo(stagingPath);
+            if (deduplicate) {
+                commitDeduplicated(fileId, stagingPath);
+            } else {
+                moveIntoPlace(stagingPath, getFilePath(fileId));
+            }
+        } finally {
+            // Only left behind if writing or moving failed
+            Files.deleteIfExists(stagingPath);
+        }
+
+        log.debug("Stored {} with ID: {}", originalName, fileId);
+        return fileId;
+    }
+
+    private void commitDeduplicated(String fileId, Path stagingPath) throws IOException {
+        String contentHash = hashContent(stagingPath);
+        Path contentPath = getContentPath(contentHash);
         Path filePath = getFilePath(fileId);
+        Files.createDirectories(filePath.getParent());
+        synchronized (contentLock) {
+            if (Files.exists(contentPath)) {
+                log.debug("Content of file {} is already stored, sharing it", fileId);
+            } else {
+                moveIntoPlace(stagingPath, contentPath);
+            }
+            Files.createLink(filePath, contentPath);
+            contentHashes.put(fileId, contentHash);
+        }
+    }
 
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found with ID: " + fileId);
+    private static void moveIntoPlace(Path stagingPath, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(stagingPath, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(stagingPath, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Hard links made from it later share the mode
+        if (!target.toFile().setReadOnly()) {
+            log.warn("Could not make stored file {} read-only", target);
         }
+    }
 
-        return Files.size(filePath);
+    /** Deletes a stored file, which Windows only allows once it is writable again */
+    private static boolean deleteIfExists(Path path) throws IOException {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (AccessDeniedException e) {
+            if (!path.toFile().setWritable(true)) {
+                throw e;
+            }
+            return Files.deleteIfExists(path);
+        }
+    }
+
+    private static String hashContent(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static int linkCount(Path path) throws IOException {
+        return (Integer) Files.getAttribute(path, "unix:nlink");
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
     }
 
     /**
@@ -162,8 +390,14 @@ public class FileStorage {
             throw new IllegalArgumentException("Invalid file ID");
         }
 
-        Path basePath = Path.of(tempDirPath).normalize().toAbsolutePath();
-        Path resolvedPath = basePath.resolve(fileId).normalize();
+        Path basePath = getBasePath();
+        int hash = fileId.hashCode();
+        hash ^= hash >>> 16;
+        Path resolvedPath =
+                basePath.resolve(String.format("%02x", hash & 0xff))
+                        .resolve(String.format("%02x", (hash >>> 8) & 0xff))
+                        .resolve(fileId)
+                        .normalize();
 
         // Ensure resolved path is within the base directory
         if (!resolvedPath.startsWith(basePath)) {
@@ -173,6 +407,19 @@ public class FileStorage {
         return resolvedPath;
     }
 
+    /** Content hashes are already evenly distributed, their first characters pick the shard */
+    private Path getContentPath(String contentHash) {
+        return getBasePath()
+                .resolve(CONTENT_DIR)
+                .resolve(contentHash.substring(0, 2))
+                .resolve(contentHash.substring(2, 4))
+                .resolve(contentHash);
+    }
+
+    private Path getBasePath() {
+        return Path.of(tempDirPath).normalize().toAbsolutePath();
+    }
+
     /**
      * Generate a unique file ID
      *
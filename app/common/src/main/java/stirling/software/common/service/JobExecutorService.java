@@ -1,19 +1,27 @@
 package stirling.software.common.service;
 
 import java.io.IOException;
+import java.net.URI;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -21,6 +29,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.common.model.job.JobResponse;
+import stirling.software.common.util.CancellationToken;
 import stirling.software.common.util.ExecutorFactory;
 
 /** Service for executing jobs asynchronously or synchronously */
@@ -33,15 +42,23 @@ public class JobExecutorService {
     private final HttpServletRequest request;
     private final ResourceMonitor resourceMonitor;
     private final JobQueue jobQueue;
+    private final JobWebhookService jobWebhookService;
+    private final ClientConnectionMonitor clientConnectionMonitor;
     private final ExecutorService executor = ExecutorFactory.newVirtualOrCachedThreadExecutor();
+    private final Map<String, CancellationToken> cancellationTokens = new ConcurrentHashMap<>();
     private final long effectiveTimeoutMs;
 
+    // How often a synchronous job checks whether its client is still there
+    private static final long DISCONNECT_CHECK_INTERVAL_MS = 1000;
+
     public JobExecutorService(
             TaskManager taskManager,
             FileStorage fileStorage,
             HttpServletRequest request,
             ResourceMonitor resourceMonitor,
             JobQueue jobQueue,
+            JobWebhookService jobWebhookService,
+            ObjectProvider<ClientConnectionMonitor> clientConnectionMonitor,
             @Value("${spring.mvc.async.request-timeout:1200000}") long asyncRequestTimeoutMs,
             @Value("${server.servlet.session.timeout:30m}") String sessionTimeout) {
         this.taskManager = taskManager;
@@ -49,6 +66,10 @@ public class JobExecutorService {
         this.request = request;
         this.resourceMonitor = resourceMonitor;
         this.jobQueue = jobQueue;
+        this.jobWebhookService = jobWebhookService;
+        // Without a container specific monitor clients are assumed to wait for their result
+        this.clientConnectionMonitor =
+                clientConnectionMonitor.getIfAvailable(() -> connectionRequest -> true);
 
         // Parse session timeout and calculate effective timeout once during initialization
         long sessionTimeoutMs = parseSessionTimeout(sessionTimeout);
@@ -97,6 +118,14 @@ public class JobExecutorService {
             long customTimeoutMs,
             boolean queueable,
             int resourceWeight) {
+        // Async clients may ask to be called back when their job is complete
+        URI callbackUrl;
+        try {
+            callbackUrl = async ? getCallbackUrl() : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
         String jobId = UUID.randomUUID().toString();
 
         // Store the job ID in the request for potential use by other components
@@ -138,6 +167,18 @@ public class JobExecutorService {
                         && // Only async jobs can be queued
                         resourceMonitor.shouldQueueJob(resourceWeight);
 
+        // Lets the job be stopped by the cancel API, its timeout or the client going away
+        CancellationToken cancellationToken = new CancellationToken(jobId);
+        cancellationTokens.put(jobId, cancellationToken);
+        Supplier<Object> cancellableWork =
+                () -> {
+                    try {
+                        return work.get();
+                    } finally {
+                        cancellationTokens.remove(jobId, cancellationToken);
+                    }
+                };
+
         if (shouldQueue) {
             // Queue the job instead of executing immediately
             log.debug(
@@ -146,12 +187,15 @@ public class JobExecutorService {
                     resourceWeight);
 
             taskManager.createTask(jobId);
+            if (callbackUrl != null) {
+                jobWebhookService.register(jobId, callbackUrl);
+            }
 
             // Create a specialized wrapper that updates the TaskManager
             Supplier<Object> wrappedWork =
                     () -> {
                         try {
-                            Object result = work.get();
+                            Object result = cancellableWork.get();
                             processJobResult(jobId, result);
                             return result;
                         } catch (Exception e) {
@@ -164,12 +208,19 @@ public class JobExecutorService {
 
             // Queue the job and get the future
             CompletableFuture<ResponseEntity<?>> future =
-                    jobQueue.queueJob(jobId, resourceWeight, wrappedWork, timeoutToUse);
+                    jobQueue.queueJob(
+                            jobId, resourceWeight, wrappedWork, timeoutToUse, cancellationToken);
+            // Also forget the token of jobs that were rejected or cancelled while still queued
+            future.whenComplete(
+                    (response, error) -> cancellationTokens.remove(jobId, cancellationToken));
 
             // Return immediately with job ID
             return ResponseEntity.ok().body(new JobResponse<>(true, jobId, null));
         } else if (async) {
             taskManager.createTask(jobId);
+            if (callbackUrl != null) {
+                jobWebhookService.register(jobId, callbackUrl);
+            }
             executor.execute(
                     () -> {
                         try {
@@ -177,7 +228,12 @@ public class JobExecutorService {
                                     "Running async job {} with timeout {} ms", jobId, timeoutToUse);
 
                             // Execute with timeout
-                            Object result = executeWithTimeout(() -> work.get(), timeoutToUse);
+                            Object result =
+                                    executeWithTimeout(
+                                            cancellableWork,
+                                            timeoutToUse,
+                                            cancellationToken,
+                                            () -> false);
                             processJobResult(jobId, result);
                         } catch (TimeoutException te) {
                             log.error("Job {} timed out after {} ms", jobId, timeoutToUse);
@@ -193,8 +249,17 @@ public class JobExecutorService {
             try {
                 log.debug("Running sync job with timeout {} ms", timeoutToUse);
 
-                // Execute with timeout
-                Object result = executeWithTimeout(() -> work.get(), timeoutToUse);
+                // Execute with timeout, stopping early if the client disconnects
+                HttpServletRequest currentRequest = currentRequest();
+                Object result =
+                        executeWithTimeout(
+                                cancellableWork,
+                                timeoutToUse,
+                                cancellationToken,
+                                () ->
+                                        currentRequest != null
+                                                && !clientConnectionMonitor.isConnected(
+                                                        currentRequest));
 
                 // If the result is already a ResponseEntity, return it directly
                 if (result instanceof ResponseEntity) {
@@ -207,6 +272,10 @@ public class JobExecutorService {
                 log.error("Synchronous job timed out after {} ms", timeoutToUse);
                 return ResponseEntity.internalServerError()
                         .body(Map.of("error", "Job timed out after " + timeoutToUse + " ms"));
+            } catch (CancellationException ce) {
+                log.info("Synchronous job {} stopped: {}", jobId, ce.getMessage());
+                return ResponseEntity.internalServerError()
+                        .body(Map.of("error", "Job cancelled: " + ce.getMessage()));
             } catch (Exception e) {
                 log.error("Error executing synchronous job: {}", e.getMessage(), e);
                 // Construct a JSON error response
@@ -216,6 +285,42 @@ public class JobExecutorService {
         }
     }
 
+    /**
+     * Stop a job that is waiting or running. Its work is interrupted, checks in page loops fail
+     * and external processes it started are killed.
+     *
+     * @param jobId The job ID
+     * @return true if the job was still running and is now cancelled
+     */
+    public boolean cancelJob(String jobId) {
+        CancellationToken cancellationToken = cancellationTokens.remove(jobId);
+        if (cancellationToken == null) {
+            return false;
+        }
+        cancellationToken.cancel("was cancelled by user");
+        return true;
+    }
+
+    // The callbackUrl parameter of the current request, or null if it has none
+    private URI getCallbackUrl() {
+        HttpServletRequest currentRequest = currentRequest();
+        String callbackUrl =
+                currentRequest != null ? currentRequest.getParameter("callbackUrl") : null;
+        if (callbackUrl == null || callbackUrl.isBlank()) {
+            return null;
+        }
+        return jobWebhookService.parseCallbackUrl(callbackUrl);
+    }
+
+    // The underlying request rather than the proxy, so it can be checked from the waiting thread
+    private HttpServletRequest currentRequest() {
+        if (RequestContextHolder.getRequestAttributes()
+                instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest();
+        }
+        return null;
+    }
+
     /**
      * Process the result of an asynchronous job
      *
@@ -454,21 +559,67 @@ public class JobExecutorService {
      */
     private <T> T executeWithTimeout(Supplier<T> supplier, long timeoutMs)
             throws TimeoutException, Exception {
+        CancellationToken cancellationToken = new CancellationToken(UUID.randomUUID().toString());
+        return executeWithTimeout(supplier, timeoutMs, cancellationToken, () -> false);
+    }
+
+    /**
+     * Execute a supplier with a timeout. When the timeout passes or the client goes away the job
+     * is cancelled through its token, which interrupts the work and kills its external processes.
+     *
+     * @param supplier The supplier to execute
+     * @param timeoutMs The timeout in milliseconds
+     * @param cancellationToken The token of the job
+     * @param clientGone Whether nobody is waiting for the result any more
+     * @return The result from the supplier
+     * @throws TimeoutException If the execution times out
+     * @throws CancellationException If the job was cancelled
+     * @throws Exception If the supplier throws an exception
+     */
+    private <T> T executeWithTimeout(
+            Supplier<T> supplier,
+            long timeoutMs,
+            CancellationToken cancellationToken,
+            BooleanSupplier clientGone)
+            throws TimeoutException, Exception {
         // Use the same executor as other async jobs for consistency
         // This ensures all operations run on the same thread pool
-        java.util.concurrent.CompletableFuture<T> future =
-                java.util.concurrent.CompletableFuture.supplyAsync(supplier, executor);
+        Future<T> future =
+                executor.submit(
+                        () -> {
+                            try (CancellationToken.Scope scope = cancellationToken.bind()) {
+                                cancellationToken.check();
+                                return supplier.get();
+                            }
+                        });
 
+        long start = System.nanoTime();
         try {
-            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
-        } catch (java.util.concurrent.TimeoutException e) {
-            future.cancel(true);
-            throw new TimeoutException("Execution timed out after " + timeoutMs + " ms");
+            while (true) {
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                long remainingMs = timeoutMs - elapsedMs;
+                if (remainingMs <= 0) {
+                    cancellationToken.cancel("timed out after " + timeoutMs + " ms");
+                    future.cancel(true);
+                    throw new TimeoutException("Execution timed out after " + timeoutMs + " ms");
+                }
+                try {
+                    return future.get(
+                            Math.min(remainingMs, DISCONNECT_CHECK_INTERVAL_MS),
+                            TimeUnit.MILLISECONDS);
+                } catch (java.util.concurrent.TimeoutException e) {
+                    if (clientGone.getAsBoolean()) {
+                        cancellationToken.cancel("was abandoned by its client");
+                        future.cancel(true);
+                        throw new CancellationException("Client disconnected");
+                    }
+                }
+            }
         } catch (java.util.concurrent.ExecutionException e) {
             throw (Exception) e.getCause();
-        } catch (java.util.concurrent.CancellationException e) {
-            throw new Exception("Execution was cancelled", e);
         } catch (InterruptedException e) {
+            cancellationToken.cancel("was interrupted");
+            future.cancel(true);
             Thread.currentThread().interrupt();
             throw new Exception("Execution was interrupted", e);
         }
@@ -15,6 +15,7 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import stirling.software.common.util.CancellationToken;
 import stirling.software.common.util.ExecutorFactory;
 import stirling.software.common.util.SpringContextHolder;
 
@@ -67,6 +68,7 @@ public class JobQueue implements SmartLifecycle {
         private final Instant queuedAt;
         private CompletableFuture<ResponseEntity<?>> future;
         private volatile boolean cancelled = false;
+        private final CancellationToken cancellationToken;
     }
 
     public JobQueue(ResourceMonitor resourceMonitor) {
@@ -179,13 +181,40 @@ public class JobQueue implements SmartLifecycle {
      */
     public CompletableFuture<ResponseEntity<?>> queueJob(
             String jobId, int resourceWeight, Supplier<Object> work, long timeoutMs) {
+        return queueJob(jobId, resourceWeight, work, timeoutMs, new CancellationToken(jobId));
+    }
+
+    /**
+     * Queues a job for execution when resources permit.
+     *
+     * @param jobId The job ID
+     * @param resourceWeight The resource weight of the job (1-100)
+     * @param work The work to be done
+     * @param timeoutMs The timeout in milliseconds
+     * @param cancellationToken Cancelled when the job is cancelled or times out
+     * @return A CompletableFuture that will complete when the job is executed
+     */
+    public CompletableFuture<ResponseEntity<?>> queueJob(
+            String jobId,
+            int resourceWeight,
+            Supplier<Object> work,
+            long timeoutMs,
+            CancellationToken cancellationToken) {
 
         // Create a CompletableFuture to track this job's completion
         CompletableFuture<ResponseEntity<?>> future = new CompletableFuture<>();
 
         // Create the queued job
         QueuedJob job =
-                new QueuedJob(jobId, resourceWeight, work, timeoutMs, Instant.now(), future, false);
+                new QueuedJob(
+                        jobId,
+                        resourceWeight,
+                        work,
+                        timeoutMs,
+                        Instant.now(),
+                        future,
+                        false,
+                        cancellationToken);
 
         // Store in our map for lookup
         jobMap.put(jobId, job);
@@ -373,7 +402,9 @@ public class JobQueue implements SmartLifecycle {
 
                     try {
                         // Execute with timeout
-                        Object result = executeWithTimeout(job.work, job.timeoutMs);
+                        Object result =
+                                executeWithTimeout(
+                                        job.work, job.timeoutMs, job.cancellationToken);
 
                         // Process the result
                         if (result instanceof ResponseEntity) {
@@ -391,30 +422,44 @@ public class JobQueue implements SmartLifecycle {
     }
 
     /**
-     * Execute a supplier with a timeout.
+     * Execute a supplier with a timeout. On timeout the work is cancelled through its token and
+     * its thread interrupted, so it stops instead of running on unobserved.
      *
      * @param supplier The supplier to execute
      * @param timeoutMs The timeout in milliseconds
+     * @param cancellationToken The token of the job
      * @return The result from the supplier
      * @throws Exception If there is an execution error
      */
-    private <T> T executeWithTimeout(Supplier<T> supplier, long timeoutMs) throws Exception {
-        CompletableFuture<T> future = CompletableFuture.supplyAsync(supplier);
+    private <T> T executeWithTimeout(
+            Supplier<T> supplier, long timeoutMs, CancellationToken cancellationToken)
+            throws Exception {
+        Future<T> future =
+                jobExecutor.submit(
+                        () -> {
+                            try (CancellationToken.Scope scope = cancellationToken.bind()) {
+                                cancellationToken.check();
+                                return supplier.get();
+                            }
+                        });
 
         try {
             if (timeoutMs <= 0) {
                 // No timeout
-                return future.join();
+                return future.get();
             } else {
                 // With timeout
                 return future.get(timeoutMs, TimeUnit.MILLISECONDS);
             }
         } catch (TimeoutException e) {
+            cancellationToken.cancel("timed out after " + timeoutMs + "ms");
             future.cancel(true);
             throw new TimeoutException("Job timed out after " + timeoutMs + "ms");
         } catch (ExecutionException e) {
             throw (Exception) e.getCause();
         } catch (InterruptedException e) {
+            cancellationToken.cancel("was interrupted");
+            future.cancel(true);
             Thread.currentThread().interrupt();
             throw new InterruptedException("Job was interrupted");
         }
@@ -465,6 +510,7 @@ public class JobQueue implements SmartLifecycle {
         QueuedJob job = jobMap.remove(jobId);
         if (job != null) {
             job.cancelled = true;
+            job.cancellationToken.cancel("was cancelled by user");
             job.future.completeExceptionally(new RuntimeException("Job cancelled by user"));
 
             // Try to remove from queue if it's still there
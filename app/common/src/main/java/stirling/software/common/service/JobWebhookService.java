@@ -0,0 +1,332 @@
+package stirling.software.common.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.common.model.job.JobResult;
+import stirling.software.common.util.ExceptionUtils;
+import stirling.software.common.util.ExecutorFactory;
+
+/**
+ * Calls back a URL given with an async job once the job is complete, so the client doesn't have
+ * to wait for it at all. The job is POSTed as JSON: its ID, whether it failed, its notes and its
+ * result files. With {@code stirling.jobs.webhook.secret} set, the body is signed with HMAC-SHA256
+ * in the {@code X-Stirling-Signature} header.
+ *
+ * <p>Off unless {@code stirling.jobs.webhook.enabled} is set, as it makes the server send requests
+ * to addresses chosen by its clients. Hosts that resolve to a loopback, link-local, private,
+ * shared (carrier-grade NAT) or multicast address are refused unless listed in {@code
+ * stirling.jobs.webhook.allowedHosts}, so clients can't have the server call into its own network.
+ * The callback connects to the very address that was checked, so a DNS answer that changes after
+ * the check can't redirect it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobWebhookService {
+
+    static final String SIGNATURE_HEADER = "X-Stirling-Signature";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_STATUS_LINE_LENGTH = 1024;
+
+    @Value("${stirling.jobs.webhook.enabled:false}")
+    private boolean enabled;
+
+    @Value("${stirling.jobs.webhook.secret:}")
+    private String secret;
+
+    @Value("${stirling.jobs.webhook.timeoutSeconds:10}")
+    private int timeoutSeconds = 10;
+
+    // Comma separated hosts that may be called back even though they are internal
+    @Value("${stirling.jobs.webhook.allowedHosts:}")
+    private String allowedHosts = "";
+
+    private final TaskManager taskManager;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService callbackExecutor =
+            ExecutorFactory.newVirtualOrCachedThreadExecutor();
+
+    /**
+     * Check a callback URL given by a client
+     *
+     * @param callbackUrl The URL to call when the job is complete
+     * @return The URL as a URI
+     * @throws IllegalArgumentException If webhooks are disabled, the URL is not http(s) or its host
+     *     is not allowed
+     */
+    public URI parseCallbackUrl(String callbackUrl) {
+        if (!enabled) {
+            throw ExceptionUtils.createIllegalArgumentException(
+                    "error.webhooksDisabled", "Job callbacks are not enabled on this server");
+        }
+        URI uri;
+        try {
+            uri = new URI(callbackUrl.trim());
+        } catch (URISyntaxException e) {
+            throw ExceptionUtils.createInvalidArgumentException("callbackUrl", callbackUrl);
+        }
+        String scheme = uri.getScheme();
+        if (uri.getHost() == null
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            throw ExceptionUtils.createInvalidArgumentException("callbackUrl", callbackUrl);
+        }
+        checkHost(uri);
+        return uri;
+    }
+
+    /**
+     * Call a URL once a job is complete. Register before the job starts running.
+     *
+     * @param jobId The job ID
+     * @param callbackUrl The URL from {@link #parseCallbackUrl}
+     */
+    public void register(String jobId, URI callbackUrl) {
+        AtomicBoolean sent = new AtomicBoolean();
+        TaskManager.JobListener listener =
+                new TaskManager.JobListener() {
+                    @Override
+                    public void onJobChanged(JobResult jobResult) {
+                        if (jobResult.isComplete() && sent.compareAndSet(false, true)) {
+                            taskManager.removeListener(jobId, this);
+                            send(callbackUrl, jobResult);
+                        }
+                    }
+                };
+        taskManager.addListener(jobId, listener);
+
+        // In case the job was already complete when the listener was added
+        JobResult current = taskManager.getJobResult(jobId);
+        if (current != null) {
+            listener.onJobChanged(current);
+        }
+        log.debug("Job {} will call back {}", jobId, callbackUrl);
+    }
+
+    private void send(URI callbackUrl, JobResult jobResult) {
+        String jobId = jobResult.getJobId();
+        // Checked again, as the host may resolve to another address by now
+        InetAddress address;
+        try {
+            address = checkHost(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            log.warn("Not calling back {} for job {}: {}", callbackUrl, jobId, e.getMessage());
+            return;
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(describe(jobResult));
+        } catch (JsonProcessingException e) {
+            log.error("Could not describe job {} for its callback: {}", jobId, e.getMessage(), e);
+            return;
+        }
+        String signature = secret != null && !secret.isEmpty() ? "sha256=" + sign(body) : null;
+
+        callbackExecutor.execute(
+                () -> {
+                    try {
+                        int status = post(callbackUrl, address, body, signature);
+                        if (status / 100 != 2) {
+                            log.warn(
+                                    "Callback of job {} to {} returned status {}",
+                                    jobId,
+                                    callbackUrl,
+                                    status);
+                        } else {
+                            log.debug("Called back {} for job {}", callbackUrl, jobId);
+                        }
+                    } catch (IOException e) {
+                        log.warn(
+                                "Callback of job {} to {} failed: {}",
+                                jobId,
+                                callbackUrl,
+                                e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * POST the body over a connection to the given address and return the response status. An
+     * HTTP client would resolve the host again and could be sent elsewhere by a DNS answer that
+     * changed since the check, so the request is written over a socket to the checked address.
+     * For https the certificate is still verified against the host name.
+     */
+    private int post(URI uri, InetAddress address, byte[] body, String signature)
+            throws IOException {
+        boolean https = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (https ? 443 : 80);
+        String host = uri.getHost();
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(timeoutSeconds));
+
+            String path = uri.getRawPath();
+            if (path == null || path.isEmpty()) {
+                path = "/";
+            }
+            if (uri.getRawQuery() != null) {
+                path += "?" + uri.getRawQuery();
+            }
+            StringBuilder head = new StringBuilder();
+            head.append("POST ").append(path).append(" HTTP/1.1\r\n");
+            head.append("Host: ").append(host);
+            if (uri.getPort() != -1) {
+                head.append(':').append(port);
+            }
+            head.append("\r\n");
+            head.append("Content-Type: application/json\r\n");
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+            if (signature != null) {
+                head.append(SIGNATURE_HEADER).append(": ").append(signature).append("\r\n");
+            }
+            head.append("Connection: close\r\n\r\n");
+
+            try (Socket connection = https ? startTls(socket, host, port) : socket) {
+                OutputStream out = connection.getOutputStream();
+                out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+                out.write(body);
+                out.flush();
+                return readStatus(connection.getInputStream());
+            }
+        }
+    }
+
+    private static Socket startTls(Socket socket, String host, int port) throws IOException {
+        // IPv6 literals are bracketed in URIs
+        String peerHost = host.startsWith("[") ? host.substring(1, host.length() - 1) : host;
+        SSLSocket tls =
+                (SSLSocket)
+                        ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                                .createSocket(socket, peerHost, port, true);
+        SSLParameters parameters = tls.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        tls.setSSLParameters(parameters);
+        tls.startHandshake();
+        return tls;
+    }
+
+    // Only the status line is read, the rest of the response is of no interest
+    private static int readStatus(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n' && line.size() < MAX_STATUS_LINE_LENGTH) {
+            line.write(b);
+        }
+        String[] parts = line.toString(StandardCharsets.US_ASCII).trim().split(" ");
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Invalid response status line");
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid response status " + parts[1]);
+        }
+    }
+
+    /**
+     * Resolve the host of a callback URL and check that it may be called back
+     *
+     * @return The address to connect to
+     */
+    private InetAddress checkHost(URI uri) {
+        String host = uri.getHost();
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw ExceptionUtils.createInvalidArgumentException("callbackUrl", uri.toString());
+        }
+        for (String allowedHost : allowedHosts.split(",")) {
+            if (allowedHost.trim().equalsIgnoreCase(host)) {
+                return addresses[0];
+            }
+        }
+        for (InetAddress address : addresses) {
+            if (isInternal(address)) {
+                throw ExceptionUtils.createIllegalArgumentException(
+                        "error.webhookHostNotAllowed", "Callbacks to {0} are not allowed", host);
+            }
+        }
+        return addresses[0];
+    }
+
+    private static boolean isInternal(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return address.isAnyLocalAddress()
+                || address.isLoopbackAddress()
+                || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress()
+                || address.isMulticastAddress()
+                // Shared address space of carrier-grade NAT, 100.64.0.0/10
+                || (address instanceof Inet4Address
+                        && (bytes[0] & 0xff) == 100
+                        && (bytes[1] & 0xc0) == 64)
+                // IPv6 unique local addresses, fc00::/7
+                || (address instanceof Inet6Address && (bytes[0] & 0xfe) == 0xfc);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbackExecutor.shutdownNow();
+    }
+
+    private static Map<String, Object> describe(JobResult jobResult) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("jobId", jobResult.getJobId());
+        description.put("complete", jobResult.isComplete());
+        description.put("error", jobResult.getError());
+        description.put("notes", jobResult.getNotes());
+        description.put("files", jobResult.getAllResultFiles());
+        if (jobResult.getCompletedAt() != null) {
+            description.put("completedAt", jobResult.getCompletedAt().toString());
+        }
+        return description;
+    }
+
+    private String sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package stirling.software.common.service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.pdfbox.examples.util.DeletingRandomAccessFile;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.encryption.InvalidPasswordException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.common.model.FileBackedMultipartFile;
+import stirling.software.common.util.TempFileManager;
+
+/**
+ * Reads structural facts of a PDF (page count, page boxes, version, encryption state and the
+ * document information) without a full load. The parser only reads the trailer and the cross
+ * reference table or stream up front and resolves other objects when they are first used, so
+ * asking for the page count touches the catalog and the root of the page tree and nothing else.
+ *
+ * <p>Unlike {@link CustomPDFDocumentFactory#load}, the parse is strict, no stream cache is set up
+ * and the document is never post-processed. Damaged files that need PDFBox's repair logic, either
+ * because the parse fails or because the page tree can't be read, fall back to a full read-only
+ * load.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PdfStructureReader {
+
+    // Larger uploads are spooled to a temp file, which the parser then only reads where it seeks
+    private static final long IN_MEMORY_THRESHOLD = 10 * 1024 * 1024; // 10 MB
+
+    private static final byte[] PDF_HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SEARCH_LENGTH = 1024;
+
+    private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
+
+    /**
+     * Open the structure of an uploaded PDF. The upload itself is left untouched and can still be
+     * read afterwards.
+     *
+     * @param file The uploaded PDF
+     * @return The structure, which has to be closed
+     * @throws IOException If the file is not a PDF, or is encrypted with a user password
+     */
+    public PdfStructure open(MultipartFile file) throws IOException {
+        PdfStructure structure = openStrict(file);
+        if (structure != null) {
+            return structure;
+        }
+        log.debug("Falling back to a full load for {}", file.getOriginalFilename());
+        return new PdfStructure(pdfDocumentFactory.load(file, true), true);
+    }
+
+    /**
+     * Get the page count of an upload if it is a well formed PDF. Never falls back to a full load,
+     * which makes it cheap enough for speculative use such as weighting queued jobs.
+     *
+     * @param file The uploaded file, which doesn't have to be a PDF
+     * @return The page count, or -1 if the file isn't a readable PDF
+     */
+    public int peekPageCount(MultipartFile file) {
+        try {
+            if (!hasPdfHeader(file)) {
+                return -1;
+            }
+            try (PdfStructure structure = openStrict(file)) {
+                return structure != null ? structure.getPageCount() : -1;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read the page count of {}: {}", file.getName(), e.getMessage());
+            return -1;
+        }
+    }
+
+    private PdfStructure openStrict(MultipartFile file) throws IOException {
+        RandomAccessRead source;
+        if (file instanceof FileBackedMultipartFile stored) {
+            source = new RandomAccessReadBufferedFile(stored.getPath());
+        } else if (file.getSize() > IN_MEMORY_THRESHOLD) {
+            File spooled = tempFileManager.createTempFile(".pdf");
+            try (InputStream input = file.getInputStream()) {
+                Files.copy(input, spooled.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                tempFileManager.deleteTempFile(spooled);
+                throw e;
+            }
+            source = new DeletingRandomAccessFile(spooled);
+        } else {
+            try (InputStream input = file.getInputStream()) {
+                source = new RandomAccessReadBuffer(input);
+            }
+        }
+
+        try {
+            PDFParser parser =
+                    new PDFParser(source, "", null, null, IOUtils.createMemoryOnlyStreamCache());
+            PDDocument document = parser.parse(false);
+            if (!hasReadablePageTree(document)) {
+                document.close();
+                log.debug("Strict parse of {} has no readable pages", file.getOriginalFilename());
+                return null;
+            }
+            return new PdfStructure(document, false);
+        } catch (InvalidPasswordException e) {
+            source.close();
+            throw e;
+        } catch (IOException e) {
+            source.close();
+            log.debug("Strict parse of {} failed: {}", file.getOriginalFilename(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The strict parse skips the repair of broken cross references, and objects it then can't
+     * find resolve to null rather than failing. A file whose catalog or page tree is missing that
+     * way would look empty, so it is checked here before it is trusted.
+     */
+    private static boolean hasReadablePageTree(PDDocument document) {
+        COSDictionary catalog = document.getDocument().getTrailer().getCOSDictionary(COSName.ROOT);
+        if (catalog == null || catalog.getCOSDictionary(COSName.PAGES) == null) {
+            return false;
+        }
+        try {
+            return document.getNumberOfPages() > 0 && document.getPage(0) != null;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasPdfHeader(MultipartFile file) throws IOException {
+        byte[] head;
+        try (InputStream input = file.getInputStream()) {
+            head = input.readNBytes(HEADER_SEARCH_LENGTH);
+        }
+        // Like PDFBox, allow for junk in front of the header
+        for (int i = 0; i + PDF_HEADER.length <= head.length; i++) {
+            int j = 0;
+            while (j < PDF_HEADER.length && head[i + j] == PDF_HEADER[j]) {
+                j++;
+            }
+            if (j == PDF_HEADER.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Structural view of a document; pages are only resolved when asked for */
+    public static final class PdfStructure implements Closeable {
+
+        private final PDDocument document;
+        private final boolean fullyLoaded;
+
+        private PdfStructure(PDDocument document, boolean fullyLoaded) {
+            this.document = document;
+            this.fullyLoaded = fullyLoaded;
+        }
+
+        public int getPageCount() {
+            return document.getNumberOfPages();
+        }
+
+        public float getVersion() {
+            return document.getVersion();
+        }
+
+        public boolean isEncrypted() {
+            return document.isEncrypted();
+        }
+
+        public PDDocumentInformation getDocumentInformation() {
+            return document.getDocumentInformation();
+        }
+
+        public PDRectangle getMediaBox(int pageIndex) {
+            return document.getPage(pageIndex).getMediaBox();
+        }
+
+        public int getRotation(int pageIndex) {
+            return document.getPage(pageIndex).getRotation();
+        }
+
+        /** Whether the file was damaged and had to be repaired by a full load */
+        public boolean isFullyLoaded() {
+            return fullyLoaded;
+        }
+
+        @Override
+        public void close() throws IOException {
+            document.close();
+        }
+    }
+}
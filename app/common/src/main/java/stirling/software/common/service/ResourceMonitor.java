@@ -19,6 +19,8 @@ import jakarta.annotation.PreDestroy;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import stirling.software.common.util.CpuTokenBudget;
+
 /**
  * Monitors system resources (CPU, memory) to inform job scheduling decisions. Provides information
  * about available resources to prevent overloading the system.
@@ -39,6 +41,9 @@ public class ResourceMonitor {
     @Value("${stirling.resource.cpu.high-threshold:0.75}")
     private double cpuHighThreshold = 0.75; // 75% usage is high
 
+    @Value("${stirling.resource.cpu.core-budget:0}")
+    private int cpuCoreBudget = 0; // cores external tools may use together, 0 for all
+
     @Value("${stirling.resource.monitor.interval-ms:60000}")
     private long monitorIntervalMs = 60000; // 60 seconds
 
@@ -118,6 +123,7 @@ public class ResourceMonitor {
     @PostConstruct
     public void initialize() {
         log.debug("Starting resource monitoring with interval of {}ms", monitorIntervalMs);
+        CpuTokenBudget.getInstance().setCapacity(getCpuCoreBudget());
         scheduler.scheduleAtFixedRate(
                 this::updateResourceMetrics, 0, monitorIntervalMs, TimeUnit.MILLISECONDS);
     }
@@ -128,6 +134,16 @@ public class ResourceMonitor {
         scheduler.shutdownNow();
     }
 
+    /**
+     * Gets the number of cores external tools may keep busy together. The JVM reports the cores
+     * of the container, honouring cgroup CPU limits, unless a budget is configured.
+     *
+     * @return The core budget for {@link CpuTokenBudget}
+     */
+    public int getCpuCoreBudget() {
+        return cpuCoreBudget > 0 ? cpuCoreBudget : osMXBean.getAvailableProcessors();
+    }
+
     /** Updates the resource metrics by sampling current system state. */
     private void updateResourceMetrics() {
         try {
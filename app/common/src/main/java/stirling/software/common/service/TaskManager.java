@@ -1,26 +1,36 @@
 package stirling.software.common.service;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import io.github.pixee.security.ZipSecurity;
 
 import jakarta.annotation.PreDestroy;
 
@@ -29,13 +39,49 @@ import lombok.extern.slf4j.Slf4j;
 import stirling.software.common.model.job.JobResult;
 import stirling.software.common.model.job.JobStats;
 import stirling.software.common.model.job.ResultFile;
-
-/** Manages async tasks and their results */
+import stirling.software.common.util.ExecutorFactory;
+
+/**
+ * Manages async tasks and their results.
+ *
+ * <p>Completed results are indexed by the time they expire, so cleanup only looks at the results
+ * that are due, and the counters behind {@link #getJobStats()} are updated as jobs change state
+ * rather than recomputed from every stored result. Changes to stored results go through the store
+ * lock so the index and counters stay consistent with them.
+ *
+ * <p>Clients that want to learn about changes as they happen register a {@link JobListener}
+ * rather than asking for the job result repeatedly.
+ */
 @Service
 @Slf4j
 public class TaskManager {
+    // Files of expired results deleted per cleanup pass, the rest follow in later passes
+    private static final int FILE_DELETE_BATCH_SIZE = 500;
+
     private final Map<String, JobResult> jobResults = new ConcurrentHashMap<>();
 
+    private final Object storeLock = new Object();
+    // Guarded by storeLock
+    private final PriorityQueue<Expiry> expiryIndex =
+            new PriorityQueue<>(Comparator.comparingLong(Expiry::expiresAtMillis));
+    private final Map<String, ResultFile> resultFilesById = new HashMap<>();
+    private final NavigableSet<ActiveJob> activeJobs =
+            new TreeSet<>(
+                    Comparator.comparing(ActiveJob::createdAt).thenComparing(ActiveJob::jobId));
+    private int completedJobs;
+    private int failedJobs;
+    private int fileResultJobs;
+    private long totalProcessingTimeMs;
+
+    private final Queue<String> pendingFileDeletions = new ConcurrentLinkedQueue<>();
+
+    private final Map<String, Map<JobListener, ListenerDispatch>> listeners =
+            new ConcurrentHashMap<>();
+    // Every listener is called on its own, so a slow one holds up no other, and never on the
+    // thread running the job
+    private final ExecutorService notificationExecutor =
+            ExecutorFactory.newVirtualOrCachedThreadExecutor();
+
     @Value("${stirling.jobResultExpiryMinutes:30}")
     private int jobResultExpiryMinutes = 30;
 
@@ -47,11 +93,11 @@ public class TaskManager {
     public TaskManager(FileStorage fileStorage) {
         this.fileStorage = fileStorage;
 
-        // Schedule periodic cleanup of old job results
+        // Schedule periodic cleanup of old job results, cheap as only expired results are touched
         cleanupExecutor.scheduleAtFixedRate(
                 this::cleanupOldJobs,
-                10, // Initial delay
-                10, // Interval
+                1, // Initial delay
+                1, // Interval
                 TimeUnit.MINUTES);
 
         log.debug(
@@ -65,7 +111,15 @@ public class TaskManager {
      * @param jobId The job ID
      */
     public void createTask(String jobId) {
-        jobResults.put(jobId, JobResult.createNew(jobId));
+        JobResult jobResult = JobResult.createNew(jobId);
+        synchronized (storeLock) {
+            JobResult previous = jobResults.put(jobId, jobResult);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(jobResult);
+        }
+        notifyListeners(jobId);
         log.debug("Created task with job ID: {}", jobId);
     }
 
@@ -76,8 +130,7 @@ public class TaskManager {
      * @param result The result object
      */
     public void setResult(String jobId, Object result) {
-        JobResult jobResult = getOrCreateJobResult(jobId);
-        jobResult.completeWithResult(result);
+        update(jobId, jobResult -> jobResult.completeWithResult(result));
         log.debug("Set result for job ID: {}", jobId);
     }
 
@@ -91,15 +144,13 @@ public class TaskManager {
      */
     public void setFileResult(
             String jobId, String fileId, String originalFileName, String contentType) {
-        JobResult jobResult = getOrCreateJobResult(jobId);
-
         // Check if this is a ZIP file that should be extracted
         if (isZipFile(contentType, originalFileName)) {
             try {
                 List<ResultFile> extractedFiles =
                         extractZipToIndividualFiles(fileId, originalFileName);
                 if (!extractedFiles.isEmpty()) {
-                    jobResult.completeWithFiles(extractedFiles);
+                    update(jobId, jobResult -> jobResult.completeWithFiles(extractedFiles));
                     log.debug(
                             "Set multiple file results for job ID: {} with {} files extracted from ZIP",
                             jobId,
@@ -115,15 +166,21 @@ public class TaskManager {
         }
 
         // Handle as single file using new ResultFile approach
+        long fileSize;
         try {
-            long fileSize = fileStorage.getFileSize(fileId);
-            jobResult.completeWithSingleFile(fileId, originalFileName, contentType, fileSize);
-            log.debug("Set single file result for job ID: {} with file ID: {}", jobId, fileId);
+            fileSize = fileStorage.getFileSize(fileId);
         } catch (Exception e) {
             log.warn(
                     "Failed to get file size for job {}: {}. Using size 0.", jobId, e.getMessage());
-            jobResult.completeWithSingleFile(fileId, originalFileName, contentType, 0);
+            fileSize = 0;
         }
+        long size = fileSize;
+        update(
+                jobId,
+                jobResult ->
+                        jobResult.completeWithSingleFile(
+                                fileId, originalFileName, contentType, size));
+        log.debug("Set single file result for job ID: {} with file ID: {}", jobId, fileId);
     }
 
     /**
@@ -133,8 +190,7 @@ public class TaskManager {
      * @param resultFiles The list of result files
      */
     public void setMultipleFileResults(String jobId, List<ResultFile> resultFiles) {
-        JobResult jobResult = getOrCreateJobResult(jobId);
-        jobResult.completeWithFiles(resultFiles);
+        update(jobId, jobResult -> jobResult.completeWithFiles(resultFiles));
         log.debug(
                 "Set multiple file results for job ID: {} with {} files",
                 jobId,
@@ -148,8 +204,7 @@ public class TaskManager {
      * @param error The error message
      */
     public void setError(String jobId, String error) {
-        JobResult jobResult = getOrCreateJobResult(jobId);
-        jobResult.failWithError(error);
+        update(jobId, jobResult -> jobResult.failWithError(error));
         log.debug("Set error for job ID: {}: {}", jobId, error);
     }
 
@@ -159,13 +214,17 @@ public class TaskManager {
      * @param jobId The job ID
      */
     public void setComplete(String jobId) {
-        JobResult jobResult = getOrCreateJobResult(jobId);
-        if (jobResult.getResult() == null
-                && !jobResult.hasFiles()
-                && jobResult.getError() == null) {
-            // If no result or error has been set, mark it as complete with an empty result
-            jobResult.completeWithResult("Task completed successfully");
-        }
+        update(
+                jobId,
+                jobResult -> {
+                    if (jobResult.getResult() == null
+                            && !jobResult.hasFiles()
+                            && jobResult.getError() == null) {
+                        // If no result or error has been set, mark it as complete with an empty
+                        // result
+                        jobResult.completeWithResult("Task completed successfully");
+                    }
+                });
         log.debug("Marked job ID: {} as complete", jobId);
     }
 
@@ -202,6 +261,7 @@ public class TaskManager {
         JobResult jobResult = jobResults.get(jobId);
         if (jobResult != null) {
             jobResult.addNote(note);
+            notifyListeners(jobId);
             log.debug("Added note to job ID: {}: {}", jobId, note);
             return true;
         }
@@ -215,103 +275,176 @@ public class TaskManager {
      * @return Job statistics
      */
     public JobStats getJobStats() {
-        int totalJobs = jobResults.size();
-        int activeJobs = 0;
-        int completedJobs = 0;
-        int failedJobs = 0;
-        int successfulJobs = 0;
-        int fileResultJobs = 0;
-
-        LocalDateTime oldestActiveJobTime = null;
-        LocalDateTime newestActiveJobTime = null;
-        long totalProcessingTimeMs = 0;
-
-        for (JobResult result : jobResults.values()) {
-            if (result.isComplete()) {
-                completedJobs++;
-
-                // Calculate processing time for completed jobs
-                if (result.getCreatedAt() != null && result.getCompletedAt() != null) {
-                    long processingTimeMs =
-                            java.time.Duration.between(
-                                            result.getCreatedAt(), result.getCompletedAt())
-                                    .toMillis();
-                    totalProcessingTimeMs += processingTimeMs;
-                }
+        synchronized (storeLock) {
+            return JobStats.builder()
+                    .totalJobs(jobResults.size())
+                    .activeJobs(activeJobs.size())
+                    .completedJobs(completedJobs)
+                    .failedJobs(failedJobs)
+                    .successfulJobs(completedJobs - failedJobs)
+                    .fileResultJobs(fileResultJobs)
+                    .oldestActiveJobTime(
+                            activeJobs.isEmpty() ? null : activeJobs.first().createdAt())
+                    .newestActiveJobTime(
+                            activeJobs.isEmpty() ? null : activeJobs.last().createdAt())
+                    .averageProcessingTimeMs(
+                            completedJobs > 0 ? totalProcessingTimeMs / completedJobs : 0)
+                    .build();
+        }
+    }
 
-                if (result.getError() != null) {
-                    failedJobs++;
-                } else {
-                    successfulJobs++;
-                    if (result.hasFiles()) {
-                        fileResultJobs++;
-                    }
-                }
+    /**
+     * Change a job result, creating it if needed, and update the index and counters to match
+     *
+     * @param jobId The job ID
+     * @param change The change to the job result
+     */
+    private void update(String jobId, Consumer<JobResult> change) {
+        synchronized (storeLock) {
+            JobResult jobResult = jobResults.get(jobId);
+            if (jobResult == null) {
+                jobResult = JobResult.createNew(jobId);
+                jobResults.put(jobId, jobResult);
             } else {
-                activeJobs++;
-
-                // Track oldest and newest active jobs
-                if (result.getCreatedAt() != null) {
-                    if (oldestActiveJobTime == null
-                            || result.getCreatedAt().isBefore(oldestActiveJobTime)) {
-                        oldestActiveJobTime = result.getCreatedAt();
-                    }
-
-                    if (newestActiveJobTime == null
-                            || result.getCreatedAt().isAfter(newestActiveJobTime)) {
-                        newestActiveJobTime = result.getCreatedAt();
-                    }
-                }
+                unindex(jobResult);
+            }
+            try {
+                change.accept(jobResult);
+            } finally {
+                index(jobResult);
             }
         }
+        notifyListeners(jobId);
+    }
 
-        // Calculate average processing time
-        long averageProcessingTimeMs =
-                completedJobs > 0 ? totalProcessingTimeMs / completedJobs : 0;
-
-        return JobStats.builder()
-                .totalJobs(totalJobs)
-                .activeJobs(activeJobs)
-                .completedJobs(completedJobs)
-                .failedJobs(failedJobs)
-                .successfulJobs(successfulJobs)
-                .fileResultJobs(fileResultJobs)
-                .oldestActiveJobTime(oldestActiveJobTime)
-                .newestActiveJobTime(newestActiveJobTime)
-                .averageProcessingTimeMs(averageProcessingTimeMs)
-                .build();
+    /**
+     * Be told about every change of a job: its creation, notes added to it and its completion.
+     * Listeners are called on a notification thread, after the change was made, with the job
+     * result as it is at that time. Each listener is called for one change at a time, independently
+     * of the others, so changes made while it runs are reported once it returns.
+     *
+     * <p>A listener registered before looking at the job's current state misses none of its
+     * changes. Listeners of removed jobs are dropped with them.
+     *
+     * @param jobId The job ID, which doesn't need to exist yet
+     * @param listener The listener
+     */
+    public void addListener(String jobId, JobListener listener) {
+        listeners
+                .computeIfAbsent(jobId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(listener, added -> new ListenerDispatch(jobId, added));
     }
 
     /**
-     * Get or create a job result
+     * Stop telling a listener about changes of a job
      *
      * @param jobId The job ID
-     * @return The job result
+     * @param listener The listener
      */
-    private JobResult getOrCreateJobResult(String jobId) {
-        return jobResults.computeIfAbsent(jobId, JobResult::createNew);
+    public void removeListener(String jobId, JobListener listener) {
+        listeners.computeIfPresent(
+                jobId,
+                (id, jobListeners) -> {
+                    jobListeners.remove(listener);
+                    return jobListeners.isEmpty() ? null : jobListeners;
+                });
+    }
+
+    private void notifyListeners(String jobId) {
+        Map<JobListener, ListenerDispatch> jobListeners = listeners.get(jobId);
+        if (jobListeners != null) {
+            jobListeners.values().forEach(ListenerDispatch::jobChanged);
+        }
     }
 
-    /** Clean up old completed job results */
+    // Must hold storeLock. Adds the contribution of a job result to the counters and indexes
+    private void index(JobResult jobResult) {
+        if (!jobResult.isComplete()) {
+            if (jobResult.getCreatedAt() != null) {
+                activeJobs.add(new ActiveJob(jobResult.getCreatedAt(), jobResult.getJobId()));
+            }
+            return;
+        }
+        completedJobs++;
+        totalProcessingTimeMs += processingTimeMs(jobResult);
+        if (jobResult.getError() != null) {
+            failedJobs++;
+        } else if (jobResult.hasFiles()) {
+            fileResultJobs++;
+        }
+        for (ResultFile resultFile : jobResult.getAllResultFiles()) {
+            resultFilesById.put(resultFile.getFileId(), resultFile);
+        }
+        if (jobResult.getCompletedAt() != null) {
+            // Entries of results completed again or removed are skipped when they come due
+            expiryIndex.add(new Expiry(expiresAtMillis(jobResult), jobResult.getJobId()));
+        }
+    }
+
+    // Must hold storeLock. Removes what index added for the job result in its current state
+    private void unindex(JobResult jobResult) {
+        if (!jobResult.isComplete()) {
+            if (jobResult.getCreatedAt() != null) {
+                activeJobs.remove(new ActiveJob(jobResult.getCreatedAt(), jobResult.getJobId()));
+            }
+            return;
+        }
+        completedJobs--;
+        totalProcessingTimeMs -= processingTimeMs(jobResult);
+        if (jobResult.getError() != null) {
+            failedJobs--;
+        } else if (jobResult.hasFiles()) {
+            fileResultJobs--;
+        }
+        for (ResultFile resultFile : jobResult.getAllResultFiles()) {
+            resultFilesById.remove(resultFile.getFileId());
+        }
+    }
+
+    private static long processingTimeMs(JobResult jobResult) {
+        if (jobResult.getCreatedAt() == null || jobResult.getCompletedAt() == null) {
+            return 0;
+        }
+        return Duration.between(jobResult.getCreatedAt(), jobResult.getCompletedAt()).toMillis();
+    }
+
+    private long expiresAtMillis(JobResult jobResult) {
+        return jobResult
+                .getCompletedAt()
+                .plusMinutes(jobResultExpiryMinutes)
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+    }
+
+    /**
+     * Clean up old completed job results. Only the results that are due are looked at; their
+     * files are deleted afterwards, in batches, outside of the store lock.
+     */
     public void cleanupOldJobs() {
-        LocalDateTime expiryThreshold =
-                LocalDateTime.now().minus(jobResultExpiryMinutes, ChronoUnit.MINUTES);
+        long now = System.currentTimeMillis();
         int removedCount = 0;
 
         try {
-            for (Map.Entry<String, JobResult> entry : jobResults.entrySet()) {
-                JobResult result = entry.getValue();
-
-                // Remove completed jobs that are older than the expiry threshold
-                if (result.isComplete()
-                        && result.getCompletedAt() != null
-                        && result.getCompletedAt().isBefore(expiryThreshold)) {
-
-                    // Clean up file results
-                    cleanupJobFiles(result, entry.getKey());
+            synchronized (storeLock) {
+                while (!expiryIndex.isEmpty() && expiryIndex.peek().expiresAtMillis() <= now) {
+                    String jobId = expiryIndex.poll().jobId();
+                    JobResult result = jobResults.get(jobId);
+
+                    // Skip entries of results that were removed, reset or completed again later
+                    if (result == null
+                            || !result.isComplete()
+                            || result.getCompletedAt() == null
+                            || expiresAtMillis(result) > now) {
+                        continue;
+                    }
 
-                    // Remove the job result
-                    jobResults.remove(entry.getKey());
+                    jobResults.remove(jobId);
+                    listeners.remove(jobId);
+                    unindex(result);
+                    for (ResultFile resultFile : result.getAllResultFiles()) {
+                        pendingFileDeletions.add(resultFile.getFileId());
+                    }
                     removedCount++;
                 }
             }
@@ -322,11 +455,32 @@ public class TaskManager {
         } catch (Exception e) {
             log.error("Error during job cleanup: {}", e.getMessage(), e);
         }
+
+        deletePendingFiles();
     }
 
-    /** Shutdown the cleanup executor */
+    // Runs on the cleanup executor; a large backlog continues in a follow-up task
+    private void deletePendingFiles() {
+        int deleted = 0;
+        String fileId;
+        while (deleted < FILE_DELETE_BATCH_SIZE
+                && (fileId = pendingFileDeletions.poll()) != null) {
+            try {
+                fileStorage.deleteFile(fileId);
+            } catch (Exception e) {
+                log.warn("Failed to delete expired result file {}: {}", fileId, e.getMessage());
+            }
+            deleted++;
+        }
+        if (!pendingFileDeletions.isEmpty() && !cleanupExecutor.isShutdown()) {
+            cleanupExecutor.execute(this::deletePendingFiles);
+        }
+    }
+
+    /** Shutdown the cleanup and notification executors */
     @PreDestroy
     public void shutdown() {
+        notificationExecutor.shutdownNow();
         try {
             log.info("Shutting down job result cleanup executor");
             cleanupExecutor.shutdown();
@@ -354,47 +508,49 @@ public class TaskManager {
         return false;
     }
 
-    /** Extract a ZIP file into individual files and store them */
+    /**
+     * Extract a ZIP file into individual files and store them. Entries are read from the stored
+     * ZIP by random access and streamed straight into storage, so neither the archive nor an entry
+     * is held in memory.
+     */
     private List<ResultFile> extractZipToIndividualFiles(
             String zipFileId, String originalZipFileName) throws IOException {
         List<ResultFile> extractedFiles = new ArrayList<>();
 
-        MultipartFile zipFile = fileStorage.retrieveFile(zipFileId);
-
-        try (ZipInputStream zipIn =
-                ZipSecurity.createHardenedInputStream(
-                        new ByteArrayInputStream(zipFile.getBytes()))) {
-            ZipEntry entry;
-            while ((entry = zipIn.getNextEntry()) != null) {
-                if (!entry.isDirectory()) {
-                    // Use buffered reading for memory safety
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = zipIn.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
-                    }
-                    byte[] fileContent = out.toByteArray();
-
-                    String contentType = determineContentType(entry.getName());
-                    String individualFileId = fileStorage.storeBytes(fileContent, entry.getName());
+        Path zipPath = fileStorage.getStoredFilePath(zipFileId);
 
-                    ResultFile resultFile =
-                            ResultFile.builder()
-                                    .fileId(individualFileId)
-                                    .fileName(entry.getName())
-                                    .contentType(contentType)
-                                    .fileSize(fileContent.length)
-                                    .build();
+        try (ZipFile zipFile = new ZipFile(zipPath.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                checkEntryName(entry.getName(), originalZipFileName);
 
-                    extractedFiles.add(resultFile);
-                    log.debug(
-                            "Extracted file: {} (size: {} bytes)",
-                            entry.getName(),
-                            fileContent.length);
+                String individualFileId;
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    individualFileId = fileStorage.storeStream(in, entry.getName());
                 }
-                zipIn.closeEntry();
+                long fileSize = fileStorage.getFileSize(individualFileId);
+
+                ResultFile resultFile =
+                        ResultFile.builder()
+                                .fileId(individualFileId)
+                                .fileName(entry.getName())
+                                .contentType(determineContentType(entry.getName()))
+                                .fileSize(fileSize)
+                                .build();
+
+                extractedFiles.add(resultFile);
+                log.debug("Extracted file: {} (size: {} bytes)", entry.getName(), fileSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Don't leave the entries extracted so far behind, the ZIP is kept as the result
+            for (ResultFile extracted : extractedFiles) {
+                fileStorage.deleteFile(extracted.getFileId());
             }
+            throw e;
         }
 
         // Clean up the original ZIP file after extraction
@@ -408,6 +564,18 @@ public class TaskManager {
         return extractedFiles;
     }
 
+    /** Reject entry names that would escape a directory the ZIP is extracted to */
+    private static void checkEntryName(String entryName, String zipFileName) throws IOException {
+        String name = entryName.replace('\\', '/');
+        if (name.startsWith("/")
+                || name.equals("..")
+                || name.startsWith("../")
+                || name.contains("/../")
+                || name.endsWith("/..")) {
+            throw new IOException("Unsafe entry " + entryName + " in ZIP file " + zipFileName);
+        }
+    }
+
     /** Determine content type based on file extension */
     private String determineContentType(String fileName) {
         if (fileName == null) {
@@ -432,35 +600,71 @@ public class TaskManager {
         }
     }
 
-    /** Clean up files associated with a job result */
-    private void cleanupJobFiles(JobResult result, String jobId) {
-        // Clean up all result files
-        if (result.hasFiles()) {
-            for (ResultFile resultFile : result.getAllResultFiles()) {
-                try {
-                    fileStorage.deleteFile(resultFile.getFileId());
-                } catch (Exception e) {
-                    log.warn(
-                            "Failed to delete file {} for job {}: {}",
-                            resultFile.getFileId(),
-                            jobId,
-                            e.getMessage());
-                }
-            }
+    /** Find the ResultFile metadata for a given file ID among the completed job results */
+    public ResultFile findResultFileByFileId(String fileId) {
+        synchronized (storeLock) {
+            return resultFilesById.get(fileId);
         }
     }
 
-    /** Find the ResultFile metadata for a given file ID by searching through all job results */
-    public ResultFile findResultFileByFileId(String fileId) {
-        for (JobResult jobResult : jobResults.values()) {
-            if (jobResult.hasFiles()) {
-                for (ResultFile resultFile : jobResult.getAllResultFiles()) {
-                    if (fileId.equals(resultFile.getFileId())) {
-                        return resultFile;
+    /** Receives the changes of jobs it was registered for with {@link #addListener} */
+    @FunctionalInterface
+    public interface JobListener {
+        /**
+         * Called after a job changed. Should only hand the change on rather than block, as it
+         * holds up the later changes of the job for this listener.
+         *
+         * @param jobResult The job result after the change
+         */
+        void onJobChanged(JobResult jobResult);
+    }
+
+    /**
+     * Calls one listener on the notification executor, once per change and for one change at a
+     * time, with the job result as it is when the call is made
+     */
+    private final class ListenerDispatch implements Runnable {
+
+        private final String jobId;
+        private final JobListener listener;
+        // Changes not reported yet. Whoever raises it from zero schedules the calls
+        private final AtomicInteger pendingChanges = new AtomicInteger();
+
+        private ListenerDispatch(String jobId, JobListener listener) {
+            this.jobId = jobId;
+            this.listener = listener;
+        }
+
+        private void jobChanged() {
+            if (pendingChanges.getAndIncrement() > 0) {
+                return;
+            }
+            try {
+                notificationExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                pendingChanges.set(0);
+                log.debug("Not notifying listener of job {} during shutdown", jobId);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                JobResult jobResult = jobResults.get(jobId);
+                if (jobResult != null) {
+                    try {
+                        listener.onJobChanged(jobResult);
+                    } catch (RuntimeException e) {
+                        log.warn("Listener of job {} failed: {}", jobId, e.getMessage(), e);
                     }
                 }
-            }
+            } while (pendingChanges.decrementAndGet() > 0);
         }
-        return null;
     }
+
+    /** When a completed job result is due for removal */
+    private record Expiry(long expiresAtMillis, String jobId) {}
+
+    /** Key of a job that is still running, ordered by creation time */
+    private record ActiveJob(LocalDateTime createdAt, String jobId) {}
 }
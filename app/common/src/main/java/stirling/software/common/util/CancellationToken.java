@@ -0,0 +1,135 @@
+package stirling.software.common.util;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cooperative cancellation of one job. The thread running the job binds the token, long page loops
+ * call {@link #throwIfCancelled()} and {@link ProcessExecutor} registers the processes it starts.
+ * Cancelling interrupts the bound thread, which ends blocking waits, and kills the registered
+ * processes together with their children.
+ *
+ * <p>Code that runs outside of a job sees no token and is never cancelled.
+ */
+@Slf4j
+public final class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final String jobId;
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private volatile String reason;
+    private Thread worker;
+
+    public CancellationToken(String jobId) {
+        this.jobId = jobId;
+    }
+
+    /** The token of the job running on this thread, or null */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stop the job running on this thread if it was cancelled. Does nothing outside of a job.
+     *
+     * @throws CancellationException If the job was cancelled
+     */
+    public static void throwIfCancelled() {
+        CancellationToken token = CURRENT.get();
+        if (token != null) {
+            token.check();
+        }
+    }
+
+    /**
+     * Kill a process and all of its children. Children go first so none of them is left behind
+     * reparented to init.
+     *
+     * @param process The process to kill
+     */
+    public static void destroyTree(ProcessHandle process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    public void check() {
+        String cancelReason = reason;
+        if (cancelReason != null) {
+            throw new CancellationException("Job " + jobId + " " + cancelReason);
+        }
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * Bind the token to the current thread until the returned scope is closed
+     *
+     * @return The scope, which has to be closed on the same thread
+     */
+    public Scope bind() {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        synchronized (this) {
+            worker = Thread.currentThread();
+        }
+        return () -> {
+            synchronized (this) {
+                worker = null;
+                if (reason != null) {
+                    // Don't leave the cancellation interrupt behind on a pooled thread
+                    Thread.interrupted();
+                }
+            }
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Cancel the job. Only the first call has an effect.
+     *
+     * @param cancelReason Completes "Job &lt;id&gt; ..." in the exception the job stops with
+     */
+    public void cancel(String cancelReason) {
+        synchronized (this) {
+            if (reason != null) {
+                return;
+            }
+            reason = cancelReason;
+            if (worker != null) {
+                worker.interrupt();
+            }
+        }
+        log.info("Job {} {}, stopping it", jobId, cancelReason);
+        for (Process process : processes) {
+            destroyTree(process.toHandle());
+        }
+    }
+
+    /** Kill the process if the job is cancelled while it runs */
+    public void register(Process process) {
+        processes.add(process);
+        if (reason != null) {
+            destroyTree(process.toHandle());
+        }
+    }
+
+    public void unregister(Process process) {
+        processes.remove(process);
+    }
+
+    /** Binding of a token to a thread */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,153 @@
+package stirling.software.common.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process-wide budget of CPU cores for external tools. Every invocation holds tokens for the cores
+ * it may keep busy while it runs, so the per tool session limits can no longer add up to several
+ * times the cores of the host. Multi-threaded tools ask for a range and are told how many threads
+ * they may start.
+ *
+ * <p>Waiting requests are admitted in arrival order, so a request for many cores is not starved
+ * by a stream of single core ones. In turn a request never takes more than half of the cores
+ * beyond what it needs, so single core tools that arrive while it runs still find cores free.
+ */
+@Slf4j
+public final class CpuTokenBudget {
+
+    private static final CpuTokenBudget INSTANCE =
+            new CpuTokenBudget(Runtime.getRuntime().availableProcessors());
+
+    private int capacity;
+    private int grantedTokens;
+    private int peakGrantedTokens;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private final LongAdder grants = new LongAdder();
+    private final LongAdder waitedGrants = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    CpuTokenBudget(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /** The budget shared by all external processes of this server */
+    public static CpuTokenBudget getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Change the number of cores, e.g. once the container limits are known. Grants already held
+     * are kept; a smaller budget only takes effect as they are returned.
+     *
+     * @param capacity The number of cores external tools may use together
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        notifyAll();
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Wait until at least {@code minTokens} cores are free and take up to {@code maxTokens} of
+     * them, but no more than half of the budget unless the invocation needs them. Requests larger
+     * than the whole budget are reduced to it so they can always run.
+     *
+     * @param minTokens The cores the invocation needs to run at all
+     * @param maxTokens The cores it could make use of
+     * @return The grant, which has to be closed when the process has exited
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public Grant acquire(int minTokens, int maxTokens) throws InterruptedException {
+        Object ticket = new Object();
+        long start = System.nanoTime();
+        int tokens;
+        synchronized (this) {
+            waiting.addLast(ticket);
+            try {
+                while (waiting.peekFirst() != ticket
+                        || capacity - grantedTokens < Math.min(minTokens, capacity)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(ticket);
+                notifyAll();
+                throw e;
+            }
+            waiting.removeFirst();
+            int share = Math.max(1, capacity / 2);
+            tokens =
+                    Math.max(
+                            Math.min(minTokens, capacity),
+                            Math.min(Math.min(maxTokens, share), capacity - grantedTokens));
+            grantedTokens += tokens;
+            peakGrantedTokens = Math.max(peakGrantedTokens, grantedTokens);
+            // The next in line may fit in what is left
+            notifyAll();
+        }
+        long waited = System.nanoTime() - start;
+        grants.increment();
+        waitNanos.add(waited);
+        if (waited > 1_000_000) {
+            waitedGrants.increment();
+            log.debug("Waited {}ms for {} CPU tokens", waited / 1_000_000, tokens);
+        }
+        return new Grant(tokens);
+    }
+
+    private synchronized void release(int tokens) {
+        grantedTokens -= tokens;
+        notifyAll();
+    }
+
+    /**
+     * Get the current and peak use of the budget
+     *
+     * @return A map suitable for JSON output
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("capacity", capacity);
+            stats.put("grantedTokens", grantedTokens);
+            stats.put("peakGrantedTokens", peakGrantedTokens);
+            stats.put("waiting", waiting.size());
+        }
+        stats.put("grants", grants.sum());
+        stats.put("waitedGrants", waitedGrants.sum());
+        stats.put("waitMillisTotal", waitNanos.sum() / 1_000_000);
+        return stats;
+    }
+
+    /** Cores granted to one invocation, returned to the budget once when closed */
+    public final class Grant implements AutoCloseable {
+
+        private final int tokens;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Grant(int tokens) {
+            this.tokens = tokens;
+        }
+
+        /** The number of cores, and so threads, the invocation may use */
+        public int getTokens() {
+            return tokens;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(tokens);
+            }
+        }
+    }
+}
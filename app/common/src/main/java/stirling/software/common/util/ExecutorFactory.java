@@ -2,12 +2,16 @@ package stirling.software.common.util;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class ExecutorFactory {
 
+    private static volatile ExecutorService cpuBoundExecutor;
+
     /**
      * Creates an ExecutorService using virtual threads if available (Java 21+), or falls back to a
      * cached thread pool on older Java versions.
@@ -28,4 +32,40 @@ public class ExecutorFactory {
 
         return Executors.newCachedThreadPool();
     }
+
+    /**
+     * Returns the process-wide executor for CPU bound work (rendering, signing, image encoding)
+     * that a single request fans out across pages or files. The pool is sized to the available
+     * processors so that concurrent requests share the CPU budget instead of each creating their
+     * own pool. Tasks submitted here must not block waiting on other tasks in the same pool.
+     */
+    public static ExecutorService getCpuBoundExecutor() {
+        ExecutorService executor = cpuBoundExecutor;
+        if (executor == null) {
+            synchronized (ExecutorFactory.class) {
+                executor = cpuBoundExecutor;
+                if (executor == null) {
+                    int threads = getCpuParallelism();
+                    executor = Executors.newFixedThreadPool(threads, daemonThreadFactory("cpu"));
+                    cpuBoundExecutor = executor;
+                    log.debug("Created shared CPU bound executor with {} threads", threads);
+                }
+            }
+        }
+        return executor;
+    }
+
+    /** Number of CPU bound tasks that may usefully run at the same time. */
+    public static int getCpuParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -0,0 +1,411 @@
+package stirling.software.common.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Pixel kernels that work directly on the backing arrays of a {@link BufferedImage} instead of
+ * going through {@code getRGB}/{@code setRGB}, which convert the colour model for every pixel.
+ * Large images are split into bands of rows that are processed in parallel.
+ *
+ * <p>The in-place operations require an image of type {@code TYPE_INT_RGB} or {@code
+ * TYPE_INT_ARGB}; use {@link #toIntRgb(BufferedImage)} to get one.
+ */
+public final class ImageKernels {
+
+    /** Images with fewer pixels than this are processed on the calling thread */
+    static final int PARALLEL_THRESHOLD_PIXELS = 512 * 512;
+
+    private static final int ROWS_PER_BAND = 64;
+
+    private ImageKernels() {}
+
+    /** Operation applied to the rows {@code [fromRow, toRow)} of an image */
+    @FunctionalInterface
+    public interface RowBandOperation {
+        void apply(int fromRow, int toRow);
+    }
+
+    /**
+     * Run an operation over all rows of an image, split into bands that run in parallel for large
+     * images. Bands never overlap, so operations that only write the rows they were given are
+     * safe.
+     *
+     * @param width The image width in pixels
+     * @param height The image height in pixels
+     * @param operation The operation to run for each band
+     */
+    public static void forEachRowBand(int width, int height, RowBandOperation operation) {
+        if ((long) width * height < PARALLEL_THRESHOLD_PIXELS || height <= ROWS_PER_BAND) {
+            operation.apply(0, height);
+            return;
+        }
+        int bands = (height + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+        IntStream.range(0, bands)
+                .parallel()
+                .forEach(
+                        band -> {
+                            int from = band * ROWS_PER_BAND;
+                            operation.apply(from, Math.min(height, from + ROWS_PER_BAND));
+                        });
+    }
+
+    /**
+     * Get an image with an int RGB raster. The image is returned unchanged if it already has one,
+     * otherwise it is drawn into a new {@code TYPE_INT_RGB} image.
+     */
+    public static BufferedImage toIntRgb(BufferedImage image) {
+        if (isIntRgb(image)) {
+            return image;
+        }
+        BufferedImage converted =
+                new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+
+    /**
+     * Get the packed pixel array backing an int RGB image. Writes to the array change the image.
+     *
+     * @throws IllegalArgumentException if the image is not {@code TYPE_INT_RGB} or {@code
+     *     TYPE_INT_ARGB}
+     */
+    public static int[] getPixels(BufferedImage image) {
+        if (!isIntRgb(image)) {
+            throw new IllegalArgumentException(
+                    "Expected an int RGB image but got image type " + image.getType());
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /** Invert the RGB channels in place, making every pixel opaque */
+    public static void invert(BufferedImage image) {
+        int[] pixels = getPixels(image);
+        int width = image.getWidth();
+        forEachRowBand(
+                width,
+                image.getHeight(),
+                (from, to) -> {
+                    for (int i = from * width, end = to * width; i < end; i++) {
+                        pixels[i] = 0xFF000000 | (~pixels[i] & 0x00FFFFFF);
+                    }
+                });
+    }
+
+    /** Replace every pixel in place by the average of its RGB channels */
+    public static void toGrayscaleAverage(BufferedImage image) {
+        int[] pixels = getPixels(image);
+        int width = image.getWidth();
+        forEachRowBand(
+                width,
+                image.getHeight(),
+                (from, to) -> {
+                    for (int i = from * width, end = to * width; i < end; i++) {
+                        int p = pixels[i];
+                        int gray = (((p >> 16) & 0xFF) + ((p >> 8) & 0xFF) + (p & 0xFF)) / 3;
+                        pixels[i] = (p & 0xFF000000) | (gray << 16) | (gray << 8) | gray;
+                    }
+                });
+    }
+
+    /**
+     * Build a lookup table applying {@code ((v - 128) * contrast + 128) * brightness}, clamped to
+     * the 0-255 range
+     */
+    public static int[] createBrightnessContrastTable(float brightness, float contrast) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            int adjusted = (int) (((v - 128) * contrast + 128) * brightness);
+            table[v] = Math.min(255, Math.max(0, adjusted));
+        }
+        return table;
+    }
+
+    /** Map each RGB channel through a 256 entry lookup table in place */
+    public static void applyLookupTable(BufferedImage image, int[] table) {
+        if (table.length != 256) {
+            throw new IllegalArgumentException("Lookup table must have 256 entries");
+        }
+        int[] pixels = getPixels(image);
+        int width = image.getWidth();
+        forEachRowBand(
+                width,
+                image.getHeight(),
+                (from, to) -> {
+                    for (int i = from * width, end = to * width; i < end; i++) {
+                        int p = pixels[i];
+                        pixels[i] =
+                                (p & 0xFF000000)
+                                        | (table[(p >> 16) & 0xFF] << 16)
+                                        | (table[(p >> 8) & 0xFF] << 8)
+                                        | table[p & 0xFF];
+                    }
+                });
+    }
+
+    /**
+     * Gaussian blur using two one-dimensional passes instead of a two-dimensional kernel, which
+     * brings the cost per pixel from O(r^2) down to O(r). Edge pixels are extended outwards.
+     *
+     * @param image An int RGB image, it is not modified
+     * @param sigma The standard deviation in pixels
+     * @return A new blurred image, or the input image if sigma is not positive
+     */
+    public static BufferedImage gaussianBlur(BufferedImage image, double sigma) {
+        if (sigma <= 0) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] src = getPixels(image);
+        int radius = Math.max(1, (int) Math.ceil(sigma * 3));
+        float[] kernel = createGaussianKernel(radius, sigma);
+
+        int[] horizontal = new int[src.length];
+        forEachRowBand(
+                width,
+                height,
+                (from, to) -> {
+                    for (int y = from; y < to; y++) {
+                        int row = y * width;
+                        for (int x = 0; x < width; x++) {
+                            float r = 0, g = 0, b = 0;
+                            for (int k = -radius; k <= radius; k++) {
+                                int sx = Math.min(width - 1, Math.max(0, x + k));
+                                int p = src[row + sx];
+                                float weight = kernel[k + radius];
+                                r += ((p >> 16) & 0xFF) * weight;
+                                g += ((p >> 8) & 0xFF) * weight;
+                                b += (p & 0xFF) * weight;
+                            }
+                            horizontal[row + x] =
+                                    (src[row + x] & 0xFF000000) | packRgb(r, g, b);
+                        }
+                    }
+                });
+
+        BufferedImage result = new BufferedImage(width, height, image.getType());
+        int[] out = getPixels(result);
+        forEachRowBand(
+                width,
+                height,
+                (from, to) -> {
+                    float[] r = new float[width];
+                    float[] g = new float[width];
+                    float[] b = new float[width];
+                    for (int y = from; y < to; y++) {
+                        Arrays.fill(r, 0);
+                        Arrays.fill(g, 0);
+                        Arrays.fill(b, 0);
+                        // Walk whole source rows so memory is read sequentially
+                        for (int k = -radius; k <= radius; k++) {
+                            int row = Math.min(height - 1, Math.max(0, y + k)) * width;
+                            float weight = kernel[k + radius];
+                            for (int x = 0; x < width; x++) {
+                                int p = horizontal[row + x];
+                                r[x] += ((p >> 16) & 0xFF) * weight;
+                                g[x] += ((p >> 8) & 0xFF) * weight;
+                                b[x] += (p & 0xFF) * weight;
+                            }
+                        }
+                        int row = y * width;
+                        for (int x = 0; x < width; x++) {
+                            out[row + x] = (src[row + x] & 0xFF000000) | packRgb(r[x], g[x], b[x]);
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Fill an image with a linear gradient between two colours
+     *
+     * @param image An int RGB image
+     * @param startRgb The colour of the first row or column
+     * @param endRgb The colour of the last row or column
+     * @param vertical Whether the gradient runs from top to bottom instead of left to right
+     */
+    public static void fillLinearGradient(
+            BufferedImage image, int startRgb, int endRgb, boolean vertical) {
+        int[] pixels = getPixels(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] ramp = createGradientRamp(startRgb, endRgb, vertical ? height : width);
+        forEachRowBand(
+                width,
+                height,
+                (from, to) -> {
+                    for (int y = from; y < to; y++) {
+                        int row = y * width;
+                        if (vertical) {
+                            Arrays.fill(pixels, row, row + width, ramp[y]);
+                        } else {
+                            System.arraycopy(ramp, 0, pixels, row, width);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Colours of a linear gradient between two colours, one entry per step
+     *
+     * @param startRgb The first colour
+     * @param endRgb The last colour
+     * @param length The number of steps
+     * @return Opaque packed RGB values
+     */
+    public static int[] createGradientRamp(int startRgb, int endRgb, int length) {
+        int[] ramp = new int[length];
+        int sr = (startRgb >> 16) & 0xFF, sg = (startRgb >> 8) & 0xFF, sb = startRgb & 0xFF;
+        int er = (endRgb >> 16) & 0xFF, eg = (endRgb >> 8) & 0xFF, eb = endRgb & 0xFF;
+        for (int i = 0; i < length; i++) {
+            float frac = length > 1 ? (float) i / (length - 1) : 0f;
+            ramp[i] =
+                    0xFF000000
+                            | (Math.round(sr + (er - sr) * frac) << 16)
+                            | (Math.round(sg + (eg - sg) * frac) << 8)
+                            | Math.round(sb + (eb - sb) * frac);
+        }
+        return ramp;
+    }
+
+    /** Add independent gaussian noise with the given standard deviation to each RGB channel */
+    public static void addGaussianNoise(BufferedImage image, double stddev) {
+        if (stddev <= 0) {
+            return;
+        }
+        int[] pixels = getPixels(image);
+        int width = image.getWidth();
+        forEachRowBand(
+                width,
+                image.getHeight(),
+                (from, to) -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = from * width, end = to * width; i < end; i++) {
+                        int p = pixels[i];
+                        int r = clamp(((p >> 16) & 0xFF) + (int) (random.nextGaussian() * stddev));
+                        int g = clamp(((p >> 8) & 0xFF) + (int) (random.nextGaussian() * stddev));
+                        int b = clamp((p & 0xFF) + (int) (random.nextGaussian() * stddev));
+                        pixels[i] = (p & 0xFF000000) | (r << 16) | (g << 8) | b;
+                    }
+                });
+    }
+
+    /**
+     * Count the pixels whose blue channel (the low byte of {@code getRGB}) is at least the given
+     * value. For gray renderings this is the pixel brightness. Int and byte BGR rasters are read
+     * directly, other image types fall back to bulk {@code getRGB} row reads.
+     */
+    public static long countPixelsAtLeast(BufferedImage image, int minValue) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        long[] bandCounts = new long[(height + ROWS_PER_BAND - 1) / ROWS_PER_BAND + 1];
+
+        RowBandOperation counter;
+        if (isIntRgb(image)) {
+            int[] pixels = ((DataBufferInt) buffer).getData();
+            counter =
+                    (from, to) -> {
+                        long count = 0;
+                        for (int i = from * width, end = to * width; i < end; i++) {
+                            if ((pixels[i] & 0xFF) >= minValue) {
+                                count++;
+                            }
+                        }
+                        bandCounts[from / ROWS_PER_BAND] += count;
+                    };
+        } else if ((image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                        || image.getType() == BufferedImage.TYPE_4BYTE_ABGR)
+                && buffer instanceof DataBufferByte byteBuffer) {
+            byte[] data = byteBuffer.getData();
+            int stride = image.getType() == BufferedImage.TYPE_3BYTE_BGR ? 3 : 4;
+            // Blue is the first byte of BGR and the second byte of ABGR
+            int blueOffset = stride == 3 ? 0 : 1;
+            counter =
+                    (from, to) -> {
+                        long count = 0;
+                        for (int i = from * width * stride + blueOffset,
+                                        end = to * width * stride;
+                                i < end;
+                                i += stride) {
+                            if ((data[i] & 0xFF) >= minValue) {
+                                count++;
+                            }
+                        }
+                        bandCounts[from / ROWS_PER_BAND] += count;
+                    };
+        } else {
+            counter =
+                    (from, to) -> {
+                        int[] row = new int[width];
+                        long count = 0;
+                        for (int y = from; y < to; y++) {
+                            image.getRGB(0, y, width, 1, row, 0, width);
+                            for (int p : row) {
+                                if ((p & 0xFF) >= minValue) {
+                                    count++;
+                                }
+                            }
+                        }
+                        bandCounts[from / ROWS_PER_BAND] += count;
+                    };
+        }
+
+        forEachRowBand(width, height, counter);
+        long total = 0;
+        for (long count : bandCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static boolean isIntRgb(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB
+                && image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return false;
+        }
+        // Sub-images share a larger array, only tightly packed rasters can be indexed directly
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        return raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && sampleModel instanceof SinglePixelPackedSampleModel packed
+                && packed.getScanlineStride() == image.getWidth();
+    }
+
+    private static float[] createGaussianKernel(int radius, double sigma) {
+        float[] kernel = new float[2 * radius + 1];
+        double sum = 0;
+        for (int i = -radius; i <= radius; i++) {
+            double g = Math.exp(-(i * i) / (2 * sigma * sigma));
+            kernel[i + radius] = (float) g;
+            sum += g;
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= (float) sum;
+        }
+        return kernel;
+    }
+
+    private static int packRgb(float r, float g, float b) {
+        return (clamp(Math.round(r)) << 16) | (clamp(Math.round(g)) << 8) | clamp(Math.round(b));
+    }
+
+    private static int clamp(int value) {
+        return Math.min(255, Math.max(0, value));
+    }
+}
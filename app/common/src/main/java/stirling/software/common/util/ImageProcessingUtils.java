@@ -2,6 +2,7 @@ package stirling.software.common.util;
 
 import java.awt.geom.AffineTransform;
 import java.awt.image.*;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -119,4 +120,10 @@ public class ImageProcessingUtils {
         double orientation = extractImageOrientation(file.getInputStream());
         return applyOrientation(image, orientation);
     }
+
+    public static BufferedImage loadImageWithExifOrientation(byte[] data) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        double orientation = extractImageOrientation(new ByteArrayInputStream(data));
+        return applyOrientation(image, orientation);
+    }
 }
@@ -3,32 +3,50 @@ package stirling.software.common.util;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSUpdateInfo;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
 import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.COSObjectable;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.PDXObject;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.CCITTFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.util.Matrix;
 import org.springframework.web.multipart.MultipartFile;
 
 import io.github.pixee.security.Filenames;
@@ -40,6 +58,9 @@ import stirling.software.common.service.CustomPDFDocumentFactory;
 @Slf4j
 public class PdfUtils {
 
+    // Upper bound for decoded image data held at once while converting images to a PDF
+    private static final long IMAGE_DECODE_BUDGET_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
     public static PDRectangle textToPageSize(String size) {
         switch (size.toUpperCase()) {
             case "A0" -> {
@@ -177,6 +198,7 @@ public class PdfUtils {
                         writer.prepareWriteSequence(null);
 
                         for (int i = 0; i < pageCount; ++i) {
+                            CancellationToken.throwIfCancelled();
                             BufferedImage image;
                             try {
                                 image = pdfRenderer.renderImageWithDPI(i, DPI, colorType);
@@ -261,6 +283,7 @@ public class PdfUtils {
                     boolean firstImageAlreadyRendered = pdfSizeImageIndex == 0;
 
                     for (int i = 0; i < pageCount; ++i) {
+                        CancellationToken.throwIfCancelled();
                         if (firstImageAlreadyRendered && i == 0) {
                             pageImage = pdfSizeImage;
                         } else {
@@ -297,6 +320,7 @@ public class PdfUtils {
                 // Zip the images and return as byte array
                 try (ZipOutputStream zos = new ZipOutputStream(baos)) {
                     for (int i = 0; i < pageCount; ++i) {
+                        CancellationToken.throwIfCancelled();
                         BufferedImage image;
                         try {
                             image = pdfRenderer.renderImageWithDPI(i, DPI, colorType);
@@ -394,6 +418,11 @@ public class PdfUtils {
         return combined;
     }
 
+    /**
+     * Convert images to a PDF with one page per image. JPEGs are embedded as they are and
+     * CCITT compressed TIFF pages are embedded without decoding them; all other images are
+     * decoded in parallel on the shared CPU executor while pages are added in upload order.
+     */
     public static byte[] imageToPdf(
             MultipartFile[] files,
             String fitOption,
@@ -402,34 +431,24 @@ public class PdfUtils {
             CustomPDFDocumentFactory pdfDocumentFactory)
             throws IOException {
         try (PDDocument doc = pdfDocumentFactory.createNewDocument()) {
-            for (MultipartFile file : files) {
-                String contentType = file.getContentType();
-                String originalFilename = Filenames.toSimpleFileName(file.getOriginalFilename());
-                if (originalFilename != null
-                        && (originalFilename.toLowerCase().endsWith(".tiff")
-                                || originalFilename.toLowerCase().endsWith(".tif"))) {
-                    ImageReader reader = ImageIO.getImageReadersByFormatName("tiff").next();
-                    reader.setInput(ImageIO.createImageInputStream(file.getInputStream()));
-                    int numPages = reader.getNumImages(true);
-                    for (int i = 0; i < numPages; i++) {
-                        BufferedImage pageImage = reader.read(i);
-                        BufferedImage convertedImage =
-                                ImageProcessingUtils.convertColorType(pageImage, colorType);
-                        PDImageXObject pdImage =
-                                LosslessFactory.createFromImage(doc, convertedImage);
-                        addImageToDocument(doc, pdImage, fitOption, autoRotate);
+            ImagePageQueue pageQueue = new ImagePageQueue(doc, fitOption, autoRotate);
+            try {
+                for (MultipartFile file : files) {
+                    String contentType = file.getContentType();
+                    String originalFilename =
+                            Filenames.toSimpleFileName(file.getOriginalFilename());
+                    byte[] data = file.getBytes();
+                    if (originalFilename != null
+                            && (originalFilename.toLowerCase().endsWith(".tiff")
+                                    || originalFilename.toLowerCase().endsWith(".tif"))) {
+                        addTiffPages(doc, pageQueue, data, colorType);
+                    } else {
+                        addImagePage(doc, pageQueue, data, contentType, colorType);
                     }
-                } else {
-                    BufferedImage image = ImageProcessingUtils.loadImageWithExifOrientation(file);
-                    BufferedImage convertedImage =
-                            ImageProcessingUtils.convertColorType(image, colorType);
-                    // Use JPEGFactory if it's JPEG since JPEG is lossy
-                    PDImageXObject pdImage =
-                            (contentType != null && "image/jpeg".equals(contentType))
-                                    ? JPEGFactory.createFromImage(doc, convertedImage)
-                                    : LosslessFactory.createFromImage(doc, convertedImage);
-                    addImageToDocument(doc, pdImage, fitOption, autoRotate);
                 }
+                pageQueue.finish();
+            } finally {
+                pageQueue.cancel();
             }
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
             doc.save(byteArrayOutputStream);
@@ -438,10 +457,257 @@ public class PdfUtils {
         }
     }
 
+    private static void addTiffPages(
+            PDDocument doc, ImagePageQueue pageQueue, byte[] data, String colorType)
+            throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("tiff").next();
+        try (ImageInputStream input =
+                ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            reader.setInput(input);
+            int numPages = reader.getNumImages(true);
+            for (int i = 0; i < numPages; i++) {
+                PDImageXObject ccittImage = createCcittImage(doc, data, i);
+                if (ccittImage != null) {
+                    pageQueue.addReady(ccittImage, 0);
+                    continue;
+                }
+                int pageIndex = i;
+                pageQueue.addDecoded(
+                        estimateDecodedBytes(reader, i),
+                        () ->
+                                ImageProcessingUtils.convertColorType(
+                                        readTiffPage(data, pageIndex), colorType),
+                        false);
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static void addImagePage(
+            PDDocument doc,
+            ImagePageQueue pageQueue,
+            byte[] data,
+            String contentType,
+            String colorType)
+            throws IOException {
+        // A JPEG shown in colour can be embedded as it is, the viewer decodes the DCT stream
+        if (isJpeg(data) && "color".equals(colorType)) {
+            try {
+                PDImageXObject jpegImage = JPEGFactory.createFromByteArray(doc, data);
+                int rotation =
+                        (int)
+                                ImageProcessingUtils.extractImageOrientation(
+                                        new ByteArrayInputStream(data));
+                pageQueue.addReady(jpegImage, rotation);
+                return;
+            } catch (IOException e) {
+                log.debug("Could not embed JPEG directly, decoding it instead", e);
+            }
+        }
+
+        long estimatedBytes = -1;
+        try (ImageInputStream input =
+                ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input);
+                    estimatedBytes = estimateDecodedBytes(reader, 0);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+        // Use JPEGFactory if it's JPEG since JPEG is lossy
+        pageQueue.addDecoded(
+                estimatedBytes,
+                () ->
+                        ImageProcessingUtils.convertColorType(
+                                ImageProcessingUtils.loadImageWithExifOrientation(data),
+                                colorType),
+                "image/jpeg".equals(contentType));
+    }
+
+    /** Embed a TIFF page as a CCITTFaxDecode image, or return null if it is not CCITT encoded */
+    private static PDImageXObject createCcittImage(PDDocument doc, byte[] data, int pageIndex) {
+        try {
+            return CCITTFactory.createFromByteArray(doc, data, pageIndex);
+        } catch (IOException | RuntimeException e) {
+            log.debug("TIFF page {} is not CCITT encoded, decoding it", pageIndex + 1);
+            return null;
+        }
+    }
+
+    private static BufferedImage readTiffPage(byte[] data, int pageIndex) throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("tiff").next();
+        try (ImageInputStream input =
+                ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            reader.setInput(input);
+            return reader.read(pageIndex);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static long estimateDecodedBytes(ImageReader reader, int imageIndex) {
+        try {
+            return (long) reader.getWidth(imageIndex) * reader.getHeight(imageIndex) * 4;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isJpeg(byte[] data) {
+        return data.length > 3
+                && (data[0] & 0xFF) == 0xFF
+                && (data[1] & 0xFF) == 0xD8
+                && (data[2] & 0xFF) == 0xFF;
+    }
+
+    /**
+     * Image pages waiting to be added to a document. Decoding runs on the shared CPU executor,
+     * limited to a window of pages and to {@link #IMAGE_DECODE_BUDGET_BYTES} of decoded data, and
+     * pages are added to the document in the order they were queued.
+     */
+    private static final class ImagePageQueue {
+
+        private final PDDocument doc;
+        private final String fitOption;
+        private final boolean autoRotate;
+        private final int maxPendingPages = ExecutorFactory.getCpuParallelism() * 2;
+        private final Deque<PendingImagePage> pendingPages = new ArrayDeque<>();
+        private long reservedBytes;
+
+        ImagePageQueue(PDDocument doc, String fitOption, boolean autoRotate) {
+            this.doc = doc;
+            this.fitOption = fitOption;
+            this.autoRotate = autoRotate;
+        }
+
+        /** Queue an image that is already embedded in the document */
+        void addReady(PDImageXObject image, int rotation) throws IOException {
+            if (pendingPages.isEmpty()) {
+                addImageToDocument(doc, image, fitOption, autoRotate, rotation);
+            } else {
+                makeRoom(0);
+                pendingPages.addLast(new PendingImagePage(image, null, false, rotation, 0));
+            }
+        }
+
+        /**
+         * Queue an image to decode in the background
+         *
+         * @param estimatedBytes The expected size of the decoded image, or a negative value if
+         *     unknown
+         */
+        void addDecoded(long estimatedBytes, Callable<BufferedImage> decoder, boolean jpegEncode)
+                throws IOException {
+            long bytes =
+                    estimatedBytes >= 0
+                            ? estimatedBytes
+                            : IMAGE_DECODE_BUDGET_BYTES / ExecutorFactory.getCpuParallelism();
+            makeRoom(bytes);
+            Future<BufferedImage> decoded = ExecutorFactory.getCpuBoundExecutor().submit(decoder);
+            pendingPages.addLast(new PendingImagePage(null, decoded, jpegEncode, 0, bytes));
+            reservedBytes += bytes;
+        }
+
+        /** Add all remaining pages to the document */
+        void finish() throws IOException {
+            while (!pendingPages.isEmpty()) {
+                addNextPage();
+            }
+        }
+
+        /** Drop all remaining pages, cancelling their decoding */
+        void cancel() {
+            for (PendingImagePage page : pendingPages) {
+                if (page.decoded() != null) {
+                    page.decoded().cancel(true);
+                }
+            }
+            pendingPages.clear();
+            reservedBytes = 0;
+        }
+
+        private void makeRoom(long bytes) throws IOException {
+            while (!pendingPages.isEmpty()
+                    && (pendingPages.size() >= maxPendingPages
+                            || reservedBytes + bytes > IMAGE_DECODE_BUDGET_BYTES)) {
+                addNextPage();
+            }
+        }
+
+        private void addNextPage() throws IOException {
+            PendingImagePage page = pendingPages.removeFirst();
+            reservedBytes -= page.reservedBytes();
+            PDImageXObject image = page.image();
+            if (image == null) {
+                BufferedImage decoded = awaitDecoded(page.decoded());
+                image =
+                        page.jpegEncode()
+                                ? JPEGFactory.createFromImage(doc, decoded)
+                                : LosslessFactory.createFromImage(doc, decoded);
+            }
+            addImageToDocument(doc, image, fitOption, autoRotate, page.rotation());
+        }
+
+        private static BufferedImage awaitDecoded(Future<BufferedImage> decoded)
+                throws IOException {
+            try {
+                BufferedImage image = decoded.get();
+                if (image == null) {
+                    throw new IOException("Unsupported image format");
+                }
+                return image;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decoding image");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IOException("Failed to decode image", cause);
+            }
+        }
+    }
+
+    private record PendingImagePage(
+            PDImageXObject image,
+            Future<BufferedImage> decoded,
+            boolean jpegEncode,
+            int rotation,
+            long reservedBytes) {}
+
     public static void addImageToDocument(
             PDDocument doc, PDImageXObject image, String fitOption, boolean autoRotate)
             throws IOException {
-        boolean imageIsLandscape = image.getWidth() > image.getHeight();
+        addImageToDocument(doc, image, fitOption, autoRotate, 0);
+    }
+
+    /**
+     * Add a page showing the image
+     *
+     * @param rotation Clockwise rotation in degrees (0, 90, 180 or 270) to show the image with.
+     *     It is applied through the drawing matrix, the image data itself is left untouched.
+     */
+    public static void addImageToDocument(
+            PDDocument doc,
+            PDImageXObject image,
+            String fitOption,
+            boolean autoRotate,
+            int rotation)
+            throws IOException {
+        boolean quarterTurn = rotation == 90 || rotation == 270;
+        int imageWidth = quarterTurn ? image.getHeight() : image.getWidth();
+        int imageHeight = quarterTurn ? image.getWidth() : image.getHeight();
+        boolean imageIsLandscape = imageWidth > imageHeight;
         PDRectangle pageSize = PDRectangle.A4;
 
         if (autoRotate && imageIsLandscape) {
@@ -449,7 +715,7 @@ public class PdfUtils {
         }
 
         if ("fitDocumentToImage".equals(fitOption)) {
-            pageSize = new PDRectangle(image.getWidth(), image.getHeight());
+            pageSize = new PDRectangle(imageWidth, imageHeight);
         }
 
         PDPage page = new PDPage(pageSize);
@@ -461,26 +727,28 @@ public class PdfUtils {
         try (PDPageContentStream contentStream =
                 new PDPageContentStream(doc, page, AppendMode.APPEND, true, true)) {
             if ("fillPage".equals(fitOption) || "fitDocumentToImage".equals(fitOption)) {
-                contentStream.drawImage(image, 0, 0, pageWidth, pageHeight);
+                drawImage(contentStream, image, rotation, 0, 0, pageWidth, pageHeight);
             } else if ("maintainAspectRatio".equals(fitOption)) {
-                float imageAspectRatio = (float) image.getWidth() / (float) image.getHeight();
+                float imageAspectRatio = (float) imageWidth / (float) imageHeight;
                 float pageAspectRatio = pageWidth / pageHeight;
 
                 float scaleFactor = 1.0f;
                 if (imageAspectRatio > pageAspectRatio) {
-                    scaleFactor = pageWidth / image.getWidth();
+                    scaleFactor = pageWidth / imageWidth;
                 } else {
-                    scaleFactor = pageHeight / image.getHeight();
+                    scaleFactor = pageHeight / imageHeight;
                 }
 
-                float xPos = (pageWidth - (image.getWidth() * scaleFactor)) / 2;
-                float yPos = (pageHeight - (image.getHeight() * scaleFactor)) / 2;
-                contentStream.drawImage(
+                float xPos = (pageWidth - (imageWidth * scaleFactor)) / 2;
+                float yPos = (pageHeight - (imageHeight * scaleFactor)) / 2;
+                drawImage(
+                        contentStream,
                         image,
+                        rotation,
                         xPos,
                         yPos,
-                        image.getWidth() * scaleFactor,
-                        image.getHeight() * scaleFactor);
+                        imageWidth * scaleFactor,
+                        imageHeight * scaleFactor);
             }
         } catch (IOException e) {
             log.error("Error adding image to PDF", e);
@@ -488,6 +756,29 @@ public class PdfUtils {
         }
     }
 
+    // Draws the image rotated clockwise so that it fills the given rectangle
+    private static void drawImage(
+            PDPageContentStream contentStream,
+            PDImageXObject image,
+            int rotation,
+            float x,
+            float y,
+            float width,
+            float height)
+            throws IOException {
+        switch (rotation) {
+            case 90 ->
+                    contentStream.drawImage(
+                            image, new Matrix(0, -height, width, 0, x, y + height));
+            case 180 ->
+                    contentStream.drawImage(
+                            image, new Matrix(-width, 0, 0, -height, x + width, y + height));
+            case 270 ->
+                    contentStream.drawImage(image, new Matrix(0, height, -width, 0, x + width, y));
+            default -> contentStream.drawImage(image, x, y, width, height);
+        }
+    }
+
     public static byte[] overlayImage(
             CustomPDFDocumentFactory pdfDocumentFactory,
             byte[] pdfBytes,
@@ -602,6 +893,28 @@ public class PdfUtils {
         return actualPageWidth == expectedPageWidth && actualPageHeight == expectedPageHeight;
     }
 
+    /**
+     * Mark objects changed since the document was loaded so that {@link
+     * PDDocument#saveIncremental} appends them. The incremental writer only descends into marked
+     * objects, so every dictionary above a changed one (for example the page tree nodes above a
+     * page) is marked as well.
+     *
+     * @param objects The changed objects, null entries are ignored
+     */
+    public static void markForIncrementalUpdate(COSObjectable... objects) {
+        Set<COSBase> marked = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (COSObjectable object : objects) {
+            COSBase base = object != null ? object.getCOSObject() : null;
+            while (base instanceof COSDictionary dictionary && marked.add(dictionary)) {
+                dictionary.setNeedToBeUpdated(true);
+                base = dictionary.getDictionaryObject(COSName.PARENT);
+            }
+            if (base instanceof COSUpdateInfo updateInfo && !(base instanceof COSDictionary)) {
+                updateInfo.setNeedToBeUpdated(true);
+            }
+        }
+    }
+
     /** Key for storing the dimensions of a rendered image in a map. */
     private record PdfRenderSettingsKey(float mediaBoxWidth, float mediaBoxHeight, int rotation) {}
 
@@ -3,15 +3,30 @@ package stirling.software.common.util;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 import io.github.pixee.security.BoundedLineReader;
 
@@ -24,11 +39,30 @@ public class ProcessExecutor {
 
     private static final Map<Processes, ProcessExecutor> instances = new ConcurrentHashMap<>();
     private static ApplicationProperties applicationProperties = new ApplicationProperties();
+    // Shared by all processes, virtual threads where available so draining costs no pool thread
+    private static final ExecutorService outputDrainer =
+            ExecutorFactory.newVirtualOrCachedThreadExecutor();
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MAX_TAIL_LINES = 500;
+    private static final int MAX_TAIL_CHARS = 256 * 1024;
+
+    private final Processes processType;
     private final Semaphore semaphore;
     private final boolean liveUpdates;
     private long timeoutDuration;
 
-    private ProcessExecutor(int semaphoreLimit, boolean liveUpdates, long timeout) {
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder semaphoreWaitNanos = new LongAdder();
+    private final AtomicLong maxSemaphoreWaitNanos = new AtomicLong();
+    private final LongAdder cpuTokenWaitNanos = new LongAdder();
+    private final LongAdder totalWallNanos = new LongAdder();
+    private final LongAdder totalCpuMillis = new LongAdder();
+    private final AtomicLong maxPeakRssBytes = new AtomicLong();
+
+    private ProcessExecutor(
+            Processes processType, int semaphoreLimit, boolean liveUpdates, long timeout) {
+        this.processType = processType;
         this.semaphore = new Semaphore(semaphoreLimit);
         this.liveUpdates = liveUpdates;
         this.timeoutDuration = timeout;
@@ -149,7 +183,7 @@ public class ProcessExecutor {
                                                 .getTimeoutMinutes()
                                                 .getOcrMyPdfTimeoutMinutes();
                             };
-                    return new ProcessExecutor(semaphoreLimit, liveUpdates, timeoutMinutes);
+                    return new ProcessExecutor(key, semaphoreLimit, liveUpdates, timeoutMinutes);
                 });
     }
 
@@ -160,10 +194,57 @@ public class ProcessExecutor {
 
     public ProcessExecutorResult runCommandWithOutputHandling(
             List<String> command, File workingDirectory) throws IOException, InterruptedException {
+        return run(threads -> command, workingDirectory, processType.getMinCores());
+    }
+
+    public ProcessExecutorResult runThreadedCommand(IntFunction<List<String>> commandForThreads)
+            throws IOException, InterruptedException {
+        return runThreadedCommand(commandForThreads, null);
+    }
+
+    /**
+     * Run a command once both a session of this process type and CPU tokens from the shared {@link
+     * CpuTokenBudget} are free. The command is only built then, from the number of threads the
+     * granted tokens allow, so multi-threaded tools can be told how many threads to start.
+     *
+     * @param commandForThreads Builds the command for the given thread count
+     * @param workingDirectory The working directory, or null for the current one
+     */
+    public ProcessExecutorResult runThreadedCommand(
+            IntFunction<List<String>> commandForThreads, File workingDirectory)
+            throws IOException, InterruptedException {
+        return run(commandForThreads, workingDirectory, processType.getMaxCores());
+    }
+
+    private ProcessExecutorResult run(
+            IntFunction<List<String>> commandForThreads, File workingDirectory, int maxCores)
+            throws IOException, InterruptedException {
         String messages = "";
         int exitCode = 1;
+        long waitStart = System.nanoTime();
         semaphore.acquire();
+        long waitNanos = System.nanoTime() - waitStart;
+        semaphoreWaitNanos.add(waitNanos);
+        maxSemaphoreWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        CpuTokenBudget.Grant grant;
         try {
+            long tokenWaitStart = System.nanoTime();
+            grant =
+                    CpuTokenBudget.getInstance()
+                            .acquire(processType.getMinCores(), maxCores);
+            cpuTokenWaitNanos.add(System.nanoTime() - tokenWaitStart);
+        } catch (InterruptedException e) {
+            semaphore.release();
+            throw e;
+        }
+        running.incrementAndGet();
+        ResourceUsage usage = null;
+        CancellationToken token = CancellationToken.current();
+        Process process = null;
+        long startNanos = System.nanoTime();
+        try {
+            CancellationToken.throwIfCancelled();
+            List<String> command = commandForThreads.apply(grant.getTokens());
 
             log.info("Running command: " + String.join(" ", command));
             ProcessBuilder processBuilder = new ProcessBuilder(command);
@@ -172,90 +253,61 @@ public class ProcessExecutor {
             if (workingDirectory != null) {
                 processBuilder.directory(workingDirectory);
             }
-            Process process = processBuilder.start();
-
-            // Read the error stream and standard output stream concurrently
-            List<String> errorLines = new ArrayList<>();
-            List<String> outputLines = new ArrayList<>();
-
-            Thread errorReaderThread =
-                    new Thread(
-                            () -> {
-                                try (BufferedReader errorReader =
-                                        new BufferedReader(
-                                                new InputStreamReader(
-                                                        process.getErrorStream(),
-                                                        StandardCharsets.UTF_8))) {
-                                    String line;
-                                    while ((line =
-                                                    BoundedLineReader.readLine(
-                                                            errorReader, 5_000_000))
-                                            != null) {
-                                        errorLines.add(line);
-                                        if (liveUpdates) log.info(line);
-                                    }
-                                } catch (InterruptedIOException e) {
-                                    log.warn("Error reader thread was interrupted due to timeout.");
-                                } catch (IOException e) {
-                                    log.error("exception", e);
-                                }
-                            });
-
-            Thread outputReaderThread =
-                    new Thread(
-                            () -> {
-                                try (BufferedReader outputReader =
-                                        new BufferedReader(
-                                                new InputStreamReader(
-                                                        process.getInputStream(),
-                                                        StandardCharsets.UTF_8))) {
-                                    String line;
-                                    while ((line =
-                                                    BoundedLineReader.readLine(
-                                                            outputReader, 5_000_000))
-                                            != null) {
-                                        outputLines.add(line);
-                                        if (liveUpdates) log.info(line);
-                                    }
-                                } catch (InterruptedIOException e) {
-                                    log.warn("Error reader thread was interrupted due to timeout.");
-                                } catch (IOException e) {
-                                    log.error("exception", e);
-                                }
-                            });
-
-            errorReaderThread.start();
-            outputReaderThread.start();
+            process = processBuilder.start();
+            if (token != null) {
+                // Cancelling the job kills the process and its children
+                token.register(process);
+            }
+            usage = new ResourceUsage(process.toHandle());
+
+            // Drain the error and output streams concurrently, keeping only their tails
+            OutputTail errorTail = new OutputTail();
+            OutputTail outputTail = new OutputTail();
+            InputStream errorStream = process.getErrorStream();
+            InputStream outputStream = process.getInputStream();
+            Future<?> errorReader = outputDrainer.submit(() -> drain(errorStream, errorTail));
+            Future<?> outputReader = outputDrainer.submit(() -> drain(outputStream, outputTail));
 
             // Wait for the conversion process to complete
-            boolean finished = process.waitFor(timeoutDuration, TimeUnit.MINUTES);
+            boolean finished;
+            try {
+                finished = waitFor(process, usage);
+            } catch (InterruptedException e) {
+                // The job was cancelled or timed out, don't leave the tool running
+                CancellationToken.destroyTree(process.toHandle());
+                errorReader.cancel(true);
+                outputReader.cancel(true);
+                throw e;
+            }
 
             if (!finished) {
-                // Terminate the process
-                process.destroy();
-                // Interrupt the reader threads
-                errorReaderThread.interrupt();
-                outputReaderThread.interrupt();
+                // Terminate the process and anything it started
+                CancellationToken.destroyTree(process.toHandle());
+                // Interrupt the readers
+                errorReader.cancel(true);
+                outputReader.cancel(true);
                 throw new IOException("Process timeout exceeded.");
             }
             exitCode = process.exitValue();
-            // Wait for the reader threads to finish
-            errorReaderThread.join();
-            outputReaderThread.join();
+            // A process killed by cancellation fails, report the cancellation instead
+            CancellationToken.throwIfCancelled();
+            // Wait for the readers to finish
+            awaitDrained(errorReader);
+            awaitDrained(outputReader);
 
             boolean isQpdf =
                     command != null && !command.isEmpty() && command.get(0).contains("qpdf");
 
-            if (!outputLines.isEmpty()) {
-                String outputMessage = String.join("\n", outputLines);
+            if (!outputTail.isEmpty()) {
+                String outputMessage = outputTail.toString();
                 messages += outputMessage;
                 if (!liveUpdates) {
                     log.info("Command output:\n" + outputMessage);
                 }
             }
 
-            if (!errorLines.isEmpty()) {
-                String errorMessage = String.join("\n", errorLines);
+            if (!errorTail.isEmpty()) {
+                String errorMessage = errorTail.toString();
                 messages += errorMessage;
                 if (!liveUpdates) {
                     log.warn("Command error output:\n" + errorMessage);
@@ -285,27 +337,154 @@ public class ProcessExecutor {
                 }
             }
         } finally {
+            if (token != null && process != null) {
+                token.unregister(process);
+            }
+            running.decrementAndGet();
+            grant.close();
             semaphore.release();
+            if (usage != null) {
+                recordUsage(System.nanoTime() - startNanos, usage);
+            }
+        }
+        ProcessExecutorResult result = new ProcessExecutorResult(exitCode, messages);
+        result.setWallTimeMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        result.setCpuTimeMillis(usage.getCpuMillis());
+        result.setPeakRssBytes(usage.getPeakRssBytes());
+        return result;
+    }
+
+    /**
+     * Wait for the process within the timeout. On Linux the CPU time and memory of the process
+     * and its children are sampled while waiting, which has to happen before it is reaped.
+     */
+    private boolean waitFor(Process process, ResourceUsage usage) throws InterruptedException {
+        long timeoutNanos = TimeUnit.MINUTES.toNanos(timeoutDuration);
+        if (!usage.isAvailable()) {
+            return process.waitFor(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            usage.sample();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (process.waitFor(Math.min(remaining, SAMPLE_INTERVAL_NANOS), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain(InputStream stream, OutputTail tail) {
+        try (BufferedReader reader =
+                new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = BoundedLineReader.readLine(reader, 5_000_000)) != null) {
+                tail.add(line);
+                if (liveUpdates) log.info(line);
+            }
+        } catch (InterruptedIOException e) {
+            log.warn("Error reader thread was interrupted due to timeout.");
+        } catch (IOException e) {
+            log.error("exception", e);
         }
-        return new ProcessExecutorResult(exitCode, messages);
     }
 
+    private static void awaitDrained(Future<?> reader) throws InterruptedException {
+        try {
+            reader.get();
+        } catch (ExecutionException e) {
+            log.error("exception", e.getCause());
+        }
+    }
+
+    private void recordUsage(long wallNanos, ResourceUsage usage) {
+        runs.increment();
+        totalWallNanos.add(wallNanos);
+        if (usage.getCpuMillis() >= 0) {
+            totalCpuMillis.add(usage.getCpuMillis());
+            maxPeakRssBytes.accumulateAndGet(usage.getPeakRssBytes(), Math::max);
+        }
+        log.debug(
+                "Command finished in {}ms, CPU {}ms, peak RSS {}KB",
+                TimeUnit.NANOSECONDS.toMillis(wallNanos),
+                usage.getCpuMillis(),
+                usage.getPeakRssBytes() / 1024);
+    }
+
+    /**
+     * Get semaphore wait times and resource use of the external processes, per process type
+     *
+     * @return A map suitable for JSON output
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        instances.forEach(
+                (type, executor) -> {
+                    long runCount = executor.runs.sum();
+                    Map<String, Object> typeStats = new LinkedHashMap<>();
+                    typeStats.put("running", executor.running.get());
+                    typeStats.put("waiting", executor.semaphore.getQueueLength());
+                    typeStats.put("runs", runCount);
+                    typeStats.put(
+                            "semaphoreWaitMillisTotal",
+                            TimeUnit.NANOSECONDS.toMillis(executor.semaphoreWaitNanos.sum()));
+                    typeStats.put(
+                            "semaphoreWaitMillisMax",
+                            TimeUnit.NANOSECONDS.toMillis(executor.maxSemaphoreWaitNanos.get()));
+                    typeStats.put(
+                            "cpuTokenWaitMillisTotal",
+                            TimeUnit.NANOSECONDS.toMillis(executor.cpuTokenWaitNanos.sum()));
+                    typeStats.put(
+                            "wallMillisTotal",
+                            TimeUnit.NANOSECONDS.toMillis(executor.totalWallNanos.sum()));
+                    typeStats.put("cpuMillisTotal", executor.totalCpuMillis.sum());
+                    typeStats.put("peakRssBytes", executor.maxPeakRssBytes.get());
+                    stats.put(type.name(), typeStats);
+                });
+        return stats;
+    }
+
+    /**
+     * The external tools, with the CPU cores one invocation needs and the most a {@link
+     * #runThreadedCommand threaded} invocation can make use of.
+     */
     public enum Processes {
-        LIBRE_OFFICE,
-        PDFTOHTML,
-        PYTHON_OPENCV,
-        WEASYPRINT,
-        INSTALL_APP,
-        CALIBRE,
-        TESSERACT,
-        QPDF,
-        GHOSTSCRIPT,
-        OCR_MY_PDF
+        LIBRE_OFFICE(1, 1),
+        PDFTOHTML(1, 1),
+        PYTHON_OPENCV(1, 1),
+        WEASYPRINT(1, 1),
+        INSTALL_APP(1, 1),
+        CALIBRE(1, 1),
+        TESSERACT(1, 1),
+        QPDF(1, 1),
+        GHOSTSCRIPT(1, 1),
+        OCR_MY_PDF(1, Integer.MAX_VALUE);
+
+        private final int minCores;
+        private final int maxCores;
+
+        Processes(int minCores, int maxCores) {
+            this.minCores = minCores;
+            this.maxCores = maxCores;
+        }
+
+        public int getMinCores() {
+            return minCores;
+        }
+
+        public int getMaxCores() {
+            return maxCores;
+        }
     }
 
     public class ProcessExecutorResult {
         int rc;
         String messages;
+        long wallTimeMillis;
+        long cpuTimeMillis = -1;
+        long peakRssBytes = -1;
 
         public ProcessExecutorResult(int rc, String messages) {
             this.rc = rc;
@@ -327,5 +506,132 @@ public class ProcessExecutor {
         public void setMessages(String messages) {
             this.messages = messages;
         }
+
+        public long getWallTimeMillis() {
+            return wallTimeMillis;
+        }
+
+        public void setWallTimeMillis(long wallTimeMillis) {
+            this.wallTimeMillis = wallTimeMillis;
+        }
+
+        /** CPU time of the process and its children, or -1 where /proc isn't available */
+        public long getCpuTimeMillis() {
+            return cpuTimeMillis;
+        }
+
+        public void setCpuTimeMillis(long cpuTimeMillis) {
+            this.cpuTimeMillis = cpuTimeMillis;
+        }
+
+        /** Peak resident memory of the process and its children, or -1 if unknown */
+        public long getPeakRssBytes() {
+            return peakRssBytes;
+        }
+
+        public void setPeakRssBytes(long peakRssBytes) {
+            this.peakRssBytes = peakRssBytes;
+        }
+    }
+
+    /**
+     * Keeps the last lines of a process output stream. Verbose tools can print hundreds of MB of
+     * progress output; only the tail is useful for error messages.
+     */
+    static final class OutputTail {
+
+        private final Deque<String> lines = new ArrayDeque<>();
+        private long totalLines;
+        private int tailChars;
+
+        synchronized void add(String line) {
+            if (line.length() > MAX_TAIL_CHARS) {
+                line = line.substring(0, MAX_TAIL_CHARS);
+            }
+            lines.addLast(line);
+            tailChars += line.length();
+            totalLines++;
+            while (lines.size() > MAX_TAIL_LINES || tailChars > MAX_TAIL_CHARS) {
+                tailChars -= lines.removeFirst().length();
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return totalLines == 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            long omitted = totalLines - lines.size();
+            String tail = String.join("\n", lines);
+            return omitted > 0 ? "[" + omitted + " earlier lines omitted]\n" + tail : tail;
+        }
+    }
+
+    /**
+     * CPU time and peak resident memory of a process and its children, sampled from /proc. CPU
+     * time is kept per process so children that exit between samples still count.
+     */
+    static final class ResourceUsage {
+
+        private static final Path PROC = Path.of("/proc");
+        // USER_HZ, which the kernel fixes at 100 for /proc on all common architectures
+        private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+        private final ProcessHandle process;
+        private final boolean available;
+        private final Map<Long, Long> cpuTicks = new HashMap<>();
+        private long peakRssBytes;
+
+        ResourceUsage(ProcessHandle process) {
+            this.process = process;
+            this.available = Files.isDirectory(PROC.resolve(Long.toString(process.pid())));
+        }
+
+        boolean isAvailable() {
+            return available;
+        }
+
+        void sample() {
+            long rssBytes = sample(process.pid());
+            try (Stream<ProcessHandle> children = process.descendants()) {
+                for (ProcessHandle child : (Iterable<ProcessHandle>) children::iterator) {
+                    rssBytes += sample(child.pid());
+                }
+            }
+            peakRssBytes = Math.max(peakRssBytes, rssBytes);
+        }
+
+        // Returns the current resident memory of the process, 0 if it already exited
+        private long sample(long pid) {
+            Path dir = PROC.resolve(Long.toString(pid));
+            try {
+                // utime and stime are the 14th and 15th fields, counted after the command name
+                String stat = Files.readString(dir.resolve("stat"));
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                cpuTicks.put(pid, Long.parseLong(fields[11]) + Long.parseLong(fields[12]));
+
+                for (String line : Files.readAllLines(dir.resolve("status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // The process exited between listing and reading
+            }
+            return 0;
+        }
+
+        long getCpuMillis() {
+            if (!available) {
+                return -1;
+            }
+            long ticks = cpuTicks.values().stream().mapToLong(Long::longValue).sum();
+            return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+        }
+
+        long getPeakRssBytes() {
+            return available ? peakRssBytes : -1;
+        }
     }
 }
@@ -0,0 +1,117 @@
+package stirling.software.common.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process-wide budget for the in-memory part of PDFBox scratch space. Each open document leases
+ * the memory its scratch file may use before spilling to disk and returns it when the document is
+ * closed. Concurrent documents therefore share one fixed amount of heap instead of each deciding
+ * from the free memory at the moment it was opened, which every one of them sees as plenty.
+ */
+@Slf4j
+public final class ScratchMemoryBudget {
+
+    // Share of the maximum heap the scratch buffers of all open documents may use together
+    private static final double HEAP_SHARE = 0.25;
+
+    // Smaller grants aren't worth the bookkeeping, the document goes straight to disk instead
+    private static final long MIN_GRANT_BYTES = 1024 * 1024;
+
+    private static final ScratchMemoryBudget INSTANCE =
+            new ScratchMemoryBudget((long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE));
+
+    private final long capacityBytes;
+    private long leasedBytes;
+    private long peakLeasedBytes;
+    private int activeLeases;
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder shortLeases = new LongAdder();
+
+    ScratchMemoryBudget(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /** The budget shared by all documents of this process */
+    public static ScratchMemoryBudget getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lease in-memory scratch space. When the budget is short the lease covers less than was
+     * requested, down to nothing, and the rest of the document's scratch data goes to disk.
+     *
+     * @param requestedBytes The memory the document would like to use
+     * @return The lease, which has to be closed when the document is closed
+     */
+    public Lease lease(long requestedBytes) {
+        long granted;
+        synchronized (this) {
+            granted = Math.min(requestedBytes, capacityBytes - leasedBytes);
+            if (granted < MIN_GRANT_BYTES) {
+                granted = 0;
+            }
+            leasedBytes += granted;
+            peakLeasedBytes = Math.max(peakLeasedBytes, leasedBytes);
+            activeLeases++;
+        }
+        leases.increment();
+        if (granted < requestedBytes) {
+            shortLeases.increment();
+            log.debug(
+                    "Scratch memory budget short, granted {}KB of {}KB",
+                    granted / 1024,
+                    requestedBytes / 1024);
+        }
+        return new Lease(granted);
+    }
+
+    private synchronized void release(long bytes) {
+        leasedBytes -= bytes;
+        activeLeases--;
+    }
+
+    /**
+     * Get the current and peak use of the budget
+     *
+     * @return A map suitable for JSON output
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("capacityBytes", capacityBytes);
+            stats.put("leasedBytes", leasedBytes);
+            stats.put("peakLeasedBytes", peakLeasedBytes);
+            stats.put("activeLeases", activeLeases);
+        }
+        stats.put("leases", leases.sum());
+        stats.put("shortLeases", shortLeases.sum());
+        return stats;
+    }
+
+    /** Memory granted to one document, returned to the budget once when closed */
+    public final class Lease implements AutoCloseable {
+
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(bytes);
+            }
+        }
+    }
+}
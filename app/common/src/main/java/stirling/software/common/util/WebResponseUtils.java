@@ -2,10 +2,17 @@ package stirling.software.common.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.COSObjectable;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -49,6 +56,22 @@ public class WebResponseUtils {
         return new ResponseEntity<>(bytes, headers, HttpStatus.OK);
     }
 
+    /**
+     * Stream a file as the body of a download response instead of reading it into memory. The file
+     * is deleted when the stream is closed after the response was written.
+     */
+    public static ResponseEntity<Resource> fileToWebResponse(
+            Path file, String docName, MediaType mediaType) throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        headers.setContentLength(Files.size(file));
+        String encodedDocName =
+                URLEncoder.encode(docName, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        headers.setContentDispositionFormData("attachment", encodedDocName);
+        InputStream in = Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+        return new ResponseEntity<>(new InputStreamResource(in), headers, HttpStatus.OK);
+    }
+
     public static ResponseEntity<byte[]> bytesToWebResponse(byte[] bytes, String docName)
             throws IOException {
         return bytesToWebResponse(bytes, docName, MediaType.APPLICATION_PDF);
@@ -64,4 +87,41 @@ public class WebResponseUtils {
 
         return baosToWebResponse(baos, docName);
     }
+
+    /**
+     * Save a document that only had a few objects changed since it was loaded. The changed
+     * objects are appended to the original file as an incremental update instead of rewriting
+     * every object, which is much faster for large files and keeps existing signatures valid.
+     * Documents that can't be updated in place, such as ones created in memory or having their
+     * encryption removed, are saved in full.
+     *
+     * @param document The loaded document, closed once saved
+     * @param docName The name of the returned file
+     * @param changedObjects The objects modified since loading, the catalog is always included
+     */
+    public static ResponseEntity<byte[]> pdfDocToIncrementalWebResponse(
+            PDDocument document, String docName, COSObjectable... changedObjects)
+            throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            if (document.isAllSecurityToBeRemoved()) {
+                // An appended update can't take the encryption off the original objects
+                document.save(baos);
+            } else {
+                PdfUtils.markForIncrementalUpdate(changedObjects);
+                PdfUtils.markForIncrementalUpdate(document.getDocumentCatalog());
+                try {
+                    document.saveIncremental(baos);
+                } catch (IllegalStateException e) {
+                    // Thrown before anything is written when there is no original file to append to
+                    baos.reset();
+                    document.save(baos);
+                }
+            }
+        } finally {
+            document.close();
+        }
+
+        return baosToWebResponse(baos, docName);
+    }
 }
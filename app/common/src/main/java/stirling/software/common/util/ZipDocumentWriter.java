@@ -0,0 +1,178 @@
+package stirling.software.common.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes multiple outputs into a zip file as soon as they are produced, so a split never holds
+ * more than the part currently being saved in memory. Documents are saved straight into their
+ * zip entry and closed. Parts that don't share objects with each other can also be saved in
+ * parallel on the shared CPU executor; their entries are still written in the order they were
+ * added.
+ *
+ * <p>The zip is backed by a temporary file which is deleted when the writer is closed.
+ */
+@Slf4j
+public class ZipDocumentWriter implements AutoCloseable {
+
+    /** Writes the content of a single zip entry */
+    @FunctionalInterface
+    public interface EntryContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private record PendingEntry(String entryName, TempFile content, Future<?> future) {}
+
+    private final TempFileManager tempFileManager;
+    private final TempFile zipFile;
+    private final ZipOutputStream zipOut;
+    private final Set<String> entryNames = new HashSet<>();
+    private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+    private final int maxPendingEntries = ExecutorFactory.getCpuParallelism() * 2;
+    private boolean finished;
+
+    public ZipDocumentWriter(TempFileManager tempFileManager) throws IOException {
+        this.tempFileManager = tempFileManager;
+        this.zipFile = new TempFile(tempFileManager, ".zip");
+        this.zipOut = new ZipOutputStream(Files.newOutputStream(zipFile.getPath()));
+    }
+
+    /** Save the document into a new entry and close it */
+    public void addDocument(String entryName, PDDocument document) throws IOException {
+        try (document) {
+            addEntry(entryName, document::save);
+        }
+    }
+
+    /** Write a new entry on the calling thread, after any entries still being produced */
+    public void addEntry(String entryName, EntryContent content) throws IOException {
+        writePendingEntries(0);
+        zipOut.putNextEntry(new ZipEntry(uniqueEntryName(entryName)));
+        // PDFBox closes the stream it saves to, the zip must stay open for the next entry
+        content.writeTo(CloseShieldOutputStream.wrap(zipOut));
+        zipOut.closeEntry();
+        log.debug("Wrote {} to zip file", entryName);
+    }
+
+    /**
+     * Produce an entry on the shared CPU executor. The content is buffered in a temporary file
+     * and copied into the zip in the order entries were added. Only a small window of entries is
+     * produced at a time, this call blocks until there is room for another.
+     *
+     * <p>The content must not share PDFBox objects with any other entry produced in parallel,
+     * for example by building each part from its own copy of the source document.
+     */
+    public void addEntryInParallel(String entryName, EntryContent content) throws IOException {
+        writePendingEntries(maxPendingEntries - 1);
+        TempFile buffer = new TempFile(tempFileManager, ".part");
+        try {
+            Future<?> future =
+                    ExecutorFactory.getCpuBoundExecutor()
+                            .submit(
+                                    () -> {
+                                        try (OutputStream out =
+                                                Files.newOutputStream(buffer.getPath())) {
+                                            content.writeTo(out);
+                                        }
+                                        return null;
+                                    });
+            pendingEntries.addLast(new PendingEntry(entryName, buffer, future));
+        } catch (RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /** Finish the zip and read it back as the body of a download response */
+    public ResponseEntity<byte[]> toWebResponse(String zipFilename) throws IOException {
+        finish();
+        return WebResponseUtils.bytesToWebResponse(
+                Files.readAllBytes(zipFile.getPath()),
+                zipFilename,
+                MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    /** Write all remaining entries and the zip directory */
+    public void finish() throws IOException {
+        if (!finished) {
+            writePendingEntries(0);
+            zipOut.close();
+            finished = true;
+        }
+    }
+
+    private void writePendingEntries(int maxRemaining) throws IOException {
+        while (pendingEntries.size() > maxRemaining) {
+            PendingEntry entry = pendingEntries.removeFirst();
+            try (TempFile content = entry.content()) {
+                awaitEntry(entry);
+                zipOut.putNextEntry(new ZipEntry(uniqueEntryName(entry.entryName())));
+                Files.copy(content.getPath(), zipOut);
+                zipOut.closeEntry();
+                log.debug("Wrote {} to zip file", entry.entryName());
+            }
+        }
+    }
+
+    private static void awaitEntry(PendingEntry entry) throws IOException {
+        try {
+            entry.future().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing " + entry.entryName());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to write " + entry.entryName(), cause);
+        }
+    }
+
+    // Zip entries must be unique, later duplicates get a counter before the extension
+    private String uniqueEntryName(String entryName) {
+        String name = entryName;
+        int dot = entryName.lastIndexOf('.');
+        String base = dot > 0 ? entryName.substring(0, dot) : entryName;
+        String extension = dot > 0 ? entryName.substring(dot) : "";
+        for (int i = 2; !entryNames.add(name); i++) {
+            name = base + "_" + i + extension;
+        }
+        return name;
+    }
+
+    @Override
+    public void close() {
+        for (PendingEntry entry : pendingEntries) {
+            entry.future().cancel(true);
+            entry.content().close();
+        }
+        pendingEntries.clear();
+        try {
+            zipOut.close();
+        } catch (IOException e) {
+            log.debug("Error closing zip output stream", e);
+        }
+        zipFile.close();
+    }
+}
@@ -1,6 +1,5 @@
 package stirling.software.common.util.misc;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -20,6 +19,7 @@ import org.springframework.core.io.InputStreamResource;
 import org.springframework.web.multipart.MultipartFile;
 
 import stirling.software.common.model.api.misc.ReplaceAndInvert;
+import stirling.software.common.util.ImageKernels;
 
 public class InvertFullColorStrategy extends ReplaceAndInvertColorStrategy {
 
@@ -45,7 +45,8 @@ public class InvertFullColorStrategy extends ReplaceAndInvertColorStrategy {
             PDFRenderer pdfRenderer = new PDFRenderer(document);
             for (int page = 0; page < document.getNumberOfPages(); page++) {
                 BufferedImage image =
-                        pdfRenderer.renderImageWithDPI(page, 300); // Render page at 300 DPI
+                        ImageKernels.toIntRgb(
+                                pdfRenderer.renderImageWithDPI(page, 300)); // Render at 300 DPI
 
                 // Invert the colors
                 invertImageColors(image);
@@ -95,22 +96,9 @@ public class InvertFullColorStrategy extends ReplaceAndInvertColorStrategy {
         }
     }
 
-    // Method to invert image colors
+    // Method to invert image colors, the image must have an int RGB raster
     private void invertImageColors(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                int rgba = image.getRGB(x, y);
-                Color color = new Color(rgba, true);
-                Color invertedColor =
-                        new Color(
-                                255 - color.getRed(),
-                                255 - color.getGreen(),
-                                255 - color.getBlue());
-                image.setRGB(x, y, invertedColor.getRGB());
-            }
-        }
+        ImageKernels.invert(image);
     }
 
     // Helper method to convert BufferedImage to InputStream
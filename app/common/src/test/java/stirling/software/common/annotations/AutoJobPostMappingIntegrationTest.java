@@ -33,11 +33,13 @@ import org.springframework.web.multipart.MultipartFile;
 import jakarta.servlet.http.HttpServletRequest;
 
 import stirling.software.common.aop.AutoJobAspect;
+import stirling.software.common.model.FileBackedMultipartFile;
 import stirling.software.common.model.api.PDFFile;
 import stirling.software.common.service.FileOrUploadService;
 import stirling.software.common.service.FileStorage;
 import stirling.software.common.service.JobExecutorService;
 import stirling.software.common.service.JobQueue;
+import stirling.software.common.service.PdfStructureReader;
 import stirling.software.common.service.ResourceMonitor;
 
 @ExtendWith(MockitoExtension.class)
@@ -57,6 +59,9 @@ class AutoJobPostMappingIntegrationTest {
     @Mock
     private FileStorage fileStorage;
 
+    @Mock
+    private PdfStructureReader pdfStructureReader;
+
 
     @Mock
     private ResourceMonitor resourceMonitor;
@@ -70,7 +75,8 @@ class AutoJobPostMappingIntegrationTest {
             jobExecutorService,
             request,
             fileOrUploadService,
-            fileStorage
+            fileStorage,
+            pdfStructureReader
         );
     }
 
@@ -110,8 +116,9 @@ class AutoJobPostMappingIntegrationTest {
         when(autoJobPostMapping.queueable()).thenReturn(true);
         when(autoJobPostMapping.resourceWeight()).thenReturn(75);
 
-        MultipartFile mockFile = mock(MultipartFile.class);
-        when(fileStorage.retrieveFile("test-file-id")).thenReturn(mockFile);
+        FileBackedMultipartFile mockFile = mock(FileBackedMultipartFile.class);
+        when(fileStorage.retrieveFileInPlace(eq("test-file-id"), any(), any()))
+                .thenReturn(mockFile);
 
 
         when(jobExecutorService.runJobGeneric(
@@ -186,7 +193,8 @@ class AutoJobPostMappingIntegrationTest {
         when(autoJobPostMapping.retryCount()).thenReturn(1);
 
         when(fileStorage.storeFile(any(MultipartFile.class))).thenReturn("stored-file-id");
-        when(fileStorage.retrieveFile("stored-file-id")).thenReturn(mock(MultipartFile.class));
+        when(fileStorage.retrieveFileInPlace(eq("stored-file-id"), any(), any()))
+                .thenReturn(mock(FileBackedMultipartFile.class));
 
         // Mock job executor to return a successful response
         when(jobExecutorService.runJobGeneric(
@@ -203,6 +211,6 @@ class AutoJobPostMappingIntegrationTest {
 
         // Verify storage operations
         verify(fileStorage).storeFile(any(MultipartFile.class));
-        verify(fileStorage).retrieveFile("stored-file-id");
+        verify(fileStorage).retrieveFileInPlace(eq("stored-file-id"), any(), any());
     }
 }
@@ -0,0 +1,251 @@
+package stirling.software.common.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import stirling.software.common.model.api.PDFFile;
+import stirling.software.common.service.ChunkedUploadService.UploadLimitException;
+import stirling.software.common.service.ChunkedUploadService.UploadSession;
+
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = ChunkedUploadService.MIN_CHUNK_SIZE;
+    private static final String OWNER = "user:alice";
+
+    @TempDir Path tempDir;
+
+    private FileStorage fileStorage;
+    private ChunkedUploadService chunkedUploadService;
+
+    @BeforeEach
+    void setUp() {
+        fileStorage = new FileStorage(mock(FileOrUploadService.class));
+        ReflectionTestUtils.setField(fileStorage, "tempDirPath", tempDir.toString());
+        chunkedUploadService = new ChunkedUploadService(fileStorage);
+        ReflectionTestUtils.setField(chunkedUploadService, "tempDirPath", tempDir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        chunkedUploadService.shutdown();
+    }
+
+    @Test
+    void testChunksInAnyOrderAreAssembledOnCommit() throws Exception {
+        byte[] content = randomBytes(CHUNK_SIZE * 2 + 1000);
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "large.pdf", content.length, CHUNK_SIZE);
+        assertEquals(3, session.getChunkCount());
+
+        writeChunk(session, 2, content);
+        writeChunk(session, 0, content);
+        assertEquals(List.of(0, 2), session.getReceivedChunks());
+        writeChunk(session, 1, content);
+
+        String fileId = chunkedUploadService.commit(session);
+
+        assertArrayEquals(content, fileStorage.retrieveBytes(fileId));
+        assertNull(chunkedUploadService.getSession(session.getUploadId()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCommittedFileIsUsedForFileId() throws Exception {
+        byte[] content = randomBytes(CHUNK_SIZE + 10);
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "large.pdf", content.length, CHUNK_SIZE);
+        writeChunk(session, 0, content);
+        writeChunk(session, 1, content);
+        String fileId = chunkedUploadService.commit(session);
+
+        ObjectProvider<FileStorage> storageProvider = mock(ObjectProvider.class);
+        when(storageProvider.getObject()).thenReturn(fileStorage);
+        FileOrUploadService fileOrUploadService = new FileOrUploadService(storageProvider);
+        PDFFile request = new PDFFile();
+        request.setFileId(fileId);
+        fileOrUploadService.resolveFileId(request);
+
+        assertArrayEquals(content, request.getFileInput().getBytes());
+
+        PDFFile unknown = new PDFFile();
+        unknown.setFileId("missing");
+        assertThrows(IOException.class, () -> fileOrUploadService.resolveFileId(unknown));
+    }
+
+    @Test
+    void testUploadBelongsToItsClient() throws Exception {
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "file.pdf", CHUNK_SIZE, CHUNK_SIZE);
+
+        assertTrue(session.isOwnedBy(OWNER));
+        assertFalse(session.isOwnedBy("user:bob"));
+    }
+
+    @Test
+    void testChunkWithWrongChecksumIsNotReceived() throws Exception {
+        byte[] content = randomBytes(CHUNK_SIZE + 10);
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "file.pdf", content.length, CHUNK_SIZE);
+
+        byte[] chunk = Arrays.copyOfRange(content, 0, CHUNK_SIZE);
+        String wrongChecksum = sha256(new byte[] {1});
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        chunkedUploadService.writeChunk(
+                                session, 0, wrongChecksum, new ByteArrayInputStream(chunk)));
+
+        assertTrue(session.getReceivedChunks().isEmpty());
+    }
+
+    @Test
+    void testChunkOfWrongSizeIsRejected() throws Exception {
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "file.pdf", CHUNK_SIZE * 2L, CHUNK_SIZE);
+
+        byte[] shortChunk = randomBytes(CHUNK_SIZE - 1);
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        chunkedUploadService.writeChunk(
+                                session,
+                                0,
+                                sha256(shortChunk),
+                                new ByteArrayInputStream(shortChunk)));
+
+        byte[] longChunk = randomBytes(CHUNK_SIZE + 1);
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        chunkedUploadService.writeChunk(
+                                session,
+                                0,
+                                sha256(longChunk),
+                                new ByteArrayInputStream(longChunk)));
+
+        assertTrue(session.getReceivedChunks().isEmpty());
+    }
+
+    @Test
+    void testCommitOfIncompleteUploadFails() throws Exception {
+        byte[] content = randomBytes(CHUNK_SIZE * 2);
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "file.pdf", content.length, CHUNK_SIZE);
+        writeChunk(session, 0, content);
+
+        assertThrows(IllegalStateException.class, () -> chunkedUploadService.commit(session));
+
+        // The upload can still be finished afterwards
+        writeChunk(session, 1, content);
+        String fileId = chunkedUploadService.commit(session);
+        assertArrayEquals(content, fileStorage.retrieveBytes(fileId));
+    }
+
+    @Test
+    void testAbortDeletesUpload() throws Exception {
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "file.pdf", CHUNK_SIZE, CHUNK_SIZE);
+
+        assertTrue(chunkedUploadService.abort(session.getUploadId()));
+
+        assertNull(chunkedUploadService.getSession(session.getUploadId()));
+        try (var files = Files.list(tempDir.resolve(".uploads"))) {
+            assertEquals(0, files.count());
+        }
+        assertFalse(chunkedUploadService.abort(session.getUploadId()));
+    }
+
+    @Test
+    void testOpenUploadsAreLimitedPerClientAndOverall() throws Exception {
+        ReflectionTestUtils.setField(chunkedUploadService, "maxSessionsPerClient", 2);
+        ReflectionTestUtils.setField(chunkedUploadService, "maxSessions", 3);
+        chunkedUploadService.createSession(OWNER, "1.pdf", CHUNK_SIZE, CHUNK_SIZE);
+        UploadSession second =
+                chunkedUploadService.createSession(OWNER, "2.pdf", CHUNK_SIZE, CHUNK_SIZE);
+
+        UploadLimitException perClient =
+                assertThrows(
+                        UploadLimitException.class,
+                        () ->
+                                chunkedUploadService.createSession(
+                                        OWNER, "3.pdf", CHUNK_SIZE, CHUNK_SIZE));
+        assertFalse(perClient.isSizeLimit());
+
+        chunkedUploadService.createSession("user:bob", "3.pdf", CHUNK_SIZE, CHUNK_SIZE);
+        assertThrows(
+                UploadLimitException.class,
+                () ->
+                        chunkedUploadService.createSession(
+                                "user:carol", "4.pdf", CHUNK_SIZE, CHUNK_SIZE));
+
+        // Aborting frees a place again
+        chunkedUploadService.abort(second.getUploadId());
+        assertNotNull(chunkedUploadService.createSession(OWNER, "2.pdf", CHUNK_SIZE, CHUNK_SIZE));
+    }
+
+    @Test
+    void testCommittedFilesCountAgainstTheSizeLimitUntilTheyExpire() throws Exception {
+        ReflectionTestUtils.setField(chunkedUploadService, "maxTotalSizeMB", 1L);
+        byte[] content = randomBytes(CHUNK_SIZE * 3);
+        UploadSession session =
+                chunkedUploadService.createSession(OWNER, "file.pdf", content.length, CHUNK_SIZE);
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            writeChunk(session, i, content);
+        }
+        String fileId = chunkedUploadService.commit(session);
+
+        UploadLimitException tooLarge =
+                assertThrows(
+                        UploadLimitException.class,
+                        () ->
+                                chunkedUploadService.createSession(
+                                        OWNER, "more.pdf", CHUNK_SIZE * 2L, CHUNK_SIZE));
+        assertTrue(tooLarge.isSizeLimit());
+
+        // Not expired yet
+        chunkedUploadService.cleanupExpiredCommittedFiles();
+        assertTrue(fileStorage.fileExists(fileId));
+
+        ReflectionTestUtils.setField(chunkedUploadService, "committedExpiryMinutes", -1);
+        chunkedUploadService.cleanupExpiredCommittedFiles();
+        assertFalse(fileStorage.fileExists(fileId));
+        assertNotNull(
+                chunkedUploadService.createSession(OWNER, "more.pdf", CHUNK_SIZE * 2L, CHUNK_SIZE));
+    }
+
+    private void writeChunk(UploadSession session, int index, byte[] content) throws Exception {
+        int from = index * session.getChunkSize();
+        int to = (int) (from + session.getChunkLength(index));
+        byte[] chunk = Arrays.copyOfRange(content, from, to);
+        chunkedUploadService.writeChunk(
+                session, index, sha256(chunk), new ByteArrayInputStream(chunk));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
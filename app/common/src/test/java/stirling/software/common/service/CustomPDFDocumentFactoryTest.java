@@ -18,7 +18,10 @@ import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import stirling.software.common.model.api.PDFFile;
 
@@ -92,6 +95,34 @@ class CustomPDFDocumentFactoryTest {
         }
     }
 
+    @Test
+    void testTransferredUploadIsDeletedWithRequest() throws IOException {
+        File[] transferred = new File[1];
+        MockMultipartFile multipart =
+                new MockMultipartFile(
+                        "file", "doc.pdf", "application/pdf", inflatePdf(basePdfBytes, 20)) {
+                    @Override
+                    public void transferTo(File dest) throws IOException {
+                        transferred[0] = dest;
+                        super.transferTo(dest);
+                    }
+                };
+        ServletRequestAttributes attributes =
+                new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(attributes);
+        try {
+            try (PDDocument doc = factory.load(multipart)) {
+                assertTrue(doc.getNumberOfPages() > 0);
+            }
+            // Still there for the rest of the request
+            assertTrue(transferred[0].exists());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+            attributes.requestCompleted();
+        }
+        assertFalse(transferred[0].exists());
+    }
+
     private byte[] inflatePdf(byte[] input, int sizeInMB) throws IOException {
         try (PDDocument doc = Loader.loadPDF(input)) {
             byte[] largeData = new byte[sizeInMB * 1024 * 1024];
@@ -8,7 +8,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.UUID;
+import java.nio.file.attribute.PosixFilePermission;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,6 +19,8 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import stirling.software.common.model.FileBackedMultipartFile;
+
 class FileStorageTest {
 
     @TempDir
@@ -61,7 +63,7 @@ class FileStorageTest {
 
         // Assert
         assertNotNull(fileId);
-        assertTrue(Files.exists(tempDir.resolve(fileId)));
+        assertTrue(Files.exists(fileStorage.getStoredFilePath(fileId)));
         verify(mockFile).transferTo(any(java.io.File.class));
     }
 
@@ -76,17 +78,97 @@ class FileStorageTest {
 
         // Assert
         assertNotNull(fileId);
-        assertTrue(Files.exists(tempDir.resolve(fileId)));
-        assertArrayEquals(fileContent, Files.readAllBytes(tempDir.resolve(fileId)));
+        Path filePath = fileStorage.getStoredFilePath(fileId);
+        assertTrue(filePath.startsWith(tempDir));
+        // Sharded two levels below the storage directory
+        assertEquals(tempDir, filePath.getParent().getParent().getParent());
+        assertArrayEquals(fileContent, Files.readAllBytes(filePath));
+    }
+
+    @Test
+    void testStoreStream() throws IOException {
+        // Arrange
+        byte[] fileContent = "Test PDF content".getBytes();
+
+        // Act
+        String fileId = fileStorage.storeStream(new ByteArrayInputStream(fileContent), "test.pdf");
+
+        // Assert
+        assertNotNull(fileId);
+        try (var in = fileStorage.openStream(fileId)) {
+            assertArrayEquals(fileContent, in.readAllBytes());
+        }
+        // Nothing is left behind in the staging directory
+        try (var staged = Files.list(tempDir.resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void testDeduplicatedContentIsSharedUntilLastDelete() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(fileStorage, "deduplicate", true);
+        byte[] fileContent = "Test PDF content".getBytes();
+
+        // Act
+        String firstId = fileStorage.storeBytes(fileContent, "first.pdf");
+        String secondId =
+                fileStorage.storeStream(new ByteArrayInputStream(fileContent), "second.pdf");
+        String otherId = fileStorage.storeBytes("Other content".getBytes(), "other.pdf");
+
+        // Assert
+        assertNotEquals(firstId, secondId);
+        Path firstPath = fileStorage.getStoredFilePath(firstId);
+        assertTrue(Files.isSameFile(firstPath, fileStorage.getStoredFilePath(secondId)));
+        assertFalse(Files.isSameFile(firstPath, fileStorage.getStoredFilePath(otherId)));
+        assertEquals(2, countContentFiles());
+
+        assertTrue(fileStorage.deleteFile(firstId));
+        assertFalse(fileStorage.fileExists(firstId));
+        assertArrayEquals(fileContent, fileStorage.retrieveBytes(secondId));
+
+        assertTrue(fileStorage.deleteFile(secondId));
+        assertEquals(1, countContentFiles());
+        assertTrue(fileStorage.fileExists(otherId));
+    }
+
+    @Test
+    void testDeduplicatedContentIsRestoredAfterRestart() throws IOException {
+        // Arrange
+        ReflectionTestUtils.setField(fileStorage, "deduplicate", true);
+        byte[] fileContent = "Test PDF content".getBytes();
+        String firstId = fileStorage.storeBytes(fileContent, "first.pdf");
+        String secondId = fileStorage.storeBytes(fileContent, "second.pdf");
+        String orphanId = fileStorage.storeBytes("Orphan content".getBytes(), "orphan.pdf");
+        // Deleted behind the service's back, leaving its content unreferenced
+        Files.delete(fileStorage.getStoredFilePath(orphanId));
+
+        // Act
+        FileStorage restarted = new FileStorage(fileOrUploadService);
+        ReflectionTestUtils.setField(restarted, "tempDirPath", tempDir.toString());
+        ReflectionTestUtils.setField(restarted, "deduplicate", true);
+        restarted.restoreDeduplicatedContent();
+
+        // Assert
+        assertEquals(1, countContentFiles());
+        assertTrue(restarted.deleteFile(firstId));
+        assertArrayEquals(fileContent, restarted.retrieveBytes(secondId));
+        assertTrue(restarted.deleteFile(secondId));
+        assertEquals(0, countContentFiles());
+    }
+
+    private long countContentFiles() throws IOException {
+        try (var paths = Files.walk(tempDir.resolve(".content"))) {
+            return paths.filter(Files::isRegularFile).count();
+        }
     }
 
     @Test
     void testRetrieveFile() throws IOException {
         // Arrange
         byte[] fileContent = "Test PDF content".getBytes();
-        String fileId = UUID.randomUUID().toString();
-        Path filePath = tempDir.resolve(fileId);
-        Files.write(filePath, fileContent);
+        String fileId = fileStorage.storeBytes(fileContent, "test.pdf");
+        Path filePath = fileStorage.getStoredFilePath(fileId);
 
         MultipartFile expectedFile = mock(MultipartFile.class);
         when(fileOrUploadService.toMockMultipartFile(eq(fileId), eq(fileContent)))
@@ -100,13 +182,39 @@ class FileStorageTest {
         verify(fileOrUploadService).toMockMultipartFile(eq(fileId), eq(fileContent));
     }
 
+    @Test
+    void testRetrieveFileInPlace() throws IOException {
+        // Arrange
+        byte[] fileContent = "Test PDF content".getBytes();
+        String fileId = fileStorage.storeBytes(fileContent, "test.pdf");
+        Path dest = Files.createFile(tempDir.resolve("transferred.pdf"));
+
+        // Act
+        FileBackedMultipartFile result =
+                fileStorage.retrieveFileInPlace(fileId, "test.pdf", "application/pdf");
+        result.transferTo(dest.toFile());
+
+        // Assert
+        assertEquals(fileStorage.getStoredFilePath(fileId), result.getPath());
+        assertEquals("test.pdf", result.getOriginalFilename());
+        assertEquals(fileContent.length, result.getSize());
+        try (var in = result.getInputStream()) {
+            assertArrayEquals(fileContent, in.readAllBytes());
+        }
+        assertArrayEquals(fileContent, Files.readAllBytes(dest));
+        // The link shares the read-only mode of the stored file, so it can't be changed in place
+        assertFalse(Files.getPosixFilePermissions(dest).contains(PosixFilePermission.OWNER_WRITE));
+        // The stored file stays in place for later use
+        assertTrue(fileStorage.fileExists(fileId));
+        verifyNoInteractions(fileOrUploadService);
+    }
+
     @Test
     void testRetrieveBytes() throws IOException {
         // Arrange
         byte[] fileContent = "Test PDF content".getBytes();
-        String fileId = UUID.randomUUID().toString();
-        Path filePath = tempDir.resolve(fileId);
-        Files.write(filePath, fileContent);
+        String fileId = fileStorage.storeBytes(fileContent, "test.pdf");
+        Path filePath = fileStorage.getStoredFilePath(fileId);
 
         // Act
         byte[] result = fileStorage.retrieveBytes(fileId);
@@ -137,9 +245,8 @@ class FileStorageTest {
     void testDeleteFile() throws IOException {
         // Arrange
         byte[] fileContent = "Test PDF content".getBytes();
-        String fileId = UUID.randomUUID().toString();
-        Path filePath = tempDir.resolve(fileId);
-        Files.write(filePath, fileContent);
+        String fileId = fileStorage.storeBytes(fileContent, "test.pdf");
+        Path filePath = fileStorage.getStoredFilePath(fileId);
 
         // Act
         boolean result = fileStorage.deleteFile(fileId);
@@ -165,9 +272,8 @@ class FileStorageTest {
     void testFileExists() throws IOException {
         // Arrange
         byte[] fileContent = "Test PDF content".getBytes();
-        String fileId = UUID.randomUUID().toString();
-        Path filePath = tempDir.resolve(fileId);
-        Files.write(filePath, fileContent);
+        String fileId = fileStorage.storeBytes(fileContent, "test.pdf");
+        Path filePath = fileStorage.getStoredFilePath(fileId);
 
         // Act
         boolean result = fileStorage.fileExists(fileId);
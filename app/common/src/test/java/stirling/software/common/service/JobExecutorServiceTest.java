@@ -28,6 +28,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -57,6 +58,9 @@ class JobExecutorServiceTest {
     @Mock
     private JobQueue jobQueue;
 
+    @Mock
+    private JobWebhookService jobWebhookService;
+
     @Captor
     private ArgumentCaptor<String> jobIdCaptor;
 
@@ -69,6 +73,8 @@ class JobExecutorServiceTest {
                 request,
                 resourceMonitor,
                 jobQueue,
+                jobWebhookService,
+                new StaticListableBeanFactory().getBeanProvider(ClientConnectionMonitor.class),
                 30000L, // asyncRequestTimeoutMs
                 "30m"   // sessionTimeout
         );
@@ -138,7 +144,7 @@ class JobExecutorServiceTest {
         when(resourceMonitor.shouldQueueJob(80)).thenReturn(true);
 
         // Configure jobQueue to return our future
-        when(jobQueue.queueJob(anyString(), eq(80), any(), anyLong())).thenReturn(future);
+        when(jobQueue.queueJob(anyString(), eq(80), any(), anyLong(), any())).thenReturn(future);
 
         // When
         ResponseEntity<?> response = jobExecutorService.runJobGeneric(
@@ -149,7 +155,7 @@ class JobExecutorServiceTest {
         assertTrue(response.getBody() instanceof JobResponse);
 
         // Verify job was queued
-        verify(jobQueue).queueJob(anyString(), eq(80), any(), eq(5000L));
+        verify(jobQueue).queueJob(anyString(), eq(80), any(), eq(5000L), any());
         verify(taskManager).createTask(anyString());
     }
 
@@ -0,0 +1,176 @@
+package stirling.software.common.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+class JobWebhookServiceTest {
+
+    private TaskManager taskManager;
+    private JobWebhookService jobWebhookService;
+    private HttpServer server;
+    private final BlockingQueue<String[]> callbacks = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        taskManager = new TaskManager(mock(FileStorage.class));
+        jobWebhookService = new JobWebhookService(taskManager);
+        ReflectionTestUtils.setField(jobWebhookService, "enabled", true);
+        // The local stub is internal, so it has to be allowed
+        ReflectionTestUtils.setField(jobWebhookService, "allowedHosts", "example.com, 127.0.0.1");
+
+        // Local stub that records the body and signature of every callback
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(
+                "/callback",
+                exchange -> {
+                    String body =
+                            new String(
+                                    exchange.getRequestBody().readAllBytes(),
+                                    StandardCharsets.UTF_8);
+                    String signature =
+                            exchange.getRequestHeaders()
+                                    .getFirst(JobWebhookService.SIGNATURE_HEADER);
+                    callbacks.add(new String[] {body, signature});
+                    exchange.sendResponseHeaders(204, -1);
+                    exchange.close();
+                });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        jobWebhookService.shutdown();
+        taskManager.shutdown();
+    }
+
+    @Test
+    void testCallbackIsSentWhenJobCompletes() throws Exception {
+        String jobId = UUID.randomUUID().toString();
+        taskManager.createTask(jobId);
+        jobWebhookService.register(jobId, callbackUrl());
+
+        taskManager.addNote(jobId, "Working");
+        assertNull(callbacks.poll(200, TimeUnit.MILLISECONDS));
+
+        taskManager.setResult(jobId, "Done");
+
+        String[] callback = callbacks.poll(10, TimeUnit.SECONDS);
+        assertNotNull(callback);
+        assertTrue(callback[0].contains("\"jobId\":\"" + jobId + "\""));
+        assertTrue(callback[0].contains("\"complete\":true"));
+        assertTrue(callback[0].contains("Working"));
+        assertNull(callback[1]);
+
+        // Only sent once, even if the job changes again
+        taskManager.setComplete(jobId);
+        assertNull(callbacks.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCallbackIsSignedWithSecret() throws Exception {
+        ReflectionTestUtils.setField(jobWebhookService, "secret", "s3cret");
+        String jobId = UUID.randomUUID().toString();
+        taskManager.createTask(jobId);
+        taskManager.setError(jobId, "Failed");
+
+        // Registered after completion, still called back
+        jobWebhookService.register(jobId, callbackUrl());
+
+        String[] callback = callbacks.poll(10, TimeUnit.SECONDS);
+        assertNotNull(callback);
+        assertTrue(callback[0].contains("\"error\":\"Failed\""));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("s3cret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected =
+                HexFormat.of().formatHex(mac.doFinal(callback[0].getBytes(StandardCharsets.UTF_8)));
+        assertEquals("sha256=" + expected, callback[1]);
+    }
+
+    @Test
+    void testParseCallbackUrl() {
+        assertEquals(
+                URI.create("https://example.com/hook"),
+                jobWebhookService.parseCallbackUrl("https://example.com/hook"));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> jobWebhookService.parseCallbackUrl("file:///etc/passwd"));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> jobWebhookService.parseCallbackUrl("not a url"));
+
+        ReflectionTestUtils.setField(jobWebhookService, "enabled", false);
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> jobWebhookService.parseCallbackUrl("https://example.com/hook"));
+    }
+
+    @Test
+    void testInternalHostsAreRejected() {
+        ReflectionTestUtils.setField(jobWebhookService, "allowedHosts", "");
+
+        for (String url :
+                new String[] {
+                    "http://127.0.0.1/hook",
+                    "http://localhost:8080/hook",
+                    "http://10.1.2.3/hook",
+                    "http://192.168.0.1/hook",
+                    "http://100.64.0.1/hook",
+                    "http://100.127.255.254/hook",
+                    "http://169.254.169.254/latest/meta-data",
+                    "http://0.0.0.0/hook",
+                    "http://[::1]/hook",
+                    "http://[fd00::1]/hook"
+                }) {
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> jobWebhookService.parseCallbackUrl(url),
+                    url);
+        }
+    }
+
+    @Test
+    void testPublicNeighboursOfSharedAddressSpaceAreAllowed() {
+        ReflectionTestUtils.setField(jobWebhookService, "allowedHosts", "");
+
+        assertNotNull(jobWebhookService.parseCallbackUrl("http://100.63.255.255/hook"));
+        assertNotNull(jobWebhookService.parseCallbackUrl("http://100.128.0.1/hook"));
+    }
+
+    @Test
+    void testHostIsCheckedAgainWhenCallingBack() throws Exception {
+        String jobId = UUID.randomUUID().toString();
+        taskManager.createTask(jobId);
+        jobWebhookService.register(jobId, callbackUrl());
+
+        // No longer allowed by the time the job completes
+        ReflectionTestUtils.setField(jobWebhookService, "allowedHosts", "");
+        taskManager.setResult(jobId, "Done");
+
+        assertNull(callbacks.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    private URI callbackUrl() {
+        return jobWebhookService.parseCallbackUrl(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/callback");
+    }
+}
@@ -0,0 +1,120 @@
+package stirling.software.common.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import stirling.software.common.service.PdfStructureReader.PdfStructure;
+import stirling.software.common.util.TempFileManager;
+
+class PdfStructureReaderTest {
+
+    private CustomPDFDocumentFactory pdfDocumentFactory;
+    private PdfStructureReader pdfStructureReader;
+
+    @BeforeEach
+    void setUp() {
+        pdfDocumentFactory = mock(CustomPDFDocumentFactory.class);
+        pdfStructureReader =
+                new PdfStructureReader(pdfDocumentFactory, mock(TempFileManager.class));
+    }
+
+    private static byte[] createPdf() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage first = new PDPage(PDRectangle.A4);
+            first.setRotation(90);
+            document.addPage(first);
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            document.addPage(new PDPage(PDRectangle.LETTER));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static MockMultipartFile upload(byte[] content) {
+        return new MockMultipartFile("fileInput", "test.pdf", "application/pdf", content);
+    }
+
+    @Test
+    void readsStructureWithoutFullLoad() throws IOException {
+        try (PdfStructure structure = pdfStructureReader.open(upload(createPdf()))) {
+            assertEquals(3, structure.getPageCount());
+            assertEquals(90, structure.getRotation(0));
+            assertEquals(PDRectangle.LETTER.getWidth(), structure.getMediaBox(2).getWidth());
+            assertFalse(structure.isEncrypted());
+            assertFalse(structure.isFullyLoaded());
+        }
+        verify(pdfDocumentFactory, never()).load(any(MultipartFile.class), eq(true));
+    }
+
+    @Test
+    void damagedFileFallsBackToFullLoad() throws IOException {
+        String pdf = new String(createPdf(), StandardCharsets.ISO_8859_1);
+        int offset = pdf.lastIndexOf("startxref") + "startxref".length();
+        byte[] damaged =
+                (pdf.substring(0, offset) + "\n1\n%%EOF\n").getBytes(StandardCharsets.ISO_8859_1);
+        MockMultipartFile file = upload(damaged);
+        when(pdfDocumentFactory.load(file, true))
+                .thenAnswer(invocation -> Loader.loadPDF(damaged));
+
+        try (PdfStructure structure = pdfStructureReader.open(file)) {
+            assertEquals(3, structure.getPageCount());
+            assertTrue(structure.isFullyLoaded());
+        }
+    }
+
+    @Test
+    void fileWithWrongObjectOffsetsFallsBackToFullLoad() throws IOException {
+        // Shift every object behind the header but keep startxref pointing at the table, so only
+        // the object offsets in it are wrong
+        String pdf = new String(createPdf(), StandardCharsets.ISO_8859_1);
+        String padding = "%" + "x".repeat(31) + "\n";
+        int headerEnd = pdf.indexOf('\n') + 1;
+        int offset = pdf.lastIndexOf("startxref") + "startxref".length();
+        long xrefOffset =
+                Long.parseLong(pdf.substring(offset, pdf.indexOf("%%EOF", offset)).trim());
+        byte[] damaged =
+                (pdf.substring(0, headerEnd)
+                                + padding
+                                + pdf.substring(headerEnd, offset)
+                                + "\n"
+                                + (xrefOffset + padding.length())
+                                + "\n%%EOF\n")
+                        .getBytes(StandardCharsets.ISO_8859_1);
+        MockMultipartFile file = upload(damaged);
+        when(pdfDocumentFactory.load(file, true))
+                .thenAnswer(invocation -> Loader.loadPDF(damaged));
+
+        try (PdfStructure structure = pdfStructureReader.open(file)) {
+            assertEquals(3, structure.getPageCount());
+            assertTrue(structure.isFullyLoaded());
+        }
+    }
+
+    @Test
+    void peekPageCountIgnoresFilesThatAreNotPdfs() throws IOException {
+        assertEquals(3, pdfStructureReader.peekPageCount(upload(createPdf())));
+        assertEquals(-1, pdfStructureReader.peekPageCount(upload("not a pdf".getBytes())));
+        verify(pdfDocumentFactory, never()).load(any(MultipartFile.class), eq(true));
+    }
+}
@@ -3,14 +3,25 @@ package stirling.software.common.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -73,6 +84,57 @@ class TaskManagerTest {
         assertNotNull(result.getCompletedAt());
     }
 
+    @Test
+    void testSetFileResult_ZipIsExtractedEntryByEntry(@TempDir Path tempDir) throws Exception {
+        // Arrange
+        String jobId = UUID.randomUUID().toString();
+        taskManager.createTask(jobId);
+        Path zipPath = tempDir.resolve("result.zip");
+        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipPath))) {
+            zipOut.putNextEntry(new ZipEntry("page-1.pdf"));
+            zipOut.write("first".getBytes());
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("images/"));
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("images/page-2.png"));
+            zipOut.write("second entry".getBytes());
+            zipOut.closeEntry();
+        }
+        when(fileStorage.getStoredFilePath("zip-id")).thenReturn(zipPath);
+
+        Map<String, byte[]> stored = new HashMap<>();
+        when(fileStorage.storeStream(any(InputStream.class), anyString()))
+                .thenAnswer(
+                        invocation -> {
+                            String name = invocation.getArgument(1);
+                            stored.put(name, invocation.<InputStream>getArgument(0).readAllBytes());
+                            return "id-" + name;
+                        });
+        when(fileStorage.getFileSize(anyString()))
+                .thenAnswer(
+                        invocation -> {
+                            String fileId = invocation.getArgument(0);
+                            return (long) stored.get(fileId.substring(3)).length;
+                        });
+
+        // Act
+        taskManager.setFileResult(jobId, "zip-id", "result.zip", "application/zip");
+
+        // Assert
+        JobResult result = taskManager.getJobResult(jobId);
+        assertTrue(result.hasMultipleFiles());
+        var resultFiles = result.getAllResultFiles();
+        assertEquals(2, resultFiles.size());
+        assertEquals("page-1.pdf", resultFiles.get(0).getFileName());
+        assertEquals("application/pdf", resultFiles.get(0).getContentType());
+        assertEquals(5L, resultFiles.get(0).getFileSize());
+        assertEquals("images/page-2.png", resultFiles.get(1).getFileName());
+        assertEquals("image/png", resultFiles.get(1).getContentType());
+        assertArrayEquals("second entry".getBytes(), stored.get("images/page-2.png"));
+        verify(fileStorage, never()).retrieveFile("zip-id");
+        verify(fileStorage).deleteFile("zip-id");
+    }
+
     @Test
     void testSetFileResult() throws Exception {
         // Arrange
@@ -226,12 +288,6 @@ class TaskManagerTest {
         // 2. Create an old completed job with file result
         String oldJobId = "old-job";
         taskManager.createTask(oldJobId);
-        JobResult oldJob = taskManager.getJobResult(oldJobId);
-
-        // Manually set the completion time to be older than the expiry
-        LocalDateTime oldTime = LocalDateTime.now().minusHours(1);
-        ReflectionTestUtils.setField(oldJob, "completedAt", oldTime);
-        ReflectionTestUtils.setField(oldJob, "complete", true);
 
         // Create a ResultFile and set it using the new approach
         ResultFile resultFile = ResultFile.builder()
@@ -240,7 +296,14 @@ class TaskManagerTest {
                 .contentType("application/pdf")
                 .fileSize(1024L)
                 .build();
-        ReflectionTestUtils.setField(oldJob, "resultFiles", java.util.List.of(resultFile));
+        taskManager.setMultipleFileResults(oldJobId, java.util.List.of(resultFile));
+        JobResult oldJob = taskManager.getJobResult(oldJobId);
+
+        // Manually set the completion time to be older than the expiry
+        LocalDateTime oldTime = LocalDateTime.now().minusHours(1);
+        ReflectionTestUtils.setField(oldJob, "completedAt", oldTime);
+        // Completing again keeps the files and indexes the job by its new expiry
+        taskManager.setComplete(oldJobId);
 
         when(fileStorage.deleteFile("file-id")).thenReturn(true);
 
@@ -264,6 +327,13 @@ class TaskManagerTest {
         assertTrue(jobResultsMap.containsKey(recentJobId));
         assertTrue(jobResultsMap.containsKey(activeJobId));
         verify(fileStorage).deleteFile("file-id");
+        assertNull(taskManager.findResultFileByFileId("file-id"));
+
+        JobStats stats = taskManager.getJobStats();
+        assertEquals(2, stats.getTotalJobs());
+        assertEquals(1, stats.getActiveJobs());
+        assertEquals(1, stats.getCompletedJobs());
+        assertEquals(0, stats.getFileResultJobs());
     }
 
     @Test
@@ -306,4 +376,76 @@ class TaskManagerTest {
         // Assert
         assertFalse(result);
     }
+
+    @Test
+    void testListenerIsToldAboutChanges() throws Exception {
+        // Arrange
+        String jobId = UUID.randomUUID().toString();
+        BlockingQueue<JobResult> changes = new LinkedBlockingQueue<>();
+        TaskManager.JobListener listener = changes::add;
+        taskManager.addListener(jobId, listener);
+
+        // Act
+        taskManager.createTask(jobId);
+        taskManager.addNote(jobId, "Halfway");
+        taskManager.setResult(jobId, "Done");
+
+        // Assert
+        JobResult created = changes.poll(5, TimeUnit.SECONDS);
+        JobResult noted = changes.poll(5, TimeUnit.SECONDS);
+        JobResult completed = changes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(created);
+        assertNotNull(noted);
+        assertNotNull(completed);
+        assertTrue(completed.isComplete());
+        assertEquals(List.of("Halfway"), completed.getNotes());
+
+        // A removed listener hears nothing more
+        taskManager.removeListener(jobId, listener);
+        taskManager.addNote(jobId, "After");
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testBlockingListenerDoesNotHoldUpOthers() throws Exception {
+        // Arrange
+        String jobId = UUID.randomUUID().toString();
+        String otherJobId = UUID.randomUUID().toString();
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<JobResult> blocked = new LinkedBlockingQueue<>();
+        BlockingQueue<JobResult> changes = new LinkedBlockingQueue<>();
+        taskManager.addListener(
+                jobId,
+                jobResult -> {
+                    blocked.add(jobResult);
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        taskManager.addListener(jobId, changes::add);
+        taskManager.addListener(otherJobId, changes::add);
+
+        try {
+            // Act
+            taskManager.createTask(jobId);
+            assertNotNull(blocked.poll(5, TimeUnit.SECONDS));
+            taskManager.setResult(jobId, "Done");
+            taskManager.createTask(otherJobId);
+
+            // Assert
+            assertNotNull(changes.poll(5, TimeUnit.SECONDS));
+            assertNotNull(changes.poll(5, TimeUnit.SECONDS));
+            assertNotNull(changes.poll(5, TimeUnit.SECONDS));
+            assertTrue(blocked.isEmpty());
+        } finally {
+            release.countDown();
+        }
+
+        // The blocked listener then hears about the change it missed
+        JobResult completed = blocked.poll(5, TimeUnit.SECONDS);
+        assertNotNull(completed);
+        assertTrue(completed.isComplete());
+    }
 }
@@ -0,0 +1,73 @@
+package stirling.software.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CancellationTokenTest {
+
+    @Test
+    void checksOutsideOfAJobNeverFail() {
+        assertNull(CancellationToken.current());
+        assertDoesNotThrow(CancellationToken::throwIfCancelled);
+    }
+
+    @Test
+    void cancellingFailsChecksOnTheBoundThread() {
+        CancellationToken token = new CancellationToken("job");
+        try (CancellationToken.Scope scope = token.bind()) {
+            assertSame(token, CancellationToken.current());
+            token.cancel("was cancelled by user");
+            assertThrows(CancellationException.class, CancellationToken::throwIfCancelled);
+        }
+        // The scope clears the binding and the interrupt it caused
+        assertNull(CancellationToken.current());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    void cancellingInterruptsBlockingWaits() throws InterruptedException {
+        CancellationToken token = new CancellationToken("job");
+        CountDownLatch bound = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread worker =
+                new Thread(
+                        () -> {
+                            try (CancellationToken.Scope scope = token.bind()) {
+                                bound.countDown();
+                                Thread.sleep(30_000);
+                            } catch (InterruptedException e) {
+                                interrupted.countDown();
+                            }
+                        });
+        worker.start();
+        assertTrue(bound.await(5, TimeUnit.SECONDS));
+
+        token.cancel("timed out");
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        worker.join();
+    }
+
+    @Test
+    void cancellingKillsRegisteredProcesses() throws Exception {
+        assumeTrue(new File("/bin/sleep").exists());
+        CancellationToken token = new CancellationToken("job");
+        Process process = new ProcessBuilder("/bin/sleep", "30").start();
+        token.register(process);
+
+        token.cancel("was cancelled by user");
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+        assertTrue(token.isCancelled());
+    }
+}
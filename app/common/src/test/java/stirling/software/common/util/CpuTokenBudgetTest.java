@@ -0,0 +1,77 @@
+package stirling.software.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CpuTokenBudgetTest {
+
+    @Test
+    void grantsWhatIsFreeUpToTheRequestedMaximum() throws InterruptedException {
+        CpuTokenBudget budget = new CpuTokenBudget(4);
+
+        try (CpuTokenBudget.Grant single = budget.acquire(1, 1);
+                CpuTokenBudget.Grant threaded = budget.acquire(1, 2)) {
+            assertEquals(1, single.getTokens());
+            assertEquals(2, threaded.getTokens());
+            assertEquals(3, budget.getStats().get("grantedTokens"));
+
+            // Less than asked for when that is all that is free
+            try (CpuTokenBudget.Grant rest = budget.acquire(1, 2)) {
+                assertEquals(1, rest.getTokens());
+            }
+        }
+        assertEquals(0, budget.getStats().get("grantedTokens"));
+    }
+
+    @Test
+    void threadedRequestsLeaveCoresForSingleCoreTools() throws InterruptedException {
+        CpuTokenBudget budget = new CpuTokenBudget(8);
+
+        try (CpuTokenBudget.Grant ocr = budget.acquire(1, Integer.MAX_VALUE)) {
+            assertEquals(4, ocr.getTokens());
+            // Single core tools arriving while it runs are admitted without waiting
+            for (int i = 0; i < 4; i++) {
+                assertEquals(1, budget.acquire(1, 1).getTokens());
+            }
+            assertEquals(0L, budget.getStats().get("waitedGrants"));
+        }
+    }
+
+    @Test
+    void requestsLargerThanTheBudgetAreReduced() throws InterruptedException {
+        CpuTokenBudget budget = new CpuTokenBudget(2);
+
+        try (CpuTokenBudget.Grant grant = budget.acquire(8, 8)) {
+            assertEquals(2, grant.getTokens());
+        }
+    }
+
+    @Test
+    void waitsUntilTokensAreReturned() throws Exception {
+        CpuTokenBudget budget = new CpuTokenBudget(1);
+        CpuTokenBudget.Grant first = budget.acquire(1, 1);
+
+        CompletableFuture<Integer> second =
+                CompletableFuture.supplyAsync(
+                        () -> {
+                            try (CpuTokenBudget.Grant grant = budget.acquire(1, 1)) {
+                                return grant.getTokens();
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                        });
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        first.close();
+        // Closing twice must not return the tokens twice
+        first.close();
+        assertEquals(1, second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, budget.getStats().get("grantedTokens"));
+    }
+}
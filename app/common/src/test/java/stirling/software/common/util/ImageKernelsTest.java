@@ -0,0 +1,156 @@
+package stirling.software.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ImageKernelsTest {
+
+    private static BufferedImage randomImage(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy =
+                new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getData());
+        return copy;
+    }
+
+    @Test
+    void invertMatchesPerPixelInversion() {
+        // Large enough to take the parallel path
+        BufferedImage image = randomImage(700, 600, 1);
+        BufferedImage expected = copy(image);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                expected.setRGB(x, y, ~expected.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+
+        ImageKernels.invert(image);
+
+        assertArrayEquals(
+                expected.getRGB(0, 0, 700, 600, null, 0, 700),
+                image.getRGB(0, 0, 700, 600, null, 0, 700));
+    }
+
+    @Test
+    void grayscaleAveragesChannels() {
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x306090);
+        image.setRGB(1, 0, 0xFF0000);
+
+        ImageKernels.toGrayscaleAverage(image);
+
+        assertEquals(0x606060, image.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x555555, image.getRGB(1, 0) & 0xFFFFFF);
+    }
+
+    @Test
+    void lookupTableAppliesBrightnessAndContrast() {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x00FF80);
+
+        ImageKernels.applyLookupTable(image, ImageKernels.createBrightnessContrastTable(1f, 2f));
+
+        // (0 - 128) * 2 + 128 clamps to 0, (255 - 128) * 2 + 128 clamps to 255, 128 is unchanged
+        assertEquals(0x00FF80, image.getRGB(0, 0) & 0xFFFFFF);
+
+        int[] table = ImageKernels.createBrightnessContrastTable(0.5f, 1f);
+        assertEquals(0, table[0]);
+        assertEquals(100, table[200]);
+    }
+
+    @Test
+    void blurOfUniformImageIsUnchanged() {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        ImageKernels.fillLinearGradient(image, 0x7F3F1F, 0x7F3F1F, true);
+
+        BufferedImage blurred = ImageKernels.gaussianBlur(image, 2.5);
+
+        assertNotSame(image, blurred);
+        assertArrayEquals(ImageKernels.getPixels(image), ImageKernels.getPixels(blurred));
+    }
+
+    @Test
+    void blurSpreadsASinglePointSymmetrically() {
+        BufferedImage image = new BufferedImage(21, 21, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(10, 10, 0xFFFFFF);
+
+        BufferedImage blurred = ImageKernels.gaussianBlur(image, 1.5);
+
+        int center = blurred.getRGB(10, 10) & 0xFF;
+        assertEquals(blurred.getRGB(9, 10) & 0xFF, blurred.getRGB(11, 10) & 0xFF);
+        assertEquals(blurred.getRGB(10, 9) & 0xFF, blurred.getRGB(10, 11) & 0xFF);
+        assertEquals(blurred.getRGB(9, 10) & 0xFF, blurred.getRGB(10, 9) & 0xFF);
+        assertTrue(center < 255 && center > (blurred.getRGB(9, 10) & 0xFF));
+        assertSame(image, ImageKernels.gaussianBlur(image, 0));
+    }
+
+    @Test
+    void gradientRampHitsBothEnds() {
+        int[] ramp = ImageKernels.createGradientRamp(0x000000, 0xFF8040, 5);
+
+        assertEquals(0xFF000000, ramp[0]);
+        assertEquals(0xFFFF8040, ramp[4]);
+        assertEquals(0xFF804020, ramp[2]);
+    }
+
+    @Test
+    void countPixelsAtLeastMatchesAcrossImageTypes() {
+        BufferedImage intImage = randomImage(300, 1000, 7);
+        long expected = 0;
+        for (int y = 0; y < intImage.getHeight(); y++) {
+            for (int x = 0; x < intImage.getWidth(); x++) {
+                if ((intImage.getRGB(x, y) & 0xFF) >= 200) {
+                    expected++;
+                }
+            }
+        }
+
+        for (int type :
+                new int[] {
+                    BufferedImage.TYPE_INT_RGB,
+                    BufferedImage.TYPE_3BYTE_BGR,
+                    BufferedImage.TYPE_4BYTE_ABGR,
+                    BufferedImage.TYPE_USHORT_565_RGB
+                }) {
+            BufferedImage converted = new BufferedImage(300, 1000, type);
+            converted.getGraphics().drawImage(intImage, 0, 0, null);
+            long reference = 0;
+            for (int y = 0; y < converted.getHeight(); y++) {
+                for (int x = 0; x < converted.getWidth(); x++) {
+                    if ((converted.getRGB(x, y) & 0xFF) >= 200) {
+                        reference++;
+                    }
+                }
+            }
+            assertEquals(reference, ImageKernels.countPixelsAtLeast(converted, 200));
+        }
+        assertEquals(expected, ImageKernels.countPixelsAtLeast(intImage, 200));
+    }
+
+    @Test
+    void getPixelsRejectsNonIntImages() {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_BYTE_GRAY);
+
+        assertThrows(IllegalArgumentException.class, () -> ImageKernels.getPixels(image));
+        assertEquals(BufferedImage.TYPE_INT_RGB, ImageKernels.toIntRgb(image).getType());
+    }
+}
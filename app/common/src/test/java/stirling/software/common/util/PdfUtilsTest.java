@@ -1,5 +1,6 @@
 package stirling.software.common.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -10,8 +11,10 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.pdfbox.cos.COSName;
@@ -22,6 +25,8 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
 
 import stirling.software.common.model.ApplicationProperties;
 import stirling.software.common.service.CustomPDFDocumentFactory;
@@ -122,4 +127,65 @@ public class PdfUtilsTest {
             assertEquals(1, resultDoc.getNumberOfPages());
         }
     }
+
+    @Test
+    void testImageToPdfEmbedsJpegWithoutReencoding() throws Exception {
+        BufferedImage image = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, 40, 20);
+        g.dispose();
+        ByteArrayOutputStream jpegOut = new ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "jpg", jpegOut);
+        byte[] jpeg = jpegOut.toByteArray();
+
+        PdfMetadataService meta =
+                new PdfMetadataService(new ApplicationProperties(), "label", false, null);
+        CustomPDFDocumentFactory factory = new CustomPDFDocumentFactory(meta);
+        MultipartFile file = new MockMultipartFile("fileInput", "photo.jpg", "image/jpeg", jpeg);
+
+        byte[] result =
+                PdfUtils.imageToPdf(
+                        new MultipartFile[] {file}, "fitDocumentToImage", false, "color", factory);
+        try (PDDocument resultDoc = factory.load(result)) {
+            PDPage page = resultDoc.getPage(0);
+            assertEquals(40, page.getMediaBox().getWidth(), 0.01);
+            assertEquals(20, page.getMediaBox().getHeight(), 0.01);
+
+            PDResources resources = page.getResources();
+            PDImageXObject embedded =
+                    (PDImageXObject)
+                            resources.getXObject(resources.getXObjectNames().iterator().next());
+            assertEquals(List.of(COSName.DCT_DECODE), embedded.getStream().getFilters());
+            try (InputStream raw = embedded.getCOSObject().createRawInputStream()) {
+                assertArrayEquals(jpeg, raw.readAllBytes());
+            }
+        }
+    }
+
+    @Test
+    void testImageToPdfKeepsPageOrderForDecodedImages() throws Exception {
+        PdfMetadataService meta =
+                new PdfMetadataService(new ApplicationProperties(), "label", false, null);
+        CustomPDFDocumentFactory factory = new CustomPDFDocumentFactory(meta);
+
+        MultipartFile[] files = new MultipartFile[12];
+        for (int i = 0; i < files.length; i++) {
+            BufferedImage image = new BufferedImage(10 + i, 10, BufferedImage.TYPE_INT_RGB);
+            ByteArrayOutputStream pngOut = new ByteArrayOutputStream();
+            javax.imageio.ImageIO.write(image, "png", pngOut);
+            files[i] =
+                    new MockMultipartFile(
+                            "fileInput", "image" + i + ".png", "image/png", pngOut.toByteArray());
+        }
+
+        byte[] result =
+                PdfUtils.imageToPdf(files, "fitDocumentToImage", false, "color", factory);
+        try (PDDocument resultDoc = factory.load(result)) {
+            assertEquals(files.length, resultDoc.getNumberOfPages());
+            for (int i = 0; i < files.length; i++) {
+                assertEquals(10 + i, resultDoc.getPage(i).getMediaBox().getWidth(), 0.01);
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package stirling.software.common.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -8,6 +9,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -59,4 +61,29 @@ public class ProcessExecutorTest {
                         || errorMessage.contains("No such file or directory"),
                 "Unexpected error message: " + errorMessage);
     }
+
+    @Test
+    public void testOutputTailKeepsLastLines() {
+        ProcessExecutor.OutputTail tail = new ProcessExecutor.OutputTail();
+        for (int i = 0; i < 1000; i++) {
+            tail.add("line " + i);
+        }
+
+        String output = tail.toString();
+        assertTrue(output.startsWith("[500 earlier lines omitted]\n"), output);
+        assertTrue(output.endsWith("line 999"));
+        assertFalse(output.contains("line 499\n"));
+    }
+
+    @Test
+    public void testStatsRecordRuns() throws IOException, InterruptedException {
+        processExecutor.runCommandWithOutputHandling(List.of("java", "-version"));
+
+        Map<?, ?> stats =
+                (Map<?, ?>)
+                        ProcessExecutor.getStats()
+                                .get(ProcessExecutor.Processes.LIBRE_OFFICE.name());
+        assertTrue((Long) stats.get("runs") >= 1);
+        assertEquals(0, stats.get("running"));
+    }
 }
@@ -0,0 +1,48 @@
+package stirling.software.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import stirling.software.common.util.ScratchMemoryBudget.Lease;
+
+class ScratchMemoryBudgetTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void leasesShareTheBudgetAndSpillOnceItIsUsedUp() {
+        ScratchMemoryBudget budget = new ScratchMemoryBudget(25 * MB);
+
+        Lease first = budget.lease(10 * MB);
+        Lease second = budget.lease(10 * MB);
+        Lease third = budget.lease(10 * MB);
+        Lease fourth = budget.lease(10 * MB);
+
+        assertEquals(10 * MB, first.getBytes());
+        assertEquals(10 * MB, second.getBytes());
+        assertEquals(5 * MB, third.getBytes());
+        assertEquals(0, fourth.getBytes());
+
+        Map<String, Object> stats = budget.getStats();
+        assertEquals(25 * MB, stats.get("leasedBytes"));
+        assertEquals(4, stats.get("activeLeases"));
+        assertEquals(2L, stats.get("shortLeases"));
+    }
+
+    @Test
+    void closedLeasesAreReturnedOnce() {
+        ScratchMemoryBudget budget = new ScratchMemoryBudget(10 * MB);
+
+        Lease lease = budget.lease(8 * MB);
+        lease.close();
+        lease.close();
+
+        assertEquals(10 * MB, budget.lease(10 * MB).getBytes());
+        Map<String, Object> stats = budget.getStats();
+        assertEquals(10 * MB, stats.get("peakLeasedBytes"));
+        assertEquals(1, stats.get("activeLeases"));
+    }
+}
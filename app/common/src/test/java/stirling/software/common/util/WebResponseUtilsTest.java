@@ -1,13 +1,18 @@
 package stirling.software.common.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
+import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -114,4 +119,43 @@ public class WebResponseUtilsTest {
             fail("Exception thrown: " + e.getMessage());
         }
     }
+
+    @Test
+    public void testPdfDocToIncrementalWebResponseAppendsChanges() throws IOException {
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.addPage(new PDPage());
+            document.save(original);
+        }
+        byte[] originalBytes = original.toByteArray();
+
+        PDDocument document = Loader.loadPDF(originalBytes);
+        PDPage page = document.getPage(1);
+        page.setRotation(90);
+        ResponseEntity<byte[]> responseEntity =
+                WebResponseUtils.pdfDocToIncrementalWebResponse(document, "sample.pdf", page);
+
+        byte[] body = responseEntity.getBody();
+        assertNotNull(body);
+        assertTrue(body.length > originalBytes.length);
+        assertArrayEquals(originalBytes, Arrays.copyOf(body, originalBytes.length));
+        try (PDDocument updated = Loader.loadPDF(body)) {
+            assertEquals(0, updated.getPage(0).getRotation());
+            assertEquals(90, updated.getPage(1).getRotation());
+        }
+    }
+
+    @Test
+    public void testPdfDocToIncrementalWebResponseFallsBackToFullSave() throws IOException {
+        PDDocument document = new PDDocument();
+        document.addPage(new PDPage());
+
+        ResponseEntity<byte[]> responseEntity =
+                WebResponseUtils.pdfDocToIncrementalWebResponse(document, "sample.pdf");
+
+        try (PDDocument saved = Loader.loadPDF(responseEntity.getBody())) {
+            assertEquals(1, saved.getNumberOfPages());
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package stirling.software.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+
+class ZipDocumentWriterTest {
+
+    @TempDir Path tempDir;
+
+    private TempFileManager tempFileManager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempFileManager = mock(TempFileManager.class);
+        when(tempFileManager.createTempFile(anyString()))
+                .thenAnswer(
+                        invocation ->
+                                Files.createTempFile(tempDir, "zip", invocation.getArgument(0))
+                                        .toFile());
+        doAnswer(invocation -> Files.deleteIfExists(invocation.<File>getArgument(0).toPath()))
+                .when(tempFileManager)
+                .deleteTempFile(any(File.class));
+    }
+
+    private static List<String[]> readEntries(byte[] zip) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                String content = new String(zipIn.readAllBytes(), StandardCharsets.UTF_8);
+                entries.add(new String[] {entry.getName(), content});
+            }
+        }
+        return entries;
+    }
+
+    private long tempFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void writesEntriesInTheOrderTheyWereAdded() throws IOException {
+        byte[] zip;
+        try (ZipDocumentWriter writer = new ZipDocumentWriter(tempFileManager)) {
+            for (int i = 0; i < 20; i++) {
+                String content = "part " + i;
+                if (i % 3 == 0) {
+                    writer.addEntry("part.txt", out -> out.write(content.getBytes()));
+                } else {
+                    writer.addEntryInParallel("part.txt", out -> out.write(content.getBytes()));
+                }
+            }
+            ResponseEntity<byte[]> response = writer.toWebResponse("parts.zip");
+            zip = response.getBody();
+        }
+
+        List<String[]> entries = readEntries(zip);
+        assertEquals(20, entries.size());
+        assertEquals("part.txt", entries.get(0)[0]);
+        assertEquals("part_2.txt", entries.get(1)[0]);
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals("part " + i, entries.get(i)[1]);
+        }
+        assertEquals(0, tempFileCount());
+    }
+
+    @Test
+    void addDocumentSavesAndClosesTheDocument() throws IOException {
+        PDDocument document = new PDDocument();
+        document.addPage(new PDPage());
+        byte[] zip;
+        try (ZipDocumentWriter writer = new ZipDocumentWriter(tempFileManager)) {
+            writer.addDocument("doc.pdf", document);
+            zip = writer.toWebResponse("docs.zip").getBody();
+        }
+
+        List<String[]> entries = readEntries(zip);
+        assertEquals(1, entries.size());
+        assertTrue(entries.get(0)[1].startsWith("%PDF"));
+        assertThrows(IOException.class, () -> document.save(new File(tempDir.toFile(), "x")));
+    }
+
+    @Test
+    void failedParallelEntryIsRethrownAndTempFilesAreRemoved() throws IOException {
+        try (ZipDocumentWriter writer = new ZipDocumentWriter(tempFileManager)) {
+            writer.addEntryInParallel(
+                    "bad.pdf",
+                    out -> {
+                        throw new IOException("broken part");
+                    });
+            IOException e = assertThrows(IOException.class, writer::finish);
+            assertEquals("broken part", e.getMessage());
+        }
+        assertEquals(0, tempFileCount());
+    }
+}
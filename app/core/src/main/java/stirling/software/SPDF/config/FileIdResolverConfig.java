@@ -0,0 +1,80 @@
+package stirling.software.SPDF.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.annotation.ModelAttributeMethodProcessor;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import stirling.software.common.model.api.PDFFile;
+import stirling.software.common.service.FileOrUploadService;
+
+/**
+ * Lets every tool endpoint take the {@code fileId} of a stored file, such as a committed chunked
+ * upload, in place of an uploaded {@code fileInput}. Request models are bound as usual, and the
+ * stored file is filled in before the controller is called.
+ */
+@Configuration
+public class FileIdResolverConfig {
+
+    // Static, so the post processor is registered without creating this configuration early
+    @Bean
+    public static BeanPostProcessor fileIdResolverPostProcessor(
+            ObjectProvider<FileOrUploadService> fileOrUploadService) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // The model attribute resolvers come before any custom resolver, so they are
+                // wrapped in place rather than a resolver being added
+                if (bean instanceof RequestMappingHandlerAdapter adapter
+                        && adapter.getArgumentResolvers() != null) {
+                    adapter.setArgumentResolvers(
+                            adapter.getArgumentResolvers().stream()
+                                    .map(resolver -> wrap(resolver, fileOrUploadService))
+                                    .toList());
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static HandlerMethodArgumentResolver wrap(
+            HandlerMethodArgumentResolver resolver,
+            ObjectProvider<FileOrUploadService> fileOrUploadService) {
+        return resolver instanceof ModelAttributeMethodProcessor
+                ? new FileIdResolver(resolver, fileOrUploadService)
+                : resolver;
+    }
+
+    private record FileIdResolver(
+            HandlerMethodArgumentResolver delegate,
+            ObjectProvider<FileOrUploadService> fileOrUploadService)
+            implements HandlerMethodArgumentResolver {
+
+        @Override
+        public boolean supportsParameter(MethodParameter parameter) {
+            return delegate.supportsParameter(parameter);
+        }
+
+        @Override
+        public Object resolveArgument(
+                MethodParameter parameter,
+                ModelAndViewContainer mavContainer,
+                NativeWebRequest webRequest,
+                WebDataBinderFactory binderFactory)
+                throws Exception {
+            Object argument =
+                    delegate.resolveArgument(parameter, mavContainer, webRequest, binderFactory);
+            if (argument instanceof PDFFile request) {
+                fileOrUploadService.getObject().resolveFileId(request);
+            }
+            return argument;
+        }
+    }
+}
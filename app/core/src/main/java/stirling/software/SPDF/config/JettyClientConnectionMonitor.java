@@ -0,0 +1,38 @@
+package stirling.software.SPDF.config;
+
+import org.eclipse.jetty.ee10.servlet.ServletContextRequest;
+import org.eclipse.jetty.io.EndPoint;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.common.service.ClientConnectionMonitor;
+
+/**
+ * Checks the connection of a request through Jetty's end point. Jetty marks the end point closed
+ * once it sees the connection fail or reach its idle timeout, which lets synchronous jobs stop
+ * instead of finishing a result nobody will read.
+ */
+@Component
+@Slf4j
+public class JettyClientConnectionMonitor implements ClientConnectionMonitor {
+
+    @Override
+    public boolean isConnected(HttpServletRequest request) {
+        try {
+            ServletContextRequest jettyRequest =
+                    ServletContextRequest.getServletContextRequest(request);
+            if (jettyRequest == null) {
+                return true;
+            }
+            EndPoint endPoint = jettyRequest.getConnectionMetaData().getConnection().getEndPoint();
+            return endPoint.isOpen();
+        } catch (RuntimeException e) {
+            // Not a Jetty request, e.g. in tests; assume the client is waiting
+            log.trace("Could not check client connection: {}", e.getMessage());
+            return true;
+        }
+    }
+}
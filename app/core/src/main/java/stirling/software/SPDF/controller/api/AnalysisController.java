@@ -3,14 +3,6 @@ package stirling.software.SPDF.controller.api;
 import java.io.IOException;
 import java.util.*;
 
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDDocumentInformation;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageTree;
-import org.apache.pdfbox.pdmodel.encryption.PDEncryption;
-import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
-import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.springframework.web.bind.annotation.*;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -18,8 +10,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 
 import lombok.RequiredArgsConstructor;
 
+import stirling.software.SPDF.service.PdfAnalysisCacheService;
+import stirling.software.SPDF.service.PdfAnalysisCacheService.AnalysisSummary;
 import stirling.software.common.model.api.PDFFile;
-import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.service.PdfStructureReader;
+import stirling.software.common.service.PdfStructureReader.PdfStructure;
 
 @RestController
 @RequestMapping("/api/v1/analysis")
@@ -27,15 +22,17 @@ import stirling.software.common.service.CustomPDFDocumentFactory;
 @RequiredArgsConstructor
 public class AnalysisController {
 
-    private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final PdfAnalysisCacheService analysisCacheService;
+    private final PdfStructureReader pdfStructureReader;
 
     @PostMapping(value = "/page-count", consumes = "multipart/form-data")
     @Operation(
             summary = "Get PDF page count",
             description = "Returns total number of pages in PDF. Input:PDF Output:JSON Type:SISO")
     public Map<String, Integer> getPageCount(@ModelAttribute PDFFile file) throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            return Map.of("pageCount", document.getNumberOfPages());
+        // The count is read from the page tree root, no need to analyse the whole document
+        try (PdfStructure structure = pdfStructureReader.open(file.getFileInput())) {
+            return Map.of("pageCount", structure.getPageCount());
         }
     }
 
@@ -44,13 +41,12 @@ public class AnalysisController {
             summary = "Get basic PDF information",
             description = "Returns page count, version, file size. Input:PDF Output:JSON Type:SISO")
     public Map<String, Object> getBasicInfo(@ModelAttribute PDFFile file) throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            Map<String, Object> info = new HashMap<>();
-            info.put("pageCount", document.getNumberOfPages());
-            info.put("pdfVersion", document.getVersion());
-            info.put("fileSize", file.getFileInput().getSize());
-            return info;
-        }
+        AnalysisSummary summary = analysisCacheService.getSummary(file.getFileInput());
+        Map<String, Object> info = new HashMap<>();
+        info.put("pageCount", summary.pageCount());
+        info.put("pdfVersion", summary.pdfVersion());
+        info.put("fileSize", file.getFileInput().getSize());
+        return info;
     }
 
     @PostMapping(value = "/document-properties", consumes = "multipart/form-data")
@@ -59,21 +55,9 @@ public class AnalysisController {
             description = "Returns title, author, subject, etc. Input:PDF Output:JSON Type:SISO")
     public Map<String, String> getDocumentProperties(@ModelAttribute PDFFile file)
             throws IOException {
-        // Load the document in read-only mode to prevent modifications and ensure the integrity of
-        // the original file.
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput(), true)) {
-            PDDocumentInformation info = document.getDocumentInformation();
-            Map<String, String> properties = new HashMap<>();
-            properties.put("title", info.getTitle());
-            properties.put("author", info.getAuthor());
-            properties.put("subject", info.getSubject());
-            properties.put("keywords", info.getKeywords());
-            properties.put("creator", info.getCreator());
-            properties.put("producer", info.getProducer());
-            properties.put("creationDate", info.getCreationDate().toString());
-            properties.put("modificationDate", info.getModificationDate().toString());
-            return properties;
-        }
+        // The summary is collected from a read-only load, so these are the properties of the
+        // original file
+        return analysisCacheService.getSummary(file.getFileInput()).documentProperties();
     }
 
     @PostMapping(value = "/page-dimensions", consumes = "multipart/form-data")
@@ -82,18 +66,7 @@ public class AnalysisController {
             description = "Returns width and height of each page. Input:PDF Output:JSON Type:SISO")
     public List<Map<String, Float>> getPageDimensions(@ModelAttribute PDFFile file)
             throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            List<Map<String, Float>> dimensions = new ArrayList<>();
-            PDPageTree pages = document.getPages();
-
-            for (PDPage page : pages) {
-                Map<String, Float> pageDim = new HashMap<>();
-                pageDim.put("width", page.getBBox().getWidth());
-                pageDim.put("height", page.getBBox().getHeight());
-                dimensions.add(pageDim);
-            }
-            return dimensions;
-        }
+        return analysisCacheService.getSummary(file.getFileInput()).pageDimensions();
     }
 
     @PostMapping(value = "/form-fields", consumes = "multipart/form-data")
@@ -102,21 +75,7 @@ public class AnalysisController {
             description =
                     "Returns count and details of form fields. Input:PDF Output:JSON Type:SISO")
     public Map<String, Object> getFormFields(@ModelAttribute PDFFile file) throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            Map<String, Object> formInfo = new HashMap<>();
-            PDAcroForm form = document.getDocumentCatalog().getAcroForm();
-
-            if (form != null) {
-                formInfo.put("fieldCount", form.getFields().size());
-                formInfo.put("hasXFA", form.hasXFA());
-                formInfo.put("isSignaturesExist", form.isSignaturesExist());
-            } else {
-                formInfo.put("fieldCount", 0);
-                formInfo.put("hasXFA", false);
-                formInfo.put("isSignaturesExist", false);
-            }
-            return formInfo;
-        }
+        return analysisCacheService.getSummary(file.getFileInput()).formInfo();
     }
 
     @PostMapping(value = "/annotation-info", consumes = "multipart/form-data")
@@ -124,23 +83,11 @@ public class AnalysisController {
             summary = "Get annotation information",
             description = "Returns count and types of annotations. Input:PDF Output:JSON Type:SISO")
     public Map<String, Object> getAnnotationInfo(@ModelAttribute PDFFile file) throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            Map<String, Object> annotInfo = new HashMap<>();
-            int totalAnnotations = 0;
-            Map<String, Integer> annotationTypes = new HashMap<>();
-
-            for (PDPage page : document.getPages()) {
-                for (PDAnnotation annot : page.getAnnotations()) {
-                    totalAnnotations++;
-                    String subType = annot.getSubtype();
-                    annotationTypes.merge(subType, 1, Integer::sum);
-                }
-            }
-
-            annotInfo.put("totalCount", totalAnnotations);
-            annotInfo.put("typeBreakdown", annotationTypes);
-            return annotInfo;
-        }
+        AnalysisSummary summary = analysisCacheService.getSummary(file.getFileInput());
+        Map<String, Object> annotInfo = new HashMap<>();
+        annotInfo.put("totalCount", summary.annotationCount());
+        annotInfo.put("typeBreakdown", summary.annotationTypes());
+        return annotInfo;
     }
 
     @PostMapping(value = "/font-info", consumes = "multipart/form-data")
@@ -149,20 +96,11 @@ public class AnalysisController {
             description =
                     "Returns list of fonts used in the document. Input:PDF Output:JSON Type:SISO")
     public Map<String, Object> getFontInfo(@ModelAttribute PDFFile file) throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            Map<String, Object> fontInfo = new HashMap<>();
-            Set<String> fontNames = new HashSet<>();
-
-            for (PDPage page : document.getPages()) {
-                for (COSName font : page.getResources().getFontNames()) {
-                    fontNames.add(font.getName());
-                }
-            }
-
-            fontInfo.put("fontCount", fontNames.size());
-            fontInfo.put("fonts", fontNames);
-            return fontInfo;
-        }
+        AnalysisSummary summary = analysisCacheService.getSummary(file.getFileInput());
+        Map<String, Object> fontInfo = new HashMap<>();
+        fontInfo.put("fontCount", summary.fontNames().size());
+        fontInfo.put("fonts", summary.fontNames());
+        return fontInfo;
     }
 
     @PostMapping(value = "/security-info", consumes = "multipart/form-data")
@@ -171,33 +109,6 @@ public class AnalysisController {
             description =
                     "Returns encryption and permission details. Input:PDF Output:JSON Type:SISO")
     public Map<String, Object> getSecurityInfo(@ModelAttribute PDFFile file) throws IOException {
-        try (PDDocument document = pdfDocumentFactory.load(file.getFileInput())) {
-            Map<String, Object> securityInfo = new HashMap<>();
-            PDEncryption encryption = document.getEncryption();
-
-            if (encryption != null) {
-                securityInfo.put("isEncrypted", true);
-                securityInfo.put("keyLength", encryption.getLength());
-
-                // Get permissions
-                Map<String, Boolean> permissions = new HashMap<>();
-                permissions.put(
-                        "preventPrinting", !document.getCurrentAccessPermission().canPrint());
-                permissions.put(
-                        "preventModify", !document.getCurrentAccessPermission().canModify());
-                permissions.put(
-                        "preventExtractContent",
-                        !document.getCurrentAccessPermission().canExtractContent());
-                permissions.put(
-                        "preventModifyAnnotations",
-                        !document.getCurrentAccessPermission().canModifyAnnotations());
-
-                securityInfo.put("permissions", permissions);
-            } else {
-                securityInfo.put("isEncrypted", false);
-            }
-
-            return securityInfo;
-        }
+        return analysisCacheService.getSummary(file.getFileInput()).securityInfo();
     }
 }
@@ -1,8 +1,7 @@
 package stirling.software.SPDF.controller.api;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -10,6 +9,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -36,7 +38,7 @@ import lombok.extern.slf4j.Slf4j;
 import stirling.software.SPDF.model.api.general.MergePdfsRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.util.ExceptionUtils;
-import stirling.software.common.util.GeneralUtils;
+import stirling.software.common.util.ExecutorFactory;
 import stirling.software.common.util.PdfErrorUtils;
 import stirling.software.common.util.WebResponseUtils;
 
@@ -114,8 +116,10 @@ public class MergeController {
         }
     }
 
-    // Adds a table of contents to the merged document using filenames as chapter titles
-    private void addTableOfContents(PDDocument mergedDocument, MultipartFile[] files) {
+    // Adds a table of contents to the merged document using filenames as chapter titles.
+    // pageCounts holds the number of pages each file contributed, in the same order as files.
+    private void addTableOfContents(
+            PDDocument mergedDocument, MultipartFile[] files, int[] pageCounts) {
         // Create the document outline
         PDDocumentOutline outline = new PDDocumentOutline();
         mergedDocument.getDocumentCatalog().setDocumentOutline(outline);
@@ -123,9 +127,9 @@ public class MergeController {
         int pageIndex = 0; // Current page index in the merged document
 
         // Iterate through the original files
-        for (MultipartFile file : files) {
+        for (int i = 0; i < files.length; i++) {
             // Get the filename without extension to use as bookmark title
-            String filename = file.getOriginalFilename();
+            String filename = files[i].getOriginalFilename();
             String title = filename;
             if (title != null && title.contains(".")) {
                 title = title.substring(0, title.lastIndexOf('.'));
@@ -145,13 +149,82 @@ public class MergeController {
             outline.addLast(item);
 
             // Increment page index for the next file
-            try (PDDocument doc = pdfDocumentFactory.load(file)) {
-                pageIndex += doc.getNumberOfPages();
-            } catch (IOException e) {
-                ExceptionUtils.logException("document loading for TOC generation", e);
-                pageIndex++; // Increment by at least one if we can't determine page count
+            pageIndex += pageCounts[i];
+        }
+    }
+
+    // Flattens all signature fields of the document, effectively removing the signatures
+    private void removeSignatureFields(PDDocument document) throws IOException {
+        PDDocumentCatalog catalog = document.getDocumentCatalog();
+        PDAcroForm acroForm = catalog.getAcroForm();
+        if (acroForm != null) {
+            List<PDField> fieldsToRemove =
+                    acroForm.getFields().stream()
+                            .filter(field -> field instanceof PDSignatureField)
+                            .toList();
+
+            if (!fieldsToRemove.isEmpty()) {
+                acroForm.flatten(fieldsToRemove, false);
+            }
+        }
+    }
+
+    // Loads all files on the shared CPU executor, returning the documents in the order of files
+    private List<PDDocument> loadSourceDocuments(MultipartFile[] files) throws IOException {
+        ExecutorService executor = ExecutorFactory.getCpuBoundExecutor();
+        List<Future<PDDocument>> futures = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            futures.add(executor.submit(() -> pdfDocumentFactory.load(file, true)));
+        }
+
+        List<PDDocument> documents = new ArrayList<>(files.length);
+        try {
+            for (Future<PDDocument> future : futures) {
+                documents.add(future.get());
+            }
+            return documents;
+        } catch (InterruptedException e) {
+            // Closed first, with the flag still set every wait for a loading document would fail
+            closeAll(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading PDFs to merge");
+        } catch (ExecutionException e) {
+            closeAll(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                if (PdfErrorUtils.isCorruptedPdfError(ioException)) {
+                    throw ExceptionUtils.createMultiplePdfCorruptedException(ioException);
+                }
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to load PDF for merging", cause);
+        }
+    }
+
+    // Closes every document that was or still will be loaded by the given futures. Waiting for
+    // the ones still loading keeps them from leaking, so an interrupt only ends the wait once all
+    // are closed
+    private void closeAll(List<Future<PDDocument>> futures) {
+        boolean interrupted = false;
+        for (Future<PDDocument> future : futures) {
+            while (true) {
+                try {
+                    future.get().close();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (Exception e) {
+                    log.debug("Could not close source document after failed merge", e);
+                    break;
+                }
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @PostMapping(consumes = "multipart/form-data", value = "/merge-pdfs")
@@ -163,8 +236,7 @@ public class MergeController {
                             + " provided. Input:PDF Output:PDF Type:MISO")
     public ResponseEntity<byte[]> mergePdfs(@ModelAttribute MergePdfsRequest request)
             throws IOException {
-        List<File> filesToDelete = new ArrayList<>(); // List of temporary files to delete
-        File mergedTempFile = null;
+        List<PDDocument> sourceDocuments = List.of();
         PDDocument mergedDocument = null;
 
         boolean removeCertSign = Boolean.TRUE.equals(request.getRemoveCertSign());
@@ -177,67 +249,42 @@ public class MergeController {
                     getSortComparator(
                             request.getSortType())); // Sort files based on the given sort type
 
-            PDFMergerUtility mergerUtility = new PDFMergerUtility();
-            long totalSize = 0;
-            for (MultipartFile multipartFile : files) {
-                totalSize += multipartFile.getSize();
-                File tempFile =
-                        GeneralUtils.convertMultipartFileToFile(
-                                multipartFile); // Convert MultipartFile to File
-                filesToDelete.add(tempFile); // Add temp file to the list for later deletion
-                mergerUtility.addSource(tempFile); // Add source file to the merger utility
-            }
+            // The sources are loaded in parallel and appended straight into the destination, so
+            // signature removal and the table of contents are applied before the only save
+            sourceDocuments = loadSourceDocuments(files);
+            mergedDocument = pdfDocumentFactory.createNewDocument();
 
-            mergedTempFile = Files.createTempFile("merged-", ".pdf").toFile();
-            mergerUtility.setDestinationFileName(mergedTempFile.getAbsolutePath());
-
-            try {
-                mergerUtility.mergeDocuments(
-                        pdfDocumentFactory.getStreamCacheFunction(
-                                totalSize)); // Merge the documents
-            } catch (IOException e) {
-                ExceptionUtils.logException("PDF merge", e);
-                if (PdfErrorUtils.isCorruptedPdfError(e)) {
-                    throw ExceptionUtils.createMultiplePdfCorruptedException(e);
+            PDFMergerUtility mergerUtility = new PDFMergerUtility();
+            int[] pageCounts = new int[files.length];
+            for (int i = 0; i < files.length; i++) {
+                PDDocument sourceDocument = sourceDocuments.get(i);
+                pageCounts[i] = sourceDocument.getNumberOfPages();
+                try {
+                    mergerUtility.appendDocument(mergedDocument, sourceDocument);
+                } catch (IOException e) {
+                    ExceptionUtils.logException("PDF merge", e);
+                    if (PdfErrorUtils.isCorruptedPdfError(e)) {
+                        throw ExceptionUtils.createMultiplePdfCorruptedException(e);
+                    }
+                    throw e;
                 }
-                throw e;
             }
 
-            // Load the merged PDF document
-            mergedDocument = pdfDocumentFactory.load(mergedTempFile);
-
             // Remove signatures if removeCertSign is true
             if (removeCertSign) {
-                PDDocumentCatalog catalog = mergedDocument.getDocumentCatalog();
-                PDAcroForm acroForm = catalog.getAcroForm();
-                if (acroForm != null) {
-                    List<PDField> fieldsToRemove =
-                            acroForm.getFields().stream()
-                                    .filter(field -> field instanceof PDSignatureField)
-                                    .toList();
-
-                    if (!fieldsToRemove.isEmpty()) {
-                        acroForm.flatten(
-                                fieldsToRemove,
-                                false); // Flatten the fields, effectively removing them
-                    }
-                }
+                removeSignatureFields(mergedDocument);
             }
 
             // Add table of contents if generateToc is true
             if (generateToc && files.length > 0) {
-                addTableOfContents(mergedDocument, files);
+                addTableOfContents(mergedDocument, files, pageCounts);
             }
 
-            // Save the modified document to a new ByteArrayOutputStream
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            mergedDocument.save(baos);
-
             String mergedFileName =
                     files[0].getOriginalFilename().replaceFirst("[.][^.]+$", "")
                             + "_merged_unsigned.pdf";
-            return WebResponseUtils.baosToWebResponse(
-                    baos, mergedFileName); // Return the modified PDF
+            return WebResponseUtils.pdfDocToWebResponse(
+                    mergedDocument, mergedFileName); // Return the merged PDF
 
         } catch (Exception ex) {
             if (ex instanceof IOException && PdfErrorUtils.isCorruptedPdfError((IOException) ex)) {
@@ -250,13 +297,9 @@ public class MergeController {
             if (mergedDocument != null) {
                 mergedDocument.close(); // Close the merged document
             }
-            for (File file : filesToDelete) {
-                if (file != null) {
-                    Files.deleteIfExists(file.toPath()); // Delete temporary files
-                }
-            }
-            if (mergedTempFile != null) {
-                Files.deleteIfExists(mergedTempFile.toPath());
+            // The sources must stay open until the merged document has been saved
+            for (PDDocument sourceDocument : sourceDocuments) {
+                sourceDocument.close();
             }
         }
     }
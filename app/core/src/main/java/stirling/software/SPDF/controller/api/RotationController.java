@@ -21,6 +21,7 @@ import lombok.RequiredArgsConstructor;
 import stirling.software.SPDF.model.api.general.RotatePDFRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.util.ExceptionUtils;
+import stirling.software.common.util.PdfUtils;
 import stirling.software.common.util.WebResponseUtils;
 
 @RestController
@@ -56,9 +57,11 @@ public class RotationController {
 
         for (PDPage page : pages) {
             page.setRotation(page.getRotation() + angle);
+            PdfUtils.markForIncrementalUpdate(page);
         }
 
-        return WebResponseUtils.pdfDocToWebResponse(
+        // Only the page dictionaries change, so they are appended instead of rewriting the file
+        return WebResponseUtils.pdfDocToIncrementalWebResponse(
                 document,
                 Filenames.toSimpleFileName(pdfFile.getOriginalFilename())
                                 .replaceFirst("[.][^.]+$", "")
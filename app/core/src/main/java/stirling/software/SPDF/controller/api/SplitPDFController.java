@@ -1,18 +1,18 @@
 package stirling.software.SPDF.controller.api;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
+import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -29,8 +29,12 @@ import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.SPDF.model.api.PDFWithPageNums;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.CancellationToken;
 import stirling.software.common.util.ExceptionUtils;
-import stirling.software.common.util.WebResponseUtils;
+import stirling.software.common.util.ExecutorFactory;
+import stirling.software.common.util.TempFile;
+import stirling.software.common.util.TempFileManager;
+import stirling.software.common.util.ZipDocumentWriter;
 
 @RestController
 @RequestMapping("/api/v1/general")
@@ -40,6 +44,7 @@ import stirling.software.common.util.WebResponseUtils;
 public class SplitPDFController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
 
     @PostMapping(consumes = "multipart/form-data", value = "/split-pages")
     @Operation(
@@ -52,18 +57,23 @@ public class SplitPDFController {
     public ResponseEntity<byte[]> splitPdf(@ModelAttribute PDFWithPageNums request)
             throws IOException {
 
-        PDDocument document = null;
-        Path zipFile = null;
-        List<ByteArrayOutputStream> splitDocumentsBoas = new ArrayList<>();
+        MultipartFile file = request.getFileInput();
+        String filename =
+                Filenames.toSimpleFileName(file.getOriginalFilename())
+                        .replaceFirst("[.][^.]+$", "");
 
-        try {
-
-            MultipartFile file = request.getFileInput();
-            String pages = request.getPageNumbers();
-            // open the pdf document
+        // The upload is written to disk once; the document and, for a parallel split, the copies
+        // of the workers are all loaded from that file
+        try (TempFile inputFile = new TempFile(tempFileManager, ".pdf")) {
+            file.transferTo(inputFile.getFile());
+            return splitPdf(request, inputFile.getFile(), filename);
+        }
+    }
 
-            document = pdfDocumentFactory.load(file);
-            // PdfMetadata metadata = PdfMetadataService.extractMetadataFromPdf(document);
+    private ResponseEntity<byte[]> splitPdf(PDFWithPageNums request, File pdfFile, String filename)
+            throws IOException {
+        try (PDDocument document = pdfDocumentFactory.loadShared(pdfFile);
+                ZipDocumentWriter zipWriter = new ZipDocumentWriter(tempFileManager)) {
             int totalPages = document.getNumberOfPages();
             List<Integer> pageNumbers = request.getPageNumbersList(document, false);
             if (!pageNumbers.contains(totalPages - 1)) {
@@ -76,89 +86,98 @@ public class SplitPDFController {
                     "Splitting PDF into pages: {}",
                     pageNumbers.stream().map(String::valueOf).collect(Collectors.joining(",")));
 
-            // split the document
-            splitDocumentsBoas = new ArrayList<>();
-            int previousPageNumber = 0;
-            for (int splitPoint : pageNumbers) {
-                try (PDDocument splitDocument =
-                        pdfDocumentFactory.createNewDocumentBasedOnOldDocument(document)) {
-                    for (int i = previousPageNumber; i <= splitPoint; i++) {
-                        PDPage page = document.getPage(i);
-                        splitDocument.addPage(page);
-                        log.debug("Adding page {} to split document", i);
-                    }
+            int workers = Math.min(ExecutorFactory.getCpuParallelism(), pageNumbers.size());
+            if (workers > 1) {
+                writeSplitDocumentsInParallel(pdfFile, pageNumbers, workers, filename, zipWriter);
+            } else {
+                int previousPageNumber = 0;
+                for (int i = 0; i < pageNumbers.size(); i++) {
+                    CancellationToken.throwIfCancelled();
+                    int splitPoint = pageNumbers.get(i);
+                    zipWriter.addDocument(
+                            filename + "_" + (i + 1) + ".pdf",
+                            createSplitDocument(document, previousPageNumber, splitPoint));
                     previousPageNumber = splitPoint + 1;
-
-                    // Transfer metadata to split pdf
-                    // PdfMetadataService.setMetadataToPdf(splitDocument, metadata);
-
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    splitDocument.save(baos);
-
-                    splitDocumentsBoas.add(baos);
-                } catch (Exception e) {
-                    ExceptionUtils.logException("document splitting and saving", e);
-                    throw e;
                 }
             }
 
-            // closing the original document
-            document.close();
-
-            zipFile = Files.createTempFile("split_documents", ".zip");
-
-            String filename =
-                    Filenames.toSimpleFileName(file.getOriginalFilename())
-                            .replaceFirst("[.][^.]+$", "");
-            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFile))) {
-                // loop through the split documents and write them to the zip file
-                for (int i = 0; i < splitDocumentsBoas.size(); i++) {
-                    String fileName = filename + "_" + (i + 1) + ".pdf";
-                    ByteArrayOutputStream baos = splitDocumentsBoas.get(i);
-                    byte[] pdf = baos.toByteArray();
-
-                    // Add PDF file to the zip
-                    ZipEntry pdfEntry = new ZipEntry(fileName);
-                    zipOut.putNextEntry(pdfEntry);
-                    zipOut.write(pdf);
-                    zipOut.closeEntry();
+            log.debug("Successfully created zip file with {} split documents", pageNumbers.size());
+            return zipWriter.toWebResponse(filename + ".zip");
+        } catch (Exception e) {
+            ExceptionUtils.logException("document splitting and saving", e);
+            throw e;
+        }
+    }
 
-                    log.debug("Wrote split document {} to zip file", fileName);
-                }
-            } catch (Exception e) {
-                log.error("Failed writing to zip", e);
-                throw e;
+    /**
+     * Save the split documents on the shared CPU executor. The parts don't overlap, but pages of a
+     * single PDFBox document can't be read from several threads, so each worker builds its parts
+     * from its own copy of the document loaded from pdfFile.
+     */
+    private void writeSplitDocumentsInParallel(
+            File pdfFile,
+            List<Integer> pageNumbers,
+            int workers,
+            String filename,
+            ZipDocumentWriter zipWriter)
+            throws IOException {
+        List<PDDocument> workerDocuments = new ArrayList<>(workers);
+        BlockingQueue<PDDocument> sourceDocuments = new ArrayBlockingQueue<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                PDDocument workerDocument = Loader.loadPDF(pdfFile);
+                workerDocuments.add(workerDocument);
+                sourceDocuments.add(workerDocument);
             }
 
-            log.debug("Successfully created zip file with split documents: {}", zipFile.toString());
-            byte[] data = Files.readAllBytes(zipFile);
-            Files.deleteIfExists(zipFile);
-
-            // return the Resource in the response
-            return WebResponseUtils.bytesToWebResponse(
-                    data, filename + ".zip", MediaType.APPLICATION_OCTET_STREAM);
-
+            int previousPageNumber = 0;
+            for (int i = 0; i < pageNumbers.size(); i++) {
+                CancellationToken.throwIfCancelled();
+                int firstPage = previousPageNumber;
+                int lastPage = pageNumbers.get(i);
+                zipWriter.addEntryInParallel(
+                        filename + "_" + (i + 1) + ".pdf",
+                        out -> saveSplitDocument(sourceDocuments, firstPage, lastPage, out));
+                previousPageNumber = lastPage + 1;
+            }
+            // Parts still reference the worker documents until they are saved
+            zipWriter.finish();
         } finally {
-            try {
-                // Close the main document
-                if (document != null) {
-                    document.close();
-                }
+            for (PDDocument workerDocument : workerDocuments) {
+                workerDocument.close();
+            }
+        }
+    }
 
-                // Close all ByteArrayOutputStreams
-                for (ByteArrayOutputStream baos : splitDocumentsBoas) {
-                    if (baos != null) {
-                        baos.close();
-                    }
-                }
+    private void saveSplitDocument(
+            BlockingQueue<PDDocument> sourceDocuments,
+            int firstPage,
+            int lastPage,
+            OutputStream out)
+            throws IOException {
+        PDDocument sourceDocument;
+        try {
+            sourceDocument = sourceDocuments.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while splitting document");
+        }
+        try (PDDocument splitDocument =
+                createSplitDocument(sourceDocument, firstPage, lastPage)) {
+            splitDocument.save(out);
+        } finally {
+            sourceDocuments.add(sourceDocument);
+        }
+    }
 
-                // Delete temporary zip file
-                if (zipFile != null) {
-                    Files.deleteIfExists(zipFile);
-                }
-            } catch (Exception e) {
-                log.error("Error while cleaning up resources", e);
-            }
+    private PDDocument createSplitDocument(PDDocument document, int firstPage, int lastPage)
+            throws IOException {
+        PDDocument splitDocument = pdfDocumentFactory.createNewDocumentBasedOnOldDocument(document);
+        for (int i = firstPage; i <= lastPage; i++) {
+            PDPage page = document.getPage(i);
+            splitDocument.addPage(page);
+            log.debug("Adding page {} to split document", i);
         }
+        return splitDocument;
     }
 }
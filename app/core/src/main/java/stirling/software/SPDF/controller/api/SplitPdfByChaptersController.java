@@ -1,18 +1,12 @@
 package stirling.software.SPDF.controller.api;
 
-import java.io.ByteArrayOutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -36,7 +30,8 @@ import stirling.software.common.model.PdfMetadata;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.service.PdfMetadataService;
 import stirling.software.common.util.ExceptionUtils;
-import stirling.software.common.util.WebResponseUtils;
+import stirling.software.common.util.TempFileManager;
+import stirling.software.common.util.ZipDocumentWriter;
 
 @RestController
 @RequestMapping("/api/v1/general")
@@ -49,6 +44,8 @@ public class SplitPdfByChaptersController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
 
+    private final TempFileManager tempFileManager;
+
     private static List<Bookmark> extractOutlineItems(
             PDDocument sourceDocument,
             PDOutlineItem current,
@@ -125,7 +122,6 @@ public class SplitPdfByChaptersController {
             throws Exception {
         MultipartFile file = request.getFileInput();
         PDDocument sourceDocument = null;
-        Path zipFile = null;
 
         try {
             boolean includeMetadata = Boolean.TRUE.equals(request.getIncludeMetadata());
@@ -180,30 +176,16 @@ public class SplitPdfByChaptersController {
                         bookmark.getStartPage(),
                         bookmark.getEndPage());
             }
-            List<ByteArrayOutputStream> splitDocumentsBoas =
-                    getSplitDocumentsBoas(sourceDocument, bookmarks, includeMetadata);
-
-            zipFile = createZipFile(bookmarks, splitDocumentsBoas);
-
-            byte[] data = Files.readAllBytes(zipFile);
-            Files.deleteIfExists(zipFile);
-
             String filename =
                     Filenames.toSimpleFileName(file.getOriginalFilename())
                             .replaceFirst("[.][^.]+$", "");
-            sourceDocument.close();
-            return WebResponseUtils.bytesToWebResponse(
-                    data, filename + ".zip", MediaType.APPLICATION_OCTET_STREAM);
+            try (ZipDocumentWriter zipWriter = new ZipDocumentWriter(tempFileManager)) {
+                writeSplitDocuments(sourceDocument, bookmarks, includeMetadata, zipWriter);
+                return zipWriter.toWebResponse(filename + ".zip");
+            }
         } finally {
-            try {
-                if (sourceDocument != null) {
-                    sourceDocument.close();
-                }
-                if (zipFile != null) {
-                    Files.deleteIfExists(zipFile);
-                }
-            } catch (Exception e) {
-                log.error("Error while cleaning up resources", e);
+            if (sourceDocument != null) {
+                sourceDocument.close();
             }
         }
     }
@@ -233,49 +215,25 @@ public class SplitPdfByChaptersController {
         return bookmarks;
     }
 
-    private Path createZipFile(
-            List<Bookmark> bookmarks, List<ByteArrayOutputStream> splitDocumentsBoas)
-            throws Exception {
-        Path zipFile = Files.createTempFile("split_documents", ".zip");
-        String fileNumberFormatter = "%0" + (Integer.toString(bookmarks.size()).length()) + "d ";
-        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFile))) {
-            for (int i = 0; i < splitDocumentsBoas.size(); i++) {
-
-                // split files will be named as "[FILE_NUMBER] [BOOKMARK_TITLE].pdf"
-
-                String fileName =
-                        String.format(fileNumberFormatter, i)
-                                + bookmarks.get(i).getTitle()
-                                + ".pdf";
-                ByteArrayOutputStream baos = splitDocumentsBoas.get(i);
-                byte[] pdf = baos.toByteArray();
-
-                ZipEntry pdfEntry = new ZipEntry(fileName);
-                zipOut.putNextEntry(pdfEntry);
-                zipOut.write(pdf);
-                zipOut.closeEntry();
-
-                log.debug("Wrote split document {} to zip file", fileName);
-            }
-        } catch (Exception e) {
-            log.error("Failed writing to zip", e);
-            throw e;
-        }
-
-        log.info("Successfully created zip file with split documents: {}", zipFile);
-        return zipFile;
-    }
-
-    public List<ByteArrayOutputStream> getSplitDocumentsBoas(
-            PDDocument sourceDocument, List<Bookmark> bookmarks, boolean includeMetadata)
+    /**
+     * Save each chapter straight into the zip as it is split off, named "[FILE_NUMBER]
+     * [BOOKMARK_TITLE].pdf"
+     */
+    private void writeSplitDocuments(
+            PDDocument sourceDocument,
+            List<Bookmark> bookmarks,
+            boolean includeMetadata,
+            ZipDocumentWriter zipWriter)
             throws Exception {
-        List<ByteArrayOutputStream> splitDocumentsBoas = new ArrayList<>();
         PdfMetadata metadata = null;
         if (includeMetadata) {
             metadata = pdfMetadataService.extractMetadataFromPdf(sourceDocument);
         }
-        for (Bookmark bookmark : bookmarks) {
-            try (PDDocument splitDocument = new PDDocument()) {
+        String fileNumberFormatter = "%0" + (Integer.toString(bookmarks.size()).length()) + "d ";
+        for (int index = 0; index < bookmarks.size(); index++) {
+            Bookmark bookmark = bookmarks.get(index);
+            PDDocument splitDocument = new PDDocument();
+            try {
                 boolean isSinglePage = (bookmark.getStartPage() == bookmark.getEndPage());
 
                 for (int i = bookmark.getStartPage();
@@ -285,20 +243,19 @@ public class SplitPdfByChaptersController {
                     splitDocument.addPage(page);
                     log.debug("Adding page {} to split document", i);
                 }
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
                 if (includeMetadata) {
                     pdfMetadataService.setMetadataToPdf(splitDocument, metadata);
                 }
-
-                splitDocument.save(baos);
-
-                splitDocumentsBoas.add(baos);
             } catch (Exception e) {
-                ExceptionUtils.logException("document splitting and saving", e);
+                splitDocument.close();
+                ExceptionUtils.logException("document splitting", e);
                 throw e;
             }
+            zipWriter.addDocument(
+                    String.format(fileNumberFormatter, index) + bookmark.getTitle() + ".pdf",
+                    splitDocument);
         }
-        return splitDocumentsBoas;
+        log.info("Successfully created zip file with {} split documents", bookmarks.size());
     }
 }
 
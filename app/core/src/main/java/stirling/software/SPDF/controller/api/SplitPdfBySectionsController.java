@@ -2,13 +2,10 @@ package stirling.software.SPDF.controller.api;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.multipdf.LayerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -17,7 +14,6 @@ import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.util.Matrix;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -33,7 +29,9 @@ import lombok.RequiredArgsConstructor;
 
 import stirling.software.SPDF.model.api.SplitPdfBySectionsRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.TempFileManager;
 import stirling.software.common.util.WebResponseUtils;
+import stirling.software.common.util.ZipDocumentWriter;
 
 @RestController
 @RequestMapping("/api/v1/general")
@@ -42,6 +40,7 @@ import stirling.software.common.util.WebResponseUtils;
 public class SplitPdfBySectionsController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
 
     @PostMapping(value = "/split-pdf-by-sections", consumes = "multipart/form-data")
     @Operation(
@@ -52,60 +51,56 @@ public class SplitPdfBySectionsController {
                             + " Input:PDF Output:ZIP-PDF Type:SISO")
     public ResponseEntity<byte[]> splitPdf(@ModelAttribute SplitPdfBySectionsRequest request)
             throws Exception {
-        List<ByteArrayOutputStream> splitDocumentsBoas = new ArrayList<>();
-
         MultipartFile file = request.getFileInput();
-        PDDocument sourceDocument = pdfDocumentFactory.load(file);
+        String filename =
+                Filenames.toSimpleFileName(file.getOriginalFilename())
+                        .replaceFirst("[.][^.]+$", "");
 
         // Process the PDF based on split parameters
         int horiz = request.getHorizontalDivisions() + 1;
         int verti = request.getVerticalDivisions() + 1;
         boolean merge = Boolean.TRUE.equals(request.getMerge());
-        List<PDDocument> splitDocuments = splitPdfPages(sourceDocument, verti, horiz);
 
-        String filename =
-                Filenames.toSimpleFileName(file.getOriginalFilename())
-                        .replaceFirst("[.][^.]+$", "");
-        if (merge) {
-            MergeController mergeController = new MergeController(pdfDocumentFactory);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            mergeController.mergeDocuments(splitDocuments).save(baos);
-            return WebResponseUtils.bytesToWebResponse(baos.toByteArray(), filename + "_split.pdf");
-        }
-        for (PDDocument doc : splitDocuments) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            doc.save(baos);
-            doc.close();
-            splitDocumentsBoas.add(baos);
-        }
-
-        sourceDocument.close();
-
-        Path zipFile = Files.createTempFile("split_documents", ".zip");
-        byte[] data;
-
-        try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFile))) {
-            int pageNum = 1;
-            for (int i = 0; i < splitDocumentsBoas.size(); i++) {
-                ByteArrayOutputStream baos = splitDocumentsBoas.get(i);
-                int sectionNum = (i % (horiz * verti)) + 1;
-                String fileName = filename + "_" + pageNum + "_" + sectionNum + ".pdf";
-                byte[] pdf = baos.toByteArray();
-                ZipEntry pdfEntry = new ZipEntry(fileName);
-                zipOut.putNextEntry(pdfEntry);
-                zipOut.write(pdf);
-                zipOut.closeEntry();
-
-                if (sectionNum == horiz * verti) pageNum++;
+        try (PDDocument sourceDocument = pdfDocumentFactory.load(file)) {
+            if (merge) {
+                List<PDDocument> splitDocuments = splitPdfPages(sourceDocument, verti, horiz);
+                try {
+                    MergeController mergeController = new MergeController(pdfDocumentFactory);
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    // The merged pages still belong to the sections, which stay open until saved
+                    try (PDDocument mergedDocument =
+                            mergeController.mergeDocuments(splitDocuments)) {
+                        mergedDocument.save(baos);
+                    }
+                    return WebResponseUtils.bytesToWebResponse(
+                            baos.toByteArray(), filename + "_split.pdf");
+                } finally {
+                    closeAll(splitDocuments);
+                }
             }
 
-            zipOut.finish();
-            data = Files.readAllBytes(zipFile);
-            return WebResponseUtils.bytesToWebResponse(
-                    data, filename + "_split.zip", MediaType.APPLICATION_OCTET_STREAM);
-
-        } finally {
-            Files.deleteIfExists(zipFile);
+            // Sections are written to the zip page by page instead of splitting every page first
+            try (ZipDocumentWriter zipWriter = new ZipDocumentWriter(tempFileManager)) {
+                LayerUtility layerUtility = new LayerUtility(sourceDocument);
+                int pageCount = sourceDocument.getNumberOfPages();
+                for (int pageIndex = 0; pageIndex < pageCount; pageIndex++) {
+                    List<PDDocument> sections =
+                            splitPage(sourceDocument, layerUtility, pageIndex, verti, horiz);
+                    int added = 0;
+                    try {
+                        while (added < sections.size()) {
+                            PDDocument section = sections.get(added++);
+                            zipWriter.addDocument(
+                                    filename + "_" + (pageIndex + 1) + "_" + added + ".pdf",
+                                    section);
+                        }
+                    } finally {
+                        // addDocument closes every section it was given, even when it fails
+                        closeAll(sections.subList(added, sections.size()));
+                    }
+                }
+                return zipWriter.toWebResponse(filename + "_split.zip");
+            }
         }
     }
 
@@ -113,25 +108,50 @@ public class SplitPdfBySectionsController {
             PDDocument document, int horizontalDivisions, int verticalDivisions)
             throws IOException {
         List<PDDocument> splitDocuments = new ArrayList<>();
+        LayerUtility layerUtility = new LayerUtility(document);
+        try {
+            for (int pageIndex = 0; pageIndex < document.getNumberOfPages(); pageIndex++) {
+                splitDocuments.addAll(
+                        splitPage(
+                                document,
+                                layerUtility,
+                                pageIndex,
+                                horizontalDivisions,
+                                verticalDivisions));
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(splitDocuments);
+            throw e;
+        }
+        return splitDocuments;
+    }
 
-        for (PDPage originalPage : document.getPages()) {
-            PDRectangle originalMediaBox = originalPage.getMediaBox();
-            float width = originalMediaBox.getWidth();
-            float height = originalMediaBox.getHeight();
-            float subPageWidth = width / horizontalDivisions;
-            float subPageHeight = height / verticalDivisions;
-
-            LayerUtility layerUtility = new LayerUtility(document);
-
+    /** Split a single page into one document per section, in row order */
+    private List<PDDocument> splitPage(
+            PDDocument document,
+            LayerUtility layerUtility,
+            int pageIndex,
+            int horizontalDivisions,
+            int verticalDivisions)
+            throws IOException {
+        List<PDDocument> splitDocuments = new ArrayList<>();
+        PDPage originalPage = document.getPage(pageIndex);
+        PDRectangle originalMediaBox = originalPage.getMediaBox();
+        float width = originalMediaBox.getWidth();
+        float height = originalMediaBox.getHeight();
+        float subPageWidth = width / horizontalDivisions;
+        float subPageHeight = height / verticalDivisions;
+
+        // Sections already created are closed if a later one fails
+        try {
             for (int i = 0; i < horizontalDivisions; i++) {
                 for (int j = 0; j < verticalDivisions; j++) {
                     PDDocument subDoc = new PDDocument();
+                    splitDocuments.add(subDoc);
                     PDPage subPage = new PDPage(new PDRectangle(subPageWidth, subPageHeight));
                     subDoc.addPage(subPage);
 
-                    PDFormXObject form =
-                            layerUtility.importPageAsForm(
-                                    document, document.getPages().indexOf(originalPage));
+                    PDFormXObject form = layerUtility.importPageAsForm(document, pageIndex);
 
                     try (PDPageContentStream contentStream =
                             new PDPageContentStream(
@@ -151,12 +171,19 @@ public class SplitPdfBySectionsController {
                         contentStream.drawForm(form);
                         contentStream.restoreGraphicsState();
                     }
-
-                    splitDocuments.add(subDoc);
                 }
             }
+        } catch (IOException | RuntimeException e) {
+            closeAll(splitDocuments);
+            throw e;
         }
 
         return splitDocuments;
     }
+
+    private static void closeAll(List<PDDocument> documents) {
+        for (PDDocument document : documents) {
+            IOUtils.closeQuietly(document);
+        }
+    }
 }
@@ -2,14 +2,9 @@ package stirling.software.SPDF.controller.api;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -28,7 +23,8 @@ import stirling.software.SPDF.model.api.general.SplitPdfBySizeOrCountRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.util.ExceptionUtils;
 import stirling.software.common.util.GeneralUtils;
-import stirling.software.common.util.WebResponseUtils;
+import stirling.software.common.util.TempFileManager;
+import stirling.software.common.util.ZipDocumentWriter;
 
 @RestController
 @RequestMapping("/api/v1/general")
@@ -38,6 +34,7 @@ import stirling.software.common.util.WebResponseUtils;
 public class SplitPdfBySizeController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
 
     @PostMapping(value = "/split-by-size-or-count", consumes = "multipart/form-data")
     @Operation(
@@ -54,93 +51,63 @@ public class SplitPdfBySizeController {
         log.debug("Starting PDF split process with request: {}", request);
         MultipartFile file = request.getFileInput();
 
-        Path zipFile = Files.createTempFile("split_documents", ".zip");
-        log.debug("Created temporary zip file: {}", zipFile);
-
         String filename =
                 Filenames.toSimpleFileName(file.getOriginalFilename())
                         .replaceFirst("[.][^.]+$", "");
         log.debug("Base filename for output: {}", filename);
 
-        byte[] data = null;
-        try {
-            log.debug("Reading input file bytes");
-            byte[] pdfBytes = file.getBytes();
-            log.debug("Successfully read {} bytes from input file", pdfBytes.length);
-
-            log.debug("Creating ZIP output stream");
-            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFile))) {
-                log.debug("Loading PDF document");
-                try (PDDocument sourceDocument = pdfDocumentFactory.load(pdfBytes)) {
-                    log.debug(
-                            "Successfully loaded PDF with {} pages",
-                            sourceDocument.getNumberOfPages());
-
-                    int type = request.getSplitType();
-                    String value = request.getSplitValue();
-                    log.debug("Split type: {}, Split value: {}", type, value);
-
-                    if (type == 0) {
-                        log.debug("Processing split by size");
-                        long maxBytes = GeneralUtils.convertSizeToBytes(value);
-                        log.debug("Max bytes per document: {}", maxBytes);
-                        handleSplitBySize(sourceDocument, maxBytes, zipOut, filename);
-                    } else if (type == 1) {
-                        log.debug("Processing split by page count");
-                        int pageCount = Integer.parseInt(value);
-                        log.debug("Pages per document: {}", pageCount);
-                        handleSplitByPageCount(sourceDocument, pageCount, zipOut, filename);
-                    } else if (type == 2) {
-                        log.debug("Processing split by document count");
-                        int documentCount = Integer.parseInt(value);
-                        log.debug("Total number of documents: {}", documentCount);
-                        handleSplitByDocCount(sourceDocument, documentCount, zipOut, filename);
-                    } else {
-                        log.error("Invalid split type: {}", type);
-                        throw ExceptionUtils.createIllegalArgumentException(
-                                "error.invalidArgument",
-                                "Invalid argument: {0}",
-                                "split type: " + type);
-                    }
-
-                    log.debug("PDF splitting completed successfully");
-                } catch (Exception e) {
-                    ExceptionUtils.logException("PDF document loading or processing", e);
-                    throw e;
+        try (ZipDocumentWriter zipWriter = new ZipDocumentWriter(tempFileManager)) {
+            log.debug("Loading PDF document");
+            try (PDDocument sourceDocument = pdfDocumentFactory.load(file)) {
+                log.debug(
+                        "Successfully loaded PDF with {} pages", sourceDocument.getNumberOfPages());
+
+                int type = request.getSplitType();
+                String value = request.getSplitValue();
+                log.debug("Split type: {}, Split value: {}", type, value);
+
+                if (type == 0) {
+                    log.debug("Processing split by size");
+                    long maxBytes = GeneralUtils.convertSizeToBytes(value);
+                    log.debug("Max bytes per document: {}", maxBytes);
+                    handleSplitBySize(sourceDocument, maxBytes, zipWriter, filename);
+                } else if (type == 1) {
+                    log.debug("Processing split by page count");
+                    int pageCount = Integer.parseInt(value);
+                    log.debug("Pages per document: {}", pageCount);
+                    handleSplitByPageCount(sourceDocument, pageCount, zipWriter, filename);
+                } else if (type == 2) {
+                    log.debug("Processing split by document count");
+                    int documentCount = Integer.parseInt(value);
+                    log.debug("Total number of documents: {}", documentCount);
+                    handleSplitByDocCount(sourceDocument, documentCount, zipWriter, filename);
+                } else {
+                    log.error("Invalid split type: {}", type);
+                    throw ExceptionUtils.createIllegalArgumentException(
+                            "error.invalidArgument",
+                            "Invalid argument: {0}",
+                            "split type: " + type);
                 }
-            } catch (IOException e) {
-                log.error("Error creating or writing to ZIP file", e);
+
+                log.debug("PDF splitting completed successfully");
+            } catch (Exception e) {
+                ExceptionUtils.logException("PDF document loading or processing", e);
                 throw e;
             }
 
+            log.debug("Returning zip of split documents");
+            return zipWriter.toWebResponse(filename + ".zip");
         } catch (Exception e) {
             ExceptionUtils.logException("PDF splitting process", e);
             throw e; // Re-throw to ensure proper error response
-        } finally {
-            try {
-                log.debug("Reading ZIP file data");
-                data = Files.readAllBytes(zipFile);
-                log.debug("Successfully read {} bytes from ZIP file", data.length);
-            } catch (IOException e) {
-                log.error("Error reading ZIP file data", e);
-            }
-
-            try {
-                log.debug("Deleting temporary ZIP file");
-                boolean deleted = Files.deleteIfExists(zipFile);
-                log.debug("Temporary ZIP file deleted: {}", deleted);
-            } catch (IOException e) {
-                log.error("Error deleting temporary ZIP file", e);
-            }
         }
-
-        log.debug("Returning response with {} bytes of data", data != null ? data.length : 0);
-        return WebResponseUtils.bytesToWebResponse(
-                data, filename + ".zip", MediaType.APPLICATION_OCTET_STREAM);
     }
 
     private void handleSplitBySize(
-            PDDocument sourceDocument, long maxBytes, ZipOutputStream zipOut, String baseFilename)
+            PDDocument sourceDocument,
+            long maxBytes,
+            ZipDocumentWriter zipWriter,
+            String baseFilename)
             throws IOException {
         log.debug("Starting handleSplitBySize with maxBytes={}", maxBytes);
 
@@ -187,7 +154,7 @@ public class SplitPdfBySizeController {
                             "Saving document with {} pages as part {}",
                             currentDoc.getNumberOfPages(),
                             fileIndex);
-                    saveDocumentToZip(currentDoc, zipOut, baseFilename, fileIndex++);
+                    saveDocumentToZip(currentDoc, zipWriter, baseFilename, fileIndex++);
                     currentDoc = new PDDocument();
                     pageAdded = 0;
                 } else if (pageIndex < totalPages - 1) {
@@ -261,14 +228,17 @@ public class SplitPdfBySizeController {
                     "Saving final document with {} pages as part {}",
                     currentDoc.getNumberOfPages(),
                     fileIndex);
-            saveDocumentToZip(currentDoc, zipOut, baseFilename, fileIndex++);
+            saveDocumentToZip(currentDoc, zipWriter, baseFilename, fileIndex++);
         }
 
         log.debug("Completed handleSplitBySize with {} document parts created", fileIndex - 1);
     }
 
     private void handleSplitByPageCount(
-            PDDocument sourceDocument, int pageCount, ZipOutputStream zipOut, String baseFilename)
+            PDDocument sourceDocument,
+            int pageCount,
+            ZipDocumentWriter zipWriter,
+            String baseFilename)
             throws IOException {
         log.debug("Starting handleSplitByPageCount with pageCount={}", pageCount);
         int currentPageCount = 0;
@@ -310,7 +280,7 @@ public class SplitPdfBySizeController {
                             pageCount,
                             fileIndex);
                     try {
-                        saveDocumentToZip(currentDoc, zipOut, baseFilename, fileIndex++);
+                        saveDocumentToZip(currentDoc, zipWriter, baseFilename, fileIndex++);
                         log.debug("Successfully saved document part {}", fileIndex - 1);
                     } catch (Exception e) {
                         log.error("Error saving document part {}", fileIndex - 1, e);
@@ -343,7 +313,7 @@ public class SplitPdfBySizeController {
                         currentDoc.getPages().getCount(),
                         fileIndex);
                 try {
-                    saveDocumentToZip(currentDoc, zipOut, baseFilename, fileIndex++);
+                    saveDocumentToZip(currentDoc, zipWriter, baseFilename, fileIndex++);
                     log.debug("Successfully saved final document part {}", fileIndex - 1);
                 } catch (Exception e) {
                     log.error("Error saving final document part {}", fileIndex - 1, e);
@@ -371,7 +341,7 @@ public class SplitPdfBySizeController {
     private void handleSplitByDocCount(
             PDDocument sourceDocument,
             int documentCount,
-            ZipOutputStream zipOut,
+            ZipDocumentWriter zipWriter,
             String baseFilename)
             throws IOException {
         log.debug("Starting handleSplitByDocCount with documentCount={}", documentCount);
@@ -417,7 +387,7 @@ public class SplitPdfBySizeController {
 
             try {
                 log.debug("Saving document {} with {} pages", i + 1, pagesToAdd);
-                saveDocumentToZip(currentDoc, zipOut, baseFilename, fileIndex++);
+                saveDocumentToZip(currentDoc, zipWriter, baseFilename, fileIndex++);
                 log.debug("Successfully saved document {}", i + 1);
             } catch (Exception e) {
                 log.error("Error saving document {}", i + 1, e);
@@ -429,42 +399,12 @@ public class SplitPdfBySizeController {
     }
 
     private void saveDocumentToZip(
-            PDDocument document, ZipOutputStream zipOut, String baseFilename, int index)
+            PDDocument document, ZipDocumentWriter zipWriter, String baseFilename, int index)
             throws IOException {
-        log.debug("Starting saveDocumentToZip for document part {}", index);
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-
-        try {
-            log.debug("Saving document part {} to byte array", index);
-            document.save(outStream);
-            log.debug("Successfully saved document part {} ({} bytes)", index, outStream.size());
-        } catch (Exception e) {
-            log.error("Error saving document part {} to byte array", index, e);
-            throw ExceptionUtils.createFileProcessingException("split", e);
-        }
-
-        try {
-            log.debug("Closing document part {}", index);
-            document.close();
-            log.debug("Successfully closed document part {}", index);
-        } catch (Exception e) {
-            log.error("Error closing document part {}", index, e);
-            // Continue despite close error
-        }
-
+        String entryName = baseFilename + "_" + index + ".pdf";
+        log.debug("Saving document part {} as ZIP entry {}", index, entryName);
         try {
-            // Create a new zip entry
-            String entryName = baseFilename + "_" + index + ".pdf";
-            log.debug("Creating ZIP entry: {}", entryName);
-            ZipEntry zipEntry = new ZipEntry(entryName);
-            zipOut.putNextEntry(zipEntry);
-
-            byte[] bytes = outStream.toByteArray();
-            log.debug("Writing {} bytes to ZIP entry", bytes.length);
-            zipOut.write(bytes);
-
-            log.debug("Closing ZIP entry");
-            zipOut.closeEntry();
+            zipWriter.addDocument(entryName, document);
             log.debug("Successfully added document part {} to ZIP", index);
         } catch (Exception e) {
             log.error("Error adding document part {} to ZIP", index, e);
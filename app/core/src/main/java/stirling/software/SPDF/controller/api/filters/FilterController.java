@@ -3,7 +3,6 @@ package stirling.software.SPDF.controller.api.filters;
 import java.io.IOException;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
@@ -25,6 +24,8 @@ import stirling.software.SPDF.model.api.filter.FileSizeRequest;
 import stirling.software.SPDF.model.api.filter.PageRotationRequest;
 import stirling.software.SPDF.model.api.filter.PageSizeRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.service.PdfStructureReader;
+import stirling.software.common.service.PdfStructureReader.PdfStructure;
 import stirling.software.common.util.ExceptionUtils;
 import stirling.software.common.util.PdfUtils;
 import stirling.software.common.util.WebResponseUtils;
@@ -36,6 +37,7 @@ import stirling.software.common.util.WebResponseUtils;
 public class FilterController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final PdfStructureReader pdfStructureReader;
 
     @PostMapping(consumes = "multipart/form-data", value = "/filter-contains-text")
     @Operation(
@@ -80,9 +82,11 @@ public class FilterController {
         MultipartFile inputFile = request.getFileInput();
         int pageCount = request.getPageCount();
         String comparator = request.getComparator();
-        // Load the PDF
-        PDDocument document = pdfDocumentFactory.load(inputFile);
-        int actualPageCount = document.getNumberOfPages();
+        // Only the root of the page tree is needed for the count
+        int actualPageCount;
+        try (PdfStructure structure = pdfStructureReader.open(inputFile)) {
+            actualPageCount = structure.getPageCount();
+        }
 
         boolean valid = false;
         // Perform the comparison
@@ -114,11 +118,10 @@ public class FilterController {
         String standardPageSize = request.getStandardPageSize();
         String comparator = request.getComparator();
 
-        // Load the PDF
-        PDDocument document = pdfDocumentFactory.load(inputFile);
-
-        PDPage firstPage = document.getPage(0);
-        PDRectangle actualPageSize = firstPage.getMediaBox();
+        PDRectangle actualPageSize;
+        try (PdfStructure structure = pdfStructureReader.open(inputFile)) {
+            actualPageSize = structure.getMediaBox(0);
+        }
 
         // Calculate the area of the actual page size
         float actualArea = actualPageSize.getWidth() * actualPageSize.getHeight();
@@ -190,12 +193,11 @@ public class FilterController {
         int rotation = request.getRotation();
         String comparator = request.getComparator();
 
-        // Load the PDF
-        PDDocument document = pdfDocumentFactory.load(inputFile);
-
         // Get the rotation of the first page
-        PDPage firstPage = document.getPage(0);
-        int actualRotation = firstPage.getRotation();
+        int actualRotation;
+        try (PdfStructure structure = pdfStructureReader.open(inputFile)) {
+            actualRotation = structure.getRotation(0);
+        }
         boolean valid = false;
         // Perform the comparison
         switch (comparator) {
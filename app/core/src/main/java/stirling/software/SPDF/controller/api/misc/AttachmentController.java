@@ -48,7 +48,8 @@ public class AttachmentController {
                 pdfAttachmentService.addAttachment(
                         pdfDocumentFactory.load(fileInput, false), attachments);
 
-        return WebResponseUtils.pdfDocToWebResponse(
+        // The service marks the objects it changes, so only those and the attachments are appended
+        return WebResponseUtils.pdfDocToIncrementalWebResponse(
                 document,
                 Filenames.toSimpleFileName(fileInput.getOriginalFilename())
                                 .replaceFirst("[.][^.]+$", "")
@@ -3,20 +3,22 @@ package stirling.software.SPDF.controller.api.misc;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -26,6 +28,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.google.zxing.*;
 import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.detector.Detector;
 
 import io.github.pixee.security.Filenames;
 import io.swagger.v3.oas.annotations.Operation;
@@ -36,7 +39,10 @@ import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.SPDF.model.api.misc.AutoSplitPdfRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
-import stirling.software.common.util.WebResponseUtils;
+import stirling.software.common.util.ExecutorFactory;
+import stirling.software.common.util.TempFile;
+import stirling.software.common.util.TempFileManager;
+import stirling.software.common.util.ZipDocumentWriter;
 
 @RestController
 @RequestMapping("/api/v1/misc")
@@ -52,9 +58,45 @@ public class AutoSplitPdfController {
                             "https://github.com/Frooodle/Stirling-PDF",
                             "https://stirlingpdf.com"));
 
+    // Pages are first rendered at a low resolution and only searched for QR finder patterns,
+    // pages where they are found are rendered again at the decode resolution and decoded
+    private static final int DETECTION_DPI = 72;
+    private static final int DECODE_DPI = 150;
+
+    private static final Map<DecodeHintType, Object> FINDER_HINTS =
+            Map.of(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
 
     private static String decodeQRCode(BufferedImage bufferedImage) {
+        BinaryBitmap bitmap =
+                new BinaryBitmap(new HybridBinarizer(toLuminanceSource(bufferedImage)));
+
+        try {
+            Result result = new MultiFormatReader().decode(bitmap);
+            return result.getText();
+        } catch (NotFoundException e) {
+            return null; // there is no QR code in the image
+        }
+    }
+
+    private static boolean hasQRFinderPatterns(BufferedImage bufferedImage) {
+        BinaryBitmap bitmap =
+                new BinaryBitmap(new HybridBinarizer(toLuminanceSource(bufferedImage)));
+
+        try {
+            new Detector(bitmap.getBlackMatrix()).detect(FINDER_HINTS);
+            return true;
+        } catch (FormatException e) {
+            // Finder patterns were found but the symbol is too coarse to sample at this resolution
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    private static LuminanceSource toLuminanceSource(BufferedImage bufferedImage) {
         LuminanceSource source;
 
         if (bufferedImage.getRaster().getDataBuffer() instanceof DataBufferByte dataBufferByte) {
@@ -91,14 +133,81 @@ public class AutoSplitPdfController {
                     "BufferedImage must have 8-bit gray scale, 24-bit RGB, 32-bit ARGB (packed"
                             + " int), byte gray, or 3-byte/4-byte RGB image data");
         }
+        return source;
+    }
+
+    /**
+     * Find the QR code on a page. A cheap low resolution render is searched for finder patterns
+     * first, the page is only rendered at full decode resolution when they are present.
+     *
+     * @return The QR code contents, or null if the page has none
+     */
+    private static String detectQRCode(PDFRenderer pdfRenderer, int page) throws IOException {
+        BufferedImage preview =
+                pdfRenderer.renderImageWithDPI(page, DETECTION_DPI, ImageType.GRAY);
+        if (!hasQRFinderPatterns(preview)) {
+            return null;
+        }
+        log.debug("QR finder patterns found on page {}, decoding at {} DPI", page + 1, DECODE_DPI);
+        return decodeQRCode(pdfRenderer.renderImageWithDPI(page, DECODE_DPI, ImageType.GRAY));
+    }
 
-        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+    /**
+     * Scan all pages for QR codes in parallel. Every worker opens its own read-only copy of the
+     * document, as PDFBox documents can't be rendered from several threads, and renders its pages
+     * one at a time so at most one render per worker is in flight.
+     */
+    private static String[] detectQRCodes(Path pdfPath, int pageCount) throws IOException {
+        String[] qrContents = new String[pageCount];
+        int workers = Math.max(1, Math.min(ExecutorFactory.getCpuParallelism(), pageCount));
+        ExecutorService executor = ExecutorFactory.getCpuBoundExecutor();
+
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            int firstPage = worker;
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                scanPages(pdfPath, firstPage, workers, qrContents);
+                                return null;
+                            }));
+        }
 
         try {
-            Result result = new MultiFormatReader().decode(bitmap);
-            return result.getText();
-        } catch (NotFoundException e) {
-            return null; // there is no QR code in the image
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning pages for QR codes");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to scan pages for QR codes", cause);
+        }
+        return qrContents;
+    }
+
+    private static void scanPages(Path pdfPath, int firstPage, int step, String[] qrContents)
+            throws IOException {
+        // Opened directly rather than through the document factory, which takes ownership of
+        // (and deletes) the file it loads from
+        try (PDDocument document = Loader.loadPDF(pdfPath.toFile())) {
+            PDFRenderer pdfRenderer = new PDFRenderer(document);
+            pdfRenderer.setSubsamplingAllowed(true);
+            for (int page = firstPage; page < qrContents.length; page += step) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("QR code scan cancelled");
+                }
+                qrContents[page] = detectQRCode(pdfRenderer, page);
+            }
         }
     }
 
@@ -115,19 +224,19 @@ public class AutoSplitPdfController {
         MultipartFile file = request.getFileInput();
         boolean duplexMode = Boolean.TRUE.equals(request.getDuplexMode());
 
+        TempFile inputFile = null;
         PDDocument document = null;
         List<PDDocument> splitDocuments = new ArrayList<>();
-        Path zipFile = null;
-        byte[] data = null;
 
         try {
-            document = pdfDocumentFactory.load(file.getInputStream());
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
-            pdfRenderer.setSubsamplingAllowed(true);
+            inputFile = new TempFile(tempFileManager, ".pdf");
+            file.transferTo(inputFile.getFile());
+            // The QR code scan reads the same file, so it must stay after loading
+            document = pdfDocumentFactory.loadShared(inputFile.getFile());
+            String[] qrContents = detectQRCodes(inputFile.getPath(), document.getNumberOfPages());
 
             for (int page = 0; page < document.getNumberOfPages(); ++page) {
-                BufferedImage bim = pdfRenderer.renderImageWithDPI(page, 150);
-                String result = decodeQRCode(bim);
+                String result = qrContents[page];
 
                 boolean isValidQrCode = VALID_QR_CONTENTS.contains(result);
                 log.debug("detected qr code {}, code is vale={}", result, isValidQrCode);
@@ -152,31 +261,16 @@ public class AutoSplitPdfController {
             // Remove split documents that have no pages
             splitDocuments.removeIf(pdDocument -> pdDocument.getNumberOfPages() == 0);
 
-            zipFile = Files.createTempFile("split_documents", ".zip");
             String filename =
                     Filenames.toSimpleFileName(file.getOriginalFilename())
                             .replaceFirst("[.][^.]+$", "");
 
-            try (ZipOutputStream zipOut = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+            try (ZipDocumentWriter zipWriter = new ZipDocumentWriter(tempFileManager)) {
                 for (int i = 0; i < splitDocuments.size(); i++) {
-                    String fileName = filename + "_" + (i + 1) + ".pdf";
-                    PDDocument splitDocument = splitDocuments.get(i);
-
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    splitDocument.save(baos);
-                    byte[] pdf = baos.toByteArray();
-
-                    ZipEntry pdfEntry = new ZipEntry(fileName);
-                    zipOut.putNextEntry(pdfEntry);
-                    zipOut.write(pdf);
-                    zipOut.closeEntry();
+                    zipWriter.addDocument(filename + "_" + (i + 1) + ".pdf", splitDocuments.get(i));
                 }
+                return zipWriter.toWebResponse(filename + ".zip");
             }
-
-            data = Files.readAllBytes(zipFile);
-
-            return WebResponseUtils.bytesToWebResponse(
-                    data, filename + ".zip", MediaType.APPLICATION_OCTET_STREAM);
         } catch (Exception e) {
             log.error("Error in auto split", e);
             throw e;
@@ -198,12 +292,8 @@ public class AutoSplitPdfController {
                 }
             }
 
-            if (zipFile != null) {
-                try {
-                    Files.deleteIfExists(zipFile);
-                } catch (IOException e) {
-                    log.error("Error deleting temporary zip file", e);
-                }
+            if (inputFile != null) {
+                inputFile.close();
             }
         }
     }
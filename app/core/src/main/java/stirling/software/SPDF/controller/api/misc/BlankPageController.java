@@ -31,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.SPDF.model.api.misc.RemoveBlankPagesRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.ImageKernels;
 import stirling.software.common.util.PdfUtils;
 import stirling.software.common.util.WebResponseUtils;
 
@@ -50,18 +51,9 @@ public class BlankPageController {
             return false;
         }
 
-        // Convert to binary image based on the threshold
-        int whitePixels = 0;
-        int totalPixels = image.getWidth() * image.getHeight();
-
-        for (int i = 0; i < image.getHeight(); i++) {
-            for (int j = 0; j < image.getWidth(); j++) {
-                int color = image.getRGB(j, i) & 0xFF;
-                if (color >= 255 - threshold) {
-                    whitePixels++;
-                }
-            }
-        }
+        // Count the pixels that are white enough based on the threshold
+        long whitePixels = ImageKernels.countPixelsAtLeast(image, 255 - threshold);
+        long totalPixels = (long) image.getWidth() * image.getHeight();
 
         double whitePixelPercentage = (whitePixels / (double) totalPixels) * 100;
         log.info(String.format("Page has white pixel percent of %.2f%%", whitePixelPercentage));
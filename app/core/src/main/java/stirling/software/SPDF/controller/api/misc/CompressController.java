@@ -53,6 +53,7 @@ import lombok.extern.slf4j.Slf4j;
 import stirling.software.SPDF.config.EndpointConfiguration;
 import stirling.software.SPDF.model.api.misc.OptimizePdfRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.CancellationToken;
 import stirling.software.common.util.ExceptionUtils;
 import stirling.software.common.util.GeneralUtils;
 import stirling.software.common.util.ProcessExecutor;
@@ -162,6 +163,7 @@ public class CompressController {
 
         // Scan through all pages in the document
         for (int pageNum = 0; pageNum < doc.getNumberOfPages(); pageNum++) {
+            CancellationToken.throwIfCancelled();
             PDPage page = doc.getPage(pageNum);
             PDResources res = page.getResources();
             if (res == null || res.getXObjectNames() == null) continue;
@@ -285,6 +287,7 @@ public class CompressController {
 
         // Process each unique image exactly once
         for (Entry<String, List<ImageReference>> entry : uniqueImages.entrySet()) {
+            CancellationToken.throwIfCancelled();
             String imageHash = entry.getKey();
             List<ImageReference> references = entry.getValue();
 
@@ -4,25 +4,44 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.imageio.ImageIO;
 
+import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.color.PDICCBased;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -42,7 +61,9 @@ import lombok.extern.slf4j.Slf4j;
 import stirling.software.SPDF.model.api.PDFExtractImagesRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.util.ExceptionUtils;
-import stirling.software.common.util.ImageProcessingUtils;
+import stirling.software.common.util.ExecutorFactory;
+import stirling.software.common.util.TempFile;
+import stirling.software.common.util.TempFileManager;
 import stirling.software.common.util.WebResponseUtils;
 
 @RestController
@@ -53,6 +74,7 @@ import stirling.software.common.util.WebResponseUtils;
 public class ExtractImagesController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
 
     @PostMapping(consumes = "multipart/form-data", value = "/extract-images")
     @Operation(
@@ -62,113 +84,142 @@ public class ExtractImagesController {
                             + " file. Users can specify the output image format. Input:PDF"
                             + " Output:IMAGE/ZIP Type:SIMO")
     public ResponseEntity<byte[]> extractImages(@ModelAttribute PDFExtractImagesRequest request)
-            throws IOException, InterruptedException, ExecutionException {
+            throws IOException, InterruptedException {
         MultipartFile file = request.getFileInput();
         String format = request.getFormat();
         boolean allowDuplicates = Boolean.TRUE.equals(request.getAllowDuplicates());
-        PDDocument document = pdfDocumentFactory.load(file);
+        boolean preserveOriginalFormat = Boolean.TRUE.equals(request.getPreserveOriginalFormat());
 
-        // Determine if multithreading should be used based on PDF size or number of pages
-        boolean useMultithreading = shouldUseMultithreading(file, document);
+        String filename =
+                Filenames.toSimpleFileName(file.getOriginalFilename())
+                        .replaceFirst("[.][^.]+$", "");
 
         // Create ByteArrayOutputStream to write zip file to byte array
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
-        // Create ZipOutputStream to create zip file
-        ZipOutputStream zos = new ZipOutputStream(baos);
+        // The upload is written to disk once; workers load their own copies of the document from
+        // it, as PDFBox documents can't be read from several threads
+        try (TempFile inputFile = new TempFile(tempFileManager, ".pdf")) {
+            file.transferTo(inputFile.getFile());
+            try (PDDocument document = pdfDocumentFactory.loadShared(inputFile.getFile());
+                    ZipOutputStream zos = new ZipOutputStream(baos);
+                    WorkerDocuments workerDocuments =
+                            new WorkerDocuments(
+                                    inputFile.getFile(), ExecutorFactory.getCpuParallelism())) {
+                writeImages(
+                        document,
+                        zos,
+                        workerDocuments,
+                        shouldUseMultithreading(file, document),
+                        filename,
+                        format,
+                        allowDuplicates,
+                        preserveOriginalFormat);
+            }
+        }
 
-        // Set compression level
-        zos.setLevel(Deflater.BEST_COMPRESSION);
+        return WebResponseUtils.baosToWebResponse(
+                baos, filename + "_extracted-images.zip", MediaType.APPLICATION_OCTET_STREAM);
+    }
 
-        String filename =
-                Filenames.toSimpleFileName(file.getOriginalFilename())
-                        .replaceFirst("[.][^.]+$", "");
-        Set<byte[]> processedImages = new HashSet<>();
+    /**
+     * Write the images of the document to the zip in page order. Everything that reads the
+     * document itself (fingerprints, raw image streams) happens on this thread; images that are
+     * re-encoded in parallel are decoded from a worker's own copy of the document.
+     */
+    private void writeImages(
+            PDDocument document,
+            ZipOutputStream zos,
+            WorkerDocuments workerDocuments,
+            boolean useMultithreading,
+            String filename,
+            String format,
+            boolean allowDuplicates,
+            boolean preserveOriginalFormat)
+            throws IOException, InterruptedException {
+        ExecutorService executor = ExecutorFactory.getCpuBoundExecutor();
+        // Bound the number of encoded images held in memory while waiting for the zip writer
+        int maxInFlight = ExecutorFactory.getCpuParallelism() * 2;
 
-        if (useMultithreading) {
-            // Executor service to handle multithreading
-            ExecutorService executor =
-                    Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-            Set<Future<Void>> futures = new HashSet<>();
+        Set<String> processedImages = new HashSet<>();
+        Deque<PendingEntry> pending = new ArrayDeque<>();
 
+        try {
             // Safely iterate over each page, handling corrupt PDFs where page count might be wrong
-            try {
-                int pageCount = document.getPages().getCount();
-                log.debug("Document reports {} pages", pageCount);
+            int pageCount = document.getPages().getCount();
+            log.debug("Document reports {} pages", pageCount);
+
+            int consecutiveFailures = 0;
+
+            for (int pgNum = 0; pgNum < pageCount; pgNum++) {
+                List<PageImage> images;
+                try {
+                    images = getPageImages(document.getPage(pgNum));
+                    consecutiveFailures = 0; // Reset on success
+                } catch (Exception e) {
+                    consecutiveFailures++;
+                    ExceptionUtils.logException("page access for page " + (pgNum + 1), e);
+
+                    if (consecutiveFailures >= 3) {
+                        log.warn("Stopping page iteration after 3 consecutive failures");
+                        break;
+                    }
+                    continue;
+                }
 
-                int consecutiveFailures = 0;
+                int count = 1;
+                for (PageImage pageImage : images) {
+                    PDImageXObject image = pageImage.image();
+                    if (!allowDuplicates && !processedImages.add(fingerprint(image))) {
+                        continue; // Skip already processed images
+                    }
 
-                for (int pgNum = 0; pgNum < pageCount; pgNum++) {
-                    try {
-                        PDPage page = document.getPage(pgNum);
-                        consecutiveFailures = 0; // Reset on success
-                        final int currentPageNum = pgNum + 1; // Convert to 1-based page numbering
-                        Future<Void> future =
-                                executor.submit(
-                                        () -> {
-                                            try {
-                                                // Call the image extraction method for each page
-                                                extractImagesFromPage(
-                                                        page,
-                                                        format,
-                                                        filename,
-                                                        currentPageNum,
-                                                        processedImages,
-                                                        zos,
-                                                        allowDuplicates);
-                                            } catch (Exception e) {
-                                                // Log the error and continue processing other pages
-                                                ExceptionUtils.logException(
-                                                        "image extraction from page "
-                                                                + currentPageNum,
-                                                        e);
-                                            }
-
-                                            return null; // Callable requires a return type
-                                        });
-
-                        // Add the Future object to the list to track completion
-                        futures.add(future);
-                    } catch (Exception e) {
-                        consecutiveFailures++;
-                        ExceptionUtils.logException("page access for page " + (pgNum + 1), e);
-
-                        if (consecutiveFailures >= 3) {
-                            log.warn("Stopping page iteration after 3 consecutive failures");
-                            break;
+                    String imageName = filename + "_page_" + (pgNum + 1) + "_" + count++;
+                    String originalExtension =
+                            getOriginalExtension(image, format, preserveOriginalFormat);
+                    if (originalExtension != null) {
+                        pending.add(PendingEntry.raw(imageName + "." + originalExtension, image));
+                    } else {
+                        Future<byte[]> encoded;
+                        if (useMultithreading) {
+                            int pageIndex = pgNum;
+                            encoded =
+                                    executor.submit(
+                                            () ->
+                                                    workerDocuments.encodeImage(
+                                                            pageIndex,
+                                                            pageImage.name(),
+                                                            format));
+                        } else {
+                            encoded = runInline(() -> encodeImage(image, format));
                         }
+                        pending.add(PendingEntry.encoded(imageName + "." + format, encoded));
                     }
-                }
-            } catch (Exception e) {
-                ExceptionUtils.logException("page count determination", e);
-                throw e;
-            }
 
-            // Wait for all tasks to complete
-            for (Future<Void> future : futures) {
-                future.get();
+                    if (pending.size() >= maxInFlight) {
+                        writeNextEntry(zos, pending);
+                    }
+                }
             }
 
-            // Close executor service
-            executor.shutdown();
-        } else {
-            // Single-threaded extraction
-            for (int pgNum = 0; pgNum < document.getPages().getCount(); pgNum++) {
-                PDPage page = document.getPage(pgNum);
-                extractImagesFromPage(
-                        page, format, filename, pgNum + 1, processedImages, zos, allowDuplicates);
+            // Write the remaining entries in page order
+            while (!pending.isEmpty()) {
+                writeNextEntry(zos, pending);
             }
+        } catch (Exception e) {
+            ExceptionUtils.logException("image extraction", e);
+            throw e;
+        } finally {
+            // Only left over on failure, including the entry that failed
+            pending.forEach(PendingEntry::cancel);
         }
+    }
 
-        // Close PDDocument and ZipOutputStream
-        document.close();
-        zos.close();
-
-        // Create ByteArrayResource from byte array
-        byte[] zipContents = baos.toByteArray();
-
-        return WebResponseUtils.baosToWebResponse(
-                baos, filename + "_extracted-images.zip", MediaType.APPLICATION_OCTET_STREAM);
+    /** Removed only once written, so a failed entry is still cancelled with the rest */
+    private void writeNextEntry(ZipOutputStream zos, Deque<PendingEntry> pending)
+            throws IOException, InterruptedException {
+        writeEntry(zos, pending.peek());
+        pending.poll();
     }
 
     private boolean shouldUseMultithreading(MultipartFile file, PDDocument document) {
@@ -178,65 +229,245 @@ public class ExtractImagesController {
         return fileSizeInMB > 10 || numberOfPages > 20;
     }
 
-    private void extractImagesFromPage(
-            PDPage page,
-            String format,
-            String filename,
-            int pageNum,
-            Set<byte[]> processedImages,
-            ZipOutputStream zos,
-            boolean allowDuplicates)
-            throws IOException {
+    private static List<PageImage> getPageImages(PDPage page) throws IOException {
+        List<PageImage> images = new ArrayList<>();
+        PDResources resources = page.getResources();
+        if (resources == null || resources.getXObjectNames() == null) {
+            return images;
+        }
+        for (COSName name : resources.getXObjectNames()) {
+            if (resources.isImageXObject(name)) {
+                images.add(new PageImage(name, (PDImageXObject) resources.getXObject(name)));
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Fingerprint an image from its encoded stream so duplicates are found without decoding them.
+     * The image geometry and colour space are included because the same encoded bytes can be
+     * interpreted differently through the image dictionary.
+     */
+    private String fingerprint(PDImageXObject image) throws IOException {
         MessageDigest md;
         try {
-            md = MessageDigest.getInstance("MD5");
+            md = MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
-            log.error("MD5 algorithm not available for extractImages hash.", e);
+            throw new IOException("SHA-256 algorithm not available for image deduplication", e);
+        }
+        COSStream stream = image.getCOSObject();
+        md.update(
+                (image.getWidth()
+                                + "x"
+                                + image.getHeight()
+                                + ":"
+                                + image.getBitsPerComponent()
+                                + ":"
+                                + stream.getDictionaryObject(COSName.COLORSPACE)
+                                + ":"
+                                + stream.getDictionaryObject(COSName.DECODE)
+                                + ":"
+                                + stream.getFilters()
+                                + ":")
+                        .getBytes(StandardCharsets.UTF_8));
+        try (InputStream raw = stream.createRawInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = raw.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Decide whether the encoded image stream can be copied into the zip unchanged.
+     *
+     * @return The file extension to use for the raw stream, or null if the image must be decoded
+     *     and re-encoded
+     */
+    private String getOriginalExtension(
+            PDImageXObject image, String format, boolean preserveOriginalFormat) {
+        COSStream stream = image.getCOSObject();
+        List<COSName> filters = image.getStream().getFilters();
+        if (filters.size() != 1
+                || stream.containsKey(COSName.SMASK)
+                || stream.containsKey(COSName.MASK)
+                || stream.containsKey(COSName.DECODE)) {
+            return null;
+        }
+        boolean jpegRequested = "jpeg".equalsIgnoreCase(format) || "jpg".equalsIgnoreCase(format);
+        if (COSName.DCT_DECODE.equals(filters.get(0))
+                && (jpegRequested || preserveOriginalFormat)
+                && hasStandaloneJpegColorSpace(image)) {
+            return jpegRequested ? format : "jpg";
+        }
+        if (COSName.JPX_DECODE.equals(filters.get(0)) && preserveOriginalFormat) {
+            return "jp2";
+        }
+        return null;
+    }
+
+    /** CMYK and other special colour spaces do not display correctly outside of the PDF */
+    private boolean hasStandaloneJpegColorSpace(PDImageXObject image) {
+        try {
+            PDColorSpace colorSpace = image.getColorSpace();
+            if (colorSpace instanceof PDDeviceRGB || colorSpace instanceof PDDeviceGray) {
+                return true;
+            }
+            return colorSpace instanceof PDICCBased iccBased
+                    && (iccBased.getNumberOfComponents() == 1
+                            || iccBased.getNumberOfComponents() == 3);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] encodeImage(PDImageXObject image, String format) throws IOException {
+        RenderedImage renderedImage = image.getImage();
+
+        // Convert to standard RGB colorspace if needed
+        BufferedImage bufferedImage = convertToRGB(renderedImage, format);
+
+        ByteArrayOutputStream imageBaos = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, format, imageBaos);
+        return imageBaos.toByteArray();
+    }
+
+    private void writeEntry(ZipOutputStream zos, PendingEntry entry)
+            throws IOException, InterruptedException {
+        if (entry.rawImage() != null) {
+            // Already compressed image data gains nothing from deflating it again
+            zos.setLevel(Deflater.NO_COMPRESSION);
+            zos.putNextEntry(new ZipEntry(entry.name()));
+            try (InputStream raw = entry.rawImage().getCOSObject().createRawInputStream()) {
+                raw.transferTo(zos);
+            }
+            zos.closeEntry();
             return;
         }
-        if (page.getResources() == null || page.getResources().getXObjectNames() == null) {
+
+        byte[] data;
+        try {
+            data = entry.encoded().get();
+        } catch (ExecutionException e) {
+            // Log the error and continue with the remaining images
+            ExceptionUtils.logException(
+                    "image extraction for " + entry.name(),
+                    e.getCause() instanceof Exception cause ? cause : e);
             return;
         }
-        int count = 1;
-        for (COSName name : page.getResources().getXObjectNames()) {
-            try {
-                if (page.getResources().isImageXObject(name)) {
-                    PDImageXObject image = (PDImageXObject) page.getResources().getXObject(name);
-                    if (!allowDuplicates) {
-                        byte[] data = ImageProcessingUtils.getImageData(image.getImage());
-                        byte[] imageHash = md.digest(data);
-                        synchronized (processedImages) {
-                            if (processedImages.stream()
-                                    .anyMatch(hash -> Arrays.equals(hash, imageHash))) {
-                                continue; // Skip already processed images
-                            }
-                            processedImages.add(imageHash);
-                        }
-                    }
+        zos.setLevel(Deflater.BEST_COMPRESSION);
+        zos.putNextEntry(new ZipEntry(entry.name()));
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private static Future<byte[]> runInline(Callable<byte[]> callable) {
+        FutureTask<byte[]> task = new FutureTask<>(callable);
+        task.run();
+        return task;
+    }
+
+    private record PendingEntry(String name, PDImageXObject rawImage, Future<byte[]> encoded) {
+
+        static PendingEntry raw(String name, PDImageXObject image) {
+            return new PendingEntry(name, image, null);
+        }
+
+        static PendingEntry encoded(String name, Future<byte[]> encoded) {
+            return new PendingEntry(name, null, encoded);
+        }
+
+        void cancel() {
+            if (encoded != null) {
+                encoded.cancel(true);
+            }
+        }
+    }
+
+    private record PageImage(COSName name, PDImageXObject image) {}
 
-                    RenderedImage renderedImage = image.getImage();
+    /**
+     * Copies of the document for the encoding workers, loaded from the input file when first
+     * needed. A worker borrows a copy for one image and returns it afterwards. Closing waits for
+     * borrowed copies to come back, as cancelled workers may still be decoding.
+     */
+    private static final class WorkerDocuments implements AutoCloseable {
+
+        private final File pdfFile;
+        private final int maxDocuments;
+        private final BlockingQueue<PDDocument> idle = new LinkedBlockingQueue<>();
+        private final List<PDDocument> all = new ArrayList<>();
+        private boolean closed;
+
+        WorkerDocuments(File pdfFile, int maxDocuments) {
+            this.pdfFile = pdfFile;
+            this.maxDocuments = Math.max(1, maxDocuments);
+        }
+
+        byte[] encodeImage(int pageIndex, COSName name, String format)
+                throws IOException, InterruptedException {
+            PDDocument document = borrow();
+            try {
+                PDResources resources = document.getPage(pageIndex).getResources();
+                return ExtractImagesController.encodeImage(
+                        (PDImageXObject) resources.getXObject(name), format);
+            } finally {
+                idle.add(document);
+            }
+        }
 
-                    // Convert to standard RGB colorspace if needed
-                    BufferedImage bufferedImage = convertToRGB(renderedImage, format);
+        private PDDocument borrow() throws IOException, InterruptedException {
+            PDDocument document = idle.poll();
+            if (document != null) {
+                return document;
+            }
+            while (true) {
+                synchronized (all) {
+                    if (closed) {
+                        throw new CancellationException("Image extraction has finished");
+                    }
+                    if (all.size() < maxDocuments) {
+                        document = Loader.loadPDF(pdfFile);
+                        all.add(document);
+                        return document;
+                    }
+                }
+                // Polled so a worker that is still waiting notices when closing takes them all
+                document = idle.poll(100, TimeUnit.MILLISECONDS);
+                if (document != null) {
+                    return document;
+                }
+            }
+        }
 
-                    // Write image to zip file
-                    String imageName = filename + "_page_" + pageNum + "_" + count++ + "." + format;
-                    synchronized (zos) {
-                        zos.putNextEntry(new ZipEntry(imageName));
-                        ByteArrayOutputStream imageBaos = new ByteArrayOutputStream();
-                        ImageIO.write(bufferedImage, format, imageBaos);
-                        zos.write(imageBaos.toByteArray());
-                        zos.closeEntry();
+        @Override
+        public void close() throws IOException {
+            int open;
+            synchronized (all) {
+                closed = true;
+                open = all.size();
+            }
+            boolean interrupted = false;
+            try {
+                for (int i = 0; i < open; i++) {
+                    try {
+                        idle.take().close();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        i--;
                     }
                 }
-            } catch (IOException e) {
-                ExceptionUtils.logException("image extraction", e);
-                throw ExceptionUtils.handlePdfException(e, "during image extraction");
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
     }
 
-    private BufferedImage convertToRGB(RenderedImage renderedImage, String format) {
+    private static BufferedImage convertToRGB(RenderedImage renderedImage, String format) {
         int width = renderedImage.getWidth();
         int height = renderedImage.getHeight();
         BufferedImage rgbImage;
@@ -1,12 +1,34 @@
 package stirling.software.SPDF.controller.api.misc;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.CCITTFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
 import org.apache.pdfbox.rendering.ImageType;
@@ -27,6 +49,10 @@ import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.SPDF.model.api.misc.FlattenRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.ExceptionUtils;
+import stirling.software.common.util.ExecutorFactory;
+import stirling.software.common.util.TempFile;
+import stirling.software.common.util.TempFileManager;
 import stirling.software.common.util.WebResponseUtils;
 
 @RestController
@@ -36,7 +62,16 @@ import stirling.software.common.util.WebResponseUtils;
 @RequiredArgsConstructor
 public class FlattenController {
 
+    private static final int DEFAULT_RENDER_DPI = 300;
+    private static final int MIN_RENDER_DPI = 72;
+    private static final int MAX_RENDER_DPI = 600;
+    private static final Set<String> IMAGE_ENCODINGS = Set.of("jpeg", "flate");
+
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final TempFileManager tempFileManager;
+
+    /** A rendered page compressed into the dictionary and raw data of an image stream */
+    private record EncodedPage(COSDictionary dictionary, byte[] data) {}
 
     @PostMapping(consumes = "multipart/form-data", value = "/flatten")
     @Operation(
@@ -47,10 +82,10 @@ public class FlattenController {
     public ResponseEntity<byte[]> flatten(@ModelAttribute FlattenRequest request) throws Exception {
         MultipartFile file = request.getFileInput();
 
-        PDDocument document = pdfDocumentFactory.load(file);
         Boolean flattenOnlyForms = request.getFlattenOnlyForms();
 
         if (Boolean.TRUE.equals(flattenOnlyForms)) {
+            PDDocument document = pdfDocumentFactory.load(file);
             PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
             if (acroForm != null) {
                 acroForm.flatten();
@@ -60,30 +95,210 @@ public class FlattenController {
         } else {
             // flatten whole page aka convert each page to image and readd it (making text
             // unselectable)
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
-            PDDocument newDocument =
-                    pdfDocumentFactory.createNewDocumentBasedOnOldDocument(document);
-            int numPages = document.getNumberOfPages();
-            for (int i = 0; i < numPages; i++) {
+            int renderDpi = getRenderDpi(request.getRenderDpi());
+            String imageEncoding =
+                    request.getImageEncoding() == null
+                            ? "jpeg"
+                            : request.getImageEncoding().toLowerCase(Locale.ROOT);
+            if (!IMAGE_ENCODINGS.contains(imageEncoding)) {
+                throw ExceptionUtils.createInvalidArgumentException(
+                        "imageEncoding", request.getImageEncoding());
+            }
+            // Black and white is only used when asked for, as it drops the colours of every page
+            if (Boolean.TRUE.equals(request.getForceBlackAndWhite())) {
+                imageEncoding = "ccitt";
+            }
+
+            // The upload is written to disk once, the document and the copies of the workers are
+            // all loaded from that file
+            try (TempFile inputFile = new TempFile(tempFileManager, ".pdf")) {
+                file.transferTo(inputFile.getFile());
+                PDDocument document = pdfDocumentFactory.loadShared(inputFile.getFile());
                 try {
-                    BufferedImage image = pdfRenderer.renderImageWithDPI(i, 300, ImageType.RGB);
-                    PDPage page = new PDPage();
-                    page.setMediaBox(document.getPage(i).getMediaBox());
-                    newDocument.addPage(page);
-                    try (PDPageContentStream contentStream =
-                            new PDPageContentStream(newDocument, page)) {
-                        PDImageXObject pdImage = JPEGFactory.createFromImage(newDocument, image);
-                        float pageWidth = page.getMediaBox().getWidth();
-                        float pageHeight = page.getMediaBox().getHeight();
-
-                        contentStream.drawImage(pdImage, 0, 0, pageWidth, pageHeight);
+                    PDDocument newDocument =
+                            pdfDocumentFactory.createNewDocumentBasedOnOldDocument(document);
+                    try {
+                        flattenPages(
+                                inputFile.getFile(),
+                                document,
+                                newDocument,
+                                renderDpi,
+                                imageEncoding);
+                    } catch (IOException | RuntimeException e) {
+                        newDocument.close();
+                        throw e;
                     }
-                } catch (IOException e) {
-                    log.error("exception", e);
+                    return WebResponseUtils.pdfDocToWebResponse(
+                            newDocument, Filenames.toSimpleFileName(file.getOriginalFilename()));
+                } finally {
+                    document.close();
                 }
             }
-            return WebResponseUtils.pdfDocToWebResponse(
-                    newDocument, Filenames.toSimpleFileName(file.getOriginalFilename()));
+        }
+    }
+
+    private int getRenderDpi(Integer requestedDpi) {
+        if (requestedDpi == null) {
+            return DEFAULT_RENDER_DPI;
+        }
+        int renderDpi = Math.max(MIN_RENDER_DPI, Math.min(MAX_RENDER_DPI, requestedDpi));
+        if (renderDpi != requestedDpi) {
+            log.warn("Render DPI {} is out of range, using {}dpi", requestedDpi, renderDpi);
+        }
+        return renderDpi;
+    }
+
+    /**
+     * Render every page of the document to an image and add it as a page of newDocument. Pages
+     * are rendered and compressed in parallel on the shared CPU executor, each worker using its
+     * own copy of the document loaded from pdfFile since PDFBox documents can't be rendered from
+     * several threads. Only a window of pages is in flight at a time and pages are added to
+     * newDocument in order as they complete.
+     */
+    private void flattenPages(
+            File pdfFile,
+            PDDocument document,
+            PDDocument newDocument,
+            int renderDpi,
+            String imageEncoding)
+            throws IOException {
+        int numPages = document.getNumberOfPages();
+        int workers = Math.max(1, Math.min(ExecutorFactory.getCpuParallelism(), numPages));
+        int maxPagesInFlight = workers * 2;
+        ExecutorService executor = ExecutorFactory.getCpuBoundExecutor();
+
+        List<PDDocument> workerDocuments = new ArrayList<>(workers);
+        BlockingQueue<PDFRenderer> renderers = new ArrayBlockingQueue<>(workers);
+        Deque<Future<EncodedPage>> pagesInFlight = new ArrayDeque<>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                PDDocument workerDocument = Loader.loadPDF(pdfFile);
+                workerDocuments.add(workerDocument);
+                renderers.add(new PDFRenderer(workerDocument));
+            }
+
+            int submitted = 0;
+            for (int i = 0; i < numPages; i++) {
+                while (submitted < numPages && submitted < i + maxPagesInFlight) {
+                    int pageIndex = submitted++;
+                    pagesInFlight.addLast(
+                            executor.submit(
+                                    () ->
+                                            renderPage(
+                                                    renderers,
+                                                    pageIndex,
+                                                    renderDpi,
+                                                    imageEncoding)));
+                }
+                // Removed only once done, so the finally block cancels it if waiting fails
+                EncodedPage encodedPage = awaitPage(pagesInFlight.peekFirst(), i);
+                pagesInFlight.removeFirst();
+                if (encodedPage != null) {
+                    addPage(newDocument, document.getPage(i), encodedPage);
+                }
+            }
+        } finally {
+            pagesInFlight.forEach(future -> future.cancel(true));
+            awaitRenderers(renderers, workerDocuments.size());
+            for (PDDocument workerDocument : workerDocuments) {
+                workerDocument.close();
+            }
+        }
+    }
+
+    /**
+     * Wait until every renderer is back in the queue. A cancelled page that already started keeps
+     * rendering with its worker document, which can't be closed before it is done. Cancelled pages
+     * that haven't taken a renderer yet are interrupted while waiting for one.
+     */
+    private static void awaitRenderers(BlockingQueue<PDFRenderer> renderers, int count) {
+        boolean interrupted = false;
+        int returned = 0;
+        while (returned < count) {
+            try {
+                renderers.take();
+                returned++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static EncodedPage renderPage(
+            BlockingQueue<PDFRenderer> renderers,
+            int pageIndex,
+            int renderDpi,
+            String imageEncoding)
+            throws IOException, InterruptedException {
+        ImageType imageType = "ccitt".equals(imageEncoding) ? ImageType.BINARY : ImageType.RGB;
+        BufferedImage image;
+        PDFRenderer renderer = renderers.take();
+        try {
+            image = renderer.renderImageWithDPI(pageIndex, renderDpi, imageType);
+        } finally {
+            renderers.add(renderer);
+        }
+
+        // Compress into a throwaway document so the work stays on this thread, the encoded
+        // stream is copied into the output document in page order
+        try (PDDocument scratchDocument = new PDDocument()) {
+            PDImageXObject pdImage =
+                    switch (imageEncoding) {
+                        case "flate" -> LosslessFactory.createFromImage(scratchDocument, image);
+                        case "ccitt" -> CCITTFactory.createFromImage(scratchDocument, image);
+                        default -> JPEGFactory.createFromImage(scratchDocument, image);
+                    };
+            COSStream stream = pdImage.getCOSObject();
+            COSDictionary dictionary = new COSDictionary();
+            dictionary.addAll(stream);
+            dictionary.removeItem(COSName.LENGTH);
+            try (InputStream raw = stream.createRawInputStream()) {
+                return new EncodedPage(dictionary, raw.readAllBytes());
+            }
+        }
+    }
+
+    // Returns null when the page failed to render so it is left out, as before
+    private static EncodedPage awaitPage(Future<EncodedPage> future, int pageIndex)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flattening pages");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                log.error("exception rendering page {}", pageIndex + 1, cause);
+                return null;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to flatten page " + (pageIndex + 1), cause);
+        }
+    }
+
+    private static void addPage(PDDocument newDocument, PDPage sourcePage, EncodedPage encodedPage)
+            throws IOException {
+        COSStream stream = newDocument.getDocument().createCOSStream();
+        stream.addAll(encodedPage.dictionary());
+        try (OutputStream out = stream.createRawOutputStream()) {
+            out.write(encodedPage.data());
+        }
+        PDImageXObject pdImage = new PDImageXObject(new PDStream(stream), null);
+
+        PDPage page = new PDPage();
+        page.setMediaBox(sourcePage.getMediaBox());
+        newDocument.addPage(page);
+        try (PDPageContentStream contentStream = new PDPageContentStream(newDocument, page)) {
+            float pageWidth = page.getMediaBox().getWidth();
+            float pageHeight = page.getMediaBox().getHeight();
+
+            contentStream.drawImage(pdImage, 0, 0, pageWidth, pageHeight);
         }
     }
 }
@@ -176,10 +176,14 @@ public class MetadataController {
         info.setTrapped(trapped);
 
         document.setDocumentInformation(info);
-        return WebResponseUtils.pdfDocToWebResponse(
-                document,
+        String outputName =
                 Filenames.toSimpleFileName(pdfFile.getOriginalFilename())
                                 .replaceFirst("[.][^.]+$", "")
-                        + "_metadata.pdf");
+                        + "_metadata.pdf";
+        if (deleteAll) {
+            // An incremental update would keep the removed values in the earlier revision
+            return WebResponseUtils.pdfDocToWebResponse(document, outputName);
+        }
+        return WebResponseUtils.pdfDocToIncrementalWebResponse(document, outputName, info);
     }
 }
@@ -34,6 +34,7 @@ import stirling.software.SPDF.config.EndpointConfiguration;
 import stirling.software.SPDF.model.api.misc.ProcessPdfWithOcrRequest;
 import stirling.software.common.model.ApplicationProperties;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.CancellationToken;
 import stirling.software.common.util.ExceptionUtils;
 import stirling.software.common.util.ProcessExecutor;
 import stirling.software.common.util.ProcessExecutor.ProcessExecutorResult;
@@ -272,19 +273,17 @@ public class OCRController {
                         tempInputFile.toString(),
                         tempOutputFile.toString()));
 
-        // Run CLI command
+        // Run CLI command, with as many jobs as the granted CPU tokens allow
         ProcessExecutorResult result =
                 ProcessExecutor.getInstance(ProcessExecutor.Processes.OCR_MY_PDF)
-                        .runCommandWithOutputHandling(command);
+                        .runThreadedCommand(threads -> withJobs(command, threads));
 
         if (result.getRc() != 0
                 && result.getMessages().contains("multiprocessing/synchronize.py")
                 && result.getMessages().contains("OSError: [Errno 38] Function not implemented")) {
-            command.add("--jobs");
-            command.add("1");
             result =
                     ProcessExecutor.getInstance(ProcessExecutor.Processes.OCR_MY_PDF)
-                            .runCommandWithOutputHandling(command);
+                            .runCommandWithOutputHandling(withJobs(command, 1));
         }
 
         if (result.getRc() != 0) {
@@ -315,6 +314,13 @@ public class OCRController {
         }
     }
 
+    private static List<String> withJobs(List<String> command, int jobs) {
+        List<String> withJobs = new ArrayList<>(command);
+        withJobs.add(1, "--jobs");
+        withJobs.add(2, Integer.toString(jobs));
+        return withJobs;
+    }
+
     private void processWithTesseract(
             List<String> selectedLanguages, String ocrType, Path tempInputFile, Path tempOutputFile)
             throws IOException, InterruptedException {
@@ -337,6 +343,7 @@ public class OCRController {
                 int pageCount = document.getNumberOfPages();
 
                 for (int pageNum = 0; pageNum < pageCount; pageNum++) {
+                    CancellationToken.throwIfCancelled();
                     PDPage page = document.getPage(pageNum);
                     boolean hasText = false;
 
@@ -35,6 +35,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.SPDF.model.api.misc.ScannerEffectRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
+import stirling.software.common.util.ImageKernels;
 import stirling.software.common.util.WebResponseUtils;
 
 @RestController
@@ -143,17 +144,7 @@ public class ScannerEffectController {
                     gGray.dispose();
 
                     // Convert to grayscale manually
-                    for (int y = 0; y < processed.getHeight(); y++) {
-                        for (int x = 0; x < processed.getWidth(); x++) {
-                            int rgb = processed.getRGB(x, y);
-                            int r = (rgb >> 16) & 0xFF;
-                            int g = (rgb >> 8) & 0xFF;
-                            int b = rgb & 0xFF;
-                            int gray = (r + g + b) / 3;
-                            int grayRGB = (gray << 16) | (gray << 8) | gray;
-                            processed.setRGB(x, y, grayRGB);
-                        }
-                    }
+                    ImageKernels.toGrayscaleAverage(processed);
                 } else {
                     processed =
                             new BufferedImage(
@@ -182,27 +173,9 @@ public class ScannerEffectController {
                                 Math.round(endGrey * 255),
                                 Math.round(endGrey * 255));
                 BufferedImage composed = new BufferedImage(baseW, baseH, processed.getType());
+                ImageKernels.fillLinearGradient(
+                        composed, startColor.getRGB(), endColor.getRGB(), vertical);
                 Graphics2D gBg = composed.createGraphics();
-                for (int y = 0; y < baseH; y++) {
-                    for (int x = 0; x < baseW; x++) {
-                        float frac = vertical ? (float) y / (baseH - 1) : (float) x / (baseW - 1);
-                        int r =
-                                Math.round(
-                                        startColor.getRed()
-                                                + (endColor.getRed() - startColor.getRed()) * frac);
-                        int g =
-                                Math.round(
-                                        startColor.getGreen()
-                                                + (endColor.getGreen() - startColor.getGreen())
-                                                        * frac);
-                        int b =
-                                Math.round(
-                                        startColor.getBlue()
-                                                + (endColor.getBlue() - startColor.getBlue())
-                                                        * frac);
-                        composed.setRGB(x, y, new Color(r, g, b).getRGB());
-                    }
-                }
                 gBg.drawImage(processed, borderPx, borderPx, null);
                 gBg.dispose();
 
@@ -228,29 +201,8 @@ public class ScannerEffectController {
                     rotW = (int) Math.floor(w * cos + h * sin);
                     rotH = (int) Math.floor(h * cos + w * sin);
                     BufferedImage rotatedBg = new BufferedImage(rotW, rotH, composed.getType());
-                    Graphics2D gBgRot = rotatedBg.createGraphics();
-                    for (int y = 0; y < rotH; y++) {
-                        for (int x = 0; x < rotW; x++) {
-                            float frac = vertical ? (float) y / (rotH - 1) : (float) x / (rotW - 1);
-                            int r =
-                                    Math.round(
-                                            startColor.getRed()
-                                                    + (endColor.getRed() - startColor.getRed())
-                                                            * frac);
-                            int g =
-                                    Math.round(
-                                            startColor.getGreen()
-                                                    + (endColor.getGreen() - startColor.getGreen())
-                                                            * frac);
-                            int b =
-                                    Math.round(
-                                            startColor.getBlue()
-                                                    + (endColor.getBlue() - startColor.getBlue())
-                                                            * frac);
-                            rotatedBg.setRGB(x, y, new Color(r, g, b).getRGB());
-                        }
-                    }
-                    gBgRot.dispose();
+                    ImageKernels.fillLinearGradient(
+                            rotatedBg, startColor.getRGB(), endColor.getRGB(), vertical);
                     rotated = new BufferedImage(rotW, rotH, composed.getType());
                     Graphics2D g2d = rotated.createGraphics();
                     g2d.drawImage(rotatedBg, 0, 0, null);
@@ -331,32 +283,31 @@ public class ScannerEffectController {
             boolean vertical) {
         int width = image.getWidth();
         int height = image.getHeight();
+        int[] background =
+                ImageKernels.createGradientRamp(
+                        startColor.getRGB(), endColor.getRGB(), vertical ? height : width);
+        int[] src = ImageKernels.getPixels(image);
         BufferedImage output = new BufferedImage(width, height, image.getType());
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int dx = Math.min(x, width - 1 - x);
-                int dy = Math.min(y, height - 1 - y);
-                int d = Math.min(dx, dy);
-                float frac = vertical ? (float) y / (height - 1) : (float) x / (width - 1);
-                int rBg =
-                        Math.round(
-                                startColor.getRed()
-                                        + (endColor.getRed() - startColor.getRed()) * frac);
-                int gBg =
-                        Math.round(
-                                startColor.getGreen()
-                                        + (endColor.getGreen() - startColor.getGreen()) * frac);
-                int bBg =
-                        Math.round(
-                                startColor.getBlue()
-                                        + (endColor.getBlue() - startColor.getBlue()) * frac);
-                int bgVal = new Color(rBg, gBg, bBg).getRGB();
-                int fgVal = image.getRGB(x, y);
-                float alpha = d < featherRadius ? (float) d / featherRadius : 1.0f;
-                int blended = blendColors(fgVal, bgVal, alpha);
-                output.setRGB(x, y, blended);
-            }
-        }
+        int[] out = ImageKernels.getPixels(output);
+        ImageKernels.forEachRowBand(
+                width,
+                height,
+                (from, to) -> {
+                    for (int y = from; y < to; y++) {
+                        int dy = Math.min(y, height - 1 - y);
+                        int row = y * width;
+                        for (int x = 0; x < width; x++) {
+                            int d = Math.min(Math.min(x, width - 1 - x), dy);
+                            if (d >= featherRadius) {
+                                out[row + x] = src[row + x];
+                            } else {
+                                int bgVal = background[vertical ? y : x];
+                                float alpha = (float) d / featherRadius;
+                                out[row + x] = blendColors(src[row + x], bgVal, alpha);
+                            }
+                        }
+                    }
+                });
         return output;
     }
 
@@ -375,63 +326,31 @@ public class ScannerEffectController {
         // Scale sigma based on image size to maintain consistent blur effect
         double scaledSigma = sigma * Math.min(image.getWidth(), image.getHeight()) / 1000.0;
 
-        int radius = Math.max(1, (int) Math.ceil(scaledSigma * 3));
-        int size = 2 * radius + 1;
-        float[] data = new float[size * size];
-        double sum = 0.0;
-
-        // Generate Gaussian kernel
-        for (int i = -radius; i <= radius; i++) {
-            for (int j = -radius; j <= radius; j++) {
-                double xDistance = (double) i * i;
-                double yDistance = (double) j * j;
-                double g = Math.exp(-(xDistance + yDistance) / (2 * scaledSigma * scaledSigma));
-                data[(i + radius) * size + j + radius] = (float) g;
-                sum += g;
-            }
-        }
-
-        // Normalize kernel
-        for (int i = 0; i < data.length; i++) {
-            data[i] /= (float) sum;
-        }
-
-        // Create and apply convolution
-        java.awt.image.Kernel kernel = new java.awt.image.Kernel(size, size, data);
-        java.awt.image.ConvolveOp op =
-                new java.awt.image.ConvolveOp(kernel, java.awt.image.ConvolveOp.EDGE_NO_OP, null);
-
-        // Apply blur with high-quality rendering hints
-        BufferedImage result =
-                new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
-        Graphics2D g2d = result.createGraphics();
-        g2d.setRenderingHint(
-                RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.drawImage(op.filter(image, null), 0, 0, null);
-        g2d.dispose();
-
-        return result;
+        return ImageKernels.gaussianBlur(image, scaledSigma);
     }
 
     private void applyYellowishEffect(BufferedImage image) {
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                // Stronger yellow tint while preserving brightness
-                float brightness = (r + g + b) / 765.0f; // Normalize to 0-1
-                r = Math.min(255, (int) (r + (255 - r) * 0.18f * brightness));
-                g = Math.min(255, (int) (g + (255 - g) * 0.12f * brightness));
-                b = Math.max(0, (int) (b * (1 - 0.25f * brightness)));
-
-                image.setRGB(x, y, (r << 16) | (g << 8) | b);
-            }
-        }
+        int[] pixels = ImageKernels.getPixels(image);
+        int width = image.getWidth();
+        ImageKernels.forEachRowBand(
+                width,
+                image.getHeight(),
+                (from, to) -> {
+                    for (int i = from * width, end = to * width; i < end; i++) {
+                        int rgb = pixels[i];
+                        int r = (rgb >> 16) & 0xFF;
+                        int g = (rgb >> 8) & 0xFF;
+                        int b = rgb & 0xFF;
+
+                        // Stronger yellow tint while preserving brightness
+                        float brightness = (r + g + b) / 765.0f; // Normalize to 0-1
+                        r = Math.min(255, (int) (r + (255 - r) * 0.18f * brightness));
+                        g = Math.min(255, (int) (g + (255 - g) * 0.12f * brightness));
+                        b = Math.max(0, (int) (b * (1 - 0.25f * brightness)));
+
+                        pixels[i] = (r << 16) | (g << 8) | b;
+                    }
+                });
     }
 
     private void addGaussianNoise(BufferedImage image, double strength) {
@@ -440,44 +359,13 @@ public class ScannerEffectController {
         // Scale noise based on image size
         double scaledStrength = strength * Math.min(image.getWidth(), image.getHeight()) / 1000.0;
 
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                int rgb = image.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
-
-                // Generate noise with better distribution
-                double noiseR = RANDOM.nextGaussian() * scaledStrength;
-                double noiseG = RANDOM.nextGaussian() * scaledStrength;
-                double noiseB = RANDOM.nextGaussian() * scaledStrength;
-
-                // Apply noise with better color preservation
-                r = Math.min(255, Math.max(0, r + (int) noiseR));
-                g = Math.min(255, Math.max(0, g + (int) noiseG));
-                b = Math.min(255, Math.max(0, b + (int) noiseB));
-
-                image.setRGB(x, y, (r << 16) | (g << 8) | b);
-            }
-        }
+        ImageKernels.addGaussianNoise(image, scaledStrength);
     }
 
     private BufferedImage adjustBrightnessContrast(
             BufferedImage image, float brightness, float contrast) {
-        BufferedImage output =
-                new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int rgb = image.getRGB(x, y);
-                int r = (int) (((((rgb >> 16) & 0xFF) - 128) * contrast + 128) * brightness);
-                int g = (int) (((((rgb >> 8) & 0xFF) - 128) * contrast + 128) * brightness);
-                int b = (int) ((((rgb & 0xFF) - 128) * contrast + 128) * brightness);
-                r = Math.min(255, Math.max(0, r));
-                g = Math.min(255, Math.max(0, g));
-                b = Math.min(255, Math.max(0, b));
-                output.setRGB(x, y, (r << 16) | (g << 8) | b);
-            }
-        }
-        return output;
+        ImageKernels.applyLookupTable(
+                image, ImageKernels.createBrightnessContrastTable(brightness, contrast));
+        return image;
     }
 }
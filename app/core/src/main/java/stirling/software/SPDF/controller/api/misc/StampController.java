@@ -2,28 +2,20 @@ package stirling.software.SPDF.controller.api.misc;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
 
 import javax.imageio.ImageIO;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
 import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
 import org.apache.pdfbox.util.Matrix;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -38,9 +30,8 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 
 import stirling.software.SPDF.model.api.misc.AddStampRequest;
+import stirling.software.SPDF.service.FontCacheService;
 import stirling.software.common.service.CustomPDFDocumentFactory;
-import stirling.software.common.util.TempFile;
-import stirling.software.common.util.TempFileManager;
 import stirling.software.common.util.WebResponseUtils;
 import java.lang.IllegalArgumentException;
 
@@ -51,7 +42,7 @@ import java.lang.IllegalArgumentException;
 public class StampController {
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
-    private final TempFileManager tempFileManager;
+    private final FontCacheService fontCacheService;
 
     @PostMapping(consumes = "multipart/form-data", value = "/add-stamp")
     @Operation(
@@ -109,6 +100,12 @@ public class StampController {
 
         List<Integer> pageNumbers = request.getPageNumbersList(document, true);
 
+        // Load the font once per document, every stamped page shares it
+        PDFont font = null;
+        if ("text".equalsIgnoreCase(stampType)) {
+            font = fontCacheService.loadFontForAlphabet(document, alphabet);
+        }
+
         for (int pageIndex : pageNumbers) {
             int zeroBasedIndex = pageIndex - 1;
             if (zeroBasedIndex >= 0 && zeroBasedIndex < document.getNumberOfPages()) {
@@ -133,7 +130,7 @@ public class StampController {
                             rotation,
                             position,
                             fontSize,
-                            alphabet,
+                            font,
                             overrideX,
                             overrideY,
                             margin,
@@ -170,51 +167,12 @@ public class StampController {
             float rotation,
             int position, // 1-9 positioning logic
             float fontSize,
-            String alphabet,
+            PDFont font,
             float overrideX, // X override
             float overrideY,
             float margin,
             String colorString) // Y override
             throws IOException {
-        String resourceDir = "";
-        PDFont font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
-        switch (alphabet) {
-            case "arabic":
-                resourceDir = "static/fonts/NotoSansArabic-Regular.ttf";
-                break;
-            case "japanese":
-                resourceDir = "static/fonts/Meiryo.ttf";
-                break;
-            case "korean":
-                resourceDir = "static/fonts/malgun.ttf";
-                break;
-            case "chinese":
-                resourceDir = "static/fonts/SimSun.ttf";
-                break;
-            case "thai":
-                resourceDir = "static/fonts/NotoSansThai-Regular.ttf";
-                break;
-            case "roman":
-            default:
-                resourceDir = "static/fonts/NotoSans-Regular.ttf";
-                break;
-        }
-
-        if (!"".equals(resourceDir)) {
-            ClassPathResource classPathResource = new ClassPathResource(resourceDir);
-            String fileExtension = resourceDir.substring(resourceDir.lastIndexOf("."));
-
-            // Use TempFile with try-with-resources for automatic cleanup
-            try (TempFile tempFileWrapper = new TempFile(tempFileManager, fileExtension)) {
-                File tempFile = tempFileWrapper.getFile();
-                try (InputStream is = classPathResource.getInputStream();
-                        FileOutputStream os = new FileOutputStream(tempFile)) {
-                    IOUtils.copy(is, os);
-                    font = PDType0Font.load(document, tempFile);
-                }
-            }
-        }
-
         contentStream.setFont(font, fontSize);
 
         Color redactColor;
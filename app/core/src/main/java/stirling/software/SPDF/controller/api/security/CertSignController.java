@@ -9,8 +9,18 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.pdfbox.examples.signature.CreateSignatureBase;
@@ -54,11 +64,14 @@ import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.pkcs.PKCS8EncryptedPrivateKeyInfo;
 import org.bouncycastle.pkcs.PKCSException;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -69,12 +82,21 @@ import io.micrometer.common.util.StringUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import stirling.software.SPDF.model.api.security.BatchSignPDFWithCertRequest;
+import stirling.software.SPDF.model.api.security.CertSignSessionRequest;
 import stirling.software.SPDF.model.api.security.SignPDFWithCertRequest;
+import stirling.software.SPDF.service.CertSignSessionService;
+import stirling.software.SPDF.service.CertSignSessionService.SigningSession;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.util.ExceptionUtils;
+import stirling.software.common.util.ExecutorFactory;
+import stirling.software.common.util.TempFile;
+import stirling.software.common.util.TempFileManager;
 import stirling.software.common.util.WebResponseUtils;
 
 @RestController
@@ -101,6 +123,9 @@ public class CertSignController {
     }
 
     private final CustomPDFDocumentFactory pdfDocumentFactory;
+    private final CertSignSessionService certSignSessionService;
+    private final TempFileManager tempFileManager;
+    private final HttpServletRequest servletRequest;
 
     private static void sign(
             CustomPDFDocumentFactory pdfDocumentFactory,
@@ -113,6 +138,35 @@ public class CertSignController {
             String location,
             String reason,
             Boolean showLogo) {
+        try {
+            signDocument(
+                    pdfDocumentFactory,
+                    input,
+                    output,
+                    instance,
+                    showSignature,
+                    pageNumber,
+                    name,
+                    location,
+                    reason,
+                    showLogo);
+        } catch (Exception e) {
+            ExceptionUtils.logException("PDF signing", e);
+        }
+    }
+
+    private static void signDocument(
+            CustomPDFDocumentFactory pdfDocumentFactory,
+            MultipartFile input,
+            OutputStream output,
+            CreateSignature instance,
+            Boolean showSignature,
+            Integer pageNumber,
+            String name,
+            String location,
+            String reason,
+            Boolean showLogo)
+            throws IOException {
         try (PDDocument doc = pdfDocumentFactory.load(input)) {
             PDSignature signature = new PDSignature();
             signature.setFilter(PDSignature.FILTER_ADOBE_PPKLITE);
@@ -133,8 +187,6 @@ public class CertSignController {
                 doc.addSignature(signature, instance);
             }
             doc.saveIncremental(output);
-        } catch (Exception e) {
-            ExceptionUtils.logException("PDF signing", e);
         }
     }
 
@@ -167,6 +219,241 @@ public class CertSignController {
         Integer pageNumber = request.getPageNumber() != null ? (request.getPageNumber() - 1) : null;
         Boolean showLogo = request.getShowLogo();
 
+        CreateSignature createSignature =
+                resolveSigner(
+                        request.getSessionId(),
+                        certType,
+                        privateKeyFile,
+                        certFile,
+                        p12File,
+                        jksfile,
+                        password);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        sign(
+                pdfDocumentFactory,
+                pdf,
+                baos,
+                createSignature,
+                showSignature,
+                pageNumber,
+                name,
+                location,
+                reason,
+                showLogo);
+        return WebResponseUtils.baosToWebResponse(
+                baos,
+                Filenames.toSimpleFileName(pdf.getOriginalFilename()).replaceFirst("[.][^.]+$", "")
+                        + "_signed.pdf");
+    }
+
+    @PostMapping(
+            consumes = {
+                MediaType.MULTIPART_FORM_DATA_VALUE,
+                MediaType.APPLICATION_FORM_URLENCODED_VALUE
+            },
+            value = "/cert-sign/batch")
+    @Operation(
+            summary = "Sign multiple PDFs with one Digital Certificate",
+            description =
+                    "This endpoint accepts several PDF files together with a single digital"
+                            + " certificate (or the ID of a signing session) and signs every file"
+                            + " with the same signer. The signed PDFs are returned in a ZIP file in"
+                            + " the order they were uploaded. Input:PDF Output:ZIP-PDF Type:MIMO")
+    public ResponseEntity<Resource> signPDFsWithCert(
+            @ModelAttribute BatchSignPDFWithCertRequest request) throws Exception {
+        MultipartFile[] files = request.getFileInput();
+        if (files == null || files.length == 0) {
+            throw ExceptionUtils.createPdfFileRequiredException();
+        }
+        Integer pageNumber = request.getPageNumber() != null ? (request.getPageNumber() - 1) : null;
+
+        CreateSignature createSignature =
+                resolveSigner(
+                        request.getSessionId(),
+                        request.getCertType(),
+                        request.getPrivateKeyFile(),
+                        request.getCertFile(),
+                        request.getP12File(),
+                        request.getJksFile(),
+                        request.getPassword());
+
+        ExecutorService executor = ExecutorFactory.getCpuBoundExecutor();
+        // Bound the number of signed documents held in memory while waiting to be zipped
+        int maxInFlight = ExecutorFactory.getCpuParallelism() * 2;
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        Set<String> entryNames = new HashSet<>();
+
+        TempFile zipFile = new TempFile(tempFileManager, ".zip");
+        try {
+            try (ZipOutputStream zipOut =
+                    new ZipOutputStream(Files.newOutputStream(zipFile.getPath()))) {
+                int written = 0;
+                for (int i = 0; i < files.length; i++) {
+                    MultipartFile pdf = files[i];
+                    inFlight.add(
+                            executor.submit(
+                                    () -> {
+                                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                                        signDocument(
+                                                pdfDocumentFactory,
+                                                pdf,
+                                                baos,
+                                                createSignature,
+                                                request.getShowSignature(),
+                                                pageNumber,
+                                                request.getName(),
+                                                request.getLocation(),
+                                                request.getReason(),
+                                                request.getShowLogo());
+                                        return baos.toByteArray();
+                                    }));
+                    if (inFlight.size() >= maxInFlight) {
+                        writeSignedEntry(zipOut, inFlight.poll(), files[written++], entryNames);
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    writeSignedEntry(zipOut, inFlight.poll(), files[written++], entryNames);
+                }
+            } catch (Exception e) {
+                inFlight.forEach(future -> future.cancel(true));
+                throw e;
+            }
+
+            // Streamed from the file, which is deleted once it was sent
+            return WebResponseUtils.fileToWebResponse(
+                    zipFile.getPath(), "signed_documents.zip", MediaType.APPLICATION_OCTET_STREAM);
+        } catch (Exception e) {
+            zipFile.close();
+            throw e;
+        }
+    }
+
+    private void writeSignedEntry(
+            ZipOutputStream zipOut,
+            Future<byte[]> signed,
+            MultipartFile source,
+            Set<String> entryNames)
+            throws IOException, InterruptedException {
+        byte[] pdf;
+        try {
+            pdf = signed.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to sign " + source.getOriginalFilename(), cause);
+        }
+
+        String baseName =
+                Filenames.toSimpleFileName(source.getOriginalFilename())
+                        .replaceFirst("[.][^.]+$", "")
+                        + "_signed";
+        String entryName = baseName + ".pdf";
+        for (int n = 2; !entryNames.add(entryName); n++) {
+            entryName = baseName + "_" + n + ".pdf";
+        }
+
+        zipOut.putNextEntry(new ZipEntry(entryName));
+        zipOut.write(pdf);
+        zipOut.closeEntry();
+        log.debug("Wrote signed document {} to zip file", entryName);
+    }
+
+    @PostMapping(
+            consumes = {
+                MediaType.MULTIPART_FORM_DATA_VALUE,
+                MediaType.APPLICATION_FORM_URLENCODED_VALUE
+            },
+            value = "/cert-sign/session")
+    @Operation(
+            summary = "Open a short-lived signing session",
+            description =
+                    "This endpoint accepts a digital certificate and its password, decrypts the"
+                            + " key once and keeps it in server memory for a short fixed time. The"
+                            + " returned session ID can be passed to /cert-sign and"
+                            + " /cert-sign/batch instead of uploading the certificate again."
+                            + " Sessions are never written to disk and can only be used by the"
+                            + " user, or without login the client address, that opened them."
+                            + " Input:NONE Output:JSON"
+                            + " Type:SISO")
+    public ResponseEntity<Map<String, Object>> openSigningSession(
+            @ModelAttribute CertSignSessionRequest request) throws Exception {
+        CreateSignature createSignature =
+                createSigner(
+                        request.getCertType(),
+                        request.getPrivateKeyFile(),
+                        request.getCertFile(),
+                        request.getP12File(),
+                        request.getJksFile(),
+                        request.getPassword());
+        SigningSession session =
+                certSignSessionService.openSession(getSessionOwner(), createSignature);
+        return ResponseEntity.ok(
+                Map.of(
+                        "sessionId",
+                        session.sessionId(),
+                        "expiresAt",
+                        session.expiresAt().toString()));
+    }
+
+    @DeleteMapping("/cert-sign/session/{sessionId}")
+    @Operation(
+            summary = "Close a signing session",
+            description =
+                    "Discards the key material held for a signing session before its expiry."
+                            + " Input:NONE Output:NONE Type:SISO")
+    public ResponseEntity<Void> closeSigningSession(@PathVariable String sessionId) {
+        return certSignSessionService.closeSession(sessionId, getSessionOwner())
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private CreateSignature resolveSigner(
+            String sessionId,
+            String certType,
+            MultipartFile privateKeyFile,
+            MultipartFile certFile,
+            MultipartFile p12File,
+            MultipartFile jksfile,
+            String password)
+            throws Exception {
+        if (StringUtils.isNotBlank(sessionId)) {
+            return (CreateSignature)
+                    certSignSessionService
+                            .getSigner(sessionId, getSessionOwner())
+                            .orElseThrow(
+                                    () ->
+                                            ExceptionUtils.createIllegalArgumentException(
+                                                    "error.invalidArgument",
+                                                    "Invalid argument: {0}",
+                                                    "signing session is unknown or has expired"));
+        }
+        return createSigner(certType, privateKeyFile, certFile, p12File, jksfile, password);
+    }
+
+    // Sessions belong to the logged in user, or to the client address when nobody is logged in.
+    // API clients don't keep cookies, so an HTTP session would be new on every call
+    private String getSessionOwner() {
+        Principal principal = servletRequest.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        return "address:" + servletRequest.getRemoteAddr();
+    }
+
+    private CreateSignature createSigner(
+            String certType,
+            MultipartFile privateKeyFile,
+            MultipartFile certFile,
+            MultipartFile p12File,
+            MultipartFile jksfile,
+            String password)
+            throws Exception {
+
         if (StringUtils.isBlank(certType)) {
             throw ExceptionUtils.createIllegalArgumentException(
                     "error.optionsNotSpecified",
@@ -200,23 +487,8 @@ public class CertSignController {
                         "certificate type: " + certType);
         }
 
-        CreateSignature createSignature = new CreateSignature(ks, password.toCharArray());
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        sign(
-                pdfDocumentFactory,
-                pdf,
-                baos,
-                createSignature,
-                showSignature,
-                pageNumber,
-                name,
-                location,
-                reason,
-                showLogo);
-        return WebResponseUtils.baosToWebResponse(
-                baos,
-                Filenames.toSimpleFileName(pdf.getOriginalFilename()).replaceFirst("[.][^.]+$", "")
-                        + "_signed.pdf");
+
+        return new CreateSignature(ks, password.toCharArray());
     }
 
     private PrivateKey getPrivateKeyFromPEM(byte[] pemBytes, String password)
@@ -248,7 +520,7 @@ public class CertSignController {
         }
     }
 
-    class CreateSignature extends CreateSignatureBase {
+    static class CreateSignature extends CreateSignatureBase {
         File logoFile;
 
         public CreateSignature(KeyStore keystore, char[] pin)
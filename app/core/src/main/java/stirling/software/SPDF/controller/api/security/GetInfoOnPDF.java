@@ -2,6 +2,9 @@ package stirling.software.SPDF.controller.api.security;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -12,7 +15,6 @@ import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.pdmodel.*;
 import org.apache.pdfbox.pdmodel.common.PDMetadata;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
 import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
@@ -51,6 +53,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -61,7 +64,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import stirling.software.common.model.api.PDFFile;
+import stirling.software.SPDF.model.api.security.PDFInfoRequest;
 import stirling.software.common.service.CustomPDFDocumentFactory;
 import stirling.software.common.util.ExceptionUtils;
 import stirling.software.common.util.WebResponseUtils;
@@ -75,6 +78,26 @@ public class GetInfoOnPDF {
 
     static ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final String SECTION_METADATA = "metadata";
+    private static final String SECTION_PER_PAGE = "perPage";
+    private static final String SECTION_FONTS = "fonts";
+    private static final String SECTION_IMAGES = "images";
+    private static final String SECTION_FORMS = "forms";
+    private static final String SECTION_STRUCTURE = "structure";
+    private static final String SECTION_TEXT_STATS = "textStats";
+    private static final List<String> SECTIONS =
+            List.of(
+                    SECTION_METADATA,
+                    SECTION_PER_PAGE,
+                    SECTION_FONTS,
+                    SECTION_IMAGES,
+                    SECTION_FORMS,
+                    SECTION_STRUCTURE,
+                    SECTION_TEXT_STATS);
+
+    private static final List<String> STANDARDS =
+            List.of("PDF/A", "PDF/X", "PDF/E", "PDF/VT", "PDF/UA", "PDF/B", "PDF/SEC");
+
     private final CustomPDFDocumentFactory pdfDocumentFactory;
 
     private static void addOutlinesToArray(PDOutlineItem outline, ArrayNode arrayNode) {
@@ -97,9 +120,10 @@ public class GetInfoOnPDF {
      * as encryption status, permission restrictions, and standards compliance.
      *
      * @param document The PDF document to analyze
+     * @param standards The standards found in the document metadata
      * @return An ObjectNode containing structured summary data
      */
-    private ObjectNode generatePDFSummaryData(PDDocument document) {
+    private ObjectNode generatePDFSummaryData(PDDocument document, Set<String> standards) {
         ObjectNode summaryData = objectMapper.createObjectNode();
 
         // Check if encrypted
@@ -125,19 +149,19 @@ public class GetInfoOnPDF {
         }
 
         // Check standard compliance
-        if (checkForStandard(document, "PDF/A")) {
+        if (standards.contains("PDF/A")) {
             summaryData.put("standardCompliance", "PDF/A");
             summaryData.put("standardPurpose", "long-term archiving");
-        } else if (checkForStandard(document, "PDF/X")) {
+        } else if (standards.contains("PDF/X")) {
             summaryData.put("standardCompliance", "PDF/X");
             summaryData.put("standardPurpose", "graphic exchange");
-        } else if (checkForStandard(document, "PDF/UA")) {
+        } else if (standards.contains("PDF/UA")) {
             summaryData.put("standardCompliance", "PDF/UA");
             summaryData.put("standardPurpose", "universal accessibility");
-        } else if (checkForStandard(document, "PDF/E")) {
+        } else if (standards.contains("PDF/E")) {
             summaryData.put("standardCompliance", "PDF/E");
             summaryData.put("standardPurpose", "engineering workflows");
-        } else if (checkForStandard(document, "PDF/VT")) {
+        } else if (standards.contains("PDF/VT")) {
             summaryData.put("standardCompliance", "PDF/VT");
             summaryData.put("standardPurpose", "variable and transactional printing");
         }
@@ -146,7 +170,16 @@ public class GetInfoOnPDF {
     }
 
     public static boolean checkForStandard(PDDocument document, String standardKeyword) {
-        // Check XMP Metadata
+        return findStandards(document, List.of(standardKeyword)).contains(standardKeyword);
+    }
+
+    /**
+     * Find which of the given standard keywords appear in the XMP metadata of the document. The
+     * metadata is read once for all keywords and only parsed when the raw metadata doesn't
+     * already contain all of them.
+     */
+    private static Set<String> findStandards(PDDocument document, List<String> standardKeywords) {
+        Set<String> found = new HashSet<>();
         try {
             PDMetadata pdMetadata = document.getDocumentCatalog().getMetadata();
             if (pdMetadata != null) {
@@ -154,30 +187,27 @@ public class GetInfoOnPDF {
                     // First try to read raw metadata as string to check for standard keywords
                     byte[] metadataBytes = metaStream.readAllBytes();
                     String rawMetadata = new String(metadataBytes, StandardCharsets.UTF_8);
-
-                    if (rawMetadata.contains(standardKeyword)) {
-                        return true;
-                    }
+                    addContainedKeywords(rawMetadata, standardKeywords, found);
                 }
 
-                // If raw check doesn't find it, try parsing with XMP parser
-                try (COSInputStream metaStream = pdMetadata.createInputStream()) {
-                    try {
-                        DomXmpParser domXmpParser = new DomXmpParser();
-                        XMPMetadata xmpMeta = domXmpParser.parse(metaStream);
-
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        new XmpSerializer().serialize(xmpMeta, baos, true);
-                        String xmpString = new String(baos.toByteArray(), StandardCharsets.UTF_8);
-
-                        if (xmpString.contains(standardKeyword)) {
-                            return true;
+                // If raw check doesn't find them all, try parsing with XMP parser
+                if (found.size() < standardKeywords.size()) {
+                    try (COSInputStream metaStream = pdMetadata.createInputStream()) {
+                        try {
+                            DomXmpParser domXmpParser = new DomXmpParser();
+                            XMPMetadata xmpMeta = domXmpParser.parse(metaStream);
+
+                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                            new XmpSerializer().serialize(xmpMeta, baos, true);
+                            String xmpString =
+                                    new String(baos.toByteArray(), StandardCharsets.UTF_8);
+                            addContainedKeywords(xmpString, standardKeywords, found);
+                        } catch (XmpParsingException e) {
+                            // XMP parsing failed, but we already checked raw metadata above
+                            log.debug(
+                                    "XMP parsing failed for standard check, but raw metadata was already checked: {}",
+                                    e.getMessage());
                         }
-                    } catch (XmpParsingException e) {
-                        // XMP parsing failed, but we already checked raw metadata above
-                        log.debug(
-                                "XMP parsing failed for standard check, but raw metadata was already checked: {}",
-                                e.getMessage());
                     }
                 }
             }
@@ -185,27 +215,81 @@ public class GetInfoOnPDF {
             ExceptionUtils.logException("PDF standard checking", e);
         }
 
-        return false;
+        return found;
+    }
+
+    private static void addContainedKeywords(
+            String metadata, List<String> standardKeywords, Set<String> found) {
+        for (String standardKeyword : standardKeywords) {
+            if (metadata.contains(standardKeyword)) {
+                found.add(standardKeyword);
+            }
+        }
     }
 
     @PostMapping(consumes = "multipart/form-data", value = "/get-info-on-pdf")
     @Operation(summary = "Summary here", description = "desc. Input:PDF Output:JSON Type:SISO")
-    public ResponseEntity<byte[]> getPdfInfo(@ModelAttribute PDFFile request) throws IOException {
+    public ResponseEntity<byte[]> getPdfInfo(@ModelAttribute PDFInfoRequest request)
+            throws IOException {
         MultipartFile inputFile = request.getFileInput();
+        Set<String> sections = parseSections(request.getSections());
         boolean readonly = true;
         try (PDDocument pdfBoxDoc = pdfDocumentFactory.load(inputFile, readonly); ) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            ObjectNode jsonOutput = objectMapper.createObjectNode();
+            // Each section is written out as soon as it is collected, only the current page is
+            // held as a tree
+            ByteArrayOutputStream jsonBytes = new ByteArrayOutputStream();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(jsonBytes)) {
+                generator.useDefaultPrettyPrinter();
+                generator.writeStartObject();
+                writeReport(generator, pdfBoxDoc, inputFile.getSize(), sections);
+                generator.writeEndObject();
+            }
+
+            return WebResponseUtils.bytesToWebResponse(
+                    jsonBytes.toByteArray(), "response.json", MediaType.APPLICATION_JSON);
+
+        } catch (Exception e) {
+            log.error("exception", e);
+        }
+        return null;
+    }
+
+    private static Set<String> parseSections(String sections) {
+        if (sections == null || sections.isBlank()) {
+            return new HashSet<>(SECTIONS);
+        }
+        Set<String> selected = new HashSet<>();
+        for (String section : sections.split(",")) {
+            String name = section.trim();
+            if (!name.isEmpty()) {
+                selected.add(
+                        SECTIONS.stream()
+                                .filter(name::equalsIgnoreCase)
+                                .findFirst()
+                                .orElseThrow(
+                                        () ->
+                                                ExceptionUtils.createInvalidArgumentException(
+                                                        "sections", name)));
+            }
+        }
+        return selected;
+    }
 
+    private void writeReport(
+            JsonGenerator generator,
+            PDDocument pdfBoxDoc,
+            long fileSizeInBytes,
+            Set<String> sections)
+            throws IOException {
+        boolean includeMetadata = sections.contains(SECTION_METADATA);
+        PDDocumentInformation info = pdfBoxDoc.getDocumentInformation();
+        PDDocumentCatalog catalog = pdfBoxDoc.getDocumentCatalog();
+        Set<String> standards =
+                includeMetadata ? findStandards(pdfBoxDoc, STANDARDS) : Collections.emptySet();
+
+        if (includeMetadata) {
             // Metadata using PDFBox
-            PDDocumentInformation info = pdfBoxDoc.getDocumentInformation();
             ObjectNode metadata = objectMapper.createObjectNode();
-            ObjectNode basicInfo = objectMapper.createObjectNode();
-            ObjectNode docInfoNode = objectMapper.createObjectNode();
-            ObjectNode compliancy = objectMapper.createObjectNode();
-            ObjectNode encryption = objectMapper.createObjectNode();
-            ObjectNode other = objectMapper.createObjectNode();
-
             metadata.put("Title", info.getTitle());
             metadata.put("Author", info.getAuthor());
             metadata.put("Subject", info.getSubject());
@@ -214,490 +298,520 @@ public class GetInfoOnPDF {
             metadata.put("Creator", info.getCreator());
             metadata.put("CreationDate", formatDate(info.getCreationDate()));
             metadata.put("ModificationDate", formatDate(info.getModificationDate()));
-            jsonOutput.set("Metadata", metadata);
-
-            // Total file size of the PDF
-            long fileSizeInBytes = inputFile.getSize();
-            basicInfo.put("FileSizeInBytes", fileSizeInBytes);
-
-            // Number of words, paragraphs, and images in the entire document
-            String fullText = new PDFTextStripper().getText(pdfBoxDoc);
-            String[] words = fullText.split("\\s+");
-            int wordCount = words.length;
-            int paragraphCount = fullText.split("\r\n|\r|\n").length;
-            basicInfo.put("WordCount", wordCount);
-            basicInfo.put("ParagraphCount", paragraphCount);
-            // Number of characters in the entire document (including spaces and special characters)
-            int charCount = fullText.length();
-            basicInfo.put("CharacterCount", charCount);
-
-            // Initialize the flags and types
-            boolean hasCompression = false;
-            String compressionType = "None";
-
-            basicInfo.put("Compression", hasCompression);
-            if (hasCompression) basicInfo.put("CompressionType", compressionType);
-
-            String language = pdfBoxDoc.getDocumentCatalog().getLanguage();
-            basicInfo.put("Language", language);
-            basicInfo.put("Number of pages", pdfBoxDoc.getNumberOfPages());
-
-            PDDocumentCatalog catalog = pdfBoxDoc.getDocumentCatalog();
-            String pageMode = catalog.getPageMode().name();
-
-            // Document Information using PDFBox
-            docInfoNode.put("PDF version", pdfBoxDoc.getVersion());
-            docInfoNode.put("Trapped", info.getTrapped());
-            docInfoNode.put("Page Mode", getPageModeDescription(pageMode));
-            ;
-
-            PDAcroForm acroForm = pdfBoxDoc.getDocumentCatalog().getAcroForm();
-
-            ObjectNode formFieldsNode = objectMapper.createObjectNode();
+            generator.writeObjectField("Metadata", metadata);
+        }
+
+        if (sections.contains(SECTION_FORMS)) {
+            generator.writeFieldName("FormFields");
+            generator.writeStartObject();
+            PDAcroForm acroForm = catalog.getAcroForm();
             if (acroForm != null) {
                 for (PDField field : acroForm.getFieldTree()) {
-                    formFieldsNode.put(field.getFullyQualifiedName(), field.getValueAsString());
+                    generator.writeStringField(
+                            field.getFullyQualifiedName(), field.getValueAsString());
                 }
             }
-            jsonOutput.set("FormFields", formFieldsNode);
+            generator.writeEndObject();
+        }
 
+        if (includeMetadata) {
             // Generate structured summary data about PDF characteristics
-            ObjectNode summaryData = generatePDFSummaryData(pdfBoxDoc);
-            if (summaryData != null && summaryData.size() > 0) {
-                jsonOutput.set("SummaryData", summaryData);
-            }
-
-            // embeed files TODO size
-            if (catalog.getNames() != null) {
-                PDEmbeddedFilesNameTreeNode efTree = catalog.getNames().getEmbeddedFiles();
-
-                ArrayNode embeddedFilesArray = objectMapper.createArrayNode();
-                if (efTree != null) {
-                    Map<String, PDComplexFileSpecification> efMap = efTree.getNames();
-                    if (efMap != null) {
-                        for (Map.Entry<String, PDComplexFileSpecification> entry :
-                                efMap.entrySet()) {
-                            ObjectNode embeddedFileNode = objectMapper.createObjectNode();
-                            embeddedFileNode.put("Name", entry.getKey());
-                            PDEmbeddedFile embeddedFile = entry.getValue().getEmbeddedFile();
-                            if (embeddedFile != null) {
-                                embeddedFileNode.put(
-                                        "FileSize", embeddedFile.getLength()); // size in bytes
-                            }
-                            embeddedFilesArray.add(embeddedFileNode);
-                        }
-                    }
-                }
-                other.set("EmbeddedFiles", embeddedFilesArray);
+            ObjectNode summaryData = generatePDFSummaryData(pdfBoxDoc, standards);
+            if (summaryData.size() > 0) {
+                generator.writeObjectField("SummaryData", summaryData);
             }
+        }
 
-            // attachments TODO size
-            ArrayNode attachmentsArray = objectMapper.createArrayNode();
-            for (PDPage page : pdfBoxDoc.getPages()) {
-                for (PDAnnotation annotation : page.getAnnotations()) {
-                    if (annotation instanceof PDAnnotationFileAttachment fileAttachmentAnnotation) {
-                        ObjectNode attachmentNode = objectMapper.createObjectNode();
-                        attachmentNode.put("Name", fileAttachmentAnnotation.getAttachmentName());
-                        attachmentNode.put("Description", fileAttachmentAnnotation.getContents());
+        // One text pass over the whole document, the per page counts are taken as it goes
+        TextStatistics textStatistics = null;
+        if (sections.contains(SECTION_TEXT_STATS)) {
+            textStatistics = TextStatistics.collect(pdfBoxDoc);
+        }
 
-                        attachmentsArray.add(attachmentNode);
-                    }
-                }
+        if (includeMetadata || textStatistics != null) {
+            ObjectNode basicInfo = objectMapper.createObjectNode();
+            if (includeMetadata) {
+                // Total file size of the PDF
+                basicInfo.put("FileSizeInBytes", fileSizeInBytes);
             }
-            other.set("Attachments", attachmentsArray);
-
-            // Javascript
-            PDDocumentNameDictionary namesDict = catalog.getNames();
-            ArrayNode javascriptArray = objectMapper.createArrayNode();
+            if (textStatistics != null) {
+                // Number of words, paragraphs and characters in the entire document
+                basicInfo.put("WordCount", textStatistics.getWordCount());
+                basicInfo.put("ParagraphCount", textStatistics.getParagraphCount());
+                basicInfo.put("CharacterCount", textStatistics.getCharacterCount());
+            }
+            if (includeMetadata) {
+                // Initialize the flags and types
+                boolean hasCompression = false;
+                String compressionType = "None";
 
-            if (namesDict != null) {
-                PDJavascriptNameTreeNode javascriptDict = namesDict.getJavaScript();
-                if (javascriptDict != null) {
-                    try {
-                        Map<String, PDActionJavaScript> jsEntries = javascriptDict.getNames();
+                basicInfo.put("Compression", hasCompression);
+                if (hasCompression) basicInfo.put("CompressionType", compressionType);
 
-                        for (Map.Entry<String, PDActionJavaScript> entry : jsEntries.entrySet()) {
-                            ObjectNode jsNode = objectMapper.createObjectNode();
-                            jsNode.put("JS Name", entry.getKey());
+                basicInfo.put("Language", catalog.getLanguage());
+                basicInfo.put("Number of pages", pdfBoxDoc.getNumberOfPages());
+            }
+            generator.writeObjectField("BasicInfo", basicInfo);
+        }
 
-                            PDActionJavaScript jsAction = entry.getValue();
-                            if (jsAction != null) {
-                                String jsCodeStr = jsAction.getAction();
-                                if (jsCodeStr != null) {
-                                    jsNode.put("JS Script Length", jsCodeStr.length());
-                                }
-                            }
+        if (includeMetadata) {
+            writeDocumentDetails(generator, pdfBoxDoc, info, catalog, standards);
+        }
 
-                            javascriptArray.add(jsNode);
-                        }
-                    } catch (IOException e) {
-                        log.error("exception", e);
-                    }
-                }
+        ArrayNode attachmentsArray = objectMapper.createArrayNode();
+        if (sections.contains(SECTION_PER_PAGE)
+                || sections.contains(SECTION_FONTS)
+                || sections.contains(SECTION_IMAGES)
+                || textStatistics != null) {
+            generator.writeFieldName("PerPageInfo");
+            generator.writeStartObject();
+            for (int pageNum = 0; pageNum < pdfBoxDoc.getNumberOfPages(); pageNum++) {
+                PDPage page = pdfBoxDoc.getPage(pageNum);
+                generator.writeObjectField(
+                        "Page " + (pageNum + 1),
+                        getPageInfo(page, pageNum, sections, textStatistics, attachmentsArray));
             }
-            other.set("JavaScript", javascriptArray);
-
-            // TODO size
-            PDOptionalContentProperties ocProperties =
-                    pdfBoxDoc.getDocumentCatalog().getOCProperties();
-            ArrayNode layersArray = objectMapper.createArrayNode();
+            generator.writeEndObject();
+        } else if (includeMetadata) {
+            for (PDPage page : pdfBoxDoc.getPages()) {
+                addAttachments(page.getAnnotations(), attachmentsArray);
+            }
+        }
 
-            if (ocProperties != null) {
-                for (PDOptionalContentGroup ocg : ocProperties.getOptionalContentGroups()) {
-                    ObjectNode layerNode = objectMapper.createObjectNode();
-                    layerNode.put("Name", ocg.getName());
-                    layersArray.add(layerNode);
+        boolean includeStructure = sections.contains(SECTION_STRUCTURE);
+        if (includeMetadata || includeStructure) {
+            generator.writeFieldName("Other");
+            generator.writeStartObject();
+            if (includeMetadata) {
+                writeDocumentComponents(generator, catalog, attachmentsArray);
+            }
+            if (includeStructure) {
+                PDStructureTreeRoot structureTreeRoot = catalog.getStructureTreeRoot();
+                if (structureTreeRoot != null) {
+                    generator.writeFieldName("StructureTree");
+                    writeStructureTree(generator, structureTreeRoot.getKids());
                 }
             }
+            if (includeMetadata) {
+                writeOutlineAndXmp(generator, catalog);
+            }
+            generator.writeEndObject();
+        }
+    }
 
-            other.set("Layers", layersArray);
+    private void writeDocumentDetails(
+            JsonGenerator generator,
+            PDDocument pdfBoxDoc,
+            PDDocumentInformation info,
+            PDDocumentCatalog catalog,
+            Set<String> standards)
+            throws IOException {
+        // Document Information using PDFBox
+        ObjectNode docInfoNode = objectMapper.createObjectNode();
+        docInfoNode.put("PDF version", pdfBoxDoc.getVersion());
+        docInfoNode.put("Trapped", info.getTrapped());
+        docInfoNode.put("Page Mode", getPageModeDescription(catalog.getPageMode().name()));
+        generator.writeObjectField("DocumentInfo", docInfoNode);
+
+        // PDF/B and PDF/SEC aren't official ISO standards, PDF/SEC was still under development
+        // in 2021 so this check might not be effective
+        ObjectNode compliancy = objectMapper.createObjectNode();
+        for (String standard : STANDARDS) {
+            compliancy.put("Is" + standard + "Compliant", standards.contains(standard));
+        }
+        generator.writeObjectField("Compliancy", compliancy);
 
-            // TODO Security
+        ObjectNode encryption = objectMapper.createObjectNode();
+        if (pdfBoxDoc.isEncrypted()) {
+            encryption.put("IsEncrypted", true);
 
-            PDStructureTreeRoot structureTreeRoot =
-                    pdfBoxDoc.getDocumentCatalog().getStructureTreeRoot();
-            ArrayNode structureTreeArray;
-            try {
-                if (structureTreeRoot != null) {
-                    structureTreeArray = exploreStructureTree(structureTreeRoot.getKids());
-                    other.set("StructureTree", structureTreeArray);
-                }
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
-                log.error("exception", e);
-            }
+            // Retrieve encryption details using getEncryption()
+            PDEncryption pdfEncryption = pdfBoxDoc.getEncryption();
+            encryption.put("EncryptionAlgorithm", pdfEncryption.getFilter());
+            encryption.put("KeyLength", pdfEncryption.getLength());
+            // Add other encryption-related properties as needed
+        } else {
+            encryption.put("IsEncrypted", false);
+        }
+        generator.writeObjectField("Encryption", encryption);
 
-            boolean isPdfACompliant = checkForStandard(pdfBoxDoc, "PDF/A");
-            boolean isPdfXCompliant = checkForStandard(pdfBoxDoc, "PDF/X");
-            boolean isPdfECompliant = checkForStandard(pdfBoxDoc, "PDF/E");
-            boolean isPdfVTCompliant = checkForStandard(pdfBoxDoc, "PDF/VT");
-            boolean isPdfUACompliant = checkForStandard(pdfBoxDoc, "PDF/UA");
-            boolean isPdfBCompliant =
-                    checkForStandard(
-                            pdfBoxDoc,
-                            "PDF/B"); // If you want to check for PDF/Broadcast, though this isn't
-            // an official ISO standard.
-            boolean isPdfSECCompliant =
-                    checkForStandard(
-                            pdfBoxDoc,
-                            "PDF/SEC"); // This might not be effective since PDF/SEC was under
-            // development in 2021.
-
-            compliancy.put("IsPDF/ACompliant", isPdfACompliant);
-            compliancy.put("IsPDF/XCompliant", isPdfXCompliant);
-            compliancy.put("IsPDF/ECompliant", isPdfECompliant);
-            compliancy.put("IsPDF/VTCompliant", isPdfVTCompliant);
-            compliancy.put("IsPDF/UACompliant", isPdfUACompliant);
-            compliancy.put("IsPDF/BCompliant", isPdfBCompliant);
-            compliancy.put("IsPDF/SECCompliant", isPdfSECCompliant);
-
-            PDOutlineNode root = pdfBoxDoc.getDocumentCatalog().getDocumentOutline();
-            ArrayNode bookmarksArray = objectMapper.createArrayNode();
-
-            if (root != null) {
-                for (PDOutlineItem child : root.children()) {
-                    addOutlinesToArray(child, bookmarksArray);
+        ObjectNode permissionsNode = objectMapper.createObjectNode();
+        setNodePermissions(pdfBoxDoc, permissionsNode);
+        generator.writeObjectField("Permissions", permissionsNode);
+    }
+
+    private void writeDocumentComponents(
+            JsonGenerator generator, PDDocumentCatalog catalog, ArrayNode attachmentsArray)
+            throws IOException {
+        PDDocumentNameDictionary namesDict = catalog.getNames();
+
+        // embeed files TODO size
+        if (namesDict != null) {
+            PDEmbeddedFilesNameTreeNode efTree = namesDict.getEmbeddedFiles();
+
+            ArrayNode embeddedFilesArray = objectMapper.createArrayNode();
+            if (efTree != null) {
+                Map<String, PDComplexFileSpecification> efMap = efTree.getNames();
+                if (efMap != null) {
+                    for (Map.Entry<String, PDComplexFileSpecification> entry : efMap.entrySet()) {
+                        ObjectNode embeddedFileNode = objectMapper.createObjectNode();
+                        embeddedFileNode.put("Name", entry.getKey());
+                        PDEmbeddedFile embeddedFile = entry.getValue().getEmbeddedFile();
+                        if (embeddedFile != null) {
+                            embeddedFileNode.put(
+                                    "FileSize", embeddedFile.getLength()); // size in bytes
+                        }
+                        embeddedFilesArray.add(embeddedFileNode);
+                    }
                 }
             }
+            generator.writeObjectField("EmbeddedFiles", embeddedFilesArray);
+        }
 
-            other.set("Bookmarks/Outline/TOC", bookmarksArray);
+        // attachments TODO size
+        generator.writeObjectField("Attachments", attachmentsArray);
 
-            PDMetadata pdMetadata = pdfBoxDoc.getDocumentCatalog().getMetadata();
+        // Javascript
+        ArrayNode javascriptArray = objectMapper.createArrayNode();
+        if (namesDict != null) {
+            PDJavascriptNameTreeNode javascriptDict = namesDict.getJavaScript();
+            if (javascriptDict != null) {
+                try {
+                    Map<String, PDActionJavaScript> jsEntries = javascriptDict.getNames();
 
-            String xmpString = null;
+                    for (Map.Entry<String, PDActionJavaScript> entry : jsEntries.entrySet()) {
+                        ObjectNode jsNode = objectMapper.createObjectNode();
+                        jsNode.put("JS Name", entry.getKey());
 
-            if (pdMetadata != null) {
-                try {
-                    try (COSInputStream is = pdMetadata.createInputStream()) {
-                        DomXmpParser domXmpParser = new DomXmpParser();
-                        XMPMetadata xmpMeta = domXmpParser.parse(is);
+                        PDActionJavaScript jsAction = entry.getValue();
+                        if (jsAction != null) {
+                            String jsCodeStr = jsAction.getAction();
+                            if (jsCodeStr != null) {
+                                jsNode.put("JS Script Length", jsCodeStr.length());
+                            }
+                        }
 
-                        ByteArrayOutputStream os = new ByteArrayOutputStream();
-                        new XmpSerializer().serialize(xmpMeta, os, true);
-                        xmpString = new String(os.toByteArray(), StandardCharsets.UTF_8);
-                    }
-                } catch (XmpParsingException e) {
-                    // XMP parsing failed, try to read raw metadata instead
-                    log.debug("XMP parsing failed, reading raw metadata: {}", e.getMessage());
-                    try (COSInputStream is = pdMetadata.createInputStream()) {
-                        byte[] metadataBytes = is.readAllBytes();
-                        xmpString = new String(metadataBytes, StandardCharsets.UTF_8);
+                        javascriptArray.add(jsNode);
                     }
                 } catch (IOException e) {
                     log.error("exception", e);
                 }
             }
+        }
+        generator.writeObjectField("JavaScript", javascriptArray);
+
+        // TODO size
+        PDOptionalContentProperties ocProperties = catalog.getOCProperties();
+        ArrayNode layersArray = objectMapper.createArrayNode();
+        if (ocProperties != null) {
+            for (PDOptionalContentGroup ocg : ocProperties.getOptionalContentGroups()) {
+                ObjectNode layerNode = objectMapper.createObjectNode();
+                layerNode.put("Name", ocg.getName());
+                layersArray.add(layerNode);
+            }
+        }
+        generator.writeObjectField("Layers", layersArray);
 
-            other.put("XMPMetadata", xmpString);
-
-            if (pdfBoxDoc.isEncrypted()) {
-                encryption.put("IsEncrypted", true);
+        // TODO Security
+    }
 
-                // Retrieve encryption details using getEncryption()
-                PDEncryption pdfEncryption = pdfBoxDoc.getEncryption();
-                encryption.put("EncryptionAlgorithm", pdfEncryption.getFilter());
-                encryption.put("KeyLength", pdfEncryption.getLength());
-                // Add other encryption-related properties as needed
-            } else {
-                encryption.put("IsEncrypted", false);
+    private void writeOutlineAndXmp(JsonGenerator generator, PDDocumentCatalog catalog)
+            throws IOException {
+        PDOutlineNode root = catalog.getDocumentOutline();
+        ArrayNode bookmarksArray = objectMapper.createArrayNode();
+        if (root != null) {
+            for (PDOutlineItem child : root.children()) {
+                addOutlinesToArray(child, bookmarksArray);
             }
+        }
+        generator.writeObjectField("Bookmarks/Outline/TOC", bookmarksArray);
 
-            ObjectNode permissionsNode = objectMapper.createObjectNode();
-            setNodePermissions(pdfBoxDoc, permissionsNode);
-
-            ObjectNode pageInfoParent = objectMapper.createObjectNode();
-            for (int pageNum = 0; pageNum < pdfBoxDoc.getNumberOfPages(); pageNum++) {
-                ObjectNode pageInfo = objectMapper.createObjectNode();
+        PDMetadata pdMetadata = catalog.getMetadata();
+        String xmpString = null;
+        if (pdMetadata != null) {
+            try {
+                try (COSInputStream is = pdMetadata.createInputStream()) {
+                    DomXmpParser domXmpParser = new DomXmpParser();
+                    XMPMetadata xmpMeta = domXmpParser.parse(is);
 
-                // Retrieve the page
-                PDPage page = pdfBoxDoc.getPage(pageNum);
+                    ByteArrayOutputStream os = new ByteArrayOutputStream();
+                    new XmpSerializer().serialize(xmpMeta, os, true);
+                    xmpString = new String(os.toByteArray(), StandardCharsets.UTF_8);
+                }
+            } catch (XmpParsingException e) {
+                // XMP parsing failed, try to read raw metadata instead
+                log.debug("XMP parsing failed, reading raw metadata: {}", e.getMessage());
+                try (COSInputStream is = pdMetadata.createInputStream()) {
+                    byte[] metadataBytes = is.readAllBytes();
+                    xmpString = new String(metadataBytes, StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                log.error("exception", e);
+            }
+        }
+        generator.writeStringField("XMPMetadata", xmpString);
+    }
 
-                // Page-level Information
-                PDRectangle mediaBox = page.getMediaBox();
+    /**
+     * Collect the requested information for a single page. The annotations and the resources of
+     * the page are walked once and feed every requested section, file attachments are added to
+     * attachmentsArray for the document level report.
+     */
+    private ObjectNode getPageInfo(
+            PDPage page,
+            int pageNum,
+            Set<String> sections,
+            TextStatistics textStatistics,
+            ArrayNode attachmentsArray)
+            throws IOException {
+        boolean includePageDetails = sections.contains(SECTION_PER_PAGE);
+        ObjectNode pageInfo = objectMapper.createObjectNode();
 
-                float width = mediaBox.getWidth();
-                float height = mediaBox.getHeight();
+        if (includePageDetails) {
+            // Page-level Information
+            PDRectangle mediaBox = page.getMediaBox();
 
-                ObjectNode sizeInfo = objectMapper.createObjectNode();
+            float width = mediaBox.getWidth();
+            float height = mediaBox.getHeight();
 
-                getDimensionInfo(sizeInfo, width, height);
+            ObjectNode sizeInfo = objectMapper.createObjectNode();
 
-                sizeInfo.put("Standard Page", getPageSize(width, height));
-                pageInfo.set("Size", sizeInfo);
+            getDimensionInfo(sizeInfo, width, height);
 
-                pageInfo.put("Rotation", page.getRotation());
-                pageInfo.put("Page Orientation", getPageOrientation(width, height));
+            sizeInfo.put("Standard Page", getPageSize(width, height));
+            pageInfo.set("Size", sizeInfo);
 
-                // Boxes
-                pageInfo.put("MediaBox", mediaBox.toString());
+            pageInfo.put("Rotation", page.getRotation());
+            pageInfo.put("Page Orientation", getPageOrientation(width, height));
 
-                // Assuming the following boxes are defined for your document; if not, you may get
-                // null values.
-                PDRectangle cropBox = page.getCropBox();
-                pageInfo.put("CropBox", cropBox == null ? "Undefined" : cropBox.toString());
+            // Boxes
+            pageInfo.put("MediaBox", mediaBox.toString());
 
-                PDRectangle bleedBox = page.getBleedBox();
-                pageInfo.put("BleedBox", bleedBox == null ? "Undefined" : bleedBox.toString());
+            // Assuming the following boxes are defined for your document; if not, you may get
+            // null values.
+            PDRectangle cropBox = page.getCropBox();
+            pageInfo.put("CropBox", cropBox == null ? "Undefined" : cropBox.toString());
 
-                PDRectangle trimBox = page.getTrimBox();
-                pageInfo.put("TrimBox", trimBox == null ? "Undefined" : trimBox.toString());
+            PDRectangle bleedBox = page.getBleedBox();
+            pageInfo.put("BleedBox", bleedBox == null ? "Undefined" : bleedBox.toString());
 
-                PDRectangle artBox = page.getArtBox();
-                pageInfo.put("ArtBox", artBox == null ? "Undefined" : artBox.toString());
+            PDRectangle trimBox = page.getTrimBox();
+            pageInfo.put("TrimBox", trimBox == null ? "Undefined" : trimBox.toString());
 
-                // Content Extraction
-                PDFTextStripper textStripper = new PDFTextStripper();
-                textStripper.setStartPage(pageNum + 1);
-                textStripper.setEndPage(pageNum + 1);
-                String pageText = textStripper.getText(pdfBoxDoc);
+            PDRectangle artBox = page.getArtBox();
+            pageInfo.put("ArtBox", artBox == null ? "Undefined" : artBox.toString());
+        }
 
-                pageInfo.put("Text Characters Count", pageText.length()); //
+        if (textStatistics != null) {
+            pageInfo.put("Text Characters Count", textStatistics.getPageCharacterCount(pageNum));
+        }
 
-                // Annotations
+        // Annotations
+        List<PDAnnotation> annotations = page.getAnnotations();
+        addAttachments(annotations, attachmentsArray);
+
+        // XObjects are resolved once for both the images and the per type counts
+        PDResources resources = page.getResources();
+        ArrayNode imagesArray = objectMapper.createArrayNode();
+        Map<String, Integer> xObjectCountMap = new HashMap<>(); // To store the count for each type
+        if (includePageDetails || sections.contains(SECTION_IMAGES)) {
+            for (COSName name : resources.getXObjectNames()) {
+                PDXObject xObject = resources.getXObject(name);
+                String xObjectType;
+
+                if (xObject instanceof PDImageXObject image) {
+                    xObjectType = "Image";
+                    imagesArray.add(getImageInfo(image));
+                } else if (xObject instanceof PDFormXObject) {
+                    xObjectType = "Form";
+                } else {
+                    xObjectType = "Other";
+                }
 
-                List<PDAnnotation> annotations = page.getAnnotations();
+                // Increment the count for this type in the map
+                xObjectCountMap.merge(xObjectType, 1, Integer::sum);
+            }
+        }
 
-                int subtypeCount = 0;
-                int contentsCount = 0;
+        if (includePageDetails) {
+            int subtypeCount = 0;
+            int contentsCount = 0;
 
-                for (PDAnnotation annotation : annotations) {
-                    if (annotation.getSubtype() != null) {
-                        subtypeCount++; // Increase subtype count
-                    }
-                    if (annotation.getContents() != null) {
-                        contentsCount++; // Increase contents count
-                    }
+            for (PDAnnotation annotation : annotations) {
+                if (annotation.getSubtype() != null) {
+                    subtypeCount++; // Increase subtype count
+                }
+                if (annotation.getContents() != null) {
+                    contentsCount++; // Increase contents count
                 }
+            }
 
-                ObjectNode annotationsObject = objectMapper.createObjectNode();
-                annotationsObject.put("AnnotationsCount", annotations.size());
-                annotationsObject.put("SubtypeCount", subtypeCount);
-                annotationsObject.put("ContentsCount", contentsCount);
-                pageInfo.set("Annotations", annotationsObject);
-
-                // Images (simplified)
-                // This part is non-trivial as images can be embedded in multiple ways in a PDF.
-                // Here is a basic structure to recognize image XObjects on a page.
-                ArrayNode imagesArray = objectMapper.createArrayNode();
-                PDResources resources = page.getResources();
-
-                for (COSName name : resources.getXObjectNames()) {
-                    PDXObject xObject = resources.getXObject(name);
-                    if (xObject instanceof PDImageXObject image) {
-                        ObjectNode imageNode = objectMapper.createObjectNode();
-                        imageNode.put("Width", image.getWidth());
-                        imageNode.put("Height", image.getHeight());
-                        if (image.getMetadata() != null
-                                && image.getMetadata().getFile() != null
-                                && image.getMetadata().getFile().getFile() != null) {
-                            imageNode.put("Name", image.getMetadata().getFile().getFile());
-                        }
-                        if (image.getColorSpace() != null) {
-                            imageNode.put("ColorSpace", image.getColorSpace().getName());
-                        }
+            ObjectNode annotationsObject = objectMapper.createObjectNode();
+            annotationsObject.put("AnnotationsCount", annotations.size());
+            annotationsObject.put("SubtypeCount", subtypeCount);
+            annotationsObject.put("ContentsCount", contentsCount);
+            pageInfo.set("Annotations", annotationsObject);
+        }
 
-                        imagesArray.add(imageNode);
-                    }
-                }
-                pageInfo.set("Images", imagesArray);
+        if (sections.contains(SECTION_IMAGES)) {
+            pageInfo.set("Images", imagesArray);
+        }
 
-                // Links
-                ArrayNode linksArray = objectMapper.createArrayNode();
-                Set<String> uniqueURIs = new HashSet<>(); // To store unique URIs
+        if (includePageDetails) {
+            // Links
+            ArrayNode linksArray = objectMapper.createArrayNode();
+            Set<String> uniqueURIs = new HashSet<>(); // To store unique URIs
 
-                for (PDAnnotation annotation : annotations) {
-                    if (annotation instanceof PDAnnotationLink linkAnnotation) {
-                        if (linkAnnotation.getAction() instanceof PDActionURI uriAction) {
-                            String uri = uriAction.getURI();
-                            uniqueURIs.add(uri); // Add to set to ensure uniqueness
-                        }
+            for (PDAnnotation annotation : annotations) {
+                if (annotation instanceof PDAnnotationLink linkAnnotation) {
+                    if (linkAnnotation.getAction() instanceof PDActionURI uriAction) {
+                        String uri = uriAction.getURI();
+                        uniqueURIs.add(uri); // Add to set to ensure uniqueness
                     }
                 }
+            }
 
-                // Add unique URIs to linksArray
-                for (String uri : uniqueURIs) {
-                    ObjectNode linkNode = objectMapper.createObjectNode();
-                    linkNode.put("URI", uri);
-                    linksArray.add(linkNode);
-                }
-                pageInfo.set("Links", linksArray);
-
-                // Fonts
-                ArrayNode fontsArray = objectMapper.createArrayNode();
-                Map<String, ObjectNode> uniqueFontsMap = new HashMap<>();
+            // Add unique URIs to linksArray
+            for (String uri : uniqueURIs) {
+                ObjectNode linkNode = objectMapper.createObjectNode();
+                linkNode.put("URI", uri);
+                linksArray.add(linkNode);
+            }
+            pageInfo.set("Links", linksArray);
+        }
 
-                for (COSName fontName : resources.getFontNames()) {
-                    PDFont font = resources.getFont(fontName);
-                    ObjectNode fontNode = objectMapper.createObjectNode();
+        if (sections.contains(SECTION_FONTS)) {
+            pageInfo.set("Fonts", getFontsInfo(resources));
+        }
 
-                    fontNode.put("IsEmbedded", font.isEmbedded());
+        if (includePageDetails) {
+            // Access resources dictionary
+            ArrayNode colorSpacesArray = objectMapper.createArrayNode();
+
+            Iterable<COSName> colorSpaceNames = resources.getColorSpaceNames();
+            for (COSName name : colorSpaceNames) {
+                PDColorSpace colorSpace = resources.getColorSpace(name);
+                if (colorSpace instanceof PDICCBased iccBased) {
+                    // Only the decoded length is reported, the profile isn't kept in memory
+                    long iccLength;
+                    try (InputStream iccData = iccBased.getPDStream().createInputStream()) {
+                        iccLength = iccData.transferTo(OutputStream.nullOutputStream());
+                    }
 
-                    // PDFBox provides Font's BaseFont (i.e., the font name) directly
-                    fontNode.put("Name", font.getName());
+                    // TODO: Further decode and analyze the ICC data if needed
+                    ObjectNode iccProfileNode = objectMapper.createObjectNode();
+                    iccProfileNode.put("ICC Profile Length", iccLength);
+                    colorSpacesArray.add(iccProfileNode);
+                }
+            }
+            pageInfo.set("Color Spaces & ICC Profiles", colorSpacesArray);
 
-                    fontNode.put("Subtype", font.getType());
+            // Add the count map to pageInfo (or wherever you want to store it)
+            ObjectNode xObjectCountNode = objectMapper.createObjectNode();
+            for (Map.Entry<String, Integer> entry : xObjectCountMap.entrySet()) {
+                xObjectCountNode.put(entry.getKey(), entry.getValue());
+            }
+            pageInfo.set("XObjectCounts", xObjectCountNode);
 
-                    PDFontDescriptor fontDescriptor = font.getFontDescriptor();
+            ArrayNode multimediaArray = objectMapper.createArrayNode();
 
-                    if (fontDescriptor != null) {
-                        fontNode.put("ItalicAngle", fontDescriptor.getItalicAngle());
-                        int flags = fontDescriptor.getFlags();
-                        fontNode.put("IsItalic", (flags & 1) != 0);
-                        fontNode.put("IsBold", (flags & 64) != 0);
-                        fontNode.put("IsFixedPitch", (flags & 2) != 0);
-                        fontNode.put("IsSerif", (flags & 4) != 0);
-                        fontNode.put("IsSymbolic", (flags & 8) != 0);
-                        fontNode.put("IsScript", (flags & 16) != 0);
-                        fontNode.put("IsNonsymbolic", (flags & 32) != 0);
+            for (PDAnnotation annotation : annotations) {
+                if ("RichMedia".equals(annotation.getSubtype())) {
+                    ObjectNode multimediaNode = objectMapper.createObjectNode();
+                    // Extract details from the annotation as needed
+                    multimediaArray.add(multimediaNode);
+                }
+            }
 
-                        fontNode.put("FontFamily", fontDescriptor.getFontFamily());
-                        // Font stretch and BBox are not directly available in PDFBox's API, so
-                        // these are omitted for simplicity
-                        fontNode.put("FontWeight", fontDescriptor.getFontWeight());
-                    }
+            pageInfo.set("Multimedia", multimediaArray);
+        }
 
-                    // Create a unique key for this font node based on its attributes
-                    String uniqueKey = fontNode.toString();
-
-                    // Increment count if this font exists, or initialize it if new
-                    if (uniqueFontsMap.containsKey(uniqueKey)) {
-                        ObjectNode existingFontNode = uniqueFontsMap.get(uniqueKey);
-                        int count = existingFontNode.get("Count").asInt() + 1;
-                        existingFontNode.put("Count", count);
-                    } else {
-                        fontNode.put("Count", 1);
-                        uniqueFontsMap.put(uniqueKey, fontNode);
-                    }
-                }
+        return pageInfo;
+    }
 
-                // Add unique font entries to fontsArray
-                for (ObjectNode uniqueFontNode : uniqueFontsMap.values()) {
-                    fontsArray.add(uniqueFontNode);
-                }
+    private static void addAttachments(List<PDAnnotation> annotations, ArrayNode attachmentsArray) {
+        for (PDAnnotation annotation : annotations) {
+            if (annotation instanceof PDAnnotationFileAttachment fileAttachmentAnnotation) {
+                ObjectNode attachmentNode = objectMapper.createObjectNode();
+                attachmentNode.put("Name", fileAttachmentAnnotation.getAttachmentName());
+                attachmentNode.put("Description", fileAttachmentAnnotation.getContents());
 
-                pageInfo.set("Fonts", fontsArray);
+                attachmentsArray.add(attachmentNode);
+            }
+        }
+    }
 
-                // Access resources dictionary
-                ArrayNode colorSpacesArray = objectMapper.createArrayNode();
+    private static ObjectNode getImageInfo(PDImageXObject image) throws IOException {
+        // Images (simplified)
+        // This part is non-trivial as images can be embedded in multiple ways in a PDF.
+        // Here is a basic structure to recognize image XObjects on a page.
+        ObjectNode imageNode = objectMapper.createObjectNode();
+        imageNode.put("Width", image.getWidth());
+        imageNode.put("Height", image.getHeight());
+        if (image.getMetadata() != null
+                && image.getMetadata().getFile() != null
+                && image.getMetadata().getFile().getFile() != null) {
+            imageNode.put("Name", image.getMetadata().getFile().getFile());
+        }
+        if (image.getColorSpace() != null) {
+            imageNode.put("ColorSpace", image.getColorSpace().getName());
+        }
+        return imageNode;
+    }
 
-                Iterable<COSName> colorSpaceNames = resources.getColorSpaceNames();
-                for (COSName name : colorSpaceNames) {
-                    PDColorSpace colorSpace = resources.getColorSpace(name);
-                    if (colorSpace instanceof PDICCBased iccBased) {
-                        PDStream iccData = iccBased.getPDStream();
-                        byte[] iccBytes = iccData.toByteArray();
+    private static ArrayNode getFontsInfo(PDResources resources) throws IOException {
+        ArrayNode fontsArray = objectMapper.createArrayNode();
+        Map<String, ObjectNode> uniqueFontsMap = new HashMap<>();
 
-                        // TODO: Further decode and analyze the ICC data if needed
-                        ObjectNode iccProfileNode = objectMapper.createObjectNode();
-                        iccProfileNode.put("ICC Profile Length", iccBytes.length);
-                        colorSpacesArray.add(iccProfileNode);
-                    }
-                }
-                pageInfo.set("Color Spaces & ICC Profiles", colorSpacesArray);
-
-                // Other XObjects
-                Map<String, Integer> xObjectCountMap =
-                        new HashMap<>(); // To store the count for each type
-                for (COSName name : resources.getXObjectNames()) {
-                    PDXObject xObject = resources.getXObject(name);
-                    String xObjectType;
-
-                    if (xObject instanceof PDImageXObject) {
-                        xObjectType = "Image";
-                    } else if (xObject instanceof PDFormXObject) {
-                        xObjectType = "Form";
-                    } else {
-                        xObjectType = "Other";
-                    }
+        for (COSName fontName : resources.getFontNames()) {
+            PDFont font = resources.getFont(fontName);
+            ObjectNode fontNode = objectMapper.createObjectNode();
 
-                    // Increment the count for this type in the map
-                    xObjectCountMap.put(
-                            xObjectType, xObjectCountMap.getOrDefault(xObjectType, 0) + 1);
-                }
+            fontNode.put("IsEmbedded", font.isEmbedded());
 
-                // Add the count map to pageInfo (or wherever you want to store it)
-                ObjectNode xObjectCountNode = objectMapper.createObjectNode();
-                for (Map.Entry<String, Integer> entry : xObjectCountMap.entrySet()) {
-                    xObjectCountNode.put(entry.getKey(), entry.getValue());
-                }
-                pageInfo.set("XObjectCounts", xObjectCountNode);
+            // PDFBox provides Font's BaseFont (i.e., the font name) directly
+            fontNode.put("Name", font.getName());
 
-                ArrayNode multimediaArray = objectMapper.createArrayNode();
+            fontNode.put("Subtype", font.getType());
 
-                for (PDAnnotation annotation : annotations) {
-                    if ("RichMedia".equals(annotation.getSubtype())) {
-                        ObjectNode multimediaNode = objectMapper.createObjectNode();
-                        // Extract details from the annotation as needed
-                        multimediaArray.add(multimediaNode);
-                    }
-                }
+            PDFontDescriptor fontDescriptor = font.getFontDescriptor();
 
-                pageInfo.set("Multimedia", multimediaArray);
+            if (fontDescriptor != null) {
+                fontNode.put("ItalicAngle", fontDescriptor.getItalicAngle());
+                int flags = fontDescriptor.getFlags();
+                fontNode.put("IsItalic", (flags & 1) != 0);
+                fontNode.put("IsBold", (flags & 64) != 0);
+                fontNode.put("IsFixedPitch", (flags & 2) != 0);
+                fontNode.put("IsSerif", (flags & 4) != 0);
+                fontNode.put("IsSymbolic", (flags & 8) != 0);
+                fontNode.put("IsScript", (flags & 16) != 0);
+                fontNode.put("IsNonsymbolic", (flags & 32) != 0);
 
-                pageInfoParent.set("Page " + (pageNum + 1), pageInfo);
+                fontNode.put("FontFamily", fontDescriptor.getFontFamily());
+                // Font stretch and BBox are not directly available in PDFBox's API, so
+                // these are omitted for simplicity
+                fontNode.put("FontWeight", fontDescriptor.getFontWeight());
             }
 
-            jsonOutput.set("BasicInfo", basicInfo);
-            jsonOutput.set("DocumentInfo", docInfoNode);
-            jsonOutput.set("Compliancy", compliancy);
-            jsonOutput.set("Encryption", encryption);
-            jsonOutput.set("Permissions", permissionsNode); // set the node under "Permissions"
-            jsonOutput.set("Other", other);
-            jsonOutput.set("PerPageInfo", pageInfoParent);
+            // Create a unique key for this font node based on its attributes
+            String uniqueKey = fontNode.toString();
 
-            // Save JSON to file
-            String jsonString =
-                    objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(jsonOutput);
-
-            return WebResponseUtils.bytesToWebResponse(
-                    jsonString.getBytes(StandardCharsets.UTF_8),
-                    "response.json",
-                    MediaType.APPLICATION_JSON);
+            // Increment count if this font exists, or initialize it if new
+            if (uniqueFontsMap.containsKey(uniqueKey)) {
+                ObjectNode existingFontNode = uniqueFontsMap.get(uniqueKey);
+                int count = existingFontNode.get("Count").asInt() + 1;
+                existingFontNode.put("Count", count);
+            } else {
+                fontNode.put("Count", 1);
+                uniqueFontsMap.put(uniqueKey, fontNode);
+            }
+        }
 
-        } catch (Exception e) {
-            log.error("exception", e);
+        // Add unique font entries to fontsArray
+        for (ObjectNode uniqueFontNode : uniqueFontsMap.values()) {
+            fontsArray.add(uniqueFontNode);
         }
-        return null;
+        return fontsArray;
     }
 
     private void setNodePermissions(PDDocument pdfBoxDoc, ObjectNode permissionsNode) {
@@ -775,28 +889,30 @@ public class GetInfoOnPDF {
         return dimensionInfo;
     }
 
-    public ArrayNode exploreStructureTree(List<Object> nodes) {
-        ArrayNode elementsArray = objectMapper.createArrayNode();
+    private void writeStructureTree(JsonGenerator generator, List<Object> nodes)
+            throws IOException {
+        generator.writeStartArray();
         if (nodes != null) {
             for (Object obj : nodes) {
                 if (obj instanceof PDStructureNode node) {
-                    ObjectNode elementNode = objectMapper.createObjectNode();
+                    generator.writeStartObject();
 
                     if (node instanceof PDStructureElement structureElement) {
-                        elementNode.put("Type", structureElement.getStructureType());
-                        elementNode.put("Content", getContent(structureElement));
+                        generator.writeStringField("Type", structureElement.getStructureType());
+                        generator.writeStringField("Content", getContent(structureElement));
 
                         // Recursively explore child elements
-                        ArrayNode childElements = exploreStructureTree(structureElement.getKids());
-                        if (childElements.size() > 0) {
-                            elementNode.set("Children", childElements);
+                        List<Object> kids = structureElement.getKids();
+                        if (kids.stream().anyMatch(PDStructureNode.class::isInstance)) {
+                            generator.writeFieldName("Children");
+                            writeStructureTree(generator, kids);
                         }
                     }
-                    elementsArray.add(elementNode);
+                    generator.writeEndObject();
                 }
             }
         }
-        return elementsArray;
+        generator.writeEndArray();
     }
 
     public String getContent(PDStructureElement structureElement) {
@@ -827,4 +943,111 @@ public class GetInfoOnPDF {
     private String getPageModeDescription(String pageMode) {
         return pageMode != null ? pageMode.toString().replaceFirst("/", "") : "Unknown";
     }
+
+    /**
+     * Counts the characters, words and paragraphs of the extracted text as it is written, along
+     * with the characters of each page, so the text of the document is extracted once and never
+     * held in memory. Words and paragraphs are counted as if the full text was split on
+     * whitespace and on line breaks.
+     */
+    private static class TextStatistics extends Writer {
+
+        private final int[] pageCharacterCounts;
+        private long characterCount;
+        private int wordRuns;
+        private boolean inWord;
+        private boolean startsWithWhitespace;
+        private int lineBreaks;
+        private int pendingLineBreaks;
+        private boolean lastWasCarriageReturn;
+        private boolean hasLineContent;
+
+        private TextStatistics(int pageCount) {
+            this.pageCharacterCounts = new int[pageCount];
+        }
+
+        static TextStatistics collect(PDDocument document) throws IOException {
+            TextStatistics statistics = new TextStatistics(document.getNumberOfPages());
+            PDFTextStripper stripper =
+                    new PDFTextStripper() {
+                        private long pageStart;
+
+                        @Override
+                        protected void startPage(PDPage page) throws IOException {
+                            super.startPage(page);
+                            pageStart = statistics.characterCount;
+                        }
+
+                        @Override
+                        protected void endPage(PDPage page) throws IOException {
+                            super.endPage(page);
+                            statistics.pageCharacterCounts[getCurrentPageNo() - 1] =
+                                    (int) (statistics.characterCount - pageStart);
+                        }
+                    };
+            stripper.writeText(document, statistics);
+            return statistics;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                char c = cbuf[i];
+                boolean whitespace = isWhitespace(c);
+                if (characterCount++ == 0) {
+                    startsWithWhitespace = whitespace;
+                }
+
+                if (whitespace) {
+                    inWord = false;
+                } else if (!inWord) {
+                    inWord = true;
+                    wordRuns++;
+                }
+
+                if (c == '\r' || (c == '\n' && !lastWasCarriageReturn)) {
+                    pendingLineBreaks++;
+                } else if (c != '\n') {
+                    // Trailing line breaks don't start another paragraph
+                    lineBreaks += pendingLineBreaks;
+                    pendingLineBreaks = 0;
+                    hasLineContent = true;
+                }
+                lastWasCarriageReturn = c == '\r';
+            }
+        }
+
+        // Same characters as \s in a regular expression
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+
+        long getCharacterCount() {
+            return characterCount;
+        }
+
+        int getWordCount() {
+            if (characterCount == 0) {
+                return 1;
+            }
+            return wordRuns == 0 ? 0 : wordRuns + (startsWithWhitespace ? 1 : 0);
+        }
+
+        int getParagraphCount() {
+            if (characterCount == 0) {
+                return 1;
+            }
+            return hasLineContent ? lineBreaks + 1 : 0;
+        }
+
+        int getPageCharacterCount(int pageIndex) {
+            return pageCharacterCounts[pageIndex];
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
 }
@@ -24,7 +24,12 @@ import lombok.extern.slf4j.Slf4j;
 
 import stirling.software.SPDF.config.EndpointInspector;
 import stirling.software.SPDF.config.StartupApplicationListener;
+import stirling.software.SPDF.service.FontCacheService;
+import stirling.software.SPDF.service.PdfAnalysisCacheService;
 import stirling.software.common.model.ApplicationProperties;
+import stirling.software.common.util.CpuTokenBudget;
+import stirling.software.common.util.ProcessExecutor;
+import stirling.software.common.util.ScratchMemoryBudget;
 
 @RestController
 @RequestMapping("/api/v1/info")
@@ -36,6 +41,8 @@ public class MetricsController {
     private final ApplicationProperties applicationProperties;
     private final MeterRegistry meterRegistry;
     private final EndpointInspector endpointInspector;
+    private final FontCacheService fontCacheService;
+    private final PdfAnalysisCacheService analysisCacheService;
     private boolean metricsEnabled;
 
     @PostConstruct
@@ -344,6 +351,40 @@ public class MetricsController {
                 .toList();
     }
 
+    @GetMapping("/caches")
+    @Operation(
+            summary = "In-process cache statistics",
+            description =
+                    "This endpoint returns hit rates and memory use of the server side caches"
+                            + " and of the shared PDF scratch memory budget.")
+    public ResponseEntity<?> getCacheStats() {
+        if (!metricsEnabled) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("This endpoint is disabled.");
+        }
+        Map<String, Object> caches = new LinkedHashMap<>();
+        caches.put("fonts", fontCacheService.getStats());
+        caches.put("analysis", analysisCacheService.getStats());
+        caches.put("pdfScratchMemory", ScratchMemoryBudget.getInstance().getStats());
+        return ResponseEntity.ok(caches);
+    }
+
+    @GetMapping("/processes")
+    @Operation(
+            summary = "External process statistics",
+            description =
+                    "This endpoint returns the use of the shared CPU token budget and, per external"
+                            + " tool, how long calls waited for a free slot and the wall time, CPU"
+                            + " time and peak memory of the runs.")
+    public ResponseEntity<?> getProcessStats() {
+        if (!metricsEnabled) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("This endpoint is disabled.");
+        }
+        Map<String, Object> processes = new LinkedHashMap<>();
+        processes.put("cpuTokens", CpuTokenBudget.getInstance().getStats());
+        processes.put("tools", ProcessExecutor.getStats());
+        return ResponseEntity.ok(processes);
+    }
+
     @GetMapping("/uptime")
     public ResponseEntity<?> getUptime() {
         if (!metricsEnabled) {
@@ -15,4 +15,11 @@ public class PDFExtractImagesRequest extends PDFWithImageFormatRequest {
                             + " duplicates",
             defaultValue = "false")
     private Boolean allowDuplicates;
+
+    @Schema(
+            description =
+                    "Boolean to save JPEG and JPEG 2000 images exactly as they are stored in the"
+                            + " PDF instead of converting them to the requested format",
+            defaultValue = "false")
+    private Boolean preserveOriginalFormat;
 }
@@ -18,4 +18,28 @@ public class FlattenRequest extends PDFFile {
             requiredMode = Schema.RequiredMode.REQUIRED,
             defaultValue = "false")
     private Boolean flattenOnlyForms;
+
+    @Schema(
+            description =
+                    "The resolution in DPI that pages are rendered at when flattening full pages",
+            minimum = "72",
+            maximum = "600",
+            defaultValue = "300")
+    private Integer renderDpi;
+
+    @Schema(
+            description =
+                    "How rendered pages are compressed when flattening full pages: jpeg (lossy) or"
+                            + " flate (lossless)",
+            allowableValues = {"jpeg", "flate"},
+            defaultValue = "jpeg")
+    private String imageEncoding;
+
+    @Schema(
+            description =
+                    "True to render full pages in black and white and compress them with CCITT G4,"
+                            + " which suits line drawings and text. Colours and greys are lost,"
+                            + " and imageEncoding is ignored",
+            defaultValue = "false")
+    private Boolean forceBlackAndWhite;
 }
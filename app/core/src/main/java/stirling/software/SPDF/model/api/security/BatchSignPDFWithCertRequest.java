@@ -0,0 +1,50 @@
+package stirling.software.SPDF.model.api.security;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class BatchSignPDFWithCertRequest extends CertSignSessionRequest {
+
+    @Schema(description = "The input PDF files", requiredMode = Schema.RequiredMode.REQUIRED)
+    private MultipartFile[] fileInput;
+
+    @Schema(
+            description =
+                    "ID of a signing session created with /cert-sign/session. When set, the"
+                            + " certificate fields are ignored")
+    private String sessionId;
+
+    @Schema(
+            description = "Whether to visually show the signature in the PDF files",
+            defaultValue = "false",
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    private Boolean showSignature;
+
+    @Schema(description = "The reason for signing the PDFs", defaultValue = "Signed by SPDF")
+    private String reason;
+
+    @Schema(description = "The location where the PDFs are signed", defaultValue = "SPDF")
+    private String location;
+
+    @Schema(description = "The name of the signer", defaultValue = "SPDF")
+    private String name;
+
+    @Schema(
+            description =
+                    "The page number where the signature should be visible. This is required if"
+                            + " showSignature is set to true",
+            defaultValue = "1")
+    private Integer pageNumber;
+
+    @Schema(
+            description = "Whether to visually show a signature logo along with the signature",
+            defaultValue = "true",
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    private Boolean showLogo;
+}
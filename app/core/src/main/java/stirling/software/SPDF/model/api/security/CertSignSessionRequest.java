@@ -0,0 +1,35 @@
+package stirling.software.SPDF.model.api.security;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import lombok.Data;
+
+@Data
+public class CertSignSessionRequest {
+
+    @Schema(
+            description = "The type of the digital certificate",
+            allowableValues = {"PEM", "PKCS12", "JKS"},
+            requiredMode = Schema.RequiredMode.REQUIRED)
+    private String certType;
+
+    @Schema(
+            description =
+                    "The private key for the digital certificate (required for PEM type"
+                            + " certificates)")
+    private MultipartFile privateKeyFile;
+
+    @Schema(description = "The digital certificate (required for PEM type certificates)")
+    private MultipartFile certFile;
+
+    @Schema(description = "The PKCS12 keystore file (required for PKCS12 type certificates)")
+    private MultipartFile p12File;
+
+    @Schema(description = "The JKS keystore file (Java Key Store)")
+    private MultipartFile jksFile;
+
+    @Schema(description = "The password for the keystore or the private key", format = "password")
+    private String password;
+}
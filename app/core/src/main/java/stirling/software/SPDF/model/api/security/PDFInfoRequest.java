@@ -0,0 +1,22 @@
+package stirling.software.SPDF.model.api.security;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import stirling.software.common.model.api.PDFFile;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class PDFInfoRequest extends PDFFile {
+
+    @Schema(
+            description =
+                    "Comma separated list of sections to include in the report: metadata, perPage,"
+                            + " fonts, images, forms, structure, textStats. All sections are"
+                            + " included when left empty",
+            example = "metadata,perPage",
+            requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    private String sections;
+}
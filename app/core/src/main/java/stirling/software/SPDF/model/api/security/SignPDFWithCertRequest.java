@@ -37,6 +37,12 @@ public class SignPDFWithCertRequest extends PDFFile {
     @Schema(description = "The password for the keystore or the private key", format = "password")
     private String password;
 
+    @Schema(
+            description =
+                    "ID of a signing session created with /cert-sign/session. When set, the"
+                            + " certificate fields are ignored")
+    private String sessionId;
+
     @Schema(
             description = "Whether to visually show the signature in the PDF file",
             defaultValue = "false",
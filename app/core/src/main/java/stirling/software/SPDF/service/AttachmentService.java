@@ -1,6 +1,7 @@
 package stirling.software.SPDF.service;
 
 import static stirling.software.common.util.AttachmentUtils.setCatalogViewerPreferences;
+import static stirling.software.common.util.PdfUtils.markForIncrementalUpdate;
 
 import java.io.IOException;
 import java.util.GregorianCalendar;
@@ -82,6 +83,10 @@ public class AttachmentService implements AttachmentServiceInterface {
         embeddedFilesTree.setNames(existingNames);
         setCatalogViewerPreferences(document, PageMode.USE_ATTACHMENTS);
 
+        PDDocumentCatalog catalog = document.getDocumentCatalog();
+        markForIncrementalUpdate(
+                catalog, catalog.getNames(), embeddedFilesTree, catalog.getViewerPreferences());
+
         return document;
     }
 
@@ -0,0 +1,167 @@
+package stirling.software.SPDF.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.examples.signature.CreateSignatureBase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps decrypted signing credentials in memory for a short, fixed time so that repeated
+ * certificate signing calls do not have to upload and decrypt the key material every time.
+ * Sessions are never persisted and expire a fixed time after creation regardless of use.
+ *
+ * <p>A session ID alone is not enough to use the key: every session belongs to the user who opened
+ * it and is only handed out to that user. The number of live sessions is limited overall, which
+ * bounds the key material held in memory, and per user, so one client can't use up the sessions of
+ * all others.
+ */
+@Service
+@Slf4j
+public class CertSignSessionService {
+
+    private final Map<String, SigningSession> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleanupExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final Duration sessionTtl;
+    private final int maxSessions;
+    private final int maxSessionsPerUser;
+
+    public CertSignSessionService(
+            @Value("${stirling.certSign.sessionTtlSeconds:300}") long sessionTtlSeconds,
+            @Value("${stirling.certSign.maxSessions:50}") int maxSessions,
+            @Value("${stirling.certSign.maxSessionsPerUser:5}") int maxSessionsPerUser) {
+        this.sessionTtl = Duration.ofSeconds(Math.max(1, sessionTtlSeconds));
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxSessionsPerUser = Math.max(1, maxSessionsPerUser);
+
+        cleanupExecutor.scheduleAtFixedRate(this::removeExpiredSessions, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Open a new session for an already initialised signer
+     *
+     * @param owner The user opening the session, the only one allowed to use it
+     * @param signer The signer holding the decrypted private key and certificate chain
+     * @return The session that was created
+     * @throws IllegalStateException if the server or the owner already has the maximum number of
+     *     live sessions
+     */
+    public synchronized SigningSession openSession(String owner, CreateSignatureBase signer) {
+        removeExpiredSessions();
+        if (sessions.size() >= maxSessions) {
+            throw new IllegalStateException(
+                    "Too many active signing sessions on the server, retry later");
+        }
+        long ownedSessions =
+                sessions.values().stream().filter(session -> session.isOwnedBy(owner)).count();
+        if (ownedSessions >= maxSessionsPerUser) {
+            throw new IllegalStateException(
+                    "Too many active signing sessions, close an existing session or retry later");
+        }
+        SigningSession session =
+                new SigningSession(
+                        UUID.randomUUID().toString(),
+                        owner,
+                        signer,
+                        Instant.now().plus(sessionTtl));
+        sessions.put(session.sessionId(), session);
+        log.debug(
+                "Opened signing session {} expiring at {}",
+                session.sessionId(),
+                session.expiresAt());
+        return session;
+    }
+
+    /**
+     * Get the signer for a session if the session exists, has not expired and belongs to the
+     * caller
+     *
+     * @param sessionId The session ID
+     * @param owner The user asking for the signer
+     * @return The signer, or empty if the session is unknown, expired or someone else's
+     */
+    public Optional<CreateSignatureBase> getSigner(String sessionId, String owner) {
+        SigningSession session = getOwnedSession(sessionId, owner);
+        if (session == null) {
+            return Optional.empty();
+        }
+        if (session.isExpired(Instant.now())) {
+            sessions.remove(sessionId, session);
+            return Optional.empty();
+        }
+        return Optional.of(session.signer());
+    }
+
+    /**
+     * Close a session and drop its key material
+     *
+     * @param sessionId The session ID
+     * @param owner The user closing the session
+     * @return true if a session of the owner was removed
+     */
+    public boolean closeSession(String sessionId, String owner) {
+        SigningSession session = getOwnedSession(sessionId, owner);
+        boolean removed = session != null && sessions.remove(sessionId, session);
+        if (removed) {
+            log.debug("Closed signing session {}", sessionId);
+        }
+        return removed;
+    }
+
+    // Sessions of other users are treated as unknown, so their IDs can't be probed
+    private SigningSession getOwnedSession(String sessionId, String owner) {
+        if (sessionId == null) {
+            return null;
+        }
+        SigningSession session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        if (!session.isOwnedBy(owner)) {
+            log.warn("Refused use of signing session {} by another user", sessionId);
+            return null;
+        }
+        return session;
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+
+    /** Remove every session whose lifetime has elapsed */
+    void removeExpiredSessions() {
+        Instant now = Instant.now();
+        sessions.values().removeIf(session -> session.isExpired(now));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdownNow();
+        sessions.clear();
+    }
+
+    public record SigningSession(
+            String sessionId, String owner, CreateSignatureBase signer, Instant expiresAt) {
+
+        boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+
+        boolean isOwnedBy(String user) {
+            return owner.equals(user);
+        }
+    }
+}
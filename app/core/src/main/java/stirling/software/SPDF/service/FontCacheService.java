@@ -0,0 +1,134 @@
+package stirling.software.SPDF.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process-wide cache of the TrueType fonts bundled on the classpath. Each font resource is read
+ * once; every document then parses its own font from the shared bytes, without reading the
+ * resource again or going through a temp file. A parsed font reads its tables lazily and isn't
+ * thread-safe, so it is never shared between documents.
+ */
+@Service
+@Slf4j
+public class FontCacheService {
+
+    private final Map<String, byte[]> fonts = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Get the bundled font resource used for the given alphabet
+     *
+     * @param alphabet The alphabet selected by the user (arabic, japanese, korean, ...)
+     * @return The classpath location of the font
+     */
+    public static String getFontResourceForAlphabet(String alphabet) {
+        if (alphabet == null) {
+            return "static/fonts/NotoSans-Regular.ttf";
+        }
+        return switch (alphabet) {
+            case "arabic" -> "static/fonts/NotoSansArabic-Regular.ttf";
+            case "japanese" -> "static/fonts/Meiryo.ttf";
+            case "korean" -> "static/fonts/malgun.ttf";
+            case "chinese" -> "static/fonts/SimSun.ttf";
+            case "thai" -> "static/fonts/NotoSansThai-Regular.ttf";
+            default -> "static/fonts/NotoSans-Regular.ttf";
+        };
+    }
+
+    /**
+     * Load the font for an alphabet into a document. Call once per document and reuse the returned
+     * font for every page, each call adds a new font resource to the document.
+     *
+     * @param document The document the font will be embedded in
+     * @param alphabet The alphabet selected by the user
+     * @return A subset-embedded font parsed from the cached font data
+     * @throws IOException If the font resource can not be read or parsed
+     */
+    public PDType0Font loadFontForAlphabet(PDDocument document, String alphabet)
+            throws IOException {
+        return loadFont(document, getFontResourceForAlphabet(alphabet));
+    }
+
+    /**
+     * Load a classpath font resource into a document
+     *
+     * @param document The document the font will be embedded in
+     * @param resourcePath The classpath location of a TrueType font
+     * @return A subset-embedded font parsed from the cached font data
+     * @throws IOException If the font resource can not be read or parsed
+     */
+    public PDType0Font loadFont(PDDocument document, String resourcePath) throws IOException {
+        // The buffer wraps the cached bytes without copying them. The subset is only written when
+        // the document is saved, so the document closes the parsed font
+        TrueTypeFont font =
+                new TTFParser().parse(new RandomAccessReadBuffer(getFontData(resourcePath)));
+        document.registerTrueTypeFontForClosing(font);
+        return PDType0Font.load(document, font, true);
+    }
+
+    /**
+     * Get the content of a classpath font resource, reading it on first use
+     *
+     * @param resourcePath The classpath location of a TrueType font
+     * @return The shared font data. It must not be modified by the caller
+     * @throws IOException If the font resource can not be read
+     */
+    public byte[] getFontData(String resourcePath) throws IOException {
+        byte[] data = fonts.get(resourcePath);
+        if (data != null) {
+            hits.increment();
+            return data;
+        }
+        try {
+            return fonts.computeIfAbsent(resourcePath, this::readFont);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Get hit/miss counters and the memory held by cached fonts
+     *
+     * @return A map suitable for JSON output
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedFonts", fonts.size());
+        stats.put("memoryBytes", fonts.values().stream().mapToLong(data -> data.length).sum());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return stats;
+    }
+
+    private byte[] readFont(String resourcePath) {
+        misses.increment();
+        try (InputStream is = new ClassPathResource(resourcePath).getInputStream()) {
+            byte[] data = is.readAllBytes();
+            log.debug("Cached font {} ({} bytes)", resourcePath, data.length);
+            return data;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
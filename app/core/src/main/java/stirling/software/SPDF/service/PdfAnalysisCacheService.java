@@ -0,0 +1,316 @@
+package stirling.software.SPDF.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.PDEncryption;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.common.service.CustomPDFDocumentFactory;
+
+/**
+ * Cache of analysis summaries keyed by a hash of the uploaded bytes. A client usually calls every
+ * analysis endpoint for the same upload; the document is parsed once, everything the endpoints
+ * report is collected in that pass and later calls are answered from the summary. Concurrent calls
+ * for a file that is still being analysed wait for the same result.
+ *
+ * <p>Only the summaries are kept, never the documents. The cache is bounded by entry count and an
+ * estimate of the memory held, and is emptied whenever {@link
+ * CustomPDFDocumentFactory#isFreeMemoryLow()} reports memory pressure.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PdfAnalysisCacheService {
+
+    private static final int MAX_ENTRIES = 256;
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private final CustomPDFDocumentFactory pdfDocumentFactory;
+
+    // Access ordered so the least recently used summary is evicted first
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long cachedBytes;
+
+    /**
+     * Get the analysis summary of an uploaded PDF, parsing it only if the same content hasn't
+     * been analysed recently
+     *
+     * @param file The uploaded PDF
+     * @return The summary shared by all analysis endpoints
+     * @throws IOException If the file can not be read or parsed
+     */
+    public AnalysisSummary getSummary(MultipartFile file) throws IOException {
+        String key = contentKey(file);
+        CacheEntry entry;
+        boolean analyse = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new CacheEntry(new CompletableFuture<>());
+                entries.put(key, entry);
+                analyse = true;
+            }
+        }
+
+        if (!analyse) {
+            hits.increment();
+            return await(entry.summary());
+        }
+
+        misses.increment();
+        AnalysisSummary summary;
+        try {
+            summary = analyse(file);
+        } catch (Throwable e) {
+            // Errors too, callers waiting for this entry would otherwise never return
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.summary().completeExceptionally(e);
+            throw e;
+        }
+        entry.summary().complete(summary);
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entry.sizeBytes = summary.estimateSizeBytes();
+                cachedBytes += entry.sizeBytes;
+            }
+            evict();
+        }
+        return summary;
+    }
+
+    /**
+     * Get hit/miss counters and the estimated memory held by cached summaries
+     *
+     * @return A map suitable for JSON output
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("cachedSummaries", entries.size());
+            stats.put("memoryBytes", cachedBytes);
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return stats;
+    }
+
+    // Must hold the entries lock. Summaries still being computed are never evicted
+    private void evict() {
+        boolean memoryLow = pdfDocumentFactory.isFreeMemoryLow();
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()
+                && (memoryLow || entries.size() > MAX_ENTRIES || cachedBytes > MAX_CACHE_BYTES)) {
+            CacheEntry entry = iterator.next();
+            if (entry.summary().isDone()) {
+                iterator.remove();
+                cachedBytes -= entry.sizeBytes;
+                evictions.increment();
+            }
+        }
+        if (memoryLow) {
+            log.debug("Free memory is low, cleared the analysis cache");
+        }
+    }
+
+    private static AnalysisSummary await(CompletableFuture<AnalysisSummary> summary)
+            throws IOException {
+        try {
+            return summary.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    // The digest is streamed so the upload is never buffered just to be hashed
+    private static String contentKey(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = file.getInputStream()) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest()) + ":" + file.getSize();
+    }
+
+    private AnalysisSummary analyse(MultipartFile file) throws IOException {
+        // Read-only so the reported properties are the ones of the uploaded file
+        try (PDDocument document = pdfDocumentFactory.load(file, true)) {
+            int totalAnnotations = 0;
+            Map<String, Integer> annotationTypes = new HashMap<>();
+            Set<String> fontNames = new TreeSet<>();
+            List<Map<String, Float>> pageDimensions = new ArrayList<>();
+
+            // Every per page figure is collected in one walk over the page tree
+            for (PDPage page : document.getPages()) {
+                Map<String, Float> pageDim = new HashMap<>();
+                pageDim.put("width", page.getBBox().getWidth());
+                pageDim.put("height", page.getBBox().getHeight());
+                pageDimensions.add(Collections.unmodifiableMap(pageDim));
+
+                for (PDAnnotation annot : page.getAnnotations()) {
+                    totalAnnotations++;
+                    annotationTypes.merge(annot.getSubtype(), 1, Integer::sum);
+                }
+
+                PDResources resources = page.getResources();
+                if (resources != null) {
+                    for (COSName font : resources.getFontNames()) {
+                        fontNames.add(font.getName());
+                    }
+                }
+            }
+
+            return new AnalysisSummary(
+                    document.getNumberOfPages(),
+                    document.getVersion(),
+                    getDocumentProperties(document.getDocumentInformation()),
+                    Collections.unmodifiableList(pageDimensions),
+                    getFormInfo(document.getDocumentCatalog().getAcroForm()),
+                    totalAnnotations,
+                    Collections.unmodifiableMap(annotationTypes),
+                    Collections.unmodifiableSet(fontNames),
+                    getSecurityInfo(document));
+        }
+    }
+
+    private static Map<String, String> getDocumentProperties(PDDocumentInformation info) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("title", info.getTitle());
+        properties.put("author", info.getAuthor());
+        properties.put("subject", info.getSubject());
+        properties.put("keywords", info.getKeywords());
+        properties.put("creator", info.getCreator());
+        properties.put("producer", info.getProducer());
+        properties.put("creationDate", formatDate(info.getCreationDate()));
+        properties.put("modificationDate", formatDate(info.getModificationDate()));
+        return Collections.unmodifiableMap(properties);
+    }
+
+    private static String formatDate(Calendar calendar) {
+        return calendar != null ? calendar.toString() : null;
+    }
+
+    private static Map<String, Object> getFormInfo(PDAcroForm form) {
+        Map<String, Object> formInfo = new HashMap<>();
+        if (form != null) {
+            formInfo.put("fieldCount", form.getFields().size());
+            formInfo.put("hasXFA", form.hasXFA());
+            formInfo.put("isSignaturesExist", form.isSignaturesExist());
+        } else {
+            formInfo.put("fieldCount", 0);
+            formInfo.put("hasXFA", false);
+            formInfo.put("isSignaturesExist", false);
+        }
+        return Collections.unmodifiableMap(formInfo);
+    }
+
+    private static Map<String, Object> getSecurityInfo(PDDocument document) {
+        Map<String, Object> securityInfo = new HashMap<>();
+        PDEncryption encryption = document.getEncryption();
+
+        if (encryption != null) {
+            securityInfo.put("isEncrypted", true);
+            securityInfo.put("keyLength", encryption.getLength());
+
+            // Get permissions
+            AccessPermission accessPermission = document.getCurrentAccessPermission();
+            Map<String, Boolean> permissions = new HashMap<>();
+            permissions.put("preventPrinting", !accessPermission.canPrint());
+            permissions.put("preventModify", !accessPermission.canModify());
+            permissions.put("preventExtractContent", !accessPermission.canExtractContent());
+            permissions.put(
+                    "preventModifyAnnotations", !accessPermission.canModifyAnnotations());
+
+            securityInfo.put("permissions", Collections.unmodifiableMap(permissions));
+        } else {
+            securityInfo.put("isEncrypted", false);
+        }
+        return Collections.unmodifiableMap(securityInfo);
+    }
+
+    /** Everything the analysis endpoints report about a document, collected in a single parse */
+    public record AnalysisSummary(
+            int pageCount,
+            float pdfVersion,
+            Map<String, String> documentProperties,
+            List<Map<String, Float>> pageDimensions,
+            Map<String, Object> formInfo,
+            int annotationCount,
+            Map<String, Integer> annotationTypes,
+            Set<String> fontNames,
+            Map<String, Object> securityInfo) {
+
+        // Rough heap footprint of the maps and boxed values, used for the cache budget
+        long estimateSizeBytes() {
+            return 1024
+                    + pageDimensions.size() * 160L
+                    + annotationTypes.size() * 96L
+                    + fontNames.stream().mapToLong(name -> 64L + 2L * name.length()).sum();
+        }
+    }
+
+    private static final class CacheEntry {
+        private final CompletableFuture<AnalysisSummary> summary;
+        private long sizeBytes;
+
+        private CacheEntry(CompletableFuture<AnalysisSummary> summary) {
+            this.summary = summary;
+        }
+
+        CompletableFuture<AnalysisSummary> summary() {
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package stirling.software.common.controller;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.SPDF.controller.web.UploadLimitService;
+import stirling.software.common.service.ChunkedUploadService;
+import stirling.software.common.service.ChunkedUploadService.UploadLimitException;
+import stirling.software.common.service.ChunkedUploadService.UploadSession;
+
+/**
+ * REST controller for resumable chunked uploads. A client creates an upload, PUTs the chunks as
+ * raw request bodies with their SHA-256 in the {@code X-Chunk-SHA256} header, and commits. After
+ * a broken connection it asks which chunks arrived and sends only the missing ones. The file ID
+ * returned by the commit is accepted as {@code fileId} in place of a {@code fileInput}. Only the
+ * client that started an upload, the logged in user or else the client address, can see, continue,
+ * commit or abort it.
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final UploadLimitService uploadLimitService;
+    private final HttpServletRequest request;
+
+    /**
+     * Start an upload
+     *
+     * @param fileName The name of the file
+     * @param fileSize The size of the whole file in bytes
+     * @param chunkSize The chunk size the client would like, optional
+     * @return The upload ID and the chunk size and count to use
+     */
+    @PostMapping("/api/v1/general/uploads")
+    public ResponseEntity<?> createUpload(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("fileSize") long fileSize,
+            @RequestParam(value = "chunkSize", required = false) Integer chunkSize) {
+        ResponseEntity<?> tooLarge = checkUploadLimit(fileSize);
+        if (tooLarge != null) {
+            return tooLarge;
+        }
+        try {
+            UploadSession session =
+                    chunkedUploadService.createSession(getClient(), fileName, fileSize, chunkSize);
+            return ResponseEntity.status(HttpStatus.CREATED).body(describe(session));
+        } catch (UploadLimitException e) {
+            return ResponseEntity.status(
+                            e.isSizeLimit()
+                                    ? HttpStatus.PAYLOAD_TOO_LARGE
+                                    : HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error creating upload for {}: {}", fileName, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("message", "Error creating upload: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the state of an upload, including the chunks received so far
+     *
+     * @param uploadId The upload ID
+     * @return The upload state
+     */
+    @GetMapping("/api/v1/general/uploads/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable("uploadId") String uploadId) {
+        UploadSession session = chunkedUploadService.getSession(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!session.isOwnedBy(getClient())) {
+            return forbidden(uploadId);
+        }
+        return ResponseEntity.ok(describe(session));
+    }
+
+    /**
+     * Receive one chunk of an upload. The body is the raw chunk content.
+     *
+     * @param uploadId The upload ID
+     * @param index The chunk number, starting at 0
+     * @param sha256 The hex SHA-256 of the chunk
+     * @return The number of chunks received so far
+     */
+    @PutMapping("/api/v1/general/uploads/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable("uploadId") String uploadId,
+            @PathVariable("index") int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256) {
+        UploadSession session = chunkedUploadService.getSession(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!session.isOwnedBy(getClient())) {
+            return forbidden(uploadId);
+        }
+
+        // Checked before the body is read, so an oversized chunk is refused without receiving it
+        ResponseEntity<?> tooLarge = checkUploadLimit(session.getFileSize());
+        if (tooLarge != null) {
+            return tooLarge;
+        }
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > session.getChunkSize()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("message", "Chunks must not be larger than the chunk size"));
+        }
+
+        try {
+            chunkedUploadService.writeChunk(session, index, sha256, request.getInputStream());
+            return ResponseEntity.ok(
+                    Map.of(
+                            "uploadId",
+                            uploadId,
+                            "chunk",
+                            index,
+                            "receivedChunks",
+                            session.getReceivedChunks().size()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            log.warn("Error receiving chunk {} of upload {}: {}", index, uploadId, e.getMessage());
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("message", "Error receiving chunk: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Finish an upload once all chunks were received
+     *
+     * @param uploadId The upload ID
+     * @return The file ID to pass as fileId to the tools
+     */
+    @PostMapping("/api/v1/general/uploads/{uploadId}/commit")
+    public ResponseEntity<?> commitUpload(@PathVariable("uploadId") String uploadId) {
+        UploadSession session = chunkedUploadService.getSession(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!session.isOwnedBy(getClient())) {
+            return forbidden(uploadId);
+        }
+        try {
+            String fileId = chunkedUploadService.commit(session);
+            return ResponseEntity.ok(
+                    Map.of(
+                            "fileId",
+                            fileId,
+                            "fileName",
+                            session.getFileName(),
+                            "fileSize",
+                            session.getFileSize()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Error committing upload {}: {}", uploadId, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("message", "Error committing upload: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Abandon an upload
+     *
+     * @param uploadId The upload ID
+     * @return Response indicating whether the upload existed
+     */
+    @DeleteMapping("/api/v1/general/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable("uploadId") String uploadId) {
+        UploadSession session = chunkedUploadService.getSession(uploadId);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!session.isOwnedBy(getClient())) {
+            return forbidden(uploadId);
+        }
+        if (!chunkedUploadService.abort(uploadId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("message", "Upload aborted"));
+    }
+
+    /** The logged in user, or the client address for anonymous uploads */
+    private String getClient() {
+        Principal principal = request.getUserPrincipal();
+        return principal != null
+                ? "user:" + principal.getName()
+                : "address:" + request.getRemoteAddr();
+    }
+
+    private static ResponseEntity<?> forbidden(String uploadId) {
+        log.warn("Unauthorized attempt to access upload: {}", uploadId);
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("message", "You are not authorized to access this upload"));
+    }
+
+    private ResponseEntity<?> checkUploadLimit(long fileSize) {
+        long limit = uploadLimitService.getUploadLimit();
+        if (limit > 0 && fileSize > limit) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(
+                            Map.of(
+                                    "message",
+                                    "File is too large. Maximum allowed size is "
+                                            + uploadLimitService.getReadableUploadLimit()));
+        }
+        return null;
+    }
+
+    private static Map<String, Object> describe(UploadSession session) {
+        return Map.of(
+                "uploadId",
+                session.getUploadId(),
+                "fileName",
+                session.getFileName(),
+                "fileSize",
+                session.getFileSize(),
+                "chunkSize",
+                session.getChunkSize(),
+                "chunkCount",
+                session.getChunkCount(),
+                "receivedChunks",
+                session.getReceivedChunks());
+    }
+}
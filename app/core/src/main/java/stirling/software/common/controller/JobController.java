@@ -1,10 +1,25 @@
 package stirling.software.common.controller;
 
+import java.io.IOException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.jetty.io.EofException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -13,6 +28,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,6 +36,7 @@ import lombok.extern.slf4j.Slf4j;
 import stirling.software.common.model.job.JobResult;
 import stirling.software.common.model.job.ResultFile;
 import stirling.software.common.service.FileStorage;
+import stirling.software.common.service.JobExecutorService;
 import stirling.software.common.service.JobQueue;
 import stirling.software.common.service.TaskManager;
 
@@ -32,7 +49,9 @@ public class JobController {
     private final TaskManager taskManager;
     private final FileStorage fileStorage;
     private final JobQueue jobQueue;
+    private final JobExecutorService jobExecutorService;
     private final HttpServletRequest request;
+    private final HttpServletResponse response;
 
     /**
      * Get the status of a job
@@ -63,7 +82,8 @@ public class JobController {
     }
 
     /**
-     * Get the result of a job
+     * Get the result of a job. A single result file is downloaded directly, with support for HEAD
+     * and Range requests.
      *
      * @param jobId The job ID
      * @return The job result
@@ -102,13 +122,8 @@ public class JobController {
             try {
                 List<ResultFile> files = result.getAllResultFiles();
                 ResultFile singleFile = files.get(0);
-                byte[] fileContent = fileStorage.retrieveBytes(singleFile.getFileId());
-                return ResponseEntity.ok()
-                        .header("Content-Type", singleFile.getContentType())
-                        .header(
-                                "Content-Disposition",
-                                createContentDispositionHeader(singleFile.getFileName()))
-                        .body(fileContent);
+                Path filePath = fileStorage.getStoredFilePath(singleFile.getFileId());
+                return sendFile(filePath, singleFile.getFileName(), singleFile.getContentType());
             } catch (Exception e) {
                 log.error("Error retrieving file for job {}: {}", jobId, e.getMessage(), e);
                 return ResponseEntity.internalServerError()
@@ -156,10 +171,14 @@ public class JobController {
             log.info("Cancelled queued job: {} (was at position {})", jobId, queuePosition);
         }
 
-        // If not in queue or couldn't cancel, try to cancel in TaskManager
+        // If not in queue or couldn't cancel, stop the running work and mark it in TaskManager
         if (!cancelled) {
+            boolean stopped = jobExecutorService.cancelJob(jobId);
             JobResult result = taskManager.getJobResult(jobId);
-            if (result != null && !result.isComplete()) {
+            if (stopped && result == null) {
+                cancelled = true;
+                log.info("Stopped running job: {}", jobId);
+            } else if (result != null && !result.isComplete()) {
                 // Mark as error with cancellation message
                 taskManager.setError(jobId, "Job was cancelled by user");
                 cancelled = true;
@@ -261,7 +280,7 @@ public class JobController {
     }
 
     /**
-     * Download an individual file by its file ID
+     * Download an individual file by its file ID, with support for HEAD and Range requests
      *
      * @param fileId The file ID
      * @return The file content
@@ -274,8 +293,8 @@ public class JobController {
                 return ResponseEntity.notFound().build();
             }
 
-            // Retrieve file content
-            byte[] fileContent = fileStorage.retrieveBytes(fileId);
+            // The content is streamed from disk rather than loaded into memory
+            Path filePath = fileStorage.getStoredFilePath(fileId);
 
             // Find the file metadata from any job that contains this file
             // This is for getting the original filename and content type
@@ -285,10 +304,7 @@ public class JobController {
             String contentType =
                     resultFile != null ? resultFile.getContentType() : "application/octet-stream";
 
-            return ResponseEntity.ok()
-                    .header("Content-Type", contentType)
-                    .header("Content-Disposition", createContentDispositionHeader(fileName))
-                    .body(fileContent);
+            return sendFile(filePath, fileName, contentType);
         } catch (Exception e) {
             log.error("Error retrieving file {}: {}", fileId, e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -296,6 +312,144 @@ public class JobController {
         }
     }
 
+    /**
+     * Send a stored file. The content goes from the file to the response with {@link
+     * FileChannel#transferTo} in constant memory. A single byte range, If-Range, If-None-Match and
+     * HEAD are supported, so clients can resume a download or fetch parts of it in parallel.
+     *
+     * @return The response for answers without content, or null once the content was written
+     */
+    private ResponseEntity<?> sendFile(Path filePath, String fileName, String contentType)
+            throws IOException {
+        long length = Files.size(filePath);
+        long lastModified = Files.getLastModifiedTime(filePath).toMillis();
+        String etag = createETag(filePath, length, lastModified);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        HttpStatus status = HttpStatus.OK;
+        long start = 0;
+        long count = length;
+        HttpRange range = getRequestedRange(etag, lastModified);
+        if (range != null) {
+            long end = -1;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                // Starts beyond the end of the file
+            }
+            if (end < start) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .headers(headers)
+                        .build();
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            count = end - start + 1;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, createContentDispositionHeader(fileName));
+        headers.setContentLength(count);
+
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+
+        response.setStatus(status.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long end = start + count;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    throw new IOException("File ended before the requested content was sent");
+                }
+                position += sent;
+            }
+        } catch (EofException e) {
+            // The client closed the connection, which is routine for resumed downloads
+            log.debug("Download of {} ended early: {}", fileName, e.getMessage());
+        } catch (IOException e) {
+            // The response is already committed, so all that is left is to report it
+            log.error("Error sending {}: {}", fileName, e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /** The single byte range to send, or null when the whole file has to be sent */
+    private HttpRange getRequestedRange(String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null
+                || !ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            // Clients that download in parallel send one request per range, so multiple ranges
+            // in one request are answered with the whole file
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            // A malformed Range header is ignored
+            return null;
+        }
+    }
+
+    /** If-Range matches on the exact ETag or on the exact modification date */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return value.equals(etag);
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toEpochSecond() == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stored files are never changed in place, so their name, size and modification time identify
+     * the content and make a strong ETag
+     */
+    private static String createETag(Path filePath, long length, long lastModified) {
+        return "\""
+                + Integer.toHexString(filePath.getFileName().toString().hashCode())
+                + "-"
+                + Long.toHexString(length)
+                + "-"
+                + Long.toHexString(lastModified)
+                + "\"";
+    }
+
     /**
      * Create Content-Disposition header with UTF-8 filename support
      *
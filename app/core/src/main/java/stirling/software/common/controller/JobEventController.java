@@ -0,0 +1,234 @@
+package stirling.software.common.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import stirling.software.common.model.job.JobResult;
+import stirling.software.common.service.TaskManager;
+import stirling.software.common.util.ExecutorFactory;
+
+/**
+ * REST controller that pushes job changes to clients instead of having them poll the status of
+ * every job. One request covers any number of jobs and holds no thread while it waits.
+ */
+@RestController
+@RequiredArgsConstructor
+@Slf4j
+public class JobEventController {
+
+    static final int MAX_JOBS_PER_REQUEST = 10_000;
+    static final int MAX_WAIT_SECONDS = 60;
+
+    private static final long STREAM_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+
+    private final TaskManager taskManager;
+    // Writes the events of streams, so a client that reads slowly holds up no job listener
+    private final ExecutorService sendExecutor = ExecutorFactory.newVirtualOrCachedThreadExecutor();
+
+    /**
+     * Stream the changes of jobs as Server-Sent Events. Each job's current state is sent first,
+     * followed by a "progress" event for every change and a "complete" event when it is done.
+     * Unknown jobs get a "notFound" event. The stream ends once all jobs are complete.
+     *
+     * @param jobIds The job IDs
+     * @return The event stream
+     */
+    @GetMapping(
+            value = "/api/v1/general/job/events",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobEvents(
+            @RequestParam("jobId") List<String> jobIds) {
+        Set<String> ids = new LinkedHashSet<>(jobIds);
+        if (ids.size() > MAX_JOBS_PER_REQUEST) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        EventStream stream = new EventStream(emitter, ids);
+        TaskManager.JobListener listener = stream::jobChanged;
+        Runnable unsubscribe =
+                () -> ids.forEach(jobId -> taskManager.removeListener(jobId, listener));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        // Listen before looking at the current state, so no change in between is missed
+        ids.forEach(jobId -> taskManager.addListener(jobId, listener));
+        for (String jobId : ids) {
+            JobResult jobResult = taskManager.getJobResult(jobId);
+            if (jobResult != null) {
+                stream.jobChanged(jobResult);
+            } else {
+                stream.notFound(jobId);
+            }
+        }
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter);
+    }
+
+    /**
+     * Wait for jobs to change, for clients that can't use event streams. Answers as soon as one of
+     * the jobs changes or the wait times out, and straight away if one of them is already complete
+     * or unknown, so clients leave out the jobs they are done with when they ask again.
+     *
+     * @param jobIds The job IDs
+     * @param timeoutSeconds How long to wait, at most {@value #MAX_WAIT_SECONDS} seconds
+     * @return The current state of the jobs and the IDs of unknown jobs
+     */
+    @GetMapping("/api/v1/general/job/wait")
+    public DeferredResult<ResponseEntity<?>> waitForJobs(
+            @RequestParam("jobId") List<String> jobIds,
+            @RequestParam(value = "timeout", defaultValue = "30") int timeoutSeconds) {
+        Set<String> ids = new LinkedHashSet<>(jobIds);
+        long timeoutMs =
+                TimeUnit.SECONDS.toMillis(Math.max(1, Math.min(MAX_WAIT_SECONDS, timeoutSeconds)));
+        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(timeoutMs);
+        if (ids.size() > MAX_JOBS_PER_REQUEST) {
+            deferredResult.setResult(
+                    ResponseEntity.badRequest()
+                            .body(
+                                    Map.of(
+                                            "message",
+                                            "At most " + MAX_JOBS_PER_REQUEST + " job IDs")));
+            return deferredResult;
+        }
+
+        TaskManager.JobListener listener = jobResult -> answer(deferredResult, ids);
+        Runnable unsubscribe =
+                () -> ids.forEach(jobId -> taskManager.removeListener(jobId, listener));
+        deferredResult.onCompletion(unsubscribe);
+        deferredResult.onTimeout(() -> answer(deferredResult, ids));
+
+        ids.forEach(jobId -> taskManager.addListener(jobId, listener));
+        for (String jobId : ids) {
+            JobResult jobResult = taskManager.getJobResult(jobId);
+            if (jobResult == null || jobResult.isComplete()) {
+                answer(deferredResult, ids);
+                break;
+            }
+        }
+        return deferredResult;
+    }
+
+    private void answer(DeferredResult<ResponseEntity<?>> deferredResult, Set<String> ids) {
+        if (deferredResult.hasResult()) {
+            return;
+        }
+        List<JobResult> jobs = new ArrayList<>();
+        List<String> notFound = new ArrayList<>();
+        for (String jobId : ids) {
+            JobResult jobResult = taskManager.getJobResult(jobId);
+            if (jobResult != null) {
+                jobs.add(jobResult);
+            } else {
+                notFound.add(jobId);
+            }
+        }
+        deferredResult.setResult(ResponseEntity.ok(Map.of("jobs", jobs, "notFound", notFound)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * The events of one stream. Listeners only queue them, and the send executor writes them one
+     * at a time and in order.
+     */
+    private final class EventStream implements Runnable {
+
+        private final SseEmitter emitter;
+        // Jobs not reported complete or unknown yet. Only used by the sending thread
+        private final Set<String> pending;
+        private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queuedEvents = new AtomicInteger();
+
+        private EventStream(SseEmitter emitter, Set<String> jobIds) {
+            this.emitter = emitter;
+            this.pending = new HashSet<>(jobIds);
+        }
+
+        private void jobChanged(JobResult jobResult) {
+            queue(() -> sendEvent(jobResult));
+        }
+
+        private void notFound(String jobId) {
+            queue(
+                    () -> {
+                        if (pending.remove(jobId)) {
+                            send("notFound", Map.of("jobId", jobId), pending.isEmpty());
+                        }
+                    });
+        }
+
+        private void queue(Runnable event) {
+            events.add(event);
+            // Whoever raises the count from zero starts the sending
+            if (queuedEvents.getAndIncrement() > 0) {
+                return;
+            }
+            try {
+                sendExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                emitter.complete();
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                events.remove().run();
+            } while (queuedEvents.decrementAndGet() > 0);
+        }
+
+        private void sendEvent(JobResult jobResult) {
+            if (!pending.contains(jobResult.getJobId())) {
+                return;
+            }
+            if (jobResult.isComplete()) {
+                pending.remove(jobResult.getJobId());
+                send("complete", jobResult, pending.isEmpty());
+            } else {
+                send("progress", jobResult, false);
+            }
+        }
+
+        private void send(String name, Object data, boolean last) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                if (last) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the stream already ended
+                log.debug("Could not send {} event: {}", name, e.getMessage());
+                pending.clear();
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
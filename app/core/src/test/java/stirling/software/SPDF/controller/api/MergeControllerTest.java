@@ -63,6 +63,7 @@ class MergeControllerTest {
     void testAddTableOfContents_WithMultipleFiles_Success() throws Exception {
         // Given
         MultipartFile[] files = {mockFile1, mockFile2, mockFile3};
+        int[] pageCounts = {2, 2, 2};
 
         // Mock the merged document setup
         when(mockMergedDocument.getDocumentCatalog()).thenReturn(mockCatalog);
@@ -71,23 +72,8 @@ class MergeControllerTest {
         when(mockMergedDocument.getPage(2)).thenReturn(mockPage2);
         when(mockMergedDocument.getPage(4)).thenReturn(mockPage1);
 
-        // Mock individual document loading for page count
-        PDDocument doc1 = mock(PDDocument.class);
-        PDDocument doc2 = mock(PDDocument.class);
-        PDDocument doc3 = mock(PDDocument.class);
-
-        when(pdfDocumentFactory.load(mockFile1)).thenReturn(doc1);
-        when(pdfDocumentFactory.load(mockFile2)).thenReturn(doc2);
-        when(pdfDocumentFactory.load(mockFile3)).thenReturn(doc3);
-
-        when(doc1.getNumberOfPages()).thenReturn(2);
-        when(doc2.getNumberOfPages()).thenReturn(2);
-        when(doc3.getNumberOfPages()).thenReturn(2);
-
         // When
-        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class);
-        addTableOfContentsMethod.setAccessible(true);
-        addTableOfContentsMethod.invoke(mergeController, mockMergedDocument, files);
+        invokeAddTableOfContents(mockMergedDocument, files, pageCounts);
 
         // Then
         ArgumentCaptor<PDDocumentOutline> outlineCaptor = ArgumentCaptor.forClass(PDDocumentOutline.class);
@@ -96,15 +82,13 @@ class MergeControllerTest {
         PDDocumentOutline capturedOutline = outlineCaptor.getValue();
         assertNotNull(capturedOutline);
 
-        // Verify that documents were loaded for page count
-        verify(pdfDocumentFactory).load(mockFile1);
-        verify(pdfDocumentFactory).load(mockFile2);
-        verify(pdfDocumentFactory).load(mockFile3);
+        // Each bookmark points at the first page contributed by its file
+        verify(mockMergedDocument).getPage(0);
+        verify(mockMergedDocument).getPage(2);
+        verify(mockMergedDocument).getPage(4);
 
-        // Verify document closing
-        verify(doc1).close();
-        verify(doc2).close();
-        verify(doc3).close();
+        // The page counts come from the merge, the sources are not loaded again
+        verifyNoInteractions(pdfDocumentFactory);
     }
 
     @Test
@@ -116,19 +100,12 @@ class MergeControllerTest {
         when(mockMergedDocument.getNumberOfPages()).thenReturn(3);
         when(mockMergedDocument.getPage(0)).thenReturn(mockPage1);
 
-        PDDocument doc1 = mock(PDDocument.class);
-        when(pdfDocumentFactory.load(mockFile1)).thenReturn(doc1);
-        when(doc1.getNumberOfPages()).thenReturn(3);
-
         // When
-        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class);
-        addTableOfContentsMethod.setAccessible(true);
-        addTableOfContentsMethod.invoke(mergeController, mockMergedDocument, files);
+        invokeAddTableOfContents(mockMergedDocument, files, new int[] {3});
 
         // Then
         verify(mockCatalog).setDocumentOutline(any(PDDocumentOutline.class));
-        verify(pdfDocumentFactory).load(mockFile1);
-        verify(doc1).close();
+        verify(mockMergedDocument).getPage(0);
     }
 
     @Test
@@ -138,9 +115,7 @@ class MergeControllerTest {
         when(mockMergedDocument.getDocumentCatalog()).thenReturn(mockCatalog);
 
         // When
-        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class);
-        addTableOfContentsMethod.setAccessible(true);
-        addTableOfContentsMethod.invoke(mergeController, mockMergedDocument, files);
+        invokeAddTableOfContents(mockMergedDocument, files, new int[0]);
 
         // Then
         verify(mockMergedDocument).getDocumentCatalog();
@@ -149,36 +124,22 @@ class MergeControllerTest {
     }
 
     @Test
-    void testAddTableOfContents_WithIOException_HandlesGracefully() throws Exception {
+    void testAddTableOfContents_WithEmptySourceDocument_PointsNextFileAtSamePage()
+            throws Exception {
         // Given
-        MultipartFile[] files = {mockFile1, mockFile2};
+        MultipartFile[] files = {mockFile1, mockFile2, mockFile3};
 
         when(mockMergedDocument.getDocumentCatalog()).thenReturn(mockCatalog);
         when(mockMergedDocument.getNumberOfPages()).thenReturn(4);
-        when(mockMergedDocument.getPage(anyInt())).thenReturn(mockPage1); // Use anyInt() to avoid stubbing conflicts
-
-        // First document loads successfully
-        PDDocument doc1 = mock(PDDocument.class);
-        when(pdfDocumentFactory.load(mockFile1)).thenReturn(doc1);
-        when(doc1.getNumberOfPages()).thenReturn(2);
-
-        // Second document throws IOException
-        when(pdfDocumentFactory.load(mockFile2)).thenThrow(new IOException("Failed to load document"));
+        when(mockMergedDocument.getPage(anyInt())).thenReturn(mockPage1);
 
         // When
-        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class);
-        addTableOfContentsMethod.setAccessible(true);
-
-        // Should not throw exception
-        assertDoesNotThrow(() ->
-            addTableOfContentsMethod.invoke(mergeController, mockMergedDocument, files)
-        );
+        invokeAddTableOfContents(mockMergedDocument, files, new int[] {2, 0, 2});
 
         // Then
         verify(mockCatalog).setDocumentOutline(any(PDDocumentOutline.class));
-        verify(pdfDocumentFactory).load(mockFile1);
-        verify(pdfDocumentFactory).load(mockFile2);
-        verify(doc1).close();
+        verify(mockMergedDocument).getPage(0);
+        verify(mockMergedDocument, times(2)).getPage(2);
     }
 
     @Test
@@ -191,18 +152,13 @@ class MergeControllerTest {
         when(mockMergedDocument.getNumberOfPages()).thenReturn(1);
         when(mockMergedDocument.getPage(0)).thenReturn(mockPage1);
 
-        PDDocument doc = mock(PDDocument.class);
-        when(pdfDocumentFactory.load(fileWithoutExtension)).thenReturn(doc);
-        when(doc.getNumberOfPages()).thenReturn(1);
-
         // When
-        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class);
-        addTableOfContentsMethod.setAccessible(true);
-        addTableOfContentsMethod.invoke(mergeController, mockMergedDocument, files);
+        invokeAddTableOfContents(mockMergedDocument, files, new int[] {1});
 
         // Then
-        verify(mockCatalog).setDocumentOutline(any(PDDocumentOutline.class));
-        verify(doc).close();
+        ArgumentCaptor<PDDocumentOutline> outlineCaptor = ArgumentCaptor.forClass(PDDocumentOutline.class);
+        verify(mockCatalog).setDocumentOutline(outlineCaptor.capture());
+        assertEquals("document_no_ext", outlineCaptor.getValue().getFirstChild().getTitle());
     }
 
     @Test
@@ -213,23 +169,19 @@ class MergeControllerTest {
         when(mockMergedDocument.getDocumentCatalog()).thenReturn(mockCatalog);
         when(mockMergedDocument.getNumberOfPages()).thenReturn(0); // No pages in merged document
 
-        PDDocument doc1 = mock(PDDocument.class);
-        when(pdfDocumentFactory.load(mockFile1)).thenReturn(doc1);
-        when(doc1.getNumberOfPages()).thenReturn(3);
-
-        // When
-        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class);
-        addTableOfContentsMethod.setAccessible(true);
-
         // Should not throw exception
-        assertDoesNotThrow(() ->
-            addTableOfContentsMethod.invoke(mergeController, mockMergedDocument, files)
-        );
+        assertDoesNotThrow(() -> invokeAddTableOfContents(mockMergedDocument, files, new int[] {3}));
 
         // Then
         verify(mockCatalog).setDocumentOutline(any(PDDocumentOutline.class));
         verify(mockMergedDocument, never()).getPage(anyInt());
-        verify(doc1).close();
+    }
+
+    private void invokeAddTableOfContents(PDDocument document, MultipartFile[] files, int[] pageCounts)
+            throws Exception {
+        Method addTableOfContentsMethod = MergeController.class.getDeclaredMethod("addTableOfContents", PDDocument.class, MultipartFile[].class, int[].class);
+        addTableOfContentsMethod.setAccessible(true);
+        addTableOfContentsMethod.invoke(mergeController, document, files, pageCounts);
     }
 
     @Test
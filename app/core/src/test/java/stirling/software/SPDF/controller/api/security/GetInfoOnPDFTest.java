@@ -0,0 +1,115 @@
+package stirling.software.SPDF.controller.api.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import stirling.software.SPDF.model.api.security.PDFInfoRequest;
+import stirling.software.common.service.CustomPDFDocumentFactory;
+
+@ExtendWith(MockitoExtension.class)
+class GetInfoOnPDFTest {
+
+    @Mock private CustomPDFDocumentFactory pdfDocumentFactory;
+
+    @InjectMocks private GetInfoOnPDF getInfoOnPDF;
+
+    private static PDDocument createDocument(String... pageTexts) throws IOException {
+        PDDocument document = new PDDocument();
+        for (String text : pageTexts) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                contentStream.beginText();
+                contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                contentStream.newLineAtOffset(50, 700);
+                contentStream.showText(text);
+                contentStream.endText();
+            }
+        }
+        return document;
+    }
+
+    private static PDFInfoRequest createRequest(String sections) {
+        PDFInfoRequest request = new PDFInfoRequest();
+        request.setFileInput(
+                new MockMultipartFile("file", "test.pdf", "application/pdf", new byte[] {1}));
+        request.setSections(sections);
+        return request;
+    }
+
+    private JsonNode getInfo(PDDocument document, String sections) throws IOException {
+        when(pdfDocumentFactory.load(any(MultipartFile.class), anyBoolean()))
+                .thenReturn(document);
+        byte[] json = getInfoOnPDF.getPdfInfo(createRequest(sections)).getBody();
+        return new ObjectMapper().readTree(json);
+    }
+
+    @Test
+    void textStatisticsMatchSeparateTextPasses() throws IOException {
+        PDDocument document = createDocument("Hello world", "Second page with more words");
+        String fullText = new PDFTextStripper().getText(document);
+        PDFTextStripper pageStripper = new PDFTextStripper();
+        pageStripper.setStartPage(2);
+        pageStripper.setEndPage(2);
+        int secondPageLength = pageStripper.getText(document).length();
+
+        JsonNode info = getInfo(document, "textStats");
+
+        JsonNode basicInfo = info.get("BasicInfo");
+        assertEquals(fullText.split("\\s+").length, basicInfo.get("WordCount").asInt());
+        assertEquals(
+                fullText.split("\r\n|\r|\n").length, basicInfo.get("ParagraphCount").asInt());
+        assertEquals(fullText.length(), basicInfo.get("CharacterCount").asInt());
+        assertEquals(
+                secondPageLength,
+                info.at("/PerPageInfo/Page 2/Text Characters Count").asInt());
+        assertFalse(info.has("Metadata"));
+        assertFalse(info.has("Other"));
+    }
+
+    @Test
+    void onlyRequestedSectionsAreWritten() throws IOException {
+        PDDocument document = createDocument("Hello world");
+        document.getDocumentInformation().setTitle("Report");
+
+        JsonNode info = getInfo(document, "metadata, forms");
+
+        assertEquals("Report", info.at("/Metadata/Title").asText());
+        assertTrue(info.has("FormFields"));
+        assertTrue(info.has("Permissions"));
+        assertTrue(info.at("/Other/Attachments").isArray());
+        assertFalse(info.has("PerPageInfo"));
+        assertFalse(info.at("/BasicInfo").has("WordCount"));
+    }
+
+    @Test
+    void unknownSectionIsRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> getInfoOnPDF.getPdfInfo(createRequest("metadata,everything")));
+    }
+}
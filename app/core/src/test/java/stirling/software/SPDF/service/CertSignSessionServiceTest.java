@@ -0,0 +1,103 @@
+package stirling.software.SPDF.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.apache.pdfbox.examples.signature.CreateSignatureBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import stirling.software.SPDF.service.CertSignSessionService.SigningSession;
+
+class CertSignSessionServiceTest {
+
+    private static final String OWNER = "user:alice";
+    private static final String OTHER = "user:bob";
+
+    private CertSignSessionService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void openSessionReturnsSignerUntilClosed() {
+        service = new CertSignSessionService(300, 50, 5);
+        CreateSignatureBase signer = mock(CreateSignatureBase.class);
+
+        SigningSession session = service.openSession(OWNER, signer);
+
+        assertSame(signer, service.getSigner(session.sessionId(), OWNER).orElseThrow());
+        assertTrue(service.closeSession(session.sessionId(), OWNER));
+        assertTrue(service.getSigner(session.sessionId(), OWNER).isEmpty());
+        assertFalse(service.closeSession(session.sessionId(), OWNER));
+    }
+
+    @Test
+    void expiredSessionsAreNotReturned() throws InterruptedException {
+        service = new CertSignSessionService(1, 50, 5);
+        SigningSession session = service.openSession(OWNER, mock(CreateSignatureBase.class));
+
+        Thread.sleep(1100);
+
+        assertTrue(service.getSigner(session.sessionId(), OWNER).isEmpty());
+        assertEquals(0, service.getActiveSessionCount());
+    }
+
+    @Test
+    void sessionLimitIsEnforced() {
+        service = new CertSignSessionService(300, 50, 1);
+        service.openSession(OWNER, mock(CreateSignatureBase.class));
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> service.openSession(OWNER, mock(CreateSignatureBase.class)));
+    }
+
+    @Test
+    void overallSessionLimitIsEnforced() {
+        service = new CertSignSessionService(300, 2, 5);
+        service.openSession(OWNER, mock(CreateSignatureBase.class));
+        service.openSession(OTHER, mock(CreateSignatureBase.class));
+
+        assertThrows(
+                IllegalStateException.class,
+                () -> service.openSession("user:carol", mock(CreateSignatureBase.class)));
+    }
+
+    @Test
+    void sessionLimitIsPerUser() {
+        service = new CertSignSessionService(300, 50, 1);
+        service.openSession(OWNER, mock(CreateSignatureBase.class));
+
+        SigningSession other = service.openSession(OTHER, mock(CreateSignatureBase.class));
+
+        assertEquals(OTHER, other.owner());
+        assertEquals(2, service.getActiveSessionCount());
+    }
+
+    @Test
+    void sessionOfAnotherUserIsNotHandedOut() {
+        service = new CertSignSessionService(300, 50, 5);
+        SigningSession session = service.openSession(OWNER, mock(CreateSignatureBase.class));
+
+        assertTrue(service.getSigner(session.sessionId(), OTHER).isEmpty());
+        assertFalse(service.closeSession(session.sessionId(), OTHER));
+        assertTrue(service.getSigner(session.sessionId(), OWNER).isPresent());
+    }
+
+    @Test
+    void unknownSessionIsEmpty() {
+        service = new CertSignSessionService(300, 50, 5);
+
+        assertTrue(service.getSigner("missing", OWNER).isEmpty());
+        assertTrue(service.getSigner(null, OWNER).isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+package stirling.software.SPDF.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.junit.jupiter.api.Test;
+
+class FontCacheServiceTest {
+
+    private final FontCacheService fontCacheService = new FontCacheService();
+
+    @Test
+    void fontDataIsSharedBetweenCalls() throws IOException {
+        byte[] first = fontCacheService.getFontData("static/fonts/NotoSans-Regular.ttf");
+        byte[] second = fontCacheService.getFontData("static/fonts/NotoSans-Regular.ttf");
+
+        assertSame(first, second);
+        Map<String, Object> stats = fontCacheService.getStats();
+        assertEquals(1, stats.get("cachedFonts"));
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void fontCanBeEmbeddedInSeveralDocuments() throws IOException {
+        try (PDDocument first = new PDDocument();
+                PDDocument second = new PDDocument()) {
+            PDType0Font firstFont = fontCacheService.loadFontForAlphabet(first, "roman");
+            PDType0Font secondFont = fontCacheService.loadFontForAlphabet(second, "roman");
+
+            assertNotNull(firstFont);
+            assertNotNull(secondFont);
+            assertEquals(firstFont.getName(), secondFont.getName());
+        }
+    }
+
+    @Test
+    void unknownAlphabetFallsBackToNotoSans() {
+        assertEquals(
+                "static/fonts/NotoSans-Regular.ttf",
+                FontCacheService.getFontResourceForAlphabet("klingon"));
+        assertEquals(
+                "static/fonts/NotoSans-Regular.ttf",
+                FontCacheService.getFontResourceForAlphabet(null));
+    }
+
+    @Test
+    void missingResourceThrowsIOException() {
+        assertThrows(
+                IOException.class,
+                () -> fontCacheService.getFontData("static/fonts/does-not-exist.ttf"));
+    }
+}
@@ -0,0 +1,112 @@
+package stirling.software.SPDF.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import stirling.software.SPDF.service.PdfAnalysisCacheService.AnalysisSummary;
+import stirling.software.common.service.CustomPDFDocumentFactory;
+
+class PdfAnalysisCacheServiceTest {
+
+    private CustomPDFDocumentFactory pdfDocumentFactory;
+    private PdfAnalysisCacheService analysisCacheService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pdfDocumentFactory = mock(CustomPDFDocumentFactory.class);
+        when(pdfDocumentFactory.load(any(MultipartFile.class), eq(true)))
+                .thenAnswer(invocation -> createDocument());
+        analysisCacheService = new PdfAnalysisCacheService(pdfDocumentFactory);
+    }
+
+    private static PDDocument createDocument() {
+        PDDocument document = new PDDocument();
+        document.addPage(new PDPage(PDRectangle.A4));
+        document.addPage(new PDPage(PDRectangle.LETTER));
+        return document;
+    }
+
+    private static MockMultipartFile upload(byte[] content) {
+        return new MockMultipartFile("fileInput", "test.pdf", "application/pdf", content);
+    }
+
+    @Test
+    void sameContentIsParsedOnce() throws IOException {
+        AnalysisSummary first = analysisCacheService.getSummary(upload(new byte[] {1, 2, 3}));
+        AnalysisSummary second = analysisCacheService.getSummary(upload(new byte[] {1, 2, 3}));
+
+        assertSame(first, second);
+        assertEquals(2, first.pageCount());
+        assertEquals(PDRectangle.LETTER.getWidth(), first.pageDimensions().get(1).get("width"));
+        verify(pdfDocumentFactory, times(1)).load(any(MultipartFile.class), eq(true));
+
+        Map<String, Object> stats = analysisCacheService.getStats();
+        assertEquals(1, stats.get("cachedSummaries"));
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void differentContentIsParsedAgain() throws IOException {
+        analysisCacheService.getSummary(upload(new byte[] {1, 2, 3}));
+        analysisCacheService.getSummary(upload(new byte[] {1, 2, 4}));
+
+        verify(pdfDocumentFactory, times(2)).load(any(MultipartFile.class), eq(true));
+        assertEquals(2, analysisCacheService.getStats().get("cachedSummaries"));
+    }
+
+    @Test
+    void failedAnalysisIsNotCached() throws IOException {
+        when(pdfDocumentFactory.load(any(MultipartFile.class), eq(true)))
+                .thenThrow(new StackOverflowError())
+                .thenAnswer(invocation -> createDocument());
+
+        assertThrows(
+                StackOverflowError.class,
+                () -> analysisCacheService.getSummary(upload(new byte[] {1, 2, 3})));
+        assertEquals(0, analysisCacheService.getStats().get("cachedSummaries"));
+
+        AnalysisSummary summary = analysisCacheService.getSummary(upload(new byte[] {1, 2, 3}));
+        assertEquals(2, summary.pageCount());
+    }
+
+    @Test
+    void lowMemoryEvictsCachedSummaries() throws IOException {
+        analysisCacheService.getSummary(upload(new byte[] {1}));
+        when(pdfDocumentFactory.isFreeMemoryLow()).thenReturn(true);
+        analysisCacheService.getSummary(upload(new byte[] {2}));
+
+        Map<String, Object> stats = analysisCacheService.getStats();
+        assertEquals(0, stats.get("cachedSummaries"));
+        assertEquals(2L, stats.get("evictions"));
+        assertEquals(0L, stats.get("memoryBytes"));
+    }
+
+    @Test
+    void missingDatesAreReportedAsNull() throws IOException {
+        AnalysisSummary summary = analysisCacheService.getSummary(upload(new byte[] {5}));
+
+        assertNull(summary.documentProperties().get("creationDate"));
+        assertEquals(false, summary.securityInfo().get("isEncrypted"));
+        assertEquals(0, summary.formInfo().get("fieldCount"));
+    }
+}
@@ -3,16 +3,22 @@ package stirling.software.common.controller;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockHttpSession;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -21,11 +27,15 @@ import stirling.software.common.model.job.JobResult;
 import stirling.software.common.model.job.JobStats;
 import stirling.software.common.model.job.ResultFile;
 import stirling.software.common.service.FileStorage;
+import stirling.software.common.service.JobExecutorService;
 import stirling.software.common.service.JobQueue;
 import stirling.software.common.service.TaskManager;
 
 class JobControllerTest {
 
+    @TempDir
+    Path tempDir;
+
     @Mock
     private TaskManager taskManager;
 
@@ -35,9 +45,15 @@ class JobControllerTest {
     @Mock
     private JobQueue jobQueue;
 
+    @Mock
+    private JobExecutorService jobExecutorService;
+
     @Mock
     private HttpServletRequest request;
 
+    @Spy
+    private MockHttpServletResponse response = new MockHttpServletResponse();
+
     private MockHttpSession session;
 
     @InjectMocks
@@ -132,26 +148,123 @@ class JobControllerTest {
     void testGetJobResult_CompletedSuccessfulWithFile() throws Exception {
         // Arrange
         String jobId = "test-job-id";
-        String fileId = "file-id";
         String originalFileName = "test.pdf";
         String contentType = "application/pdf";
-        byte[] fileContent = "Test file content".getBytes();
+        byte[] fileContent = storeSingleFileResult(jobId);
 
-        JobResult mockResult = new JobResult();
-        mockResult.setJobId(jobId);
-        mockResult.completeWithSingleFile(fileId, originalFileName, contentType, fileContent.length);
+        // Act
+        ResponseEntity<?> result = controller.getJobResult(jobId);
+
+        // Assert - the content is written straight to the servlet response
+        assertNull(result);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(contentType, response.getHeader("Content-Type"));
+        assertTrue(response.getHeader("Content-Disposition").contains(originalFileName));
+        assertEquals(fileContent.length, response.getContentLength());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("ETag"));
+        assertArrayEquals(fileContent, response.getContentAsByteArray());
+        verify(fileStorage, never()).retrieveBytes("file-id");
+    }
 
-        when(taskManager.getJobResult(jobId)).thenReturn(mockResult);
-        when(fileStorage.retrieveBytes(fileId)).thenReturn(fileContent);
+    @Test
+    void testGetJobResult_RangeRequest() throws Exception {
+        // Arrange
+        String jobId = "test-job-id";
+        storeSingleFileResult(jobId);
+        when(request.getHeader("Range")).thenReturn("bytes=5-8");
 
         // Act
-        ResponseEntity<?> response = controller.getJobResult(jobId);
+        ResponseEntity<?> result = controller.getJobResult(jobId);
 
         // Assert
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(contentType, response.getHeaders().getFirst("Content-Type"));
-        assertTrue(response.getHeaders().getFirst("Content-Disposition").contains(originalFileName));
-        assertEquals(fileContent, response.getBody());
+        assertNull(result);
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        assertEquals("bytes 5-8/17", response.getHeader("Content-Range"));
+        assertEquals(4, response.getContentLength());
+        assertEquals("file", response.getContentAsString());
+    }
+
+    @Test
+    void testGetJobResult_IfRangeMismatchSendsWholeFile() throws Exception {
+        // Arrange
+        String jobId = "test-job-id";
+        byte[] fileContent = storeSingleFileResult(jobId);
+        when(request.getHeader("Range")).thenReturn("bytes=5-8");
+        when(request.getHeader("If-Range")).thenReturn("\"outdated\"");
+
+        // Act
+        controller.getJobResult(jobId);
+
+        // Assert
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertArrayEquals(fileContent, response.getContentAsByteArray());
+    }
+
+    @Test
+    void testGetJobResult_RangeBeyondEndOfFile() throws Exception {
+        // Arrange
+        String jobId = "test-job-id";
+        storeSingleFileResult(jobId);
+        when(request.getHeader("Range")).thenReturn("bytes=100-");
+
+        // Act
+        ResponseEntity<?> result = controller.getJobResult(jobId);
+
+        // Assert
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, result.getStatusCode());
+        assertEquals("bytes */17", result.getHeaders().getFirst("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testGetJobResult_MatchingETagIsNotModified() throws Exception {
+        // Arrange
+        String jobId = "test-job-id";
+        storeSingleFileResult(jobId);
+        controller.getJobResult(jobId);
+        String etag = response.getHeader("ETag");
+        response.reset();
+        when(request.getHeader("If-None-Match")).thenReturn(etag);
+
+        // Act
+        ResponseEntity<?> result = controller.getJobResult(jobId);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        assertEquals(etag, result.getHeaders().getETag());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testGetJobResult_HeadSendsHeadersOnly() throws Exception {
+        // Arrange
+        String jobId = "test-job-id";
+        byte[] fileContent = storeSingleFileResult(jobId);
+        when(request.getMethod()).thenReturn("HEAD");
+
+        // Act
+        ResponseEntity<?> result = controller.getJobResult(jobId);
+
+        // Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(fileContent.length, result.getHeaders().getContentLength());
+        assertNull(result.getBody());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    private byte[] storeSingleFileResult(String jobId) throws IOException {
+        byte[] fileContent = "Test file content".getBytes();
+        JobResult mockResult = new JobResult();
+        mockResult.setJobId(jobId);
+        mockResult.completeWithSingleFile(
+                "file-id", "test.pdf", "application/pdf", fileContent.length);
+
+        Path filePath = tempDir.resolve("file-id");
+        Files.write(filePath, fileContent);
+        when(taskManager.getJobResult(jobId)).thenReturn(mockResult);
+        when(fileStorage.getStoredFilePath("file-id")).thenReturn(filePath);
+        return fileContent;
     }
 
     @Test
@@ -219,7 +332,7 @@ class JobControllerTest {
         mockResult.completeWithSingleFile(fileId, originalFileName, contentType, 1024L);
 
         when(taskManager.getJobResult(jobId)).thenReturn(mockResult);
-        when(fileStorage.retrieveBytes(fileId)).thenThrow(new RuntimeException("File not found"));
+        when(fileStorage.getStoredFilePath(fileId)).thenThrow(new IOException("File not found"));
 
         // Act
         ResponseEntity<?> response = controller.getJobResult(jobId);
@@ -0,0 +1,124 @@
+package stirling.software.common.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import stirling.software.common.model.job.JobResult;
+import stirling.software.common.service.FileStorage;
+import stirling.software.common.service.TaskManager;
+
+class JobEventControllerTest {
+
+    private TaskManager taskManager;
+    private JobEventController controller;
+
+    @BeforeEach
+    void setUp() {
+        taskManager = new TaskManager(mock(FileStorage.class));
+        controller = new JobEventController(taskManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        controller.shutdown();
+        taskManager.shutdown();
+    }
+
+    @Test
+    void testWaitAnswersAtOnceForCompleteJob() {
+        String jobId = UUID.randomUUID().toString();
+        taskManager.createTask(jobId);
+        taskManager.setResult(jobId, "Done");
+
+        DeferredResult<ResponseEntity<?>> result = controller.waitForJobs(List.of(jobId), 30);
+
+        assertTrue(result.hasResult());
+        assertEquals(List.of(taskManager.getJobResult(jobId)), jobs(result));
+    }
+
+    @Test
+    void testWaitAnswersAtOnceForUnknownJob() {
+        DeferredResult<ResponseEntity<?>> result =
+                controller.waitForJobs(List.of("unknown-job"), 30);
+
+        assertTrue(result.hasResult());
+        Map<?, ?> body = (Map<?, ?>) ((ResponseEntity<?>) result.getResult()).getBody();
+        assertEquals(List.of("unknown-job"), body.get("notFound"));
+    }
+
+    @Test
+    void testWaitAnswersWhenJobChanges() throws Exception {
+        String running = UUID.randomUUID().toString();
+        String other = UUID.randomUUID().toString();
+        taskManager.createTask(running);
+        taskManager.createTask(other);
+
+        DeferredResult<ResponseEntity<?>> result =
+                controller.waitForJobs(List.of(running, other), 30);
+        assertFalse(result.hasResult());
+
+        taskManager.setResult(other, "Done");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!result.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(result.hasResult());
+        ResponseEntity<?> response = (ResponseEntity<?>) result.getResult();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<?> jobs = jobs(result);
+        assertEquals(2, jobs.size());
+        assertTrue(((JobResult) jobs.get(1)).isComplete());
+    }
+
+    @Test
+    void testWaitRejectsTooManyJobs() {
+        List<String> jobIds =
+                IntStream.rangeClosed(0, JobEventController.MAX_JOBS_PER_REQUEST)
+                        .mapToObj(String::valueOf)
+                        .toList();
+
+        DeferredResult<ResponseEntity<?>> result = controller.waitForJobs(jobIds, 30);
+
+        ResponseEntity<?> response = (ResponseEntity<?>) result.getResult();
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testStreamRejectsTooManyJobs() {
+        List<String> jobIds =
+                IntStream.rangeClosed(0, JobEventController.MAX_JOBS_PER_REQUEST)
+                        .mapToObj(String::valueOf)
+                        .toList();
+
+        assertEquals(HttpStatus.BAD_REQUEST, controller.streamJobEvents(jobIds).getStatusCode());
+    }
+
+    @Test
+    void testStreamOfRunningJob() {
+        String jobId = UUID.randomUUID().toString();
+        taskManager.createTask(jobId);
+
+        ResponseEntity<?> response = controller.streamJobEvents(List.of(jobId));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+    }
+
+    private static List<?> jobs(DeferredResult<ResponseEntity<?>> result) {
+        Map<?, ?> body = (Map<?, ?>) ((ResponseEntity<?>) result.getResult()).getBody();
+        return (List<?>) body.get("jobs");
+    }
+}